@@ -0,0 +1,77 @@
+package com.cs203t5.ryverbank;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Stubs of the repository and service interfaces for the benchmarks.
+ *
+ * A stub answers the methods it was given by name and returns an empty value
+ * from every other method. Unlike a mock it records nothing and matches no
+ * arguments, so a call costs a map lookup and does not distort the
+ * measurement.
+ */
+public final class Stubs {
+    private Stubs() {
+    }
+
+    /**
+     * Creates a stub that returns an empty value from every method.
+     *
+     * @param <T>  The type of the stub.
+     * @param type The interface to stub.
+     * @return The stub.
+     */
+    public static <T> T stub(Class<T> type) {
+        return stub(type, Collections.emptyMap());
+    }
+
+    /**
+     * Creates a stub with the following answers.
+     *
+     * @param <T>     The type of the stub.
+     * @param type    The interface to stub.
+     * @param answers The answers, by method name, given the arguments of the call.
+     * @return The stub.
+     */
+    public static <T> T stub(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        Object stub = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> {
+                    Function<Object[], Object> answer = answers.get(method.getName());
+                    if (answer != null) {
+                        return answer.apply(args);
+                    }
+                    switch (method.getName()) {
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "stub of " + type.getSimpleName();
+                        default:
+                            return emptyValue(method);
+                    }
+                });
+        return type.cast(stub);
+    }
+
+    private static Object emptyValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == Optional.class) {
+            return Optional.empty();
+        } else if (type.isAssignableFrom(List.class)) {
+            return Collections.emptyList();
+        }
+        return null;
+    }
+}
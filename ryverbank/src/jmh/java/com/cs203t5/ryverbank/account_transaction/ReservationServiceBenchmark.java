@@ -0,0 +1,60 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import static com.cs203t5.ryverbank.Stubs.stub;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks putting money on hold for a buy trade and releasing it again, across
+ * 1k to 1M accounts. The account repository is a stub backed by a map and the
+ * ledger entries go to a stub that keeps nothing, so the accounts are visited in
+ * a random order without touching a database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class ReservationServiceBenchmark {
+    /** The number of accounts. */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int accountCount;
+
+    private ReservationServiceImpl reservationService;
+    private Long[] accountIds;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<Long, Account> accounts = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= accountCount; id++) {
+            Account account = new Account(id, 100000.0, 100000.0);
+            account.setAccountID(id);
+            accounts.put(id, account);
+            ids.add(id);
+        }
+        Collections.shuffle(ids, new Random(42));
+        accountIds = ids.toArray(new Long[0]);
+
+        AccountRepository accountRepository = stub(AccountRepository.class,
+                Map.of("findById", args -> Optional.ofNullable(accounts.get(args[0]))));
+        reservationService = new ReservationServiceImpl(stub(ReservationRepository.class), accountRepository,
+                new Ledger(accountRepository, stub(LedgerEntryRepository.class), 1024));
+    }
+
+    @Benchmark
+    public Reservation reserveAndRelease() {
+        Long accountId = accountIds[next];
+        if (++next == accountIds.length) {
+            next = 0;
+        }
+        Reservation reservation = reservationService.reserve(accountId, 33000L);
+        reservationService.release(reservation);
+        return reservation;
+    }
+}
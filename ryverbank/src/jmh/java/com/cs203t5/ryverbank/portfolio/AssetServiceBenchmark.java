@@ -0,0 +1,58 @@
+package com.cs203t5.ryverbank.portfolio;
+
+import static com.cs203t5.ryverbank.Stubs.stub;
+
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import com.cs203t5.ryverbank.trading.CustomStock;
+import com.cs203t5.ryverbank.trading.Trade;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks adding a filled buy trade to an asset that has been bought 1k to 1M
+ * times before. The average price of an asset is recomputed from its record of
+ * past prices, so the cost grows with the record. The record is reset before
+ * every call so it keeps its size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class AssetServiceBenchmark {
+    /** The number of past prices in the record of the asset. */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int recordSize;
+
+    private AssetServiceImpl assetService;
+    private Trade trade;
+    private Asset asset;
+    private CustomStock stock;
+    private Portfolio portfolio;
+    private String record;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = 0; i < recordSize; i++) {
+            joiner.add(Double.toString(3.0 + (i % 50) / 100.0));
+        }
+        record = joiner.toString();
+
+        assetService = new AssetServiceImpl(stub(AssetRepository.class), stub(PortfolioRepository.class));
+        trade = new Trade("buy", "A17U", 0, 3.30, 0.0, 3.30, 100, 0L, 1L, 1L, "filled", 3.30);
+        asset = new Asset("A17U", 100, 3.25, 3.30, 1L, false, record);
+        stock = new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30);
+        portfolio = new Portfolio(1L);
+    }
+
+    @Benchmark
+    public Asset updateAsset() {
+        asset.setRecord(record);
+        assetService.updateAsset(trade, asset, stock, portfolio);
+        return asset;
+    }
+}
@@ -0,0 +1,42 @@
+package com.cs203t5.ryverbank.portfolio;
+
+import static com.cs203t5.ryverbank.Stubs.stub;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks computing the unrealized gain/loss of a portfolio of 1k to 1M
+ * assets, one in ten of which has been traded away.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class PortfolioServiceBenchmark {
+    /** The number of assets in the portfolio. */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int assetCount;
+
+    private PortfolioServiceImpl portfolioService;
+    private Portfolio portfolio;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        portfolio = new Portfolio(1L);
+        for (int i = 0; i < assetCount; i++) {
+            double price = 3.0 + (i % 50) / 100.0;
+            portfolio.getAssets().add(new Asset("S" + i, 100, 3.25, price, 1L, i % 10 == 0, Double.toString(price)));
+        }
+        portfolioService = new PortfolioServiceImpl(stub(PortfolioRepository.class), stub(AssetRepository.class));
+    }
+
+    @Benchmark
+    public double calGainLoss() {
+        portfolioService.calGainLoss(portfolio);
+        return portfolio.getUnrealizedGainLoss();
+    }
+}
@@ -0,0 +1,157 @@
+package com.cs203t5.ryverbank.trading;
+
+import static com.cs203t5.ryverbank.Stubs.stub;
+
+import java.time.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.cs203t5.ryverbank.account_transaction.Account;
+import com.cs203t5.ryverbank.account_transaction.AccountServices;
+import com.cs203t5.ryverbank.account_transaction.ReservationServices;
+import com.cs203t5.ryverbank.account_transaction.TransactionServices;
+import com.cs203t5.ryverbank.customer.Customer;
+import com.cs203t5.ryverbank.portfolio.AssetService;
+import com.cs203t5.ryverbank.portfolio.PortfolioService;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Benchmarks an incoming trade against a resident order book of 1k to 1M
+ * resting trades spread over 1000 price levels on each side.
+ *
+ * The repositories and the account, asset and portfolio services are stubs and
+ * the journal is disabled, so only the matching cycle, the sweep and the book
+ * are measured. Each incoming
+ * trade takes one resting trade at the best price, which is put back afterwards
+ * so the book keeps its size, and an incoming trade left resting is taken out.
+ *
+ * Incoming trades are only matched while the market is open; outside market
+ * hours the benchmarks measure a trade resting in the book.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" })
+public class TradeServiceBenchmark {
+    private static final String SYMBOL = "A17U";
+    private static final int LEVELS = 1000;
+    private static final int LOT = 100;
+
+    /** The number of resting trades on each side of the book. */
+    @Param({ "1000", "10000", "100000", "1000000" })
+    private int bookSize;
+
+    private MatchingSequencer sequencer;
+    private TradeServiceImpl tradeService;
+    private OrderBook book;
+    private Customer customer;
+    private CustomStock customStock;
+    private long nextId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        OrderBookManager orderBooks = new OrderBookManager();
+        book = orderBooks.getBook(SYMBOL);
+        for (int i = 0; i < bookSize; i++) {
+            book.add(restingSell(i % LEVELS));
+            book.add(restingBuy(i % LEVELS));
+        }
+
+        TradeRepository tradeRepository = stub(TradeRepository.class, Map.of("save", args -> {
+            Trade trade = (Trade) args[0];
+            if (trade.getId() == null) {
+                trade.setId(++nextId);
+            }
+            return trade;
+        }, "saveAll", args -> args[0]));
+        Account account = new Account(1L, 1.0e12, 1.0e12);
+        AccountServices accountServices = stub(AccountServices.class, Map.of("getAccount", args -> account));
+        OrderJournal journal = new OrderJournal(false, "", 0, false);
+        QuoteCache quoteCache = new QuoteCache(stub(StockRepository.class), new QuoteStream(Runnable::run, 0),
+                Runnable::run);
+
+        sequencer = new MatchingSequencer(1);
+        TradeTape tradeTape = new TradeTape(1024);
+        MatchingCycle cycle = new MatchingCycle(sequencer, stub(PlatformTransactionManager.class), journal,
+                tradeTape, orderBooks, tradeRepository);
+        MarketCalendar calendar = openCalendar();
+        tradeService = new TradeServiceImpl(tradeRepository, stub(AssetService.class),
+                stub(TransactionServices.class), accountServices, stub(ReservationServices.class),
+                stub(PortfolioService.class), orderBooks, cycle, quoteCache, journal, null, stub(ExecutionRepository.class), tradeTape,
+                new BarAggregator(stub(BarRepository.class), calendar), calendar);
+
+        customer = new Customer("user1", "goodpassword1", "Ronald Trump", "S8529649C", "91251234", "White House",
+                "ROLE_USER", true);
+        customer.setCustomerId(1L);
+        customStock = new CustomStock(SYMBOL, 20.0, bookSize * LOT, bidPrice(0), bookSize * LOT,
+                askPrice(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sequencer.shutdown();
+    }
+
+    @Benchmark
+    public Trade createMarketBuyTrade() {
+        Trade trade = tradeService.createMarketBuyTrade(
+                new Trade("buy", SYMBOL, LOT, 0.0, 0.0, 0.0, 0, null, 1L, 1L, null, 0.0), customer, customStock);
+        restore(trade, restingSell(0));
+        return trade;
+    }
+
+    @Benchmark
+    public Trade createLimitSellTrade() {
+        Trade trade = tradeService.createLimitSellTrade(
+                new Trade("sell", SYMBOL, LOT, 0.0, bidPrice(0), 0.0, 0, null, 1L, 1L, null, 0.0), customer,
+                customStock);
+        restore(trade, restingBuy(0));
+        return trade;
+    }
+
+    /**
+     * A calendar whose clock stands still at noon on a weekday, so that every
+     * incoming trade is matched whenever the benchmark runs.
+     */
+    private static MarketCalendar openCalendar() {
+        ZoneId zone = ZoneId.of("GMT+8");
+        Clock noon = Clock.fixed(LocalDateTime.of(2020, 10, 14, 12, 0).atZone(zone).toInstant(), zone);
+        return new MarketCalendar(zone, LocalTime.of(9, 0), LocalTime.of(17, 0), List.of(), noon);
+    }
+
+    /**
+     * Brings the book back to its size: the incoming trade is taken out if it was
+     * rested and the resting trade it took is replaced.
+     */
+    private void restore(Trade trade, Trade replacement) {
+        book.remove(trade);
+        if (trade.getFilledQuantity() > 0) {
+            book.add(replacement);
+        }
+    }
+
+    private Trade restingSell(int level) {
+        Trade trade = new Trade("sell", SYMBOL, LOT, 0.0, askPrice(level), 0.0, 0, 0L, 2L, 2L, "open", 0.0);
+        trade.setId(++nextId);
+        return trade;
+    }
+
+    private Trade restingBuy(int level) {
+        Trade trade = new Trade("buy", SYMBOL, LOT, bidPrice(level), 0.0, 0.0, 0, 0L, 3L, 3L, "open", 0.0);
+        trade.setId(++nextId);
+        return trade;
+    }
+
+    private static double askPrice(int level) {
+        return 20.0 + level / 100.0;
+    }
+
+    private static double bidPrice(int level) {
+        return 19.99 - level / 100.0;
+    }
+}
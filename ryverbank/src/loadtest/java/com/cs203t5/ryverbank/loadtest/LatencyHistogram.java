@@ -0,0 +1,127 @@
+package com.cs203t5.ryverbank.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A log-linear histogram of latencies in microseconds that many threads can
+ * record into.
+ *
+ * Latencies below 1ms are counted per microsecond; every decade above that is
+ * split into 900 equal buckets, so a recorded value is never off by more than
+ * 1%. Latencies of 100s and more share one overflow bucket.
+ */
+public class LatencyHistogram {
+    /** The number of decades above 1ms. */
+    private static final int DECADES = 5;
+    /** The number of buckets below 1ms, one per microsecond. */
+    private static final int LINEAR_BUCKETS = 1000;
+    /** The number of buckets in each decade above 1ms. */
+    private static final int DECADE_BUCKETS = 900;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR_BUCKETS + DECADES * DECADE_BUCKETS + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos / 1000, 0);
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0.0 : (double) sum.sum() / n;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency that the specified percentage of the recorded latencies
+     * are at or below.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in microseconds, rounded up to its bucket.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(percentile / 100.0 * total), 1);
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the non-empty buckets of the histogram.
+     *
+     * @return The count of each bucket by the highest latency it holds, in
+     *         microseconds, ascending.
+     */
+    public Map<Long, Long> getBuckets() {
+        Map<Long, Long> buckets = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length(); i++) {
+            long n = counts.get(i);
+            if (n > 0) {
+                buckets.put(i == counts.length() - 1 ? getMax() : highestValueOf(i), n);
+            }
+        }
+        return buckets;
+    }
+
+    static int indexOf(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int index = LINEAR_BUCKETS;
+        long lower = LINEAR_BUCKETS;
+        long step = 10;
+        for (int decade = 0; decade < DECADES; decade++) {
+            if (micros < lower * 10) {
+                return index + (int) ((micros - lower) / step);
+            }
+            index += DECADE_BUCKETS;
+            lower *= 10;
+            step *= 10;
+        }
+        return index;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < LINEAR_BUCKETS) {
+            return index;
+        }
+        int offset = index - LINEAR_BUCKETS;
+        int decade = Math.min(offset / DECADE_BUCKETS, DECADES);
+        long step = (long) Math.pow(10, decade + 1);
+        long lower = LINEAR_BUCKETS * (long) Math.pow(10, decade);
+        if (decade == DECADES) {
+            return Long.MAX_VALUE;
+        }
+        return lower + (offset % DECADE_BUCKETS + 1) * step - 1;
+    }
+}
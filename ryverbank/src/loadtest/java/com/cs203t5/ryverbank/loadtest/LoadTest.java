@@ -0,0 +1,280 @@
+package com.cs203t5.ryverbank.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.cs203t5.ryverbank.RyverbankApplication;
+import com.cs203t5.ryverbank.loadtest.LoadTestSeeder.SeededCustomer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+/**
+ * Boots a node with the in-memory loadtest profile, seeds it through the
+ * services of the application and drives a mix of requests at it from many
+ * concurrent users with HTTP Basic auth. Throughput and a latency histogram are
+ * reported per endpoint, on the console and as JSON.
+ *
+ * Options, given as --name=value:
+ * <ul>
+ * <li>customers: the number of seeded customers (100)</li>
+ * <li>users: the number of concurrent simulated users (32)</li>
+ * <li>symbols: the number of seeded stocks (10)</li>
+ * <li>warmup: the seconds of load before measuring (10)</li>
+ * <li>duration: the seconds of load that are measured (60)</li>
+ * <li>mix: the weight of each request type
+ * (trade=40,transfer=30,portfolio=15,quote=15)</li>
+ * <li>output: the JSON report (target/loadtest-result.json)</li>
+ * </ul>
+ *
+ * Trades are only matched while the market is open; outside market hours
+ * they rest in the book.
+ */
+public class LoadTest {
+    /** The endpoint of each request type. */
+    private static final Map<String, String> ENDPOINTS = Map.of("trade", "POST /trades", "transfer",
+            "POST /accounts/{id}/transactions", "portfolio", "GET /portfolio", "quote", "GET /stocks/{symbol}");
+
+    private final Map<String, String> options;
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10)).build();
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private String baseUrl;
+    private List<SeededCustomer> customers;
+    private List<String> symbols;
+
+    LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        // the node runs in this JVM; a restart would lose the seeded data
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        System.exit(new LoadTest(options).run());
+    }
+
+    int run() throws Exception {
+        Path dataDir = Files.createTempDirectory("ryverbank-loadtest");
+        ServletWebServerApplicationContext context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(
+                RyverbankApplication.class).profiles("loadtest")
+                        .properties("ryverbank.journal.dir=" + dataDir.resolve("journal"),
+                                "ryverbank.snapshot.dir=" + dataDir.resolve("snapshots"))
+                        .run();
+        try {
+            baseUrl = "http://localhost:" + context.getWebServer().getPort();
+
+            LoadTestSeeder seeder = new LoadTestSeeder(context);
+            customers = seeder.seedCustomers(intOption("customers", 100));
+            symbols = seeder.seedStocks(intOption("symbols", 10));
+
+            Map<String, Integer> mix = parseMix(options.getOrDefault("mix", "trade=40,transfer=30,portfolio=15,quote=15"));
+            long warmup = TimeUnit.SECONDS.toNanos(intOption("warmup", 10));
+            long duration = TimeUnit.SECONDS.toNanos(intOption("duration", 60));
+            int users = intOption("users", 32);
+            System.out.printf("Load test: %d users, %d customers, %d stocks, mix %s%n", users, customers.size(),
+                    symbols.size(), mix);
+
+            long start = System.nanoTime();
+            long measureFrom = start + warmup;
+            long measureTo = measureFrom + duration;
+            ExecutorService pool = Executors.newFixedThreadPool(users);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                futures.add(pool.submit(() -> drive(mix, measureFrom, measureTo)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+
+            report(duration, users, mix);
+            return 0;
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Sends requests of randomly chosen types until the end of the test, recording
+     * the latency of every request sent after the warmup.
+     */
+    private void drive(Map<String, Integer> mix, long measureFrom, long measureTo) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        long now;
+        while ((now = System.nanoTime()) < measureTo) {
+            String type = pick(mix, random.nextInt(totalWeight));
+            SeededCustomer customer = customers.get(random.nextInt(customers.size()));
+            HttpRequest request = requestOf(type, customer, random);
+            int status;
+            long sent = System.nanoTime();
+            try {
+                status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            } catch (IOException e) {
+                status = -1;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long latency = System.nanoTime() - sent;
+            if (now >= measureFrom) {
+                stats.computeIfAbsent(ENDPOINTS.get(type), endpoint -> new EndpointStats()).record(latency, status);
+            }
+        }
+    }
+
+    private static String pick(Map<String, Integer> mix, int roll) {
+        for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        throw new IllegalStateException("empty mix");
+    }
+
+    private HttpRequest requestOf(String type, SeededCustomer customer, ThreadLocalRandom random) {
+        String symbol = symbols.get(random.nextInt(symbols.size()));
+        switch (type) {
+            case "trade":
+                // half market buys that match the resting sells, half limit buys that rest
+                double bid = random.nextBoolean() ? 0.0 : 1.0;
+                return post("/trades", customer,
+                        String.format("{\"action\":\"buy\",\"symbol\":\"%s\",\"quantity\":100,\"bid\":%s,\"account_id\":%d}",
+                                symbol, bid, customer.getAccountId()));
+            case "transfer":
+                SeededCustomer receiver = customers.get(random.nextInt(customers.size()));
+                return post("/accounts/" + customer.getAccountId() + "/transactions", customer,
+                        String.format("{\"from\":%d,\"to\":%d,\"amount\":1.0}", customer.getAccountId(),
+                                receiver.getAccountId()));
+            case "portfolio":
+                return get("/portfolio", customer);
+            case "quote":
+                return get("/stocks/" + symbol, customer);
+            default:
+                throw new IllegalArgumentException("Unknown request type " + type);
+        }
+    }
+
+    private HttpRequest get(String path, SeededCustomer customer) {
+        return request(path, customer).GET().build();
+    }
+
+    private HttpRequest post(String path, SeededCustomer customer, String body) {
+        return request(path, customer).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private HttpRequest.Builder request(String path, SeededCustomer customer) {
+        String credentials = customer.getCustomer().getUsername() + ":" + LoadTestSeeder.PASSWORD;
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30))
+                .header("Authorization", "Basic "
+                        + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void report(long duration, int users, Map<String, Integer> mix) throws IOException {
+        double seconds = duration / 1e9;
+        Map<String, Object> endpoints = new TreeMap<>();
+        System.out.printf("%n%-34s %9s %7s %9s %9s %9s %9s %9s %9s%n", "endpoint", "req/s", "errors", "mean(us)",
+                "p50", "p90", "p99", "p99.9", "max");
+        for (Map.Entry<String, EndpointStats> entry : new TreeMap<>(stats).entrySet()) {
+            EndpointStats endpoint = entry.getValue();
+            LatencyHistogram histogram = endpoint.histogram;
+            System.out.printf("%-34s %9.1f %7d %9.0f %9d %9d %9d %9d %9d%n", entry.getKey(),
+                    histogram.getCount() / seconds, endpoint.errors.sum(), histogram.getMean(),
+                    histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax());
+            endpoints.put(entry.getKey(), endpoint.toMap(seconds));
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("users", users);
+        result.put("customers", customers.size());
+        result.put("symbols", symbols.size());
+        result.put("mix", mix);
+        result.put("durationSeconds", seconds);
+        result.put("endpoints", endpoints);
+        Path output = Paths.get(options.getOrDefault("output", "target/loadtest-result.json"));
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), result);
+        System.out.println("Load test result is saved to " + output.toAbsolutePath());
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(options.getOrDefault(name, Integer.toString(defaultValue)));
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.split("=");
+            if (!ENDPOINTS.containsKey(pair[0].trim())) {
+                throw new IllegalArgumentException("Unknown request type " + pair[0]);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(pair[0].trim(), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The mix has no requests");
+        }
+        return weights;
+    }
+
+    /**
+     * The latencies and response statuses of one endpoint.
+     */
+    private static class EndpointStats {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+        void record(long latency, int status) {
+            histogram.record(latency);
+            statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+            if (status < 200 || status >= 300) {
+                errors.increment();
+            }
+        }
+
+        Map<String, Object> toMap(double seconds) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", histogram.getCount());
+            map.put("throughput", histogram.getCount() / seconds);
+            map.put("errors", errors.sum());
+            Map<Integer, Long> statusCounts = new TreeMap<>();
+            statuses.forEach((status, n) -> statusCounts.put(status, n.sum()));
+            map.put("statuses", statusCounts);
+            map.put("meanMicros", histogram.getMean());
+            Map<String, Long> percentiles = new LinkedHashMap<>();
+            for (double percentile : new double[] { 50, 75, 90, 95, 99, 99.9, 99.99, 100 }) {
+                percentiles.put(Double.toString(percentile), histogram.getValueAtPercentile(percentile));
+            }
+            map.put("percentileMicros", percentiles);
+            map.put("histogramMicros", histogram.getBuckets());
+            return map;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.cs203t5.ryverbank.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.cs203t5.ryverbank.account_transaction.Account;
+import com.cs203t5.ryverbank.account_transaction.AccountServices;
+import com.cs203t5.ryverbank.customer.Customer;
+import com.cs203t5.ryverbank.customer.CustomerService;
+import com.cs203t5.ryverbank.trading.CustomStock;
+import com.cs203t5.ryverbank.trading.QuoteCache;
+import com.cs203t5.ryverbank.trading.Trade;
+import com.cs203t5.ryverbank.trading.TradeServices;
+
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Seeds the customers, accounts, portfolios, stocks and resting sell trades of
+ * a load test through the services of the application.
+ */
+public class LoadTestSeeder {
+    /** The password of every seeded customer. */
+    public static final String PASSWORD = "load_password";
+    /** The balance of every seeded account. */
+    private static final double BALANCE = 1.0e9;
+    /** The number of price levels of resting sell trades per stock. */
+    private static final int LEVELS = 20;
+    /** The quantity resting at each price level. */
+    private static final int LEVEL_QUANTITY = 1_000_000;
+
+    private final CustomerService customerService;
+    private final AccountServices accountServices;
+    private final QuoteCache quoteCache;
+    private final TradeServices tradeServices;
+    private final String encodedPassword;
+
+    /**
+     * Constructs a LoadTestSeeder over the beans of the following context.
+     *
+     * @param context The application context of the node under test.
+     */
+    public LoadTestSeeder(ApplicationContext context) {
+        this.customerService = context.getBean(CustomerService.class);
+        this.accountServices = context.getBean(AccountServices.class);
+        this.quoteCache = context.getBean(QuoteCache.class);
+        this.tradeServices = context.getBean(TradeServices.class);
+        // one hash for everyone; encoding a password per customer takes too long
+        this.encodedPassword = context.getBean(BCryptPasswordEncoder.class).encode(PASSWORD);
+    }
+
+    /**
+     * Creates the customers, each with a portfolio and one account.
+     *
+     * @param count The number of customers.
+     * @return The customers and their accounts.
+     */
+    public List<SeededCustomer> seedCustomers(int count) {
+        List<SeededCustomer> customers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            customers.add(seedCustomer("load_user_" + i, i));
+        }
+        return customers;
+    }
+
+    /**
+     * Creates the stocks and a seller whose sell trades rest on every stock, so
+     * incoming buy trades have something to match.
+     *
+     * @param count The number of stocks.
+     * @return The stock symbols.
+     */
+    public List<String> seedStocks(int count) {
+        SeededCustomer seller = seedCustomer("load_seller", 9_999_999);
+        List<String> symbols = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String symbol = String.format("LT%02d", i);
+            double ask = 10.0 + i;
+            CustomStock stock = new CustomStock(symbol, ask, 0, ask - 0.01, LEVELS * LEVEL_QUANTITY, ask);
+            quoteCache.update(stock);
+            for (int level = 0; level < LEVELS; level++) {
+                Trade trade = new Trade("sell", symbol, LEVEL_QUANTITY, 0.0, ask + level / 100.0, 0.0, 0, null,
+                        seller.getAccountId(), seller.getCustomer().getCustomerId(), null, 0.0);
+                tradeServices.createLimitSellTrade(trade, seller.getCustomer(), stock);
+            }
+            symbols.add(symbol);
+        }
+        return symbols;
+    }
+
+    private SeededCustomer seedCustomer(String username, int index) {
+        Customer customer = customerService.createUser(new Customer(username, encodedPassword, "Load " + index,
+                nricOf(index), String.format("9%07d", index), "Load Test", "ROLE_USER", true));
+        Account account = accountServices
+                .addAccount(new Account(null, customer, customer.getCustomerId(), BALANCE, BALANCE));
+        return new SeededCustomer(customer, account.getAccountID());
+    }
+
+    /**
+     * Builds a valid NRIC out of an index, since NRICs are unique.
+     */
+    private static String nricOf(int index) {
+        String digits = String.format("%07d", index);
+        int[] weights = { 2, 7, 6, 5, 4, 3, 2 };
+        int weight = 0;
+        for (int i = 0; i < 7; i++) {
+            weight += (digits.charAt(i) - '0') * weights[i];
+        }
+        return "S" + digits + "JZIHGFEDCBA".charAt(weight % 11);
+    }
+
+    /**
+     * A seeded customer and the id of its account.
+     */
+    public static class SeededCustomer {
+        private final Customer customer;
+        private final Long accountId;
+
+        SeededCustomer(Customer customer, Long accountId) {
+            this.customer = customer;
+            this.accountId = accountId;
+        }
+
+        public Customer getCustomer() {
+            return customer;
+        }
+
+        public Long getAccountId() {
+            return accountId;
+        }
+    }
+}
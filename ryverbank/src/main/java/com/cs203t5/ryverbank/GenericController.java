@@ -1,8 +1,6 @@
 package com.cs203t5.ryverbank;
 
-import java.util.Calendar;
 import java.util.Optional;
-import java.util.TimeZone;
 
 import com.cs203t5.ryverbank.account_transaction.*;
 import com.cs203t5.ryverbank.content.*;
@@ -43,6 +41,26 @@ public class GenericController {
     private PortfolioService portfolioService;
 
     private AssetRepository meinAssetRepository;
+    /** The resident order books. */
+    private OrderBookManager meinOrderBooks;
+    /** The execution repository. */
+    private ExecutionRepository meinExecutions;
+    /** The quotes of the stocks. */
+    private QuoteCache meinQuotes;
+    /** The time and sales of the stocks. */
+    private TradeTape meinTape;
+    /** The price bars of the stocks. */
+    private BarAggregator meinBars;
+    /** The bar repository. */
+    private BarRepository meinBarRepository;
+    /** The stock crawler. */
+    private StockCrawler meinCrawler;
+    /** The trading sessions of the exchange. */
+    private MarketCalendar meinCalendar;
+    /** The ledger of the accounts. */
+    private Ledger meinLedger;
+    /** The reservation repository. */
+    private ReservationRepository meinReservations;
 
     /**
      * Constructs a GenericController with the following parameters.
@@ -57,11 +75,25 @@ public class GenericController {
      * @param meinAssetService The asset services.
      * @param meinTranServices The transaction services.
      * @param meinAccServices  The account services.
+     * @param meinOrderBooks   The resident order books.
+     * @param meinExecutions   The execution repository.
+     * @param meinQuotes       The quotes of the stocks.
+     * @param meinTape         The time and sales of the stocks.
+     * @param meinBars         The price bars of the stocks.
+     * @param meinBarRepository The bar repository.
+     * @param meinCrawler      The stock crawler.
+     * @param meinCalendar     The trading sessions of the exchange.
+     * @param meinLedger       The ledger of the accounts.
+     * @param meinReservations The reservation repository.
      */
     public GenericController(ContentRepository meinContent, CustomerRepository meinCustomers,
             TradeRepository meinTrades, AccountRepository meinAccounts, StockRepository meinStocks,
             TransactionRepository meinTransactions, PortfolioRepository meinPortfolios, AssetService meinAssetService,
-            TransactionServices meinTranServices, AccountServices meinAccServices, PortfolioService portfolioService, AssetRepository meinAssetRepository) {
+            TransactionServices meinTranServices, AccountServices meinAccServices, PortfolioService portfolioService, AssetRepository meinAssetRepository,
+            OrderBookManager meinOrderBooks, ExecutionRepository meinExecutions, QuoteCache meinQuotes,
+            TradeTape meinTape, BarAggregator meinBars, BarRepository meinBarRepository,
+            StockCrawler meinCrawler, MarketCalendar meinCalendar, Ledger meinLedger,
+            ReservationRepository meinReservations) {
         this.meinContent = meinContent;
         this.meinCustomers = meinCustomers;
         this.meinTrades = meinTrades;
@@ -74,6 +106,16 @@ public class GenericController {
         this.meinAccServices = meinAccServices;
         this.portfolioService = portfolioService;
         this.meinAssetRepository = meinAssetRepository;
+        this.meinOrderBooks = meinOrderBooks;
+        this.meinExecutions = meinExecutions;
+        this.meinQuotes = meinQuotes;
+        this.meinTape = meinTape;
+        this.meinBars = meinBars;
+        this.meinBarRepository = meinBarRepository;
+        this.meinCrawler = meinCrawler;
+        this.meinCalendar = meinCalendar;
+        this.meinLedger = meinLedger;
+        this.meinReservations = meinReservations;
     }
 
     /**
@@ -101,10 +143,17 @@ public class GenericController {
         System.out.println(meinPortfolios.count());
 
         System.out.println("Deleting all trade");
+        meinExecutions.deleteAllInBatch();
+        meinReservations.deleteAllInBatch();
         meinTrades.deleteAll();
+        meinOrderBooks.clear();
+        meinTape.clear();
+        meinBars.clear();
+        meinBarRepository.deleteAllInBatch();
 
         System.out.println("Deleting all accounts");
         meinAccounts.deleteImmediate();
+        meinLedger.clear();
         System.out.println(meinAccounts.count());
 
         // Delete all existing customers & content
@@ -117,6 +166,7 @@ public class GenericController {
 
 
         System.out.println("Deleting all stock records");
+        meinQuotes.clear();
         meinStocks.deleteAll();
 
         System.out.println("Deleting all transactions records");
@@ -125,38 +175,17 @@ public class GenericController {
         // Reinitializing all the stock and trade information for the marketMaker
         Optional<Account> marketMakerAcc = meinAccounts.findById(1L);
         try {
-            TimeZone timeZone = TimeZone.getTimeZone("GMT+8");
-
-            Calendar startDateTime = Calendar.getInstance(timeZone);
-            startDateTime.set(Calendar.HOUR_OF_DAY, 9);
-            startDateTime.set(Calendar.MINUTE, 0);
-            startDateTime.set(Calendar.SECOND, 0);
-
-            Calendar endDateTime = Calendar.getInstance(timeZone);
-            endDateTime.set(Calendar.HOUR_OF_DAY, 17);
-            endDateTime.set(Calendar.MINUTE, 0);
-            endDateTime.set(Calendar.SECOND, 0);
-
-            Calendar saturday = Calendar.getInstance(timeZone);
-            saturday.set(Calendar.DAY_OF_WEEK, Calendar.SATURDAY);
-
-            Calendar sunday = Calendar.getInstance(timeZone);
-            sunday.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
-
-            Calendar today = Calendar.getInstance(timeZone);
-
-            if (!(today.after(startDateTime) && today.before(endDateTime)) || today.equals(saturday)
-                    || today.equals(sunday)) {
+            if (!meinCalendar.isOpen()) {
                 throw new TradeInvalidException("Market is close");
             }
             // Resetting the $ for the market maker
             Account foundAcc = marketMakerAcc.get();
             foundAcc.setAvailableBalance(100000.0);
             foundAcc.setBalance(100000.0);
-            StockCrawler stc = new StockCrawler(meinStocks, meinTrades, meinAssetService, meinTranServices,
-                    meinAccServices,portfolioService );
-            stc.crawl();
-            stc.marketMaker();
+            meinAccounts.save(foundAcc);
+            meinLedger.rebuild(foundAcc.getAccountID());
+            meinCrawler.crawl();
+            meinCrawler.marketMaker();
         } catch (Exception e) {
             System.out.println(e.getMessage());
         }
@@ -0,0 +1,83 @@
+package com.cs203t5.ryverbank;
+
+/**
+ * Fixed-point money: amounts and prices are a long number of cents, the
+ * smallest unit of the currency and the tick of every listed stock.
+ *
+ * Balances, prices and valuations are stored and added up in cents, so holds,
+ * releases and transfers are exact. Dollars only appear where an amount comes
+ * in from or goes out to a client, and are converted once, there.
+ */
+public final class Money {
+    /** The number of cents in a dollar. */
+    public static final long CENTS_PER_DOLLAR = 100L;
+    /** How far from a whole cent a price may be from the binary fraction of a double. */
+    private static final double CENT_TOLERANCE = 1e-6;
+
+    private Money() {
+    }
+
+    /**
+     * Converts dollars to the nearest number of cents.
+     *
+     * @param dollars The amount in dollars.
+     * @return The amount in cents.
+     */
+    public static long cents(double dollars) {
+        return Math.round(dollars * CENTS_PER_DOLLAR);
+    }
+
+    /**
+     * Converts a price in dollars to cents, e.g. a price given by a client.
+     *
+     * @param dollars The price in dollars.
+     * @return The price in cents.
+     * @throws IllegalArgumentException If the price is not a whole number of
+     *                                  cents.
+     */
+    public static long wholeCents(double dollars) {
+        double cents = dollars * CENTS_PER_DOLLAR;
+        long rounded = Math.round(cents);
+        if (Math.abs(cents - rounded) > CENT_TOLERANCE) {
+            throw new IllegalArgumentException(dollars + " is not a whole number of cents");
+        }
+        return rounded;
+    }
+
+    /**
+     * Converts cents to dollars.
+     *
+     * @param cents The amount in cents.
+     * @return The amount in dollars.
+     */
+    public static double dollars(long cents) {
+        return (double) cents / CENTS_PER_DOLLAR;
+    }
+
+    /**
+     * Works out the cost of a quantity of stock at a price.
+     *
+     * @param price    The price of one share, in cents.
+     * @param quantity The number of shares.
+     * @return The cost in cents.
+     * @throws ArithmeticException If the cost does not fit in a long.
+     */
+    public static long times(long price, int quantity) {
+        return Math.multiplyExact(price, (long) quantity);
+    }
+
+    /**
+     * Works out the average price of a quantity of stock that cost a total,
+     * rounded to the nearest cent, halves up.
+     *
+     * @param total    The total cost, in cents.
+     * @param quantity The number of shares.
+     * @return The average price in cents, or 0 if there are no shares.
+     */
+    public static long average(long total, long quantity) {
+        if (quantity == 0) {
+            return 0L;
+        }
+        return Math.floorDiv(total + quantity / 2, quantity);
+    }
+}
@@ -44,6 +44,9 @@ public class RyverbankApplication {
 		long customer_id = customerId;
 		System.out.println("[Add acccount for user1]" + accounts.save(
 			new Account(customer_id,100000.0,100000.0)).getCustomer_id());
+
+		// The order books are rebuilt once the accounts their trades belong to exist
+		ctx.getBean(TradeServiceImpl.class).loadOrderBooks();
 	
 
 			// StockCrawler crawler = ctx.getBean(StockCrawler.class);
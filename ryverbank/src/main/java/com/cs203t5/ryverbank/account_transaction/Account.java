@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.*;
 
+import com.cs203t5.ryverbank.Money;
 import com.cs203t5.ryverbank.customer.*;
 
 /**
@@ -15,13 +16,13 @@ import com.cs203t5.ryverbank.customer.*;
 @Setter
 @Getter
 @ToString
-@AllArgsConstructor
 @NoArgsConstructor
 @EqualsAndHashCode
 public class Account {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "account_seq")
+    @SequenceGenerator(name = "account_seq", sequenceName = "account_seq", allocationSize = 50)
     @JsonProperty("id")
     private Long accountID;
 
@@ -30,10 +31,16 @@ public class Account {
     private Customer customer;
 
     private Long customer_id;
-    private double balance;
 
-    @JsonProperty("available_balance")
-    private double availableBalance;
+    /** The account balance, in cents. */
+    private long balance;
+
+    /** The balance not held for pending buy trades, in cents. */
+    private long availableBalance;
+
+    /** The id of the last ledger posting included in the balances above. */
+    @JsonIgnore
+    private long ledgerSequence;
 
     /**
      * Constructs a new accounts with the following parameters.
@@ -45,7 +52,58 @@ public class Account {
      */
     public Account(Long customer_id, double balance, double availableBalance) {
         this.customer_id = customer_id;
+        this.balance = Money.cents(balance);
+        this.availableBalance = Money.cents(availableBalance);
+    }
+
+    /**
+     * Constructs a new account with the following parameters.
+     * 
+     * @param accountID        The id of the account.
+     * @param customer         The customer who owns the account.
+     * @param customer_id      The id of the customer.
+     * @param balance          The account balance.
+     * @param availableBalance The available balance.
+     */
+    public Account(Long accountID, Customer customer, Long customer_id, double balance, double availableBalance) {
+        this(customer_id, balance, availableBalance);
+        this.accountID = accountID;
+        this.customer = customer;
+    }
+
+    public double getBalance() {
+        return Money.dollars(balance);
+    }
+
+    public void setBalance(double balance) {
+        this.balance = Money.cents(balance);
+    }
+
+    @JsonProperty("available_balance")
+    public double getAvailableBalance() {
+        return Money.dollars(availableBalance);
+    }
+
+    @JsonProperty("available_balance")
+    public void setAvailableBalance(double availableBalance) {
+        this.availableBalance = Money.cents(availableBalance);
+    }
+
+    @JsonIgnore
+    public long getBalanceCents() {
+        return balance;
+    }
+
+    public void setBalanceCents(long balance) {
         this.balance = balance;
+    }
+
+    @JsonIgnore
+    public long getAvailableBalanceCents() {
+        return availableBalance;
+    }
+
+    public void setAvailableBalanceCents(long availableBalance) {
         this.availableBalance = availableBalance;
     }
 }
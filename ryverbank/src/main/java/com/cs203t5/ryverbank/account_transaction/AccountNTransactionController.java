@@ -2,12 +2,17 @@ package com.cs203t5.ryverbank.account_transaction;
 
 import java.util.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.Authentication;
 
 import com.cs203t5.ryverbank.customer.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * A AccountNTransactionController that accepts and returns account and
@@ -27,6 +32,8 @@ public class AccountNTransactionController {
     private TransactionServices transService;
 
     private CustomerService cusService;
+    /** The JSON mapper of the responses. */
+    private ObjectMapper objectMapper;
 
     private Long sessionID = 1L; // this is to retrieve id from customer retrieve from securitycontextholder
 
@@ -38,15 +45,19 @@ public class AccountNTransactionController {
      * @param transRepo    The transaction repository.
      * @param accService   The account services.
      * @param transService The transaction services.
+     * @param cusService   The customer services.
+     * @param objectMapper The JSON mapper of the responses.
      */
     public AccountNTransactionController(AccountRepository accRepo, CustomerRepository cusRepo,
-            TransactionRepository transRepo, AccountServices accService, TransactionServices transService, CustomerService cusService) {
+            TransactionRepository transRepo, AccountServices accService, TransactionServices transService, CustomerService cusService,
+            ObjectMapper objectMapper) {
         this.accRepo = accRepo;
         this.cusRepo = cusRepo;
         this.transRepo = transRepo;
         this.accService = accService;
         this.transService = transService;
         this.cusService = cusService;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -211,4 +222,47 @@ public class AccountNTransactionController {
         return transService.addTransaction(newTransInfo);
     }
 
+    /**
+     * Creates many transactions from the specified account at once, e.g. a
+     * payroll. If the account does not exist, throw AccountNotFoundException. If
+     * the customer is not the owner of the account, throw
+     * CustomerUnauthorizedException. A transfer that is not made from the
+     * account, or has no valid receiver or amount, is rejected on its own; the
+     * rest are made together in one transaction, or all rejected if the account
+     * cannot pay for them. The result of every transfer is streamed back in the
+     * order of the batch.
+     * 
+     * @param id           The account id.
+     * @param newTransInfo The transaction information, in order.
+     * @param auth         The authenticated customer.
+     * @return The result of every transfer.
+     */
+    @PostMapping("/accounts/{id}/transactions/batch")
+    public ResponseEntity<StreamingResponseBody> addTransactions(@PathVariable Long id,
+            @RequestBody List<Transaction> newTransInfo, Authentication auth) {
+        Customer cus = cusRepo.findByUsername(auth.getName())
+                .orElseThrow(() -> new CustomerUnauthorizedException("Account does not belong to this customer"));
+
+        // check if the account belongs to the customer
+        Account acc = accService.getAccount(id);
+        if (acc == null) {
+            throw new AccountNotFoundException(id);
+        }
+        if (!Objects.equals(acc.getCustomer_id(), cus.getCustomerId())) {
+            throw new CustomerUnauthorizedException("Account does not belong to this customer");
+        }
+
+        List<TransactionResult> results = transService.addTransactions(id, newTransInfo);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                for (TransactionResult result : results) {
+                    objectMapper.writeValue(generator, result);
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
 }
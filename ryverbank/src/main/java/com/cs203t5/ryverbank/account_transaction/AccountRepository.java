@@ -1,13 +1,16 @@
 package com.cs203t5.ryverbank.account_transaction;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import com.cs203t5.ryverbank.customer.Customer;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -50,6 +53,31 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      */
     boolean existsById(Long accId);
 
+    /**
+     * Query to find which of the specified account ids belong to an account.
+     * 
+     * @param accIds The account ids.
+     * @return The account ids that exist.
+     */
+    @Query("SELECT a.accountID FROM Account a WHERE a.accountID IN :accIds")
+    Set<Long> findExistingIds(@Param("accIds") Collection<Long> accIds);
+
+    /**
+     * Query to write the balances of an account as of a ledger posting, unless
+     * the row already holds a later checkpoint.
+     * 
+     * @param accId            The account id.
+     * @param balance          The account balance, in cents.
+     * @param availableBalance The available balance, in cents.
+     * @param sequence         The id of the last posting included.
+     * @return The number of accounts updated.
+     */
+    @Modifying
+    @Query("UPDATE Account a SET a.balance = :balance, a.availableBalance = :availableBalance, "
+            + "a.ledgerSequence = :sequence WHERE a.accountID = :accId AND a.ledgerSequence <= :sequence")
+    int checkpoint(@Param("accId") Long accId, @Param("balance") long balance,
+            @Param("availableBalance") long availableBalance, @Param("sequence") long sequence);
+
     // Delete every account other than MarketMaker
     @Modifying
     @Query(value = "DELETE FROM ACCOUNT WHERE CUSTOMER_ID <> 4", nativeQuery = true)
@@ -1,93 +1,110 @@
 package com.cs203t5.ryverbank.account_transaction;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.lang.Math;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
 
+import com.cs203t5.ryverbank.account_transaction.Ledger.Leg;
+import com.cs203t5.ryverbank.account_transaction.Ledger.Transfer;
+
 /**
  * Implementation of the AccountServices class.
- * 
+ *
+ * The balances are kept by the ledger: every change is a posting and the
+ * accounts returned carry the balances the ledger has for them.
+ *
  * @see AccountServices
+ * @see Ledger
  */
 @Service
 public class AccountServiceImpl implements AccountServices {
     /** The account repository. */
     private AccountRepository accounts;
+    /** The ledger of the accounts. */
+    private Ledger ledger;
 
     /**
-     * Constructs a AccountServiceImpl instance.
-     * 
+     * Constructs a AccountServiceImpl with the following parameters.
+     *
      * @param accounts The account repository.
+     * @param ledger   The ledger of the accounts.
      */
-    public AccountServiceImpl(AccountRepository accounts) {
+    public AccountServiceImpl(AccountRepository accounts, Ledger ledger) {
         this.accounts = accounts;
+        this.ledger = ledger;
     }
 
     @Override
     public List<Account> listAccounts(Long cusId) {
-        return accounts.findAllByCustomerCustomerId(cusId);
+        return accounts.findAllByCustomerCustomerId(cusId).stream().map(ledger::view).collect(Collectors.toList());
     }
 
     @Override
     public Account getAccount(Long accNumber) {
-        return accounts.findById(accNumber).map(account -> {
-            return accounts.save(account);
-        }).orElse(null);
+        return accounts.findById(accNumber).map(ledger::view).orElse(null);
     }
 
     @Override
     public Account addAccount(Account account) {
-        return accounts.save(account);
+        // The account starts empty and its opening balances are posted to the ledger
+        Account saved = accounts.save(new Account(account.getAccountID(), account.getCustomer(),
+                account.getCustomer_id(), 0.0, 0.0));
+        long available = account.getAvailableBalanceCents();
+        long held = account.getBalanceCents() - available;
+        List<Transfer> opening = new ArrayList<>();
+        if (available != 0) {
+            opening.add(external("deposit", Leg.available(saved.getAccountID()), available));
+        }
+        if (held != 0) {
+            opening.add(external("deposit", Leg.held(saved.getAccountID()), held));
+        }
+        ledger.post(opening);
+        return ledger.view(saved);
     }
 
     @Override
-    public Account fundTransfer(Long accId, double amt) {
-        return accounts.findById(accId).map(account -> {
-            double curr = account.getAvailableBalance();
-            double balance = account.getBalance();
-            if (amt < 0.0) {
-                if (curr < Math.abs(amt)) {
-                    throw new InsufficientBalanceException("Not enough funds in account");
-                } else {
-                    account.setAvailableBalance(curr - Math.abs(amt));
-                    account.setBalance(balance - Math.abs(amt));
-                }
-            } else {
-                account.setAvailableBalance(curr + amt);
-                account.setBalance(balance + amt);
-            }
-            return accounts.save(account);
-        }).orElse(null);
+    public Account fundTransfer(Long accId, long amt) {
+        if (!accounts.existsById(accId)) {
+            return null;
+        }
+        if (amt < 0 && !ledger.post(Transfer.covered("withdrawal", Leg.available(accId), Leg.external(), -amt))) {
+            throw new InsufficientBalanceException("Not enough funds in account");
+        }
+        if (amt > 0) {
+            ledger.post(Transfer.of("deposit", Leg.external(), Leg.available(accId), amt));
+        }
+        return getAccount(accId);
     }
 
     @Override
-    public Account accTradeOnHold(Long accId, double amt) {
-        return accounts.findById(accId).map(account -> {
-            double curr = account.getAvailableBalance();
-            if (amt < 0.0) {
-                if (curr - Math.abs(amt) < 0) {
-                    throw new InsufficientBalanceException("Not enough funds in trade");
-                } else {
-                    account.setAvailableBalance(curr - Math.abs(amt));
-                }
-            } else {
-                account.setAvailableBalance(curr + amt);
-            }
-            return accounts.save(account);
-        }).orElse(null);
+    public void transfer(Long from, Long to, long amt) {
+        if (!ledger.post(Transfer.covered("transfer", Leg.available(from), Leg.available(to), amt))) {
+            throw new InsufficientBalanceException("Not enough funds in account");
+        }
     }
 
     @Override
-    public Account accTradeApproved(Long accId, double amt) {
-        return accounts.findById(accId).map(account -> {
-            double balance = account.getBalance();
-            if (amt < 0.0) {
-                account.setBalance(balance - Math.abs(amt));
-            } else {
-                account.setBalance(balance + amt);
-            }
-            return accounts.save(account);
-        }).orElse(null);
+    public void transferAll(List<Transaction> transactions) {
+        List<Transfer> transfers = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            transfers.add(Transfer.covered("transfer", Leg.available(transaction.getAccount1()),
+                    Leg.available(transaction.getAccount2()), transaction.getAmountCents()));
+        }
+        if (!ledger.post(transfers)) {
+            throw new InsufficientBalanceException("Not enough funds in account");
+        }
+    }
+
+    /**
+     * Creates a transfer between an account and the outside world: into the
+     * account if the amount is positive, out of it if it is negative.
+     */
+    private static Transfer external(String type, Leg leg, long amt) {
+        if (amt < 0) {
+            return Transfer.of(type, leg, Leg.external(), -amt);
+        }
+        return Transfer.of(type, Leg.external(), leg, amt);
     }
 }
@@ -39,33 +39,29 @@ public interface AccountServices {
      * InsufficientBalanceException.
      * 
      * @param accId The account id.
-     * @param amt   The amount to transfer.
+     * @param amt   The amount to transfer, in cents.
      * @return The account that made the transfer.
      */
-    Account fundTransfer(Long accId, double amt);
+    Account fundTransfer(Long accId, long amt);
 
     /**
-     * Updates the available account balance when the trade is open with the
-     * specified account id and amount. If the specified amount is negative, then
-     * the account belongs to the buyer. If the amount is positive, then the
-     * specified account belongs to the seller. If the buy has insufficient
-     * available balance, throw InsufficientBalanceException.
+     * Transfers an amount from the available balance of one account to that of
+     * another. If the transferer has insufficient available balance, throw
+     * InsufficientBalanceException.
      * 
-     * @param accId The account id.
-     * @param amt   The amount to update.
-     * @return The account with the updated available balance.
+     * @param from The id of the account that makes the transfer.
+     * @param to   The id of the account that receives it.
+     * @param amt  The amount to transfer, in cents.
      */
-    Account accTradeOnHold(Long accId, double amt);
+    void transfer(Long from, Long to, long amt);
 
     /**
-     * Updates the account balance when the trade is open with the specified account
-     * id and amount. If the specified amount is negative, then the account belongs
-     * to the buyer. If the amount is positive, then the specified account belongs
-     * to the seller.
+     * Makes many transfers between available balances at once: either all of them
+     * are made or none is. The transfers out of an account are checked against its
+     * available balance once, net of the transfers into it. If a transferer has
+     * insufficient available balance, throw InsufficientBalanceException.
      * 
-     * @param accId The account id.
-     * @param amt   The amount to update.
-     * @return The account with the updated balance.
+     * @param transactions The transfers to make.
      */
-    Account accTradeApproved(Long accId, double amt);
+    void transferAll(List<Transaction> transactions);
 }
@@ -0,0 +1,554 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import lombok.Getter;
+
+/**
+ * The double-entry ledger of the accounts.
+ *
+ * Every change to a balance is a posting that moves an amount from one bucket
+ * to another: from the available balance of one account to that of another for
+ * a transfer, from the available balance to the held balance of the same
+ * account for a trade hold, from the held balance of a buyer to the available
+ * balance of a seller for a settlement. Money that comes in from or goes out to
+ * the outside world, e.g. a deposit, is posted against the external account.
+ * Postings are only ever inserted, so a transfer is a single insert and the
+ * ledger is the history of every balance.
+ *
+ * The balances are kept in memory as a projection of the ledger, so reading
+ * one is a lookup. An account's projection is loaded the first time it is
+ * needed, from the checkpoint on its account row plus the postings made after
+ * it, and is written back to the row every checkpoint interval. Postings made
+ * in a transaction only count towards a committed balance once the transaction
+ * commits; until then, a debit already reduces what can be spent and a credit
+ * cannot be spent yet.
+ *
+ * The balances of an account are only read and changed under the lock of its
+ * stripe, one of a fixed number of locks the account ids are spread over. The
+ * check that a debit is covered and the debit itself happen under the same
+ * lock, so two posts can never both spend the same money, and posts to
+ * accounts on different stripes never wait on each other. A post that touches
+ * several stripes takes them in ascending order.
+ */
+@Component
+public class Ledger {
+    /** The id of the account that stands for everything outside the bank. */
+    public static final Long EXTERNAL_ACCOUNT_ID = 0L;
+
+    /** The account repository. */
+    private AccountRepository accounts;
+    /** The ledger entry repository. */
+    private LedgerEntryRepository entries;
+    /** The balances of the accounts loaded so far, by account id. */
+    private final Map<Long, Projection> projections = new ConcurrentHashMap<>();
+    /** The accounts whose balances changed since their last checkpoint. */
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    /** The locks of the accounts, an account taking the lock of its stripe. */
+    private final ReentrantLock[] locks;
+
+    /**
+     * Constructs a Ledger with the following parameters.
+     *
+     * @param accounts The account repository.
+     * @param entries  The ledger entry repository.
+     * @param stripes  The number of account locks, rounded up to a power of two.
+     */
+    public Ledger(AccountRepository accounts, LedgerEntryRepository entries,
+            @Value("${ryverbank.ledger.lock-stripes:1024}") int stripes) {
+        this.accounts = accounts;
+        this.entries = entries;
+        this.locks = new ReentrantLock[Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Copies an account with its balances as the ledger has them, including the
+     * postings of transactions still in progress. The copy is not managed, so
+     * nothing written to it reaches the account row.
+     *
+     * @param account The account row.
+     * @return The account with its current balances.
+     */
+    public Account view(Account account) {
+        Projection projection = projectionOf(account);
+        Account view = new Account(account.getAccountID(), account.getCustomer(), account.getCustomer_id(), 0.0, 0.0);
+        ReentrantLock lock = lockOf(account.getAccountID());
+        lock.lock();
+        try {
+            long available = projection.live(Bucket.AVAILABLE);
+            view.setAvailableBalanceCents(available);
+            view.setBalanceCents(available + projection.live(Bucket.HELD));
+            view.setLedgerSequence(projection.sequence);
+        } finally {
+            lock.unlock();
+        }
+        return view;
+    }
+
+    /**
+     * Posts one transfer.
+     *
+     * @param transfer The transfer.
+     * @return False if the transfer needs funds the account does not have, in
+     *         which case nothing is posted.
+     * @see #post(List)
+     */
+    public boolean post(Transfer transfer) {
+        return post(List.of(transfer));
+    }
+
+    /**
+     * Posts transfers together: either all of them are posted or none is. The
+     * postings join the current transaction if there is one, and count towards
+     * the committed balances when it commits. A covered transfer is only posted
+     * if the bucket it debits stays above zero, once every posting of the
+     * transfers is taken into account.
+     *
+     * @param transfers The transfers.
+     * @return False if a covered transfer needs funds the account does not have,
+     *         in which case nothing is posted.
+     * @throws AccountNotFoundException If an account does not exist.
+     */
+    public boolean post(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return true;
+        }
+        // The net change to each account, and whether it must stay covered
+        SortedMap<Long, long[]> deltas = new TreeMap<>();
+        Map<Long, boolean[]> covered = new HashMap<>();
+        for (Transfer transfer : transfers) {
+            Leg debit = transfer.getDebit();
+            Leg credit = transfer.getCredit();
+            if (!debit.isExternal()) {
+                deltas.computeIfAbsent(debit.accountId, id -> new long[2])[debit.bucket.ordinal()] -= transfer.amount;
+                if (transfer.covered) {
+                    covered.computeIfAbsent(debit.accountId, id -> new boolean[2])[debit.bucket.ordinal()] = true;
+                }
+            }
+            if (!credit.isExternal()) {
+                deltas.computeIfAbsent(credit.accountId, id -> new long[2])[credit.bucket.ordinal()] += transfer.amount;
+            }
+        }
+        List<Projection> touched = new ArrayList<>();
+        for (Long accountId : deltas.keySet()) {
+            Projection projection = projectionOf(accountId);
+            if (projection == null) {
+                throw new AccountNotFoundException(accountId);
+            }
+            touched.add(projection);
+        }
+
+        // The stripes are locked in order, so that two posts never deadlock
+        List<long[]> changes = new ArrayList<>(deltas.values());
+        List<ReentrantLock> locks = lockOf(deltas.keySet());
+        locks.forEach(ReentrantLock::lock);
+        try {
+            int i = 0;
+            for (Map.Entry<Long, long[]> entry : deltas.entrySet()) {
+                boolean[] mustCover = covered.get(entry.getKey());
+                if (mustCover != null && !touched.get(i).covers(entry.getValue(), mustCover)) {
+                    return false;
+                }
+                i++;
+            }
+            for (i = 0; i < touched.size(); i++) {
+                touched.get(i).reserve(changes.get(i));
+            }
+        } finally {
+            locks.forEach(ReentrantLock::unlock);
+        }
+
+        List<LedgerEntry> posted = new ArrayList<>(transfers.size());
+        long now = System.currentTimeMillis();
+        for (Transfer transfer : transfers) {
+            posted.add(new LedgerEntry(transfer, now));
+        }
+        try {
+            entries.saveAll(posted);
+        } catch (RuntimeException e) {
+            complete(deltas.keySet(), touched, changes, false, 0L);
+            throw e;
+        }
+        long sequence = 0L;
+        for (LedgerEntry entry : posted) {
+            if (entry.getId() != null) {
+                sequence = Math.max(sequence, entry.getId());
+            }
+        }
+
+        long lastPosting = sequence;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    complete(deltas.keySet(), touched, changes, status == TransactionSynchronization.STATUS_COMMITTED,
+                            lastPosting);
+                }
+            });
+        } else {
+            complete(deltas.keySet(), touched, changes, true, lastPosting);
+        }
+        return true;
+    }
+
+    private void complete(Collection<Long> accountIds, List<Projection> touched, List<long[]> changes,
+            boolean committed, long sequence) {
+        Iterator<Long> ids = accountIds.iterator();
+        for (int i = 0; i < touched.size(); i++) {
+            Long accountId = ids.next();
+            ReentrantLock lock = lockOf(accountId);
+            lock.lock();
+            try {
+                touched.get(i).release(changes.get(i), committed, sequence);
+                if (committed) {
+                    dirty.add(accountId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the committed balances of the accounts that changed since their last
+     * checkpoint to their account rows. An account with postings in progress is
+     * left for the next checkpoint.
+     */
+    @Scheduled(initialDelayString = "${ryverbank.ledger.checkpoint-interval:5000}",
+            fixedDelayString = "${ryverbank.ledger.checkpoint-interval:5000}")
+    @Transactional
+    public void checkpoint() {
+        for (Iterator<Long> ids = dirty.iterator(); ids.hasNext();) {
+            Long accountId = ids.next();
+            Projection projection = projections.get(accountId);
+            if (projection == null) {
+                ids.remove();
+                continue;
+            }
+            long available;
+            long held;
+            long sequence;
+            ReentrantLock lock = lockOf(accountId);
+            lock.lock();
+            try {
+                if (projection.inFlight > 0) {
+                    continue;
+                }
+                available = projection.committed[Bucket.AVAILABLE.ordinal()];
+                held = projection.committed[Bucket.HELD.ordinal()];
+                sequence = projection.sequence;
+                ids.remove();
+            } finally {
+                lock.unlock();
+            }
+            accounts.checkpoint(accountId, available + held, available, sequence);
+        }
+    }
+
+    /**
+     * Works out the balances of an account again from its checkpoint and the
+     * postings made after it, e.g. after its account row was written directly.
+     *
+     * @param accountId The account id.
+     * @throws IllegalStateException If the account has postings in progress.
+     */
+    public void rebuild(Long accountId) {
+        Projection projection = projections.get(accountId);
+        Account account = accounts.findById(accountId).orElse(null);
+        if (projection == null || account == null) {
+            projections.remove(accountId);
+            dirty.remove(accountId);
+            return;
+        }
+        ReentrantLock lock = lockOf(accountId);
+        lock.lock();
+        try {
+            if (projection.inFlight > 0) {
+                throw new IllegalStateException("Account " + accountId + " has postings in progress");
+            }
+            projection.load(account, entries.findPostingsAfter(accountId, account.getLedgerSequence()));
+            dirty.remove(accountId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks the balances kept in memory against the ledger: for every account
+     * loaded and without postings in progress, replays its postings on top of
+     * its checkpoint and compares.
+     *
+     * @return The ids of the accounts whose balances do not match the ledger.
+     */
+    public List<Long> audit() {
+        List<Long> mismatched = new ArrayList<>();
+        for (Map.Entry<Long, Projection> entry : projections.entrySet()) {
+            Long accountId = entry.getKey();
+            Projection projection = entry.getValue();
+            Account account = accounts.findById(accountId).orElse(null);
+            if (account == null) {
+                continue;
+            }
+            ReentrantLock lock = lockOf(accountId);
+            lock.lock();
+            try {
+                if (projection.inFlight > 0) {
+                    continue;
+                }
+                Projection replayed = new Projection();
+                replayed.load(account, entries.findPostingsAfter(accountId, account.getLedgerSequence()));
+                if (!Arrays.equals(replayed.committed, projection.committed)) {
+                    mismatched.add(accountId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return mismatched;
+    }
+
+    /**
+     * Deletes every posting and forgets every balance, so that the balances are
+     * loaded from the account rows again. The balances are checkpointed first, so
+     * the accounts keep them.
+     */
+    public void clear() {
+        checkpoint();
+        entries.deleteAllInBatch();
+        projections.clear();
+        dirty.clear();
+    }
+
+    private Projection projectionOf(Long accountId) {
+        Projection projection = projections.get(accountId);
+        if (projection != null) {
+            return projection;
+        }
+        return accounts.findById(accountId).map(this::projectionOf).orElse(null);
+    }
+
+    private Projection projectionOf(Account account) {
+        Long accountId = account.getAccountID();
+        Projection projection = projections.get(accountId);
+        if (projection != null) {
+            return projection;
+        }
+        // Loaded under the stripe lock, which only holds up the accounts of the same stripe
+        ReentrantLock lock = lockOf(accountId);
+        lock.lock();
+        try {
+            projection = projections.get(accountId);
+            if (projection == null) {
+                projection = new Projection();
+                projection.load(account, entries.findPostingsAfter(accountId, account.getLedgerSequence()));
+                projections.put(accountId, projection);
+            }
+            return projection;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockOf(Long accountId) {
+        return locks[stripeOf(accountId)];
+    }
+
+    /**
+     * Finds the stripe locks of the accounts, each once and in the order they
+     * are always taken in.
+     */
+    private List<ReentrantLock> lockOf(Collection<Long> accountIds) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (Long accountId : accountIds) {
+            stripes.add(stripeOf(accountId));
+        }
+        List<ReentrantLock> stripeLocks = new ArrayList<>(stripes.size());
+        for (int stripe : stripes) {
+            stripeLocks.add(locks[stripe]);
+        }
+        return stripeLocks;
+    }
+
+    private int stripeOf(Long accountId) {
+        long id = accountId;
+        int hash = (int) (id ^ (id >>> 32));
+        return (hash ^ (hash >>> 16)) & (locks.length - 1);
+    }
+
+    /**
+     * The two balances an account keeps in the ledger.
+     */
+    public enum Bucket {
+        /** Money that can be spent or transferred. */
+        AVAILABLE,
+        /** Money put on hold for pending buy trades. */
+        HELD
+    }
+
+    /**
+     * One side of a transfer: a bucket of an account.
+     */
+    @Getter
+    public static final class Leg {
+        private static final Leg EXTERNAL = new Leg(EXTERNAL_ACCOUNT_ID, Bucket.AVAILABLE);
+
+        private final Long accountId;
+        private final Bucket bucket;
+
+        private Leg(Long accountId, Bucket bucket) {
+            this.accountId = Objects.requireNonNull(accountId);
+            this.bucket = bucket;
+        }
+
+        public static Leg available(Long accountId) {
+            return new Leg(accountId, Bucket.AVAILABLE);
+        }
+
+        public static Leg held(Long accountId) {
+            return new Leg(accountId, Bucket.HELD);
+        }
+
+        public static Leg external() {
+            return EXTERNAL;
+        }
+
+        public boolean isExternal() {
+            return EXTERNAL_ACCOUNT_ID.equals(accountId);
+        }
+    }
+
+    /**
+     * An amount to move from one leg, the debit, to another, the credit.
+     */
+    @Getter
+    public static final class Transfer {
+        private final String type;
+        private final Leg debit;
+        private final Leg credit;
+        private final long amount;
+        private final boolean covered;
+
+        private Transfer(String type, Leg debit, Leg credit, long amount, boolean covered) {
+            if (amount <= 0) {
+                throw new IllegalArgumentException("A transfer moves a positive amount, not " + amount);
+            }
+            this.type = type;
+            this.debit = debit;
+            this.credit = credit;
+            this.amount = amount;
+            this.covered = covered;
+        }
+
+        /**
+         * Creates a transfer that may take the debited bucket below zero.
+         *
+         * @param type   What the transfer is for.
+         * @param debit  The leg the amount is taken from.
+         * @param credit The leg the amount is put into.
+         * @param amount The amount, in cents.
+         * @return The transfer.
+         */
+        public static Transfer of(String type, Leg debit, Leg credit, long amount) {
+            return new Transfer(type, debit, credit, amount, false);
+        }
+
+        /**
+         * Creates a transfer that is only posted if the debited bucket has the
+         * amount.
+         *
+         * @param type   What the transfer is for.
+         * @param debit  The leg the amount is taken from.
+         * @param credit The leg the amount is put into.
+         * @param amount The amount, in cents.
+         * @return The transfer.
+         */
+        public static Transfer covered(String type, Leg debit, Leg credit, long amount) {
+            return new Transfer(type, debit, credit, amount, true);
+        }
+    }
+
+    /**
+     * The balances of one account, by bucket. Guarded by the stripe lock of the
+     * account.
+     */
+    private static final class Projection {
+        /** The balances as of the last committed posting, in cents. */
+        private final long[] committed = new long[2];
+        /** The debits of the postings in progress, in cents. */
+        private final long[] debits = new long[2];
+        /** The credits of the postings in progress, in cents. */
+        private final long[] credits = new long[2];
+        /** The number of posts in progress. */
+        private int inFlight;
+        /** The id of the last posting included in the committed balances. */
+        private long sequence;
+
+        private void load(Account account, List<LedgerEntry> postings) {
+            long available = account.getAvailableBalanceCents();
+            committed[Bucket.AVAILABLE.ordinal()] = available;
+            committed[Bucket.HELD.ordinal()] = account.getBalanceCents() - available;
+            sequence = account.getLedgerSequence();
+            for (LedgerEntry posting : postings) {
+                for (Bucket bucket : Bucket.values()) {
+                    committed[bucket.ordinal()] += posting.deltaOf(account.getAccountID(), bucket);
+                }
+                sequence = Math.max(sequence, posting.getId());
+            }
+        }
+
+        private long live(Bucket bucket) {
+            int i = bucket.ordinal();
+            return committed[i] - debits[i] + credits[i];
+        }
+
+        private boolean covers(long[] change, boolean[] mustCover) {
+            for (int i = 0; i < change.length; i++) {
+                if (mustCover[i] && committed[i] - debits[i] + change[i] < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void reserve(long[] change) {
+            for (int i = 0; i < change.length; i++) {
+                if (change[i] < 0) {
+                    debits[i] -= change[i];
+                } else {
+                    credits[i] += change[i];
+                }
+            }
+            inFlight++;
+        }
+
+        private void release(long[] change, boolean commit, long posted) {
+            for (int i = 0; i < change.length; i++) {
+                if (change[i] < 0) {
+                    debits[i] += change[i];
+                } else {
+                    credits[i] -= change[i];
+                }
+                if (commit) {
+                    committed[i] += change[i];
+                }
+            }
+            if (commit) {
+                sequence = Math.max(sequence, posted);
+            }
+            inFlight--;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import javax.persistence.*;
+
+import org.hibernate.annotations.Immutable;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * One posting of the ledger: an amount moved out of one bucket of an account
+ * (the debit) and into a bucket of another, or of the same, account (the
+ * credit).
+ *
+ * Postings are only ever inserted. The debit and credit of a posting are the
+ * same amount, so the buckets of all the accounts always add up to zero, and
+ * the balance of an account is the sum of the postings that touch it.
+ */
+@Entity
+@Immutable
+@Getter
+@ToString
+@Table(name = "ledger_entry", indexes = {
+        @Index(name = "idx_ledger_entry_debit_account", columnList = "debit_account_id, id"),
+        @Index(name = "idx_ledger_entry_credit_account", columnList = "credit_account_id, id") })
+public class LedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_entry_seq")
+    @SequenceGenerator(name = "ledger_entry_seq", sequenceName = "ledger_entry_seq", allocationSize = 50)
+    private Long id;
+
+    /** What the posting is for, e.g. transfer, hold or settlement. */
+    @Column(name = "type", nullable = false, updatable = false)
+    private String type;
+
+    /** The id of the account the amount is taken from. */
+    @Column(name = "debit_account_id", nullable = false, updatable = false)
+    private Long debitAccountId;
+
+    /** The bucket the amount is taken from. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "debit_bucket", nullable = false, updatable = false)
+    private Ledger.Bucket debitBucket;
+
+    /** The id of the account the amount is put into. */
+    @Column(name = "credit_account_id", nullable = false, updatable = false)
+    private Long creditAccountId;
+
+    /** The bucket the amount is put into. */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "credit_bucket", nullable = false, updatable = false)
+    private Ledger.Bucket creditBucket;
+
+    /** The amount moved, in cents. */
+    @Column(name = "amount", nullable = false, updatable = false)
+    private long amount;
+
+    /** The time of the posting, in epoch milliseconds. */
+    @Column(name = "posted_at", nullable = false, updatable = false)
+    private long postedAt;
+
+    protected LedgerEntry() {
+    }
+
+    /**
+     * Constructs a LedgerEntry with the following parameters.
+     *
+     * @param transfer The transfer to post.
+     * @param postedAt The time of the posting, in epoch milliseconds.
+     */
+    public LedgerEntry(Ledger.Transfer transfer, long postedAt) {
+        this.type = transfer.getType();
+        this.debitAccountId = transfer.getDebit().getAccountId();
+        this.debitBucket = transfer.getDebit().getBucket();
+        this.creditAccountId = transfer.getCredit().getAccountId();
+        this.creditBucket = transfer.getCredit().getBucket();
+        this.amount = transfer.getAmount();
+        this.postedAt = postedAt;
+    }
+
+    /**
+     * Works out what the posting adds to a bucket of an account: minus the amount
+     * if it debits the bucket, the amount if it credits it, both if it does both.
+     *
+     * @param accountId The account id.
+     * @param bucket    The bucket.
+     * @return The change to the bucket, in cents.
+     */
+    public long deltaOf(Long accountId, Ledger.Bucket bucket) {
+        long delta = 0L;
+        if (debitAccountId.equals(accountId) && debitBucket == bucket) {
+            delta -= amount;
+        }
+        if (creditAccountId.equals(accountId) && creditBucket == bucket) {
+            delta += amount;
+        }
+        return delta;
+    }
+}
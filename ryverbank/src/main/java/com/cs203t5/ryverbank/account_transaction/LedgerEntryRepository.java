@@ -0,0 +1,27 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * A LedgerEntryRepository that provides the mechanism for storage and
+ * retrieval of ledger entries. Ledger entries are never updated.
+ */
+@Repository
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+    /**
+     * Query to find the postings of an account made after a checkpoint, oldest
+     * first.
+     *
+     * @param accountId The account id.
+     * @param sequence  The id of the last posting in the checkpoint.
+     * @return The postings found.
+     */
+    @Query("SELECT e FROM LedgerEntry e WHERE (e.debitAccountId = :accountId OR e.creditAccountId = :accountId) "
+            + "AND e.id > :sequence ORDER BY e.id")
+    List<LedgerEntry> findPostingsAfter(@Param("accountId") Long accountId, @Param("sequence") long sequence);
+}
@@ -0,0 +1,109 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import javax.persistence.*;
+
+import org.springframework.data.domain.Persistable;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The money a buy trade has on hold: what is left of the amount put on hold
+ * when the trade was submitted, after the fills paid out of it so far.
+ *
+ * A reservation is kept by the id of its trade, so the hold of a trade is
+ * found, settled and released without looking at any other trade. The held
+ * balance of an account is the sum of the reservations of its live buy trades.
+ * A reservation is only written once its trade rests on the book; a trade that
+ * is filled when it is submitted never leaves one behind.
+ */
+@Entity
+@Getter
+@ToString
+@Table(name = "reservation", indexes = {
+        @Index(name = "idx_reservation_account", columnList = "account_id") })
+public class Reservation implements Persistable<Long> {
+    /** The id of the buy trade the money is held for. */
+    @Id
+    @Column(name = "trade_id")
+    private Long tradeId;
+
+    /** The id of the account the money is held in. */
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    /** The amount still on hold, in cents. */
+    @Column(name = "amount", nullable = false)
+    private long amount;
+
+    /** The time the money was put on hold, in epoch milliseconds. */
+    @Column(name = "reserved_at", nullable = false, updatable = false)
+    private long reservedAt;
+
+    /** Whether the reservation has not been written yet. */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean unsaved = true;
+
+    protected Reservation() {
+    }
+
+    /**
+     * Constructs a Reservation with the following parameters.
+     *
+     * @param accountId  The id of the account the money is held in.
+     * @param amount     The amount put on hold, in cents.
+     * @param reservedAt The time the money was put on hold, in epoch milliseconds.
+     */
+    public Reservation(Long accountId, long amount, long reservedAt) {
+        this.accountId = accountId;
+        this.amount = amount;
+        this.reservedAt = reservedAt;
+    }
+
+    @Override
+    public Long getId() {
+        return tradeId;
+    }
+
+    /**
+     * Whether the reservation belongs to a trade resting on the book, i.e. has a
+     * row of its own.
+     *
+     * @return True if the reservation is kept for a trade.
+     */
+    public boolean isOpen() {
+        return tradeId != null;
+    }
+
+    @Override
+    public boolean isNew() {
+        return unsaved;
+    }
+
+    /**
+     * Ties the reservation to the trade it holds money for.
+     *
+     * @param tradeId The id of the buy trade.
+     */
+    void open(Long tradeId) {
+        this.tradeId = tradeId;
+    }
+
+    /**
+     * Takes part of the amount on hold off the reservation.
+     *
+     * @param amount The amount taken, in cents.
+     */
+    void take(long amount) {
+        this.amount -= amount;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markSaved() {
+        unsaved = false;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+/**
+ * A ReservationRepository that provides the mechanism for storage and
+ * retrieval of reservation objects, by the id of their trade.
+ */
+@Repository
+public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+    /**
+     * Query to find the amount on hold in every account that has reservations.
+     *
+     * @return The account ids and the amounts on hold in them, in cents.
+     */
+    @Query("SELECT r.accountId, SUM(r.amount) FROM Reservation r GROUP BY r.accountId")
+    List<Object[]> sumAmountByAccount();
+}
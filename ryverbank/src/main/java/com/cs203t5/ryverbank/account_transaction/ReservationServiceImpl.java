@@ -0,0 +1,150 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import java.util.*;
+
+import org.springframework.stereotype.Service;
+
+import com.cs203t5.ryverbank.account_transaction.Ledger.Leg;
+import com.cs203t5.ryverbank.account_transaction.Ledger.Transfer;
+
+/**
+ * Implementation of the ReservationServices class.
+ *
+ * The money of a reservation sits in the held balance of its account, so every
+ * change to a reservation is posted to the ledger together with it: a hold when
+ * it is made, a settlement for each fill and a release for what is left when
+ * its trade is cancelled, expires or is filled.
+ *
+ * @see ReservationServices
+ * @see Ledger
+ */
+@Service
+public class ReservationServiceImpl implements ReservationServices {
+    /** The reservation repository. */
+    private ReservationRepository reservations;
+    /** The account repository. */
+    private AccountRepository accounts;
+    /** The ledger of the accounts. */
+    private Ledger ledger;
+
+    /**
+     * Constructs a ReservationServiceImpl with the following parameters.
+     *
+     * @param reservations The reservation repository.
+     * @param accounts     The account repository.
+     * @param ledger       The ledger of the accounts.
+     */
+    public ReservationServiceImpl(ReservationRepository reservations, AccountRepository accounts, Ledger ledger) {
+        this.reservations = reservations;
+        this.accounts = accounts;
+        this.ledger = ledger;
+    }
+
+    @Override
+    public Reservation reserve(Long accountId, long amount) {
+        // The ledger only posts a covered hold if the available balance stays above zero
+        if (amount > 0 && !ledger
+                .post(Transfer.covered("hold", Leg.available(accountId), Leg.held(accountId), amount))) {
+            throw new InsufficientBalanceException("Not enough funds in trade");
+        }
+        return new Reservation(accountId, Math.max(amount, 0L), System.currentTimeMillis());
+    }
+
+    @Override
+    public void open(Reservation reservation, Long tradeId) {
+        reservation.open(tradeId);
+        reservations.save(reservation);
+    }
+
+    @Override
+    public Reservation getReservation(Long tradeId) {
+        return reservations.findById(tradeId).orElse(null);
+    }
+
+    @Override
+    public void settle(Long accountId, Reservation reservation, Map<Long, Long> payments) {
+        long held = reservation == null ? 0L : reservation.getAmount();
+        long taken = 0L;
+        List<Transfer> transfers = new ArrayList<>();
+        for (Map.Entry<Long, Long> payment : payments.entrySet()) {
+            long amount = payment.getValue();
+            long fromHold = Math.min(amount, held - taken);
+            if (fromHold > 0) {
+                transfers.add(Transfer.of("settlement", Leg.held(accountId), Leg.available(payment.getKey()), fromHold));
+                taken += fromHold;
+            }
+            if (amount > fromHold) {
+                // The rest may not take the available balance below zero
+                transfers.add(Transfer.covered("settlement", Leg.available(accountId),
+                        Leg.available(payment.getKey()), amount - fromHold));
+            }
+        }
+        if (!ledger.post(transfers)) {
+            throw new InsufficientBalanceException("Not enough funds in trade");
+        }
+        if (taken > 0) {
+            reservation.take(taken);
+            if (reservation.isOpen()) {
+                reservations.save(reservation);
+            }
+        }
+    }
+
+    @Override
+    public void release(Reservation reservation) {
+        if (reservation.getAmount() > 0) {
+            ledger.post(Transfer.of("release", Leg.held(reservation.getAccountId()),
+                    Leg.available(reservation.getAccountId()), reservation.getAmount()));
+        }
+        if (reservation.isOpen()) {
+            reservations.delete(reservation);
+        }
+    }
+
+    @Override
+    public void release(Long tradeId) {
+        reservations.findById(tradeId).ifPresent(this::release);
+    }
+
+    @Override
+    public void releaseAll(Collection<Long> tradeIds) {
+        if (tradeIds.isEmpty()) {
+            return;
+        }
+        List<Reservation> found = reservations.findAllById(tradeIds);
+        if (found.isEmpty()) {
+            return;
+        }
+        // One release per account, however many of its trades expire
+        Map<Long, Long> amounts = new LinkedHashMap<>();
+        for (Reservation reservation : found) {
+            amounts.merge(reservation.getAccountId(), reservation.getAmount(), Long::sum);
+        }
+        List<Transfer> releases = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : amounts.entrySet()) {
+            if (entry.getValue() > 0) {
+                releases.add(Transfer.of("release", Leg.held(entry.getKey()), Leg.available(entry.getKey()),
+                        entry.getValue()));
+            }
+        }
+        ledger.post(releases);
+        reservations.deleteInBatch(found);
+    }
+
+    @Override
+    public List<Long> reconcile() {
+        Map<Long, Long> reserved = new HashMap<>();
+        for (Object[] row : reservations.sumAmountByAccount()) {
+            reserved.put((Long) row[0], ((Number) row[1]).longValue());
+        }
+        List<Long> mismatched = new ArrayList<>();
+        for (Account row : accounts.findAll()) {
+            Account account = ledger.view(row);
+            long held = account.getBalanceCents() - account.getAvailableBalanceCents();
+            if (held != reserved.getOrDefault(account.getAccountID(), 0L)) {
+                mismatched.add(account.getAccountID());
+            }
+        }
+        return mismatched;
+    }
+}
@@ -0,0 +1,87 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An interface for the services of the money buy trades put on hold.
+ */
+public interface ReservationServices {
+    /**
+     * Puts money on hold for a buy trade that is being submitted. The check that
+     * the available balance covers the amount and the hold itself are one
+     * posting. If the account has insufficient available balance, throw
+     * InsufficientBalanceException.
+     *
+     * @param accountId The id of the buyer's account.
+     * @param amount    The amount to put on hold, in cents.
+     * @return The reservation, not tied to a trade yet.
+     */
+    Reservation reserve(Long accountId, long amount);
+
+    /**
+     * Ties a reservation to the trade it holds money for, once the trade rests on
+     * the book.
+     *
+     * @param reservation The reservation.
+     * @param tradeId     The id of the buy trade.
+     */
+    void open(Reservation reservation, Long tradeId);
+
+    /**
+     * Finds the reservation of a buy trade.
+     *
+     * @param tradeId The id of the buy trade.
+     * @return The reservation found, or null if the trade holds no money.
+     */
+    Reservation getReservation(Long tradeId);
+
+    /**
+     * Pays the sellers of the fills of a buy trade in one posting. The payments
+     * are taken out of the reservation first; a fill at a worse price than the
+     * money was put on hold at pays the difference out of the available balance.
+     * If the available balance does not cover the difference, nothing is paid and
+     * InsufficientBalanceException is thrown.
+     *
+     * @param accountId   The id of the buyer's account.
+     * @param reservation The reservation of the buy trade, or null if it holds no
+     *                    money.
+     * @param payments    The amount paid to each seller, in cents, by account id.
+     */
+    void settle(Long accountId, Reservation reservation, Map<Long, Long> payments);
+
+    /**
+     * Puts what is left of a reservation back into the available balance and
+     * deletes it.
+     *
+     * @param reservation The reservation.
+     */
+    void release(Reservation reservation);
+
+    /**
+     * Releases the reservation of a buy trade, e.g. when it is cancelled. Does
+     * nothing if the trade holds no money.
+     *
+     * @param tradeId The id of the buy trade.
+     */
+    void release(Long tradeId);
+
+    /**
+     * Releases the reservations of many buy trades at once, e.g. the trades that
+     * expire when the market closes. The releases are posted in one batch and the
+     * reservations deleted in one statement.
+     *
+     * @param tradeIds The ids of the buy trades.
+     */
+    void releaseAll(Collection<Long> tradeIds);
+
+    /**
+     * Checks the held balance of every account against the reservations of its
+     * buy trades.
+     *
+     * @return The ids of the accounts whose held balance is not the sum of their
+     *         reservations.
+     */
+    List<Long> reconcile();
+}
@@ -2,6 +2,8 @@ package com.cs203t5.ryverbank.account_transaction;
 
 import javax.persistence.*;
 
+import com.cs203t5.ryverbank.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import lombok.*;
@@ -13,14 +15,17 @@ import lombok.*;
 @Getter
 @Setter
 @ToString
-@AllArgsConstructor
 @NoArgsConstructor
 @EqualsAndHashCode
 public class Transaction {
 
-    private @Id @GeneratedValue(strategy = GenerationType.IDENTITY) Long id;
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_seq")
+    @SequenceGenerator(name = "transaction_seq", sequenceName = "transaction_seq", allocationSize = 50)
+    private Long id;
 
-    private double amount;
+    /** The amount transferred, in cents. */
+    private long amount;
 
     @JsonProperty("from")
     private Long account1;
@@ -38,7 +43,24 @@ public class Transaction {
     public Transaction(Long account1, Long account2, double amt) {
         this.account1 = account1;
         this.account2 = account2;
-        this.amount = amt;
+        this.amount = Money.cents(amt);
+    }
+
+    public double getAmount() {
+        return Money.dollars(amount);
+    }
+
+    public void setAmount(double amount) {
+        this.amount = Money.cents(amount);
+    }
+
+    @JsonIgnore
+    public long getAmountCents() {
+        return amount;
+    }
+
+    public void setAmountCents(long amount) {
+        this.amount = amount;
     }
 
 }
@@ -0,0 +1,56 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * The outcome of one transfer of a batch: the transaction created if the
+ * transfer was made, or why it was not.
+ */
+@Getter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TransactionResult {
+    /** The position of the transfer in the batch. */
+    private int index;
+
+    /** Whether the transfer was made: accepted or rejected. */
+    private String status;
+
+    /** The transaction created, if the transfer was made. */
+    private Transaction transaction;
+
+    /** Why the transfer was not made. */
+    private String error;
+
+    private TransactionResult(int index, String status, Transaction transaction, String error) {
+        this.index = index;
+        this.status = status;
+        this.transaction = transaction;
+        this.error = error;
+    }
+
+    /**
+     * Creates the result of a transfer that was made.
+     *
+     * @param index       The position of the transfer in the batch.
+     * @param transaction The transaction created.
+     * @return The result.
+     */
+    public static TransactionResult accepted(int index, Transaction transaction) {
+        return new TransactionResult(index, "accepted", transaction, null);
+    }
+
+    /**
+     * Creates the result of a transfer that was not made.
+     *
+     * @param index The position of the transfer in the batch.
+     * @param error Why the transfer was not made.
+     * @return The result.
+     */
+    public static TransactionResult rejected(int index, String error) {
+        return new TransactionResult(index, "rejected", null, error);
+    }
+}
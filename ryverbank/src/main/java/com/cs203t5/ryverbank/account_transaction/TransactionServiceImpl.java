@@ -1,6 +1,11 @@
 package com.cs203t5.ryverbank.account_transaction;
 
+import java.util.*;
+
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.cs203t5.ryverbank.Money;
 
 /**
  * Implementation of the TransactionServices class.
@@ -11,6 +16,8 @@ import org.springframework.stereotype.Service;
 public class TransactionServiceImpl implements TransactionServices {
     /** The transaction repository. */
     private TransactionRepository transactions;
+    /** The account repository. */
+    private AccountRepository accounts;
     /** The account services. */
     private AccountServices accService;
 
@@ -18,52 +25,115 @@ public class TransactionServiceImpl implements TransactionServices {
      * Constructs a TransactionServiceImpl with the following parameters.
      * 
      * @param transactions The transaction repository.
+     * @param accounts     The account repository.
      * @param accService   The account services.
      */
-    public TransactionServiceImpl(TransactionRepository transactions, AccountServices accService) {
+    public TransactionServiceImpl(TransactionRepository transactions, AccountRepository accounts,
+            AccountServices accService) {
         this.transactions = transactions;
+        this.accounts = accounts;
         this.accService = accService;
     }
 
     @Override
+    @Transactional
     public Transaction addTransaction(Transaction transaction) {
         Long acc1 = transaction.getAccount1();
         Long acc2 = transaction.getAccount2();
-        if (accService.getAccount(acc1) != null) {
-            accService.fundTransfer(acc1, transaction.getAmount() * -1);
-        } else if (accService.getAccount(acc1).getAvailableBalance() < transaction.getAmount()) {
-            throw new InsufficientBalanceException("Not enough funds");
-        } else {
+        if (accService.getAccount(acc1) == null) {
             throw new AccountNotFoundException(acc1);
         }
-        if (accService.getAccount(acc2) != null) {
-            accService.fundTransfer(acc2, transaction.getAmount());
-        } else {
+        if (accService.getAccount(acc2) == null) {
             throw new AccountNotFoundException(acc2);
         }
+        // one posting from the sender to the receiver, in the same transaction as the record
+        accService.transfer(acc1, acc2, transaction.getAmountCents());
         return transactions.save(transaction);
     }
 
     @Override
-    public Transaction addTransaction(Long acc1, Long acc2, double amt) {
+    @Transactional
+    public List<TransactionResult> addTransactions(Long accId, List<Transaction> batch) {
+        // Every receiver is looked up in one query
+        Set<Long> receivers = new HashSet<>();
+        for (Transaction transaction : batch) {
+            if (transaction.getAccount2() != null) {
+                receivers.add(transaction.getAccount2());
+            }
+        }
+        Set<Long> existing = receivers.isEmpty() ? Collections.emptySet() : accounts.findExistingIds(receivers);
+
+        String[] errors = new String[batch.size()];
+        List<Transaction> valid = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Transaction transaction = batch.get(i);
+            if (transaction.getAccount1() == null) {
+                transaction.setAccount1(accId);
+            }
+            errors[i] = validate(accId, transaction, existing);
+            if (errors[i] == null) {
+                valid.add(transaction);
+            }
+        }
+
+        if (!valid.isEmpty()) {
+            try {
+                // the transfers are netted per account and posted together
+                accService.transferAll(valid);
+                transactions.saveAll(valid);
+            } catch (InsufficientBalanceException e) {
+                for (int i = 0; i < errors.length; i++) {
+                    if (errors[i] == null) {
+                        errors[i] = "Not enough funds in account";
+                    }
+                }
+            }
+        }
+
+        List<TransactionResult> results = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            results.add(errors[i] == null ? TransactionResult.accepted(i, batch.get(i))
+                    : TransactionResult.rejected(i, errors[i]));
+        }
+        return results;
+    }
+
+    /**
+     * Checks one transfer of a batch.
+     * 
+     * @param accId       The id of the account the batch is made from.
+     * @param transaction The transfer.
+     * @param existing    The ids of the receivers that exist.
+     * @return Why the transfer cannot be made, or null if it can.
+     */
+    private static String validate(Long accId, Transaction transaction, Set<Long> existing) {
+        if (!accId.equals(transaction.getAccount1())) {
+            return "Transfer is not made from account " + accId;
+        }
+        if (transaction.getAccount2() == null || !existing.contains(transaction.getAccount2())) {
+            return "Could not find account " + transaction.getAccount2();
+        }
+        if (accId.equals(transaction.getAccount2())) {
+            return "Cannot transfer to the same account";
+        }
+        if (transaction.getAmountCents() <= 0) {
+            return "Invalid amount";
+        }
+        return null;
+    }
+
+    @Override
+    public Transaction addTransaction(Long acc1, Long acc2, long amt) {
         long give, take;
-        double total = 0.0;
-        if (amt < 0.0) {
+        if (amt < 0) {
             give = acc1;
             take = acc2;
-            // buyer balance will reduce
-            accService.accTradeApproved(give, amt);
-            // seller balance will increase
-            accService.accTradeApproved(take, Math.abs(amt));
-            total = Math.abs(amt);
         } else {
             give = acc2;
             take = acc1;
-            accService.accTradeApproved(give, amt * -1);
-            accService.accTradeApproved(take, amt);
-            total = amt;
         }
-        Transaction transaction = new Transaction(give, take, total);
+        long total = Math.abs(amt);
+        Transaction transaction = new Transaction(give, take, Money.dollars(total));
         return transactions.save(transaction);
     }
 }
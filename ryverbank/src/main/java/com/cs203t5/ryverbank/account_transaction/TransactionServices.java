@@ -1,5 +1,7 @@
 package com.cs203t5.ryverbank.account_transaction;
 
+import java.util.List;
+
 /**
  * An interface for various transaction services.
  */
@@ -7,21 +9,37 @@ public interface TransactionServices {
     /**
      * Creates a normal transaction based on the transaction information. If the
      * transferer or receiver account is not found, throw AccountNotFoundException.
+     * If the transferer has insufficient available balance, throw
+     * InsufficientBalanceException.
      * 
      * @param transaction The transaction information.
      * @return The transaction created.
      */
     Transaction addTransaction(Transaction transaction);
 
+    /**
+     * Creates many normal transactions from an account at once, e.g. a payroll.
+     * The transfers are validated together: one without a valid receiver or
+     * amount, or not made from the specified account, is rejected on its own.
+     * The rest are made in one transaction, either all of them or, if the
+     * account has insufficient available balance for their total, none.
+     * 
+     * @param accId        The id of the account the transfers are made from.
+     * @param transactions The transaction information, in order.
+     * @return The result of every transfer, in the same order.
+     */
+    List<TransactionResult> addTransactions(Long accId, List<Transaction> transactions);
+
     /**
      * Creates a trade transaction based on the transaction information. This method
      * can only be used when there is a matched trade, otherwise the unmatched trade
-     * will be updated in TradeServiceImpl.
+     * will be updated in TradeServiceImpl. The money is not moved here: the buyer
+     * pays the seller out of the reservation of the buy trade.
      * 
      * @param acc1 The buyer/seller account.
      * @param acc2 The account being traded with acc1.
-     * @param amt  The amount traded.
+     * @param amt  The amount traded, in cents.
      * @return The trade transaction created.
      */
-    Transaction addTransaction(Long acc1, Long acc2, double amt);
+    Transaction addTransaction(Long acc1, Long acc2, long amt);
 }
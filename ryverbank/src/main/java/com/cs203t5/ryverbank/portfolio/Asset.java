@@ -2,6 +2,7 @@ package com.cs203t5.ryverbank.portfolio;
 
 import javax.persistence.*;
 
+import com.cs203t5.ryverbank.Money;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -19,7 +20,8 @@ import lombok.*;
 public class Asset {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "asset_seq")
+    @SequenceGenerator(name = "asset_seq", sequenceName = "asset_seq", allocationSize = 50)
     @JsonIgnore
     private Long id;
 
@@ -29,17 +31,17 @@ public class Asset {
     @JsonProperty("quantity")
     private int quantity;
 
-    @JsonProperty("avg_price")
-    private double avgPrice;
+    /** The average price, in cents. */
+    private long avgPrice;
 
-    @JsonProperty("current_price")
-    private double currentPrice;
+    /** The current price, in cents. */
+    private long currentPrice;
 
-    @JsonProperty("value")
-    private double value;
+    /** The value at the current price, in cents. */
+    private long value;
 
-    @JsonProperty("gain_loss")
-    private double gainLoss;
+    /** The gain or loss at the current price, in cents. */
+    private long gainLoss;
 
     // if not traded should be false
     @JsonIgnore
@@ -73,14 +75,86 @@ public class Asset {
 
         this.code = code;
         this.quantity = quantity;
-        this.avgPrice = avgPrice;
-        this.currentPrice = currentPrice;
+        this.avgPrice = Money.cents(avgPrice);
+        this.currentPrice = Money.cents(currentPrice);
         this.portfolioId = portfolioId;
         this.isTraded = isTraded;
         this.record = record;
-        this.value = this.currentPrice * quantity;
-        this.gainLoss = value - (avgPrice * quantity);
+        revalue();
+
+    }
+
+    /**
+     * Works out the value and the gain or loss of the asset from its quantity,
+     * average price and current price.
+     */
+    public void revalue() {
+        this.value = Money.times(currentPrice, quantity);
+        this.gainLoss = value - Money.times(avgPrice, quantity);
+    }
+
+    @JsonProperty("avg_price")
+    public double getAvgPrice() {
+        return Money.dollars(avgPrice);
+    }
+
+    public void setAvgPrice(double avgPrice) {
+        this.avgPrice = Money.cents(avgPrice);
+    }
+
+    @JsonProperty("current_price")
+    public double getCurrentPrice() {
+        return Money.dollars(currentPrice);
+    }
+
+    public void setCurrentPrice(double currentPrice) {
+        this.currentPrice = Money.cents(currentPrice);
+    }
+
+    @JsonProperty("value")
+    public double getValue() {
+        return Money.dollars(value);
+    }
+
+    public void setValue(double value) {
+        this.value = Money.cents(value);
+    }
+
+    @JsonProperty("gain_loss")
+    public double getGainLoss() {
+        return Money.dollars(gainLoss);
+    }
+
+    public void setGainLoss(double gainLoss) {
+        this.gainLoss = Money.cents(gainLoss);
+    }
+
+    @JsonIgnore
+    public long getAvgPriceCents() {
+        return avgPrice;
+    }
+
+    public void setAvgPriceCents(long avgPrice) {
+        this.avgPrice = avgPrice;
+    }
+
+    @JsonIgnore
+    public long getCurrentPriceCents() {
+        return currentPrice;
+    }
+
+    public void setCurrentPriceCents(long currentPrice) {
+        this.currentPrice = currentPrice;
+    }
+
+    @JsonIgnore
+    public long getValueCents() {
+        return value;
+    }
 
+    @JsonIgnore
+    public long getGainLossCents() {
+        return gainLoss;
     }
 
 }
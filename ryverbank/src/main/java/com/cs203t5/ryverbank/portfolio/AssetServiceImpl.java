@@ -2,6 +2,7 @@ package com.cs203t5.ryverbank.portfolio;
 
 import java.util.Optional;
 
+import com.cs203t5.ryverbank.Money;
 import com.cs203t5.ryverbank.trading.CustomStock;
 import com.cs203t5.ryverbank.trading.Trade;
 
@@ -45,16 +46,17 @@ public class AssetServiceImpl implements AssetService {
                 String code = trade.getSymbol();
                 int quantity = trade.getFilledQuantity();
                 // double avg_price = trade.getAvgPrice();
-                double current_price = trade.getBid();
-                if (current_price == 0.0) {
-                    current_price = stock.getAsk();
+                long currentPrice = trade.getBidCents();
+                if (currentPrice == 0) {
+                    currentPrice = stock.getAskCents();
                 }
+                double current_price = Money.dollars(currentPrice);
                 // new asset created
                 Asset asset = new Asset(code, quantity, current_price, current_price, portfolio.getId(), false,
                         Double.toString(current_price));
 
                 // update on the totalgainloss
-                portfolio.setTotalGainLoss(portfolio.getTotalGainLoss() + asset.getGainLoss());
+                portfolio.setTotalGainLossCents(portfolio.getTotalGainLossCents() + asset.getGainLossCents());
 
                 assets.save(asset);
                 portfolios.save(portfolio);
@@ -73,45 +75,36 @@ public class AssetServiceImpl implements AssetService {
 
     public void updateAsset(Trade trade, Asset asset, CustomStock stock, Portfolio portfolio) {
 
-        double current_price = 0.0;
+        long currentPrice = 0;
         // if its market buy, ask price should be 0
-        if (trade.getBid() == 0.0) {
+        if (trade.getBidCents() == 0) {
             // get stock ask price since trade ask is 0
-            asset.setCurrentPrice(stock.getAsk());
-            current_price = stock.getAsk();
+            currentPrice = stock.getAskCents();
         } else {
             // else if it is limit buy, get trade ask price
-            asset.setCurrentPrice(trade.getBid());
-            current_price = trade.getBid();
+            currentPrice = trade.getBidCents();
         }
+        asset.setCurrentPriceCents(currentPrice);
 
-        String record = asset.getRecord();
         // get list of average price collected in string format
-        String[] avglist = record.split(",");
+        String[] avglist = asset.getRecord().split(",");
         // compute average price here
-        double average = 0.0;
-        int count = 1;
+        long average = recordedTotal(avglist);
+        int count = avglist.length + 1;
 
-        // parse recorded past current prices into double
-        for (String amnt : avglist) {
-            average += Double.parseDouble(amnt);
-            count++;
-        }
         // update the quantity
         asset.setQuantity(asset.getQuantity() + trade.getFilledQuantity());
         // update the record of average prices
-        asset.setAvgPrice((average + current_price) / count);
-
-        asset.setValue(current_price * asset.getQuantity());
+        asset.setAvgPriceCents(Money.average(average + currentPrice, count));
 
-        // update the current gainloss of asset
-        asset.setGainLoss(asset.getValue() - (asset.getAvgPrice() * asset.getQuantity()));
+        // update the value and the current gainloss of asset
+        asset.revalue();
 
         // record down the current price into the asset for future reference as string
-        asset.setRecord(asset.getRecord() + "," + Double.toString(current_price));
+        asset.setRecord(asset.getRecord() + "," + Double.toString(Money.dollars(currentPrice)));
 
         // update the totalgainloss
-        portfolio.setTotalGainLoss(portfolio.getTotalGainLoss() + asset.getGainLoss());
+        portfolio.setTotalGainLossCents(portfolio.getTotalGainLossCents() + asset.getGainLossCents());
 
         assets.save(asset);
         portfolios.save(portfolio);
@@ -137,8 +130,7 @@ public class AssetServiceImpl implements AssetService {
             if (asset.getQuantity() == 0) {
                 asset.setTraded(true);
             }
-            asset.setValue(asset.getCurrentPrice() * asset.getQuantity());
-            asset.setGainLoss(asset.getValue() - (asset.getAvgPrice() * asset.getQuantity()));
+            asset.revalue();
             assets.save(asset);
         }
     }
@@ -164,24 +156,13 @@ public class AssetServiceImpl implements AssetService {
             // added retrieve quantity into current quantity
             currentAsset.setQuantity(currentAsset.getQuantity() + quantity);
 
-            // recalculate value and gain loss
-            currentAsset.setValue(currentAsset.getCurrentPrice() * currentAsset.getQuantity());
-
-            String record = currentAsset.getRecord();
             // get list of average price collected in string format
-            String[] avglist = record.split(",");
+            String[] avglist = currentAsset.getRecord().split(",");
             // compute average price here
-            double average = 0.0;
-            int count = 1;
+            currentAsset.setAvgPriceCents(Money.average(recordedTotal(avglist), avglist.length + 1));
 
-            // parse recorded past current prices into double
-            for (String amnt : avglist) {
-                average += Double.parseDouble(amnt);
-                count++;
-            }
-            currentAsset.setAvgPrice(average / count);
-            currentAsset
-                    .setGainLoss(currentAsset.getValue() - (currentAsset.getAvgPrice() * currentAsset.getQuantity()));
+            // recalculate value and gain loss
+            currentAsset.revalue();
 
             // save newly changes of current asset and sold asset
             assets.save(currentAsset);
@@ -193,34 +174,37 @@ public class AssetServiceImpl implements AssetService {
         else if (opCurrentAsset.isPresent()) {
             Asset currentAsset = opCurrentAsset.get();
             currentAsset.setQuantity(currentAsset.getQuantity() + quantity);
-            currentAsset.setValue(currentAsset.getCurrentPrice() * currentAsset.getQuantity());
-            currentAsset
-                    .setGainLoss(currentAsset.getValue() - (currentAsset.getAvgPrice() * currentAsset.getQuantity()));
+            currentAsset.revalue();
 
             assets.save(currentAsset);
         } else {
             Asset oldAsset = opOldAsset.get();
             oldAsset.setTraded(false);
             oldAsset.setQuantity(quantity);
-            String record = oldAsset.getRecord();
+            String[] avglist = oldAsset.getRecord().split(",");
 
-            String[] avglist = record.split(",");
-
-            double average = 0.0;
-            int count = 1;
-
-            for (String amnt : avglist) {
-                average += Double.parseDouble(amnt);
-                count++;
-            }
-            oldAsset.setAvgPrice(average / count);
-            double currentPrice = Double.parseDouble(avglist[avglist.length - 1]);
-            oldAsset.setValue(currentPrice * quantity);
-            oldAsset.setGainLoss(oldAsset.getValue() - (oldAsset.getAvgPrice() * quantity));
+            oldAsset.setAvgPriceCents(Money.average(recordedTotal(avglist), avglist.length + 1));
+            // the last recorded price is the price the asset was last valued at
+            oldAsset.setCurrentPriceCents(Money.cents(Double.parseDouble(avglist[avglist.length - 1])));
+            oldAsset.revalue();
 
             assets.save(oldAsset);
         }
 
     }
 
+    /**
+     * Adds up the prices recorded for an asset.
+     * 
+     * @param prices The recorded prices, in dollars.
+     * @return The total in cents.
+     */
+    private static long recordedTotal(String[] prices) {
+        long total = 0;
+        for (String price : prices) {
+            total += Money.cents(Double.parseDouble(price));
+        }
+        return total;
+    }
+
 }
@@ -6,6 +6,7 @@ import javax.persistence.*;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.cs203t5.ryverbank.Money;
 import com.cs203t5.ryverbank.customer.Customer;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
@@ -39,11 +40,11 @@ public class Portfolio {
     @OneToMany(mappedBy = "portfolio", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Asset> assets;
 
-    @JsonProperty("unrealized_gain_loss")
-    private double unrealizedGainLoss;
+    /** The gain or loss of the assets held, in cents. */
+    private long unrealizedGainLoss;
 
-    @JsonProperty("total_gain_loss")
-    private double totalGainLoss;
+    /** The gain or loss realized by selling, in cents. */
+    private long totalGainLoss;
 
     @OneToOne(fetch = FetchType.LAZY, optional = true)
     @JoinColumn(name = "customerId", referencedColumnName = "customerId", updatable = false, insertable = false)
@@ -60,4 +61,40 @@ public class Portfolio {
         this.assets = new ArrayList<>();
     }
 
+    @JsonProperty("unrealized_gain_loss")
+    public double getUnrealizedGainLoss() {
+        return Money.dollars(unrealizedGainLoss);
+    }
+
+    public void setUnrealizedGainLoss(double unrealizedGainLoss) {
+        this.unrealizedGainLoss = Money.cents(unrealizedGainLoss);
+    }
+
+    @JsonProperty("total_gain_loss")
+    public double getTotalGainLoss() {
+        return Money.dollars(totalGainLoss);
+    }
+
+    public void setTotalGainLoss(double totalGainLoss) {
+        this.totalGainLoss = Money.cents(totalGainLoss);
+    }
+
+    @JsonIgnore
+    public long getUnrealizedGainLossCents() {
+        return unrealizedGainLoss;
+    }
+
+    public void setUnrealizedGainLossCents(long unrealizedGainLoss) {
+        this.unrealizedGainLoss = unrealizedGainLoss;
+    }
+
+    @JsonIgnore
+    public long getTotalGainLossCents() {
+        return totalGainLoss;
+    }
+
+    public void setTotalGainLossCents(long totalGainLoss) {
+        this.totalGainLoss = totalGainLoss;
+    }
+
 }
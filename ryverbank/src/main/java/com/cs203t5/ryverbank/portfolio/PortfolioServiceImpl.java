@@ -2,6 +2,7 @@ package com.cs203t5.ryverbank.portfolio;
 
 import java.util.*;
 
+import com.cs203t5.ryverbank.Money;
 import com.cs203t5.ryverbank.trading.*;
 
 import org.springframework.stereotype.Service;
@@ -40,14 +41,14 @@ public class PortfolioServiceImpl implements PortfolioService {
         List<Asset> list = new ArrayList<>();
         list = portfolio.getAssets();
 
-        double unrealizedGainLoss = 0.0;
+        long unrealizedGainLoss = 0;
         if (!list.isEmpty()) {
             for (Asset asset : list) {
                 if (asset.isTraded == false)
-                    unrealizedGainLoss += asset.getGainLoss();
+                    unrealizedGainLoss += asset.getGainLossCents();
             }
         }
-        portfolio.setUnrealizedGainLoss(unrealizedGainLoss);
+        portfolio.setUnrealizedGainLossCents(unrealizedGainLoss);
     }
 
     public void updateRealizedGainLoss(Trade trade, CustomStock stock) {
@@ -55,21 +56,15 @@ public class PortfolioServiceImpl implements PortfolioService {
             Long id = trade.getCustomerId();
             Optional<Portfolio> optional = portfolios.findByCustomerId(id);
             Portfolio portfolio = optional.get();
-            double gain = 0.0;
-            double avg = 0.0;
-            double gainLoss = 0.0;
+            long gain = 0;
+            long avg = Money.times(trade.getAvgPriceCents(), trade.getFilledQuantity());
 
-            if (trade.getAsk() == 0.0) {
-                gain = stock.getAsk() * trade.getFilledQuantity();
-                avg = trade.getAvgPrice() * trade.getFilledQuantity();
-                gainLoss = gain - avg;
+            if (trade.getAskCents() == 0) {
+                gain = Money.times(stock.getAskCents(), trade.getFilledQuantity());
             } else {
-                gain = trade.getAsk() * trade.getFilledQuantity();
-                avg = trade.getAvgPrice() * trade.getFilledQuantity();
-                gainLoss = gain - avg;
-
+                gain = Money.times(trade.getAskCents(), trade.getFilledQuantity());
             }
-            portfolio.setTotalGainLoss(portfolio.getTotalGainLoss() + gainLoss);
+            portfolio.setTotalGainLossCents(portfolio.getTotalGainLossCents() + gain - avg);
             portfolios.save(portfolio);
         }
     }
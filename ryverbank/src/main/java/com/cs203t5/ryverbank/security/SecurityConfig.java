@@ -65,6 +65,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .antMatchers(HttpMethod.POST, "/accounts").hasRole("MANAGER")
                 .antMatchers(HttpMethod.GET, "/accounts/*/transactions").hasRole("USER")
                 .antMatchers(HttpMethod.POST, "/accounts/*/transactions").hasRole("USER")
+                .antMatchers(HttpMethod.POST, "/accounts/*/transactions/batch").hasRole("USER")
 
                 // Following lines are for content
                 // Everyone that wants to access the content page needs to be authenticated
@@ -0,0 +1,164 @@
+package com.cs203t5.ryverbank.trading;
+
+import javax.persistence.*;
+
+import org.hibernate.annotations.Immutable;
+
+import com.cs203t5.ryverbank.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * The open, high, low and close price and the traded volume of a symbol over
+ * one interval.
+ *
+ * A bar is folded together in memory while its interval is running and is
+ * written once, when the interval has ended. Intervals without trades have no
+ * bar. Prices are kept in cents.
+ */
+@Entity
+@Immutable
+@Table(name = "bar", indexes = {
+        @Index(name = "idx_bar_symbol_interval_start", columnList = "symbol, bar_interval, start_time") })
+public class Bar {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bar_seq")
+    @SequenceGenerator(name = "bar_seq", sequenceName = "bar_seq", allocationSize = 50)
+    @JsonIgnore
+    private Long id;
+
+    @Column(name = "symbol", nullable = false, updatable = false, length = 8)
+    @JsonIgnore
+    private String symbol;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "bar_interval", nullable = false, updatable = false, length = 6)
+    @JsonIgnore
+    private BarInterval interval;
+
+    @Column(name = "start_time", nullable = false, updatable = false)
+    private long start;
+
+    @Column(name = "open_price", nullable = false, updatable = false)
+    private long open;
+
+    @Column(name = "high_price", nullable = false, updatable = false)
+    private long high;
+
+    @Column(name = "low_price", nullable = false, updatable = false)
+    private long low;
+
+    @Column(name = "close_price", nullable = false, updatable = false)
+    private long close;
+
+    @Column(name = "volume", nullable = false, updatable = false)
+    private long volume;
+
+    protected Bar() {
+    }
+
+    /**
+     * Constructs a Bar with the following parameters.
+     *
+     * @param symbol   The stock symbol.
+     * @param interval The resolution of the bar.
+     * @param start    The start of the interval, in epoch milliseconds.
+     * @param price    The price of the first execution in the interval.
+     */
+    public Bar(String symbol, BarInterval interval, long start, double price) {
+        this.symbol = symbol;
+        this.interval = interval;
+        this.start = start;
+        this.open = Money.cents(price);
+        this.high = open;
+        this.low = open;
+        this.close = open;
+    }
+
+    /**
+     * Folds an execution into the bar.
+     *
+     * @param price    The price of the execution.
+     * @param quantity The quantity of the execution.
+     */
+    void add(double price, int quantity) {
+        long cents = Money.cents(price);
+        if (cents > high) {
+            high = cents;
+        }
+        if (cents < low) {
+            low = cents;
+        }
+        close = cents;
+        volume += quantity;
+    }
+
+    /**
+     * Returns a copy of the bar, taken while its interval is still running.
+     *
+     * @return The copy.
+     */
+    Bar copy() {
+        Bar bar = new Bar(symbol, interval, start, Money.dollars(open));
+        bar.high = high;
+        bar.low = low;
+        bar.close = close;
+        bar.volume = volume;
+        return bar;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public BarInterval getInterval() {
+        return interval;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public double getOpen() {
+        return Money.dollars(open);
+    }
+
+    @JsonIgnore
+    public long getOpenCents() {
+        return open;
+    }
+
+    public double getHigh() {
+        return Money.dollars(high);
+    }
+
+    @JsonIgnore
+    public long getHighCents() {
+        return high;
+    }
+
+    public double getLow() {
+        return Money.dollars(low);
+    }
+
+    @JsonIgnore
+    public long getLowCents() {
+        return low;
+    }
+
+    public double getClose() {
+        return Money.dollars(close);
+    }
+
+    @JsonIgnore
+    public long getCloseCents() {
+        return close;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+}
@@ -0,0 +1,206 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Folds every execution into the running price bars of its symbol, one per
+ * {@link BarInterval}, as the executions are committed.
+ *
+ * A bar is finished when an execution falls into a later interval or when the
+ * scheduled flush finds its interval has ended. Finished bars are queued and
+ * written in one batch by the flush, off the matching thread. Until a bar is
+ * written it is still served from memory, so a reader sees every bar whether or
+ * not it has reached the database yet.
+ */
+@Component
+public class BarAggregator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BarAggregator.class);
+    private static final BarInterval[] INTERVALS = BarInterval.values();
+
+    /** The bar repository. */
+    private BarRepository barRepository;
+    /** The time zone of the exchange, which the daily bars follow. */
+    private final ZoneId zone;
+    /** The running bars of each symbol that has traded. */
+    private final Map<String, RunningBars> running = new ConcurrentHashMap<>();
+    /** The finished bars that have not been written yet, oldest first. */
+    private final Queue<Bar> finished = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a BarAggregator with the following parameters.
+     *
+     * @param barRepository The bar repository.
+     * @param calendar      The trading sessions of the exchange.
+     */
+    public BarAggregator(BarRepository barRepository, MarketCalendar calendar) {
+        this.barRepository = barRepository;
+        this.zone = calendar.getZone();
+    }
+
+    /**
+     * Folds the executions of a match into the bars, after the enclosing
+     * transaction has committed if there is one.
+     *
+     * @param result The executions, oldest first.
+     */
+    public void record(MatchResult result) {
+        if (result.isEmpty()) {
+            return;
+        }
+        List<Execution> executions = result.getExecutions();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    fold(executions);
+                }
+            });
+        } else {
+            fold(executions);
+        }
+    }
+
+    private void fold(List<Execution> executions) {
+        for (Execution execution : executions) {
+            running.computeIfAbsent(execution.getSymbol(), RunningBars::new).add(execution);
+        }
+    }
+
+    /**
+     * Finishes the bars whose interval has ended and writes every finished bar.
+     */
+    @Scheduled(initialDelayString = "${ryverbank.bars.flush-interval:1000}",
+            fixedDelayString = "${ryverbank.bars.flush-interval:1000}")
+    public void scheduledFlush() {
+        try {
+            flush(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not write the finished price bars", e);
+        }
+    }
+
+    /**
+     * Finishes the bars whose interval has ended by the specified time and writes
+     * every finished bar. Bars leave memory only once they have been written.
+     *
+     * @param now The current time, in epoch milliseconds.
+     * @return The number of bars written.
+     */
+    public synchronized int flush(long now) {
+        for (RunningBars bars : running.values()) {
+            bars.finishBefore(now);
+        }
+        List<Bar> batch = new ArrayList<>(finished);
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        barRepository.saveAll(batch);
+        for (int i = 0; i < batch.size(); i++) {
+            finished.poll();
+        }
+        return batch.size();
+    }
+
+    /**
+     * Finds the bars of a symbol that start within a time range, oldest first,
+     * including the bars that have not been written yet.
+     *
+     * @param symbol   The stock symbol.
+     * @param interval The resolution of the bars.
+     * @param from     The earliest start, in epoch milliseconds.
+     * @param to       The latest start, in epoch milliseconds.
+     * @return The bars found.
+     */
+    public List<Bar> getBars(String symbol, BarInterval interval, long from, long to) {
+        // read from the running bar back to the repository, the way bars move, so a
+        // bar that moves on in between is still found; the later reads are fresher
+        RunningBars symbolBars = running.get(symbol);
+        Bar current = symbolBars == null ? null : symbolBars.copy(interval);
+        List<Bar> unwritten = new ArrayList<>();
+        for (Bar bar : finished) {
+            if (matches(bar, symbol, interval, from, to)) {
+                unwritten.add(bar);
+            }
+        }
+        List<Bar> written = barRepository.findBySymbolAndIntervalAndStartBetweenOrderByStart(symbol, interval,
+                from, to);
+
+        Map<Long, Bar> bars = new TreeMap<>();
+        if (current != null && matches(current, symbol, interval, from, to)) {
+            bars.put(current.getStart(), current);
+        }
+        for (Bar bar : written) {
+            bars.put(bar.getStart(), bar);
+        }
+        for (Bar bar : unwritten) {
+            bars.put(bar.getStart(), bar);
+        }
+        return new ArrayList<>(bars.values());
+    }
+
+    private static boolean matches(Bar bar, String symbol, BarInterval interval, long from, long to) {
+        return bar.getSymbol().equals(symbol) && bar.getInterval() == interval && bar.getStart() >= from
+                && bar.getStart() <= to;
+    }
+
+    /**
+     * Forgets the bars that have not been written.
+     */
+    public synchronized void clear() {
+        running.clear();
+        finished.clear();
+    }
+
+    /**
+     * The running bar of each interval of one symbol.
+     */
+    private class RunningBars {
+        private final String symbol;
+        private final Bar[] bars = new Bar[INTERVALS.length];
+
+        RunningBars(String symbol) {
+            this.symbol = symbol;
+        }
+
+        synchronized void add(Execution execution) {
+            for (BarInterval interval : INTERVALS) {
+                long start = interval.start(execution.getExecutedAt(), zone);
+                Bar bar = bars[interval.ordinal()];
+                if (bar != null && start > bar.getStart()) {
+                    finished.add(bar);
+                    bar = null;
+                }
+                if (bar == null) {
+                    bar = new Bar(symbol, interval, start, execution.getPrice());
+                    bars[interval.ordinal()] = bar;
+                }
+                bar.add(execution.getPrice(), execution.getQuantity());
+            }
+        }
+
+        synchronized void finishBefore(long now) {
+            for (BarInterval interval : INTERVALS) {
+                Bar bar = bars[interval.ordinal()];
+                if (bar != null && interval.end(bar.getStart(), zone) <= now) {
+                    finished.add(bar);
+                    bars[interval.ordinal()] = null;
+                }
+            }
+        }
+
+        synchronized Bar copy(BarInterval interval) {
+            Bar bar = bars[interval.ordinal()];
+            return bar == null ? null : bar.copy();
+        }
+    }
+}
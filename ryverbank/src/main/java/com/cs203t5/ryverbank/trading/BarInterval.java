@@ -0,0 +1,85 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * The resolutions of the price bars. A daily bar covers a calendar day in the
+ * time zone of the exchange, see {@link MarketCalendar#getZone()}.
+ */
+public enum BarInterval {
+    SECOND("1s", 1000L),
+    MINUTE("1m", 60 * 1000L),
+    DAY("1d", 24 * 60 * 60 * 1000L);
+
+    /** The name of the interval in requests and responses. */
+    private final String code;
+    /** The length of the interval, in milliseconds. */
+    private final long millis;
+
+    BarInterval(String code, long millis) {
+        this.code = code;
+        this.millis = millis;
+    }
+
+    @JsonValue
+    public String getCode() {
+        return code;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Returns the start of the bar that contains the specified time.
+     *
+     * @param time The time, in epoch milliseconds.
+     * @param zone The time zone of the exchange.
+     * @return The start of the bar, in epoch milliseconds.
+     */
+    public long start(long time, ZoneId zone) {
+        if (this == DAY) {
+            return startOf(Instant.ofEpochMilli(time).atZone(zone).toLocalDate(), zone);
+        }
+        return Math.floorDiv(time, millis) * millis;
+    }
+
+    /**
+     * Returns the end of the bar that starts at the specified time, which is the
+     * start of the next bar. A day is not always 24 hours long where the clocks
+     * change.
+     *
+     * @param start The start of the bar, in epoch milliseconds.
+     * @param zone  The time zone of the exchange.
+     * @return The end of the bar, in epoch milliseconds.
+     */
+    public long end(long start, ZoneId zone) {
+        if (this == DAY) {
+            return startOf(Instant.ofEpochMilli(start).atZone(zone).toLocalDate().plusDays(1), zone);
+        }
+        return start + millis;
+    }
+
+    private static long startOf(LocalDate date, ZoneId zone) {
+        return date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Finds the interval with the specified name.
+     *
+     * @param code The name of the interval, such as "1m".
+     * @return The interval, or null if there is no interval with that name.
+     */
+    public static BarInterval of(String code) {
+        for (BarInterval interval : values()) {
+            if (interval.code.equals(code)) {
+                return interval;
+            }
+        }
+        return null;
+    }
+}
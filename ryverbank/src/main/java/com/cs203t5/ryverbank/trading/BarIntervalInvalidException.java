@@ -0,0 +1,25 @@
+package com.cs203t5.ryverbank.trading;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * BarIntervalInvalidException is thrown when price bars are requested at an
+ * interval that is not kept.
+ * 
+ * @see RuntimeException
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BarIntervalInvalidException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new BarIntervalInvalidException for the specified interval.
+     * 
+     * @param interval The interval that was requested.
+     */
+    public BarIntervalInvalidException(String interval) {
+        super("Invalid bar interval " + interval + ", expected 1s, 1m or 1d");
+    }
+}
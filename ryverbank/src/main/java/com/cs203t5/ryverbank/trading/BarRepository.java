@@ -0,0 +1,26 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * A BarRepository that provides the mechanism for storage and retrieval of
+ * finished price bars. Bars are never updated.
+ */
+@Repository
+public interface BarRepository extends JpaRepository<Bar, Long> {
+    /**
+     * Derived query to find the bars of a symbol that start within a time range,
+     * oldest first.
+     *
+     * @param symbol   The stock symbol.
+     * @param interval The resolution of the bars.
+     * @param from     The earliest start, in epoch milliseconds.
+     * @param to       The latest start, in epoch milliseconds.
+     * @return The bars found.
+     */
+    List<Bar> findBySymbolAndIntervalAndStartBetweenOrderByStart(String symbol, BarInterval interval, long from,
+            long to);
+}
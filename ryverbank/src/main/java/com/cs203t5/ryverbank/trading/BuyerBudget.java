@@ -0,0 +1,79 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.cs203t5.ryverbank.Money;
+
+/**
+ * What the buyers of a sweep or an auction can still pay, in cents.
+ *
+ * A buy trade pays out of the money on hold for it first, then out of the
+ * available balance of its account, which every buy trade of the account
+ * shares. Both are read on the first fill of the trade or account and drawn
+ * down as fills are paid, the same way the fills are settled, so a buyer is
+ * never filled for more than its account can pay.
+ */
+class BuyerBudget {
+    /** Finds the money on hold for a buy trade, in cents. */
+    private final Function<Trade, Long> heldFor;
+    /** Finds the available balance of an account, in cents, by account id. */
+    private final Function<Long, Long> availableOf;
+    /** What is left on hold for each buy trade. */
+    private final Map<Trade, Long> held = new IdentityHashMap<>();
+    /** What is left of the available balance of each account. */
+    private final Map<Long, Long> available = new HashMap<>();
+
+    /**
+     * Constructs a BuyerBudget with the following parameters.
+     *
+     * @param heldFor     Finds the money on hold for a buy trade, in cents.
+     * @param availableOf Finds the available balance of an account, in cents, by
+     *                    account id.
+     */
+    BuyerBudget(Function<Trade, Long> heldFor, Function<Long, Long> availableOf) {
+        this.heldFor = heldFor;
+        this.availableOf = availableOf;
+    }
+
+    /**
+     * Finds how many shares a buy trade can pay for at a price, in lots of 100.
+     *
+     * @param buy        The buy trade.
+     * @param priceCents The price of a share, in cents.
+     * @param quantity   The number of shares wanted.
+     * @return The number of shares the buyer can pay for, at most the quantity.
+     */
+    int affordable(Trade buy, long priceCents, int quantity) {
+        if (priceCents <= 0) {
+            return quantity;
+        }
+        long budget = held(buy) + available(buy.getAccountId());
+        if (budget >= Money.times(priceCents, quantity)) {
+            return quantity;
+        }
+        return (int) Math.max(budget / priceCents / 100 * 100, 0L);
+    }
+
+    /**
+     * Pays for a fill of a buy trade, out of its hold first.
+     *
+     * @param buy    The buy trade.
+     * @param amount The amount paid, in cents.
+     */
+    void spend(Trade buy, long amount) {
+        long fromHold = Math.min(amount, held(buy));
+        held.put(buy, held(buy) - fromHold);
+        available.put(buy.getAccountId(), available(buy.getAccountId()) - (amount - fromHold));
+    }
+
+    private long held(Trade buy) {
+        return held.computeIfAbsent(buy, heldFor);
+    }
+
+    private long available(Long accountId) {
+        return available.computeIfAbsent(accountId, availableOf);
+    }
+}
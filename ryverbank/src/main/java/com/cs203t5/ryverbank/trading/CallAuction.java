@@ -0,0 +1,211 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+
+import com.cs203t5.ryverbank.Money;
+
+/**
+ * The opening call auction of one order book.
+ *
+ * Every order queued before the open is collected and a single equilibrium
+ * price is computed: the price at which the most shares change hands. Ties are
+ * broken by the smallest imbalance between the shares wanted and offered at
+ * that price, then by the distance to the reference price, then by the lower
+ * price, so the opening price is deterministic. All crossing orders are then
+ * executed at that one price, market orders first, then by price and time.
+ *
+ * The auction only computes the executions; it does not change the trades or
+ * the book.
+ */
+public class CallAuction {
+    /** The buy orders, market orders first, then highest bid, then oldest. */
+    private final List<Trade> buys = new ArrayList<>();
+    /** The sell orders, market orders first, then lowest ask, then oldest. */
+    private final List<Trade> sells = new ArrayList<>();
+    /** The equilibrium price, 0.0 if nothing crosses. */
+    private double price;
+    /** The number of shares that cross at the equilibrium price. */
+    private long volume;
+
+    /**
+     * Constructs a CallAuction over the orders resting in the specified book and
+     * computes its equilibrium price.
+     *
+     * @param book           The order book.
+     * @param referencePrice The price the auction leans towards when several prices
+     *                       trade the same volume, e.g. the last traded price. It is
+     *                       also the price when only market orders cross.
+     */
+    public CallAuction(OrderBook book, double referencePrice) {
+        for (Trade trade : book.getOrders()) {
+            (trade.getAction().equals("buy") ? buys : sells).add(trade);
+        }
+        Comparator<Trade> time = Comparator
+                .comparing(Trade::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Trade::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+        buys.sort(Comparator.comparing((Trade trade) -> trade.getBid() != 0.0)
+                .thenComparing(Trade::getBid, Comparator.reverseOrder()).thenComparing(time));
+        sells.sort(Comparator.comparing((Trade trade) -> trade.getAsk() != 0.0).thenComparing(Trade::getAsk)
+                .thenComparing(time));
+        uncross(referencePrice);
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public long getVolume() {
+        return volume;
+    }
+
+    /**
+     * Finds the price that maximises the executed volume.
+     */
+    private void uncross(double referencePrice) {
+        long marketDemand = 0;
+        TreeSet<Double> candidates = new TreeSet<>();
+        for (Trade trade : buys) {
+            if (trade.getBid() == 0.0) {
+                marketDemand += trade.getQuantity();
+            } else {
+                candidates.add(trade.getBid());
+            }
+        }
+        long marketSupply = 0;
+        for (Trade trade : sells) {
+            if (trade.getAsk() == 0.0) {
+                marketSupply += trade.getQuantity();
+            } else {
+                candidates.add(trade.getAsk());
+            }
+        }
+        if (candidates.isEmpty()) {
+            // only market orders, which trade at the reference price
+            if (referencePrice > 0.0) {
+                price = referencePrice;
+                volume = Math.min(marketDemand, marketSupply);
+            }
+            return;
+        }
+
+        double[] prices = candidates.stream().mapToDouble(Double::doubleValue).toArray();
+        long[] demand = new long[prices.length];
+        long[] supply = new long[prices.length];
+
+        // demand falls as the price rises: walk the limit bids from the highest down
+        List<Trade> limitBuys = new ArrayList<>();
+        for (Trade trade : buys) {
+            if (trade.getBid() != 0.0) {
+                limitBuys.add(trade);
+            }
+        }
+        long cumulative = marketDemand;
+        int next = 0;
+        for (int i = prices.length - 1; i >= 0; i--) {
+            while (next < limitBuys.size() && limitBuys.get(next).getBid() >= prices[i]) {
+                cumulative += limitBuys.get(next++).getQuantity();
+            }
+            demand[i] = cumulative;
+        }
+
+        // supply rises with the price: walk the limit asks from the lowest up
+        List<Trade> limitSells = new ArrayList<>();
+        for (Trade trade : sells) {
+            if (trade.getAsk() != 0.0) {
+                limitSells.add(trade);
+            }
+        }
+        cumulative = marketSupply;
+        next = 0;
+        for (int i = 0; i < prices.length; i++) {
+            while (next < limitSells.size() && limitSells.get(next).getAsk() <= prices[i]) {
+                cumulative += limitSells.get(next++).getQuantity();
+            }
+            supply[i] = cumulative;
+        }
+
+        int best = -1;
+        for (int i = 0; i < prices.length; i++) {
+            long executed = Math.min(demand[i], supply[i]);
+            if (executed <= 0) {
+                continue;
+            }
+            if (best < 0 || isBetter(i, best, demand, supply, prices, referencePrice)) {
+                best = i;
+            }
+        }
+        if (best >= 0) {
+            price = prices[best];
+            volume = Math.min(demand[best], supply[best]);
+        }
+    }
+
+    private static boolean isBetter(int i, int best, long[] demand, long[] supply, double[] prices,
+            double referencePrice) {
+        long executed = Math.min(demand[i], supply[i]);
+        long bestExecuted = Math.min(demand[best], supply[best]);
+        if (executed != bestExecuted) {
+            return executed > bestExecuted;
+        }
+        long imbalance = Math.abs(demand[i] - supply[i]);
+        long bestImbalance = Math.abs(demand[best] - supply[best]);
+        if (imbalance != bestImbalance) {
+            return imbalance < bestImbalance;
+        }
+        // prices are ascending, so on a tie in distance the earlier (lower) price stays
+        return Math.abs(prices[i] - referencePrice) < Math.abs(prices[best] - referencePrice);
+    }
+
+    /**
+     * Allocates the crossing volume between the buy and sell orders at the
+     * equilibrium price. A buyer only gets as many lots of 100 as it can pay for
+     * out of its hold and available balance; what a buyer cannot take goes to the
+     * next buyer.
+     *
+     * @param budget What the buyers can pay.
+     * @return The executions, in priority order.
+     */
+    List<Execution> executions(BuyerBudget budget) {
+        List<Execution> executions = new ArrayList<>();
+        if (volume <= 0) {
+            return executions;
+        }
+        long priceCents = Money.cents(price);
+        Iterator<Trade> sellers = sells.iterator();
+        Trade sell = null;
+        int sellRemaining = 0;
+        long remaining = volume;
+        for (Trade buy : buys) {
+            if (remaining <= 0 || !crosses(buy)) {
+                break;
+            }
+            int buyRemaining = budget.affordable(buy, priceCents, buy.getQuantity());
+            while (buyRemaining > 0 && remaining > 0) {
+                if (sellRemaining == 0) {
+                    if (!sellers.hasNext()) {
+                        return executions;
+                    }
+                    sell = sellers.next();
+                    if (!crosses(sell)) {
+                        return executions;
+                    }
+                    sellRemaining = sell.getQuantity();
+                }
+                int quantity = (int) Math.min(Math.min(buyRemaining, sellRemaining), remaining);
+                executions.add(new Execution(buy, sell, price, quantity));
+                buyRemaining -= quantity;
+                sellRemaining -= quantity;
+                remaining -= quantity;
+                budget.spend(buy, Money.times(priceCents, quantity));
+            }
+        }
+        return executions;
+    }
+
+    private boolean crosses(Trade trade) {
+        if (trade.getAction().equals("buy")) {
+            return trade.getBid() == 0.0 || trade.getBid() >= price;
+        }
+        return trade.getAsk() == 0.0 || trade.getAsk() <= price;
+    }
+}
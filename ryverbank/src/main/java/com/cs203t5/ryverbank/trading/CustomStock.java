@@ -1,6 +1,8 @@
 package com.cs203t5.ryverbank.trading;
 
 import javax.persistence.*;
+import com.cs203t5.ryverbank.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import javax.validation.constraints.NotNull;
 import lombok.*;
@@ -20,23 +22,25 @@ public class CustomStock {
     @NotNull(message = "Symbol cannot be null")
     private String symbol;
 
+    /** The last price, in cents. */
     @NotNull(message = "last price cannot be null")
-    @JsonProperty("last_price")
-    private double lastPrice;
+    private long lastPrice;
 
     @NotNull(message = "bid volume cannot be null")
     @JsonProperty("bid_volume")
     private int bidVolume;
 
+    /** The bid price, in cents. */
     @NotNull(message = "bid price cannot be null")
-    private double bid;
+    private long bid;
 
     @NotNull(message = "ask volume cannot be null")
     @JsonProperty("ask_volume")
     private int askVolume;
 
+    /** The ask price, in cents. */
     @NotNull(message = "ask price cannot be null")
-    private double ask;
+    private long ask;
 
     /**
      * Constructs a stock object with the following parameters.
@@ -50,10 +54,79 @@ public class CustomStock {
      */
     public CustomStock(String symbol, double lastPrice, int bidVolume, double bid, int askVolume, double ask) {
         this.symbol = symbol;
-        this.lastPrice = lastPrice;
+        this.lastPrice = Money.cents(lastPrice);
         this.bidVolume = bidVolume;
-        this.bid = bid;
+        this.bid = Money.cents(bid);
         this.askVolume = askVolume;
+        this.ask = Money.cents(ask);
+    }
+
+    @JsonProperty("last_price")
+    public double getLastPrice() {
+        return Money.dollars(lastPrice);
+    }
+
+    @JsonProperty("last_price")
+    public void setLastPrice(double lastPrice) {
+        this.lastPrice = Money.cents(lastPrice);
+    }
+
+    public double getBid() {
+        return Money.dollars(bid);
+    }
+
+    public void setBid(double bid) {
+        this.bid = Money.cents(bid);
+    }
+
+    public double getAsk() {
+        return Money.dollars(ask);
+    }
+
+    public void setAsk(double ask) {
+        this.ask = Money.cents(ask);
+    }
+
+    @JsonIgnore
+    public long getLastPriceCents() {
+        return lastPrice;
+    }
+
+    public void setLastPriceCents(long lastPrice) {
+        this.lastPrice = lastPrice;
+    }
+
+    @JsonIgnore
+    public long getBidCents() {
+        return bid;
+    }
+
+    public void setBidCents(long bid) {
+        this.bid = bid;
+    }
+
+    @JsonIgnore
+    public long getAskCents() {
+        return ask;
+    }
+
+    public void setAskCents(long ask) {
         this.ask = ask;
     }
+
+    /**
+     * Copies the stock.
+     * 
+     * @return A stock with the same symbol and quote.
+     */
+    public CustomStock copy() {
+        CustomStock copy = new CustomStock();
+        copy.symbol = symbol;
+        copy.lastPrice = lastPrice;
+        copy.bidVolume = bidVolume;
+        copy.bid = bid;
+        copy.askVolume = askVolume;
+        copy.ask = ask;
+        return copy;
+    }
 }
@@ -0,0 +1,177 @@
+package com.cs203t5.ryverbank.trading;
+
+import javax.persistence.*;
+
+import org.hibernate.annotations.Immutable;
+
+import com.cs203t5.ryverbank.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A single match between a buy trade and a sell trade.
+ *
+ * Executions are written once and never updated. Each one keeps the price and
+ * quantity of its own fill, so the fill history, the average price of a trade
+ * and the volume weighted average price of a symbol can all be read back from
+ * the execution table.
+ */
+@Entity
+@Immutable
+@Table(name = "execution", indexes = {
+        @Index(name = "idx_execution_symbol_sequence", columnList = "symbol, sequence_number"),
+        @Index(name = "idx_execution_buy_trade", columnList = "buy_trade_id"),
+        @Index(name = "idx_execution_sell_trade", columnList = "sell_trade_id") })
+public class Execution {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "execution_seq")
+    @SequenceGenerator(name = "execution_seq", sequenceName = "execution_seq", allocationSize = 50)
+    @JsonIgnore
+    private Long id;
+
+    /** The stock symbol. */
+    @Column(name = "symbol", nullable = false, updatable = false)
+    private String symbol;
+
+    /** The position of this execution among the executions of its symbol. */
+    @Column(name = "sequence_number", nullable = false, updatable = false)
+    private long sequence;
+
+    /** The id of the buy trade. */
+    @Column(name = "buy_trade_id", nullable = false, updatable = false)
+    @JsonProperty("buy_trade_id")
+    private Long buyTradeId;
+
+    /** The id of the sell trade. */
+    @Column(name = "sell_trade_id", nullable = false, updatable = false)
+    @JsonProperty("sell_trade_id")
+    private Long sellTradeId;
+
+    /** The price the shares were traded at, in cents. */
+    @Column(name = "price", nullable = false, updatable = false)
+    private long price;
+
+    /** The number of shares traded. */
+    @Column(name = "quantity", nullable = false, updatable = false)
+    private int quantity;
+
+    /** The time of the match, in epoch milliseconds. */
+    @Column(name = "executed_at", nullable = false, updatable = false)
+    @JsonProperty("executed_at")
+    private long executedAt;
+
+    /** The buy side of the match, only known to the execution that made it. */
+    @Transient
+    @JsonIgnore
+    private Trade buyTrade;
+
+    /** The sell side of the match, only known to the execution that made it. */
+    @Transient
+    @JsonIgnore
+    private Trade sellTrade;
+
+    protected Execution() {
+    }
+
+    /**
+     * Constructs an Execution that has not been given its sequence number yet,
+     * e.g. while an auction is still being allocated.
+     *
+     * @param buyTrade  The buy side of the match.
+     * @param sellTrade The sell side of the match.
+     * @param price     The price the shares were traded at.
+     * @param quantity  The number of shares traded.
+     */
+    public Execution(Trade buyTrade, Trade sellTrade, double price, int quantity) {
+        this(buyTrade, sellTrade, price, quantity, 0);
+    }
+
+    /**
+     * Constructs an Execution with the following parameters.
+     *
+     * @param buyTrade  The buy side of the match.
+     * @param sellTrade The sell side of the match.
+     * @param price     The price the shares were traded at.
+     * @param quantity  The number of shares traded.
+     * @param sequence  The position of this execution among the executions of
+     *                  its symbol.
+     */
+    public Execution(Trade buyTrade, Trade sellTrade, double price, int quantity, long sequence) {
+        this.buyTrade = buyTrade;
+        this.sellTrade = sellTrade;
+        this.symbol = buyTrade.getSymbol();
+        this.price = Money.cents(price);
+        this.quantity = quantity;
+        this.sequence = sequence;
+        this.executedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes the ids of the trades when the execution is written. The incoming
+     * trade of a match is only saved, and given its id, after it was matched.
+     */
+    @PrePersist
+    void resolveTradeIds() {
+        if (buyTrade != null) {
+            buyTradeId = buyTrade.getId();
+        }
+        if (sellTrade != null) {
+            sellTradeId = sellTrade.getId();
+        }
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Long getBuyTradeId() {
+        return buyTrade != null ? buyTrade.getId() : buyTradeId;
+    }
+
+    public Long getSellTradeId() {
+        return sellTrade != null ? sellTrade.getId() : sellTradeId;
+    }
+
+    public Trade getBuyTrade() {
+        return buyTrade;
+    }
+
+    public Trade getSellTrade() {
+        return sellTrade;
+    }
+
+    public double getPrice() {
+        return Money.dollars(price);
+    }
+
+    @JsonIgnore
+    public long getPriceCents() {
+        return price;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getExecutedAt() {
+        return executedAt;
+    }
+
+    /**
+     * Returns the amount of money that changes hands.
+     *
+     * @return The price times the quantity, in cents.
+     */
+    @JsonIgnore
+    public long getAmount() {
+        return Money.times(price, quantity);
+    }
+}
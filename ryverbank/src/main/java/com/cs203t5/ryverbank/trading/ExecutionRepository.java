@@ -0,0 +1,54 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+/**
+ * An ExecutionRepository that provides the mechanism for storage and retrieval
+ * of execution objects. Executions are never updated.
+ */
+@Repository
+public interface ExecutionRepository extends JpaRepository<Execution, Long> {
+    /**
+     * Derived query to find the latest execution of a symbol.
+     *
+     * @param symbol The stock symbol.
+     * @return The execution with the highest sequence number.
+     */
+    Optional<Execution> findTopBySymbolOrderBySequenceDesc(String symbol);
+
+    /**
+     * Derived query to find the latest executions of a symbol, newest first.
+     *
+     * @param symbol   The stock symbol.
+     * @param pageable The number of executions to return.
+     * @return The executions found.
+     */
+    List<Execution> findBySymbolOrderBySequenceDesc(String symbol, Pageable pageable);
+
+    /**
+     * Derived query to find the fills of a trade, oldest first.
+     *
+     * @param buyTradeId  The id of the trade as the buy side.
+     * @param sellTradeId The id of the trade as the sell side.
+     * @return The executions found.
+     */
+    List<Execution> findByBuyTradeIdOrSellTradeIdOrderBySequence(Long buyTradeId, Long sellTradeId);
+
+    /**
+     * Query to compute the volume weighted average price of a symbol.
+     *
+     * @param symbol The stock symbol.
+     * @param since  The earliest execution time to include, in epoch milliseconds.
+     * @return The volume weighted average price, or null if nothing was traded.
+     */
+    @Query("SELECT SUM(e.price * e.quantity) / (100.0 * SUM(e.quantity)) FROM Execution e "
+            + "WHERE e.symbol = :symbol AND e.executedAt >= :since")
+    Double findVwap(@Param("symbol") String symbol, @Param("since") long since);
+}
@@ -0,0 +1,135 @@
+package com.cs203t5.ryverbank.trading;
+
+import javax.persistence.*;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A stock that can be listed on the exchange, with the price step and the
+ * quantity step its orders must keep to.
+ */
+@Entity
+@Table(name = "instrument")
+public class Instrument {
+    /** The status of an instrument that can be traded. */
+    public static final String ACTIVE = "active";
+    /** The status of an instrument whose trading is halted for now. */
+    public static final String SUSPENDED = "suspended";
+    /** The status of an instrument that is no longer listed. */
+    public static final String DELISTED = "delisted";
+
+    /** The part of a tick that a price may be off by and still be on the tick. */
+    private static final double TICK_TOLERANCE = 1e-6;
+
+    @Id
+    @Column(name = "symbol", length = 8)
+    private String symbol;
+
+    @Column(name = "tick_size", nullable = false)
+    @JsonProperty("tick_size")
+    private double tickSize;
+
+    @Column(name = "lot_size", nullable = false)
+    @JsonProperty("lot_size")
+    private int lotSize;
+
+    @Column(name = "status", nullable = false, length = 10)
+    private String status;
+
+    protected Instrument() {
+    }
+
+    /**
+     * Constructs an Instrument with the following parameters.
+     *
+     * @param symbol   The stock symbol.
+     * @param tickSize The smallest step between two prices.
+     * @param lotSize  The smallest step between two quantities.
+     * @param status   Whether the instrument is active, suspended or delisted.
+     */
+    public Instrument(String symbol, double tickSize, int lotSize, String status) {
+        this.symbol = symbol;
+        this.tickSize = tickSize;
+        this.lotSize = lotSize;
+        this.status = status;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public double getTickSize() {
+        return tickSize;
+    }
+
+    public int getLotSize() {
+        return lotSize;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * Checks whether orders for the instrument are accepted.
+     *
+     * @return True if the instrument is active.
+     */
+    @JsonIgnore
+    public boolean isTrading() {
+        return ACTIVE.equals(status);
+    }
+
+    /**
+     * Checks whether a quantity is a whole number of lots.
+     *
+     * @param quantity The quantity of an order.
+     * @return True if the quantity is a multiple of the lot size.
+     */
+    public boolean isWholeLots(int quantity) {
+        return quantity % lotSize == 0;
+    }
+
+    /**
+     * Checks whether a price is a whole number of ticks.
+     *
+     * @param price The price of an order.
+     * @return True if the price is a multiple of the tick size.
+     */
+    public boolean isOnTick(double price) {
+        double ticks = price / tickSize;
+        return Math.abs(ticks - Math.rint(ticks)) < TICK_TOLERANCE;
+    }
+
+    /**
+     * Rounds a price down to the tick below it, unless it is on a tick.
+     *
+     * @param price The price.
+     * @return The highest price on a tick that is not above the price.
+     */
+    public double floorToTick(double price) {
+        return toPrice(Math.floor(price / tickSize + TICK_TOLERANCE));
+    }
+
+    /**
+     * Rounds a price up to the tick above it, unless it is on a tick.
+     *
+     * @param price The price.
+     * @return The lowest price on a tick that is not below the price.
+     */
+    public double ceilToTick(double price) {
+        return toPrice(Math.ceil(price / tickSize - TICK_TOLERANCE));
+    }
+
+    private double toPrice(double ticks) {
+        // ticks times the tick size leaves a binary fraction, so round to the decimals of the tick
+        double scale = Math.pow(10, Math.max(0, (int) Math.ceil(-Math.log10(tickSize) - TICK_TOLERANCE)));
+        return Math.round(ticks * tickSize * scale) / scale;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + " (tick " + tickSize + ", lot " + lotSize + ", " + status + ")";
+    }
+}
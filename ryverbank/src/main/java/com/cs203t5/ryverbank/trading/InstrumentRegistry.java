@@ -0,0 +1,163 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the instruments listed on the exchange: which symbols are quoted,
+ * traded and opened, and the tick and lot size their orders must keep to.
+ *
+ * The instruments are persisted in the instrument repository. An empty
+ * repository is seeded at startup from a CSV resource with a line of
+ * symbol,tick_size,lot_size,status per instrument, so a listing is added by a
+ * line in the seed or a row in the repository rather than a code change.
+ * Lookups are served from an immutable copy of the repository that is replaced
+ * whenever an instrument is saved.
+ */
+@Component
+public class InstrumentRegistry {
+    /** The header line of the seed. */
+    private static final String SEED_HEADER = "symbol,tick_size,lot_size,status";
+
+    /** The instrument repository. */
+    private InstrumentRepository instrumentRepository;
+    /** The instruments to list when the repository is empty. */
+    private Resource seed;
+    /** The instruments and the symbols that trade, as of the last load. */
+    private volatile Listing listing = new Listing(List.of());
+
+    /**
+     * Constructs an InstrumentRegistry with the following parameters.
+     *
+     * @param instrumentRepository The instrument repository.
+     * @param seed                 The instruments to list when the repository is
+     *                             empty.
+     */
+    public InstrumentRegistry(InstrumentRepository instrumentRepository,
+            @Value("${ryverbank.instruments.seed:classpath:instruments.csv}") Resource seed) {
+        this.instrumentRepository = instrumentRepository;
+        this.seed = seed;
+    }
+
+    /**
+     * Loads the instruments, seeding the repository first if it is empty.
+     */
+    @PostConstruct
+    public synchronized void load() {
+        if (instrumentRepository.count() == 0 && seed.exists()) {
+            try (InputStream in = seed.getInputStream()) {
+                instrumentRepository.saveAll(read(in));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read the instruments in " + seed, e);
+            }
+        }
+        listing = new Listing(instrumentRepository.findAll());
+    }
+
+    /**
+     * Lists an instrument, or changes the tick size, lot size or status of one
+     * that is listed.
+     *
+     * @param instrument The instrument.
+     * @return The instrument saved.
+     */
+    public synchronized Instrument save(Instrument instrument) {
+        Instrument saved = instrumentRepository.save(instrument);
+        listing = new Listing(instrumentRepository.findAll());
+        return saved;
+    }
+
+    /**
+     * Finds the instrument of a symbol.
+     *
+     * @param symbol The stock symbol.
+     * @return The instrument, if the symbol is listed.
+     */
+    public Optional<Instrument> find(String symbol) {
+        return Optional.ofNullable(listing.instruments.get(symbol));
+    }
+
+    /**
+     * Returns every listed instrument, whatever its status.
+     *
+     * @return The instruments, by symbol.
+     */
+    public Collection<Instrument> getInstruments() {
+        return listing.instruments.values();
+    }
+
+    /**
+     * Returns the symbols of the instruments that can be traded, which are the
+     * symbols the market jobs quote, open and close.
+     *
+     * @return The symbols, in alphabetical order.
+     */
+    public List<String> getTradingSymbols() {
+        return listing.tradingSymbols;
+    }
+
+    /**
+     * Reads instruments in the seed format.
+     *
+     * @param in The seed.
+     * @return The instruments, in the order they are listed.
+     * @throws IOException If the seed cannot be read or is malformed.
+     */
+    static List<Instrument> read(InputStream in) throws IOException {
+        List<Instrument> instruments = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || (lineNumber == 1 && line.equalsIgnoreCase(SEED_HEADER))) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 4) {
+                throw new IOException("line " + lineNumber + ": expected " + SEED_HEADER);
+            }
+            try {
+                double tickSize = Double.parseDouble(fields[1].trim());
+                int lotSize = Integer.parseInt(fields[2].trim());
+                if (tickSize <= 0.0 || lotSize <= 0) {
+                    throw new IOException("line " + lineNumber + ": tick and lot size must be positive");
+                }
+                instruments.add(new Instrument(fields[0].trim(), tickSize, lotSize, fields[3].trim()));
+            } catch (NumberFormatException e) {
+                throw new IOException("line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return instruments;
+    }
+
+    /**
+     * The instruments as of one load, and the symbols of those that trade.
+     */
+    private static class Listing {
+        private final Map<String, Instrument> instruments;
+        private final List<String> tradingSymbols;
+
+        Listing(List<Instrument> loaded) {
+            Map<String, Instrument> bySymbol = new TreeMap<>();
+            for (Instrument instrument : loaded) {
+                bySymbol.put(instrument.getSymbol(), instrument);
+            }
+            List<String> symbols = new ArrayList<>();
+            for (Instrument instrument : bySymbol.values()) {
+                if (instrument.isTrading()) {
+                    symbols.add(instrument.getSymbol());
+                }
+            }
+            this.instruments = Collections.unmodifiableMap(bySymbol);
+            this.tradingSymbols = Collections.unmodifiableList(symbols);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.cs203t5.ryverbank.trading;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * An InstrumentRepository that provides the mechanism for storage and
+ * retrieval of the instruments listed on the exchange.
+ */
+@Repository
+public interface InstrumentRepository extends JpaRepository<Instrument, String> {
+}
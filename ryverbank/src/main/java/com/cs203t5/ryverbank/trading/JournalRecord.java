@@ -0,0 +1,230 @@
+package com.cs203t5.ryverbank.trading;
+
+import com.cs203t5.ryverbank.Money;
+
+/**
+ * A record of the order journal. Depending on its type, a record carries an
+ * accepted order, a fill between a buy and a sell trade, the new price and
+ * quantity of an amended order, or the cancellation or expiry of a trade.
+ *
+ * @see OrderJournal
+ */
+public final class JournalRecord {
+    /**
+     * The kinds of records. The code is the byte written to the journal and must
+     * never change.
+     */
+    public enum Type {
+        ORDER(1), CANCEL(2), FILL(3), EXPIRE(4), AMEND(5);
+
+        /** The code written to the journal. */
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        /**
+         * Finds the type written with the specified code.
+         *
+         * @param code The code read from the journal.
+         * @return The type, or null if the code is unknown.
+         */
+        public static Type of(byte code) {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** The type of the record. */
+    private final Type type;
+    /** The sequence number, assigned when the record is appended. */
+    private final long sequence;
+    /** The time the record was appended, in epoch milliseconds. */
+    private final long timestamp;
+    /** The trade id; the buy trade id of a fill. */
+    private final long tradeId;
+    /** The sell trade id of a fill. */
+    private final long contraTradeId;
+    /** The customer id of an order. */
+    private final long customerId;
+    /** The account id of an order. */
+    private final long accountId;
+    /** The submission date of an order or an amendment, in epoch seconds. */
+    private final long date;
+    /** The action of an order, "buy" or "sell". */
+    private final String action;
+    /** The symbol of an order. */
+    private final String symbol;
+    /** The bid or ask of an order or an amendment, the price of a fill, in cents. */
+    private final long priceCents;
+    /** The quantity of an order, an amendment or a fill. */
+    private final int quantity;
+    /** The price the money of a buy order is held at, in cents. */
+    private final long tradedPriceCents;
+
+    private JournalRecord(Type type, long sequence, long timestamp, long tradeId, long contraTradeId,
+            long customerId, long accountId, long date, String action, String symbol, long priceCents, int quantity,
+            long tradedPriceCents) {
+        this.type = type;
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.tradeId = tradeId;
+        this.contraTradeId = contraTradeId;
+        this.customerId = customerId;
+        this.accountId = accountId;
+        this.date = date;
+        this.action = action;
+        this.symbol = symbol;
+        this.priceCents = priceCents;
+        this.quantity = quantity;
+        this.tradedPriceCents = tradedPriceCents;
+    }
+
+    /**
+     * Creates the record of an accepted order.
+     *
+     * @param trade    The trade that was accepted.
+     * @param quantity The quantity of the trade when it was submitted.
+     * @return The order record.
+     */
+    public static JournalRecord order(Trade trade, int quantity) {
+        long priceCents = "buy".equals(trade.getAction()) ? trade.getBidCents() : trade.getAskCents();
+        return new JournalRecord(Type.ORDER, 0, 0, idOf(trade.getId()), 0, idOf(trade.getCustomerId()),
+                idOf(trade.getAccountId()), idOf(trade.getDate()), trade.getAction(), trade.getSymbol(), priceCents,
+                quantity, trade.getTradedPriceCents());
+    }
+
+    /**
+     * Creates the record of a fill.
+     *
+     * @param buyTradeId  The buy side of the fill.
+     * @param sellTradeId The sell side of the fill.
+     * @param priceCents  The price of the fill, in cents.
+     * @param quantity    The quantity of the fill.
+     * @return The fill record.
+     */
+    public static JournalRecord fill(Long buyTradeId, Long sellTradeId, long priceCents, int quantity) {
+        return new JournalRecord(Type.FILL, 0, 0, idOf(buyTradeId), idOf(sellTradeId), 0, 0, 0, null, null,
+                priceCents, quantity, 0);
+    }
+
+    /**
+     * Creates the record of an order that was amended in place. The order keeps
+     * its id and fills; its price, remaining quantity and date are replaced.
+     *
+     * @param trade The trade as amended.
+     * @return The amend record.
+     */
+    public static JournalRecord amend(Trade trade) {
+        long priceCents = "buy".equals(trade.getAction()) ? trade.getBidCents() : trade.getAskCents();
+        return new JournalRecord(Type.AMEND, 0, 0, idOf(trade.getId()), 0, 0, 0, idOf(trade.getDate()), null, null,
+                priceCents, trade.getQuantity(), 0);
+    }
+
+    /**
+     * Creates the record of a cancelled trade.
+     *
+     * @param tradeId The trade id.
+     * @return The cancel record.
+     */
+    public static JournalRecord cancel(Long tradeId) {
+        return new JournalRecord(Type.CANCEL, 0, 0, idOf(tradeId), 0, 0, 0, 0, null, null, 0, 0, 0);
+    }
+
+    /**
+     * Creates the record of an expired trade.
+     *
+     * @param tradeId The trade id.
+     * @return The expire record.
+     */
+    public static JournalRecord expire(Long tradeId) {
+        return new JournalRecord(Type.EXPIRE, 0, 0, idOf(tradeId), 0, 0, 0, 0, null, null, 0, 0, 0);
+    }
+
+    /**
+     * Returns a copy of this record stamped with its sequence number and time.
+     */
+    JournalRecord sequenced(long sequence, long timestamp) {
+        return new JournalRecord(type, sequence, timestamp, tradeId, contraTradeId, customerId, accountId, date,
+                action, symbol, priceCents, quantity, tradedPriceCents);
+    }
+
+    /**
+     * Creates a record as it was read back from the journal.
+     */
+    static JournalRecord read(Type type, long sequence, long timestamp, long tradeId, long contraTradeId,
+            long customerId, long accountId, long date, String action, String symbol, long priceCents, int quantity,
+            long tradedPriceCents) {
+        return new JournalRecord(type, sequence, timestamp, tradeId, contraTradeId, customerId, accountId, date,
+                action, symbol, priceCents, quantity, tradedPriceCents);
+    }
+
+    private static long idOf(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getTradeId() {
+        return tradeId;
+    }
+
+    public long getContraTradeId() {
+        return contraTradeId;
+    }
+
+    public long getCustomerId() {
+        return customerId;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public double getPrice() {
+        return Money.dollars(priceCents);
+    }
+
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public long getTradedPriceCents() {
+        return tradedPriceCents;
+    }
+}
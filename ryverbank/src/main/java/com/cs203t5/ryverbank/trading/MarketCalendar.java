@@ -0,0 +1,149 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.time.*;
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The trading sessions of the exchange: weekdays that are not holidays, from
+ * the open to the close in the time zone of the exchange.
+ *
+ * The open and close of the current day are worked out once, as epoch
+ * milliseconds, so that asking whether the market is open is two comparisons of
+ * the time. The first call after midnight works out the next day.
+ */
+@Component
+public class MarketCalendar {
+    /** The time zone of the exchange. */
+    private final ZoneId zone;
+    /** The time the market opens. */
+    private final LocalTime open;
+    /** The time the market closes. */
+    private final LocalTime close;
+    /** The weekdays the market stays closed. */
+    private final Set<LocalDate> holidays;
+    /** The clock that tells the time now. */
+    private final Clock clock;
+    /** The session of the current day. */
+    private volatile Session session;
+
+    /**
+     * Constructs a MarketCalendar with the following parameters.
+     *
+     * @param zone     The time zone of the exchange.
+     * @param open     The time the market opens, e.g. 09:00.
+     * @param close    The time the market closes, e.g. 17:00.
+     * @param holidays The weekdays the market stays closed, as yyyy-mm-dd.
+     */
+    @Autowired
+    public MarketCalendar(@Value("${ryverbank.market.zone:GMT+8}") String zone,
+            @Value("${ryverbank.market.open:09:00}") String open,
+            @Value("${ryverbank.market.close:17:00}") String close,
+            @Value("${ryverbank.market.holidays:}") String[] holidays) {
+        this(ZoneId.of(zone), LocalTime.parse(open), LocalTime.parse(close), parseDates(holidays),
+                Clock.systemUTC());
+    }
+
+    MarketCalendar(ZoneId zone, LocalTime open, LocalTime close, Collection<LocalDate> holidays, Clock clock) {
+        this.zone = zone;
+        this.open = open;
+        this.close = close;
+        this.holidays = Set.copyOf(holidays);
+        this.clock = clock;
+        this.session = sessionOf(clock.millis());
+    }
+
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    private static List<LocalDate> parseDates(String[] dates) {
+        List<LocalDate> parsed = new ArrayList<>();
+        for (String date : dates) {
+            if (!date.isBlank()) {
+                parsed.add(LocalDate.parse(date.trim()));
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Checks whether the market is open now.
+     *
+     * @return True if incoming trades can be matched now.
+     */
+    public boolean isOpen() {
+        return isOpen(clock.millis());
+    }
+
+    /**
+     * Checks whether the market is open at the specified time.
+     *
+     * @param now The time, in epoch milliseconds.
+     * @return True if the time is within a trading session.
+     */
+    public boolean isOpen(long now) {
+        Session current = session;
+        if (now >= current.end || now < current.start) {
+            current = sessionOf(now);
+            session = current;
+        }
+        return now >= current.open && now < current.close;
+    }
+
+    /**
+     * Checks whether the market opens today.
+     *
+     * @return True if today is a trading day.
+     */
+    public boolean isTradingDay() {
+        return isTradingDay(LocalDate.now(clock.withZone(zone)));
+    }
+
+    /**
+     * Checks whether the market opens on the specified day.
+     *
+     * @param date The day, in the time zone of the exchange.
+     * @return True if the day is a weekday and not a holiday.
+     */
+    public boolean isTradingDay(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY && !holidays.contains(date);
+    }
+
+    private Session sessionOf(long now) {
+        LocalDate date = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        long start = epochMilli(date.atStartOfDay(zone));
+        long end = epochMilli(date.plusDays(1).atStartOfDay(zone));
+        if (!isTradingDay(date)) {
+            // an empty session, so that no time of the day is within it
+            return new Session(start, end, start, start);
+        }
+        return new Session(start, end, epochMilli(date.atTime(open).atZone(zone)),
+                epochMilli(date.atTime(close).atZone(zone)));
+    }
+
+    private static long epochMilli(ZonedDateTime time) {
+        return time.toInstant().toEpochMilli();
+    }
+
+    /**
+     * The bounds of one day and of its trading session, in epoch milliseconds.
+     */
+    private static final class Session {
+        private final long start;
+        private final long end;
+        private final long open;
+        private final long close;
+
+        Session(long start, long end, long open, long close) {
+            this.start = start;
+            this.end = end;
+            this.open = open;
+            this.close = close;
+        }
+    }
+}
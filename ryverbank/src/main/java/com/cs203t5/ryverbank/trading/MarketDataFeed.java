@@ -0,0 +1,21 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A source of stock quotes for the crawler and the market maker. The feed in
+ * use is chosen with the ryverbank.feed.type property: yahoo (the default),
+ * replay or random.
+ */
+public interface MarketDataFeed {
+
+    /**
+     * Fetches the current quotes of the specified symbols. A symbol that cannot
+     * be quoted is left out of the result; it never fails the other symbols.
+     *
+     * @param symbols The stock symbols.
+     * @return The quote of each symbol that could be quoted, by symbol.
+     */
+    Map<String, MarketQuote> fetch(Collection<String> symbols);
+}
@@ -0,0 +1,130 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * An immutable view of the aggregated quantity at each price level of an order
+ * book, best level first on both sides.
+ *
+ * The book publishes a new depth after every change, so readers get a
+ * consistent picture of both sides without locking the book. Market orders do
+ * not have a price and are not part of the depth.
+ */
+public final class MarketDepth {
+    /** The stock symbol. */
+    private final String symbol;
+    /** The time the depth was published, in epoch milliseconds. */
+    private final long timestamp;
+    /** The buy side, highest bid first. */
+    private final List<Level> bids;
+    /** The sell side, lowest ask first. */
+    private final List<Level> asks;
+
+    private MarketDepth(String symbol, long timestamp, List<Level> bids, List<Level> asks) {
+        this.symbol = symbol;
+        this.timestamp = timestamp;
+        this.bids = bids;
+        this.asks = asks;
+    }
+
+    /**
+     * Returns the depth of a book that has no orders.
+     *
+     * @param symbol The stock symbol.
+     * @return The empty depth.
+     */
+    public static MarketDepth empty(String symbol) {
+        return new MarketDepth(symbol, System.currentTimeMillis(), Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Copies the best price levels of both sides of a book.
+     *
+     * @param symbol    The stock symbol.
+     * @param bidLevels The bid levels, best first.
+     * @param askLevels The ask levels, best first.
+     * @param maxLevels The number of levels to copy from each side.
+     * @return The depth.
+     */
+    public static MarketDepth of(String symbol, Collection<OrderBook.PriceLevel> bidLevels,
+            Collection<OrderBook.PriceLevel> askLevels, int maxLevels) {
+        return new MarketDepth(symbol, System.currentTimeMillis(), copy(bidLevels, maxLevels),
+                copy(askLevels, maxLevels));
+    }
+
+    private static List<Level> copy(Collection<OrderBook.PriceLevel> priceLevels, int maxLevels) {
+        List<Level> levels = new ArrayList<>(Math.min(priceLevels.size(), maxLevels));
+        for (OrderBook.PriceLevel priceLevel : priceLevels) {
+            if (levels.size() == maxLevels) {
+                break;
+            }
+            if (priceLevel.getPrice() != 0.0 && priceLevel.getQuantity() > 0) {
+                levels.add(new Level(priceLevel.getPrice(), priceLevel.getQuantity(), priceLevel.getOrderCount()));
+            }
+        }
+        return Collections.unmodifiableList(levels);
+    }
+
+    /**
+     * Returns the best levels of this depth.
+     *
+     * @param maxLevels The number of levels to keep on each side.
+     * @return A depth with at most the specified number of levels per side.
+     */
+    public MarketDepth limit(int maxLevels) {
+        if (bids.size() <= maxLevels && asks.size() <= maxLevels) {
+            return this;
+        }
+        return new MarketDepth(symbol, timestamp, bids.subList(0, Math.min(maxLevels, bids.size())),
+                asks.subList(0, Math.min(maxLevels, asks.size())));
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public List<Level> getBids() {
+        return bids;
+    }
+
+    public List<Level> getAsks() {
+        return asks;
+    }
+
+    /**
+     * The aggregated quantity at one price.
+     */
+    public static final class Level {
+        /** The price of the level. */
+        private final double price;
+        /** The total remaining quantity at this price. */
+        private final long quantity;
+        /** The number of orders resting at this price. */
+        private final int orderCount;
+
+        Level(double price, long quantity, int orderCount) {
+            this.price = price;
+            this.quantity = quantity;
+            this.orderCount = orderCount;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        @JsonProperty("orders")
+        public int getOrderCount() {
+            return orderCount;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps one resting bid and one resting ask of the market maker account in the
+ * book of every trading symbol while the market is open.
+ *
+ * Each symbol has its own refresh schedule, spread over the refresh interval so
+ * that the symbols are not all quoted at the same moment. When a symbol is due,
+ * its quote is fetched from the market data feed and the market maker's two
+ * orders are amended in place: same trade row, new price and full size. Nothing
+ * is written while the feed has not moved and neither order has been traded
+ * against, so the trade table holds two rows per symbol however often the
+ * market maker quotes. The quotes never cross the customer orders resting in
+ * the book.
+ */
+@Component
+public class MarketMaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarketMaker.class);
+
+    /** The source of the stock quotes. */
+    private MarketDataFeed marketData;
+    /** The instruments listed on the exchange. */
+    private InstrumentRegistry instruments;
+    /** The quotes of the stocks. */
+    private QuoteCache quoteCache;
+    /** The trade repository. */
+    private TradeRepository tradeRepository;
+    /** The resident order books. */
+    private OrderBookManager orderBooks;
+    /** The match cycles of the order books. */
+    private MatchingCycle cycle;
+    /** The order journal. */
+    private OrderJournal journal;
+    /** The time between two quotes of a symbol, in milliseconds. */
+    private final long interval;
+    /** The number of lots quoted on each side. */
+    private final int lots;
+    /** The orders and refresh schedule of each symbol quoted since the open. */
+    private final Map<String, Quotes> quotes = new ConcurrentHashMap<>();
+    /** Whether the market is open for quoting. */
+    private volatile boolean active;
+
+    /**
+     * Constructs a MarketMaker with the following parameters.
+     *
+     * @param marketData      The source of the stock quotes.
+     * @param instruments     The instruments listed on the exchange.
+     * @param quoteCache      The quotes of the stocks.
+     * @param tradeRepository The trade repository.
+     * @param orderBooks      The resident order books.
+     * @param cycle           The match cycles of the order books.
+     * @param journal         The order journal.
+     * @param interval        The time between two quotes of a symbol, in
+     *                        milliseconds.
+     * @param lots            The number of lots quoted on each side.
+     */
+    public MarketMaker(MarketDataFeed marketData, InstrumentRegistry instruments, QuoteCache quoteCache,
+            TradeRepository tradeRepository, OrderBookManager orderBooks, MatchingCycle cycle, OrderJournal journal,
+            @Value("${ryverbank.market-maker.interval:60000}") long interval,
+            @Value("${ryverbank.market-maker.lots:200}") int lots) {
+        this.marketData = marketData;
+        this.instruments = instruments;
+        this.quoteCache = quoteCache;
+        this.tradeRepository = tradeRepository;
+        this.orderBooks = orderBooks;
+        this.cycle = cycle;
+        this.journal = journal;
+        this.interval = Math.max(interval, 1L);
+        this.lots = Math.max(lots, 1);
+    }
+
+    /**
+     * Starts refreshing the quotes of every trading symbol on its schedule.
+     */
+    public void start() {
+        active = true;
+    }
+
+    /**
+     * Stops refreshing the quotes, e.g. when the market closes and the market
+     * maker's orders expire.
+     */
+    public void stop() {
+        active = false;
+        quotes.clear();
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Quotes the trading symbols whose refresh is due.
+     */
+    @Scheduled(initialDelayString = "${ryverbank.market-maker.poll:1000}",
+            fixedDelayString = "${ryverbank.market-maker.poll:1000}")
+    public void refresh() {
+        if (!active) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> due = new ArrayList<>();
+        for (String symbol : instruments.getTradingSymbols()) {
+            Quotes symbolQuotes = quotes.get(symbol);
+            if (symbolQuotes == null || symbolQuotes.due <= now) {
+                due.add(symbol);
+            }
+        }
+        if (!due.isEmpty()) {
+            quote(due);
+        }
+    }
+
+    /**
+     * Quotes the specified symbols now, placing the market maker's bid and ask
+     * if it has none in the book and amending them otherwise. A symbol the feed
+     * cannot quote keeps its orders as they are.
+     *
+     * @param symbols The stock symbols.
+     */
+    public void quote(List<String> symbols) {
+        Map<String, MarketQuote> feed = marketData.fetch(symbols);
+        long now = System.currentTimeMillis();
+        for (String symbol : symbols) {
+            Quotes symbolQuotes = quotes.computeIfAbsent(symbol, key -> new Quotes());
+            // the first refresh lands somewhere in the interval, which spreads the symbols over it
+            symbolQuotes.due = now + interval + (symbolQuotes.due == 0 ? Math.floorMod(symbol.hashCode(), interval) : 0);
+
+            MarketQuote quote = feed.get(symbol);
+            Instrument instrument = instruments.find(symbol).orElse(null);
+            if (quote == null || instrument == null) {
+                continue;
+            }
+            try {
+                cycle.run(symbol, () -> requote(symbol, instrument, quote, symbolQuotes));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not quote {}", symbol, e);
+            }
+        }
+    }
+
+    /**
+     * Brings the market maker's orders of one symbol in line with its quote. Runs
+     * on the thread that owns the symbol.
+     */
+    private void requote(String symbol, Instrument instrument, MarketQuote quote, Quotes symbolQuotes) {
+        OrderBook book = orderBooks.getBook(symbol);
+        int size = lots * instrument.getLotSize();
+        double tick = instrument.getTickSize();
+        // The quotes of the feed need not be on the ticks of the exchange
+        double bid = instrument.floorToTick(quote.getBid());
+        double ask = instrument.ceilToTick(quote.getAsk());
+
+        // Stay behind the customers' best prices rather than cross them
+        Trade bestAsk = bestCustomerOrder(book.getAskLevels());
+        if (bestAsk != null && bid >= bestAsk.getAsk()) {
+            bid = instrument.floorToTick(bestAsk.getAsk() - tick);
+        }
+        Trade bestBid = bestCustomerOrder(book.getBidLevels());
+        if (bestBid != null && ask <= bestBid.getBid()) {
+            ask = instrument.ceilToTick(bestBid.getBid() + tick);
+        }
+        if (bid <= 0.0 || ask <= bid) {
+            return;
+        }
+
+        long date = Instant.now().getEpochSecond();
+        Trade buyTrade = ownOrder(book, symbolQuotes.bidId, book.getBidLevels());
+        Trade sellTrade = ownOrder(book, symbolQuotes.askId, book.getAskLevels());
+        boolean changed = buyTrade == null || buyTrade.getBid() != bid || buyTrade.getQuantity() != size
+                || sellTrade == null || sellTrade.getAsk() != ask || sellTrade.getQuantity() != size;
+        if (!changed) {
+            return;
+        }
+        buyTrade = place(book, buyTrade, "buy", bid, size, date);
+        sellTrade = place(book, sellTrade, "sell", ask, size, date);
+        symbolQuotes.bidId = buyTrade.getId();
+        symbolQuotes.askId = sellTrade.getId();
+
+        CustomStock cachedStock = quoteCache.get(symbol);
+        if (cachedStock != null) {
+            CustomStock customStock = cachedStock.copy();
+            customStock.setBid(bid);
+            customStock.setAsk(ask);
+            customStock.setBidVolume(size);
+            customStock.setAskVolume(size);
+            quoteCache.update(customStock);
+        }
+    }
+
+    /**
+     * Places a new order of the market maker, or amends the one it has resting.
+     *
+     * @return The order resting in the book.
+     */
+    private Trade place(OrderBook book, Trade resting, String action, double price, int size, long date) {
+        boolean buy = "buy".equals(action);
+        if (resting != null) {
+            double current = buy ? resting.getBid() : resting.getAsk();
+            if (current == price && resting.getQuantity() == size) {
+                return resting;
+            }
+            book.amend(resting, price, size);
+            resting.setDate(date);
+            tradeRepository.save(resting);
+            journal.amend(resting);
+            return resting;
+        }
+        Trade trade = new Trade(action, book.getSymbol(), size, buy ? price : 0.0, buy ? 0.0 : price, 0.0, 0, date,
+                StockCrawler.MARKET_MAKER_ACCOUNT_ID, StockCrawler.MARKET_MAKER_CUSTOMER_ID, "open", 0.0);
+        Trade savedTrade = tradeRepository.save(trade);
+        book.add(savedTrade);
+        journal.order(savedTrade, size);
+        return savedTrade;
+    }
+
+    /**
+     * Finds the order of the market maker on one side of the book: the one it
+     * placed last, or after a restart, the first one it has resting.
+     */
+    private static Trade ownOrder(OrderBook book, Long tradeId, Collection<OrderBook.PriceLevel> levels) {
+        if (tradeId != null) {
+            Trade trade = book.getOrder(tradeId);
+            if (trade != null) {
+                return trade;
+            }
+        }
+        for (OrderBook.PriceLevel level : levels) {
+            for (Trade trade : level.getOrders()) {
+                if (StockCrawler.MARKET_MAKER_ACCOUNT_ID.equals(trade.getAccountId())) {
+                    return trade;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the best priced customer limit order on one side of the book.
+     */
+    private static Trade bestCustomerOrder(Collection<OrderBook.PriceLevel> levels) {
+        for (OrderBook.PriceLevel level : levels) {
+            if (level.getPrice() <= 0.0) {
+                // market orders rest at a price of 0
+                continue;
+            }
+            for (Trade trade : level.getOrders()) {
+                if (!StockCrawler.MARKET_MAKER_ACCOUNT_ID.equals(trade.getAccountId())) {
+                    return trade;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The market maker's orders of one symbol and when they are next refreshed.
+     */
+    private static class Quotes {
+        private volatile Long bidId;
+        private volatile Long askId;
+        private volatile long due;
+    }
+}
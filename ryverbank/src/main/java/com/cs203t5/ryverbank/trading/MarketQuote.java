@@ -0,0 +1,51 @@
+package com.cs203t5.ryverbank.trading;
+
+/**
+ * A quote of a stock as reported by a {@link MarketDataFeed}.
+ */
+public final class MarketQuote {
+    /** The stock symbol. */
+    private final String symbol;
+    /** The last traded price. */
+    private final double price;
+    /** The best bid price. */
+    private final double bid;
+    /** The best ask price. */
+    private final double ask;
+
+    /**
+     * Constructs a MarketQuote with the following parameters.
+     *
+     * @param symbol The stock symbol.
+     * @param price  The last traded price.
+     * @param bid    The best bid price.
+     * @param ask    The best ask price.
+     */
+    public MarketQuote(String symbol, double price, double bid, double ask) {
+        this.symbol = symbol;
+        this.price = price;
+        this.bid = bid;
+        this.ask = ask;
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getBid() {
+        return bid;
+    }
+
+    public double getAsk() {
+        return ask;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + " " + price + " (" + bid + " / " + ask + ")";
+    }
+}
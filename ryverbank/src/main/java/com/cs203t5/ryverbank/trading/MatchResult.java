@@ -0,0 +1,92 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+
+/**
+ * The outcome of sweeping the order book with an incoming trade: every
+ * execution in the order it happened and every resting trade that was touched.
+ * Nothing in here has been written to the repositories yet.
+ */
+public class MatchResult {
+    /** The executions, oldest first. */
+    private final List<Execution> executions = new ArrayList<>();
+    /** The resting trades that were matched, in the order they were first matched. */
+    private final List<Trade> matchedTrades = new ArrayList<>();
+    /** Identity view of matchedTrades (trades are mutable, so equals cannot be used). */
+    private final Set<Trade> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Records an execution against the specified resting trade.
+     *
+     * @param execution    The execution.
+     * @param restingTrade The resting trade that was matched.
+     */
+    public void record(Execution execution, Trade restingTrade) {
+        executions.add(execution);
+        if (matched.add(restingTrade)) {
+            matchedTrades.add(restingTrade);
+        }
+    }
+
+    /**
+     * Records an execution between two resting trades, as in an auction. Both
+     * sides count as matched.
+     *
+     * @param execution The execution.
+     */
+    public void record(Execution execution) {
+        executions.add(execution);
+        for (Trade trade : Arrays.asList(execution.getBuyTrade(), execution.getSellTrade())) {
+            if (matched.add(trade)) {
+                matchedTrades.add(trade);
+            }
+        }
+    }
+
+    public List<Execution> getExecutions() {
+        return Collections.unmodifiableList(executions);
+    }
+
+    public List<Trade> getMatchedTrades() {
+        return Collections.unmodifiableList(matchedTrades);
+    }
+
+    public boolean isEmpty() {
+        return executions.isEmpty();
+    }
+
+    /**
+     * Returns the number of shares traded over all executions.
+     *
+     * @return The total quantity.
+     */
+    public int getQuantity() {
+        int quantity = 0;
+        for (Execution execution : executions) {
+            quantity += execution.getQuantity();
+        }
+        return quantity;
+    }
+
+    /**
+     * Returns the money that changed hands over all executions.
+     *
+     * @return The total amount, in cents.
+     */
+    public long getAmount() {
+        long amount = 0;
+        for (Execution execution : executions) {
+            amount += execution.getAmount();
+        }
+        return amount;
+    }
+
+    /**
+     * Returns the price of the last execution, or 0.0 if nothing was traded.
+     *
+     * @return The last traded price.
+     */
+    public double getLastPrice() {
+        return executions.isEmpty() ? 0.0 : executions.get(executions.size() - 1).getPrice();
+    }
+}
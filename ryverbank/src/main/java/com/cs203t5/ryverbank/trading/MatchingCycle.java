@@ -0,0 +1,120 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs one match cycle of a symbol: the work is sequenced on the thread that
+ * owns the symbol and everything it writes goes to the database in a single
+ * transaction.
+ *
+ * Inside the transaction, saves only queue up in the persistence context;
+ * with sequence ids and JDBC batching, the trades, accounts, transactions and
+ * assets of the whole cycle are flushed as a handful of batched statements at
+ * commit. The journal records and the tape prints of the cycle are held back
+ * until the commit has succeeded, and the depth of the books the cycle touched
+ * is published after it. If the cycle fails, those books are reloaded from the trade repository,
+ * since the trades in memory may have been changed by work that was rolled
+ * back.
+ */
+@Component
+public class MatchingCycle {
+    /** The single-writer sequencer of the order books. */
+    private MatchingSequencer sequencer;
+    /** The transaction of a cycle. */
+    private TransactionTemplate transactionTemplate;
+    /** The order journal. */
+    private OrderJournal journal;
+    /** The time and sales of the stocks. */
+    private TradeTape tradeTape;
+    /** The resident order books. */
+    private OrderBookManager orderBooks;
+    /** The trade repository. */
+    private TradeRepository tradeRepository;
+    /** The symbols of the cycle running on the current thread, including joined cycles. */
+    private final ThreadLocal<Set<String>> cycleSymbols = new ThreadLocal<>();
+
+    /**
+     * Constructs a MatchingCycle with the following parameters.
+     *
+     * @param sequencer          The single-writer sequencer of the order books.
+     * @param transactionManager The transaction manager.
+     * @param journal            The order journal.
+     * @param tradeTape          The time and sales of the stocks.
+     * @param orderBooks         The resident order books.
+     * @param tradeRepository    The trade repository.
+     */
+    public MatchingCycle(MatchingSequencer sequencer, PlatformTransactionManager transactionManager,
+            OrderJournal journal, TradeTape tradeTape, OrderBookManager orderBooks,
+            TradeRepository tradeRepository) {
+        this.sequencer = sequencer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.journal = journal;
+        this.tradeTape = tradeTape;
+        this.orderBooks = orderBooks;
+        this.tradeRepository = tradeRepository;
+    }
+
+    /**
+     * Runs the work as one match cycle of the specified symbol and waits for it.
+     * A cycle started from within a cycle of the same stripe joins it.
+     *
+     * @param <T>    The type of the result.
+     * @param symbol The stock symbol.
+     * @param work   The work of the cycle.
+     * @return The result of the work.
+     */
+    public <T> T execute(String symbol, Supplier<T> work) {
+        return sequencer.execute(symbol, () -> {
+            if (!journal.begin()) {
+                // joined an enclosing cycle, which owns the transaction, the batch and the books
+                Set<String> symbols = cycleSymbols.get();
+                if (symbols != null) {
+                    symbols.add(symbol);
+                }
+                return work.get();
+            }
+            Set<String> symbols = new LinkedHashSet<>();
+            symbols.add(symbol);
+            cycleSymbols.set(symbols);
+            tradeTape.begin();
+            try {
+                T result = transactionTemplate.execute(status -> work.get());
+                journal.commit();
+                tradeTape.publish();
+                for (String cycleSymbol : symbols) {
+                    orderBooks.getBook(cycleSymbol).publishDepth();
+                }
+                return result;
+            } catch (RuntimeException | Error e) {
+                journal.discard();
+                tradeTape.discard();
+                for (String cycleSymbol : symbols) {
+                    orderBooks.rebuild(cycleSymbol, tradeRepository.findAllBySymbol(cycleSymbol));
+                }
+                throw e;
+            } finally {
+                cycleSymbols.remove();
+            }
+        });
+    }
+
+    /**
+     * Runs the work as one match cycle of the specified symbol and waits for it.
+     *
+     * @param symbol The stock symbol.
+     * @param work   The work of the cycle.
+     */
+    public void run(String symbol, Runnable work) {
+        execute(symbol, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+}
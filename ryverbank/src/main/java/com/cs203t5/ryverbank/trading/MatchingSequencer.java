@@ -0,0 +1,135 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-writer sequencer for the order books.
+ *
+ * Symbols are hashed onto a fixed number of stripes and every stripe is owned by
+ * one thread. All work that reads or changes the order book of a symbol (order
+ * submission, matching, cancellation, opening and closing of the market) is
+ * handed to the thread owning the symbol and applied in arrival order, so a book
+ * is only ever touched by one thread and needs no locking. Symbols on different
+ * stripes are matched in parallel.
+ *
+ * Callers block until their work has been applied. Work submitted from the
+ * owning thread itself (e.g. a match that re-enters the service) runs inline.
+ */
+@Component
+public class MatchingSequencer {
+    /** The thread-local stripe index of the current thread, null off the stripes. */
+    private static final ThreadLocal<Integer> CURRENT_STRIPE = new ThreadLocal<>();
+
+    /** The single-threaded executors, one per stripe. */
+    private final ExecutorService[] stripes;
+
+    /**
+     * Constructs a MatchingSequencer with the following parameter.
+     *
+     * @param stripeCount The number of stripes, defaults to the number of
+     *                    available processors when not positive.
+     */
+    public MatchingSequencer(@Value("${ryverbank.matching.stripes:0}") int stripeCount) {
+        if (stripeCount <= 0) {
+            stripeCount = Runtime.getRuntime().availableProcessors();
+        }
+        stripes = new ExecutorService[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            final int stripe = i;
+            stripes[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(() -> {
+                    CURRENT_STRIPE.set(stripe);
+                    runnable.run();
+                }, "matching-" + stripe);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Applies the work on the thread owning the specified symbol and waits for its
+     * result. Runtime exceptions thrown by the work are rethrown as they are.
+     *
+     * @param <T>    The type of the result.
+     * @param symbol The stock symbol the work belongs to.
+     * @param work   The work to apply.
+     * @return The result of the work.
+     */
+    public <T> T execute(String symbol, Supplier<T> work) {
+        int stripe = stripeOf(symbol);
+        Integer current = CURRENT_STRIPE.get();
+        if (current != null && current == stripe) {
+            return work.get();
+        }
+
+        Future<T> future = stripes[stripe].submit(work::get);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + symbol + " to be matched", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Applies the work on the thread owning the specified symbol and waits for it
+     * to complete.
+     *
+     * @param symbol The stock symbol the work belongs to.
+     * @param work   The work to apply.
+     */
+    public void run(String symbol, Runnable work) {
+        execute(symbol, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Returns the number of stripes.
+     *
+     * @return The number of stripes.
+     */
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    /**
+     * Finds the stripe owning the specified symbol.
+     *
+     * @param symbol The stock symbol.
+     * @return The stripe index.
+     */
+    int stripeOf(String symbol) {
+        return symbol == null ? 0 : Math.floorMod(symbol.hashCode(), stripes.length);
+    }
+
+    /**
+     * Stops the stripe threads once the pending work has been applied.
+     */
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+}
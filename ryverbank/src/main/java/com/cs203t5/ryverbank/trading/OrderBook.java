@@ -0,0 +1,407 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+
+/**
+ * Resident price-time-priority order book for a single stock symbol.
+ *
+ * Both sides are kept as sorted price levels, each level holding its orders in
+ * a FIFO queue. The best bid is the highest bid and the best ask is the lowest
+ * ask, so finding the best resting order is a lookup on the first level of a
+ * TreeMap instead of a scan of every trade the symbol has ever had.
+ *
+ * Market orders rest at a price of 0.0, the same price they are stored with in
+ * the trade repository.
+ *
+ * This class is not thread-safe, except for {@link #getDepth()}: the owner of
+ * the book publishes an immutable depth after changing it, which any thread
+ * can read.
+ */
+public class OrderBook {
+    /** The stock symbol of this book. */
+    private final String symbol;
+    /** The buy side, highest bid first. */
+    private final TreeMap<Double, PriceLevel> bids = new TreeMap<>(Comparator.reverseOrder());
+    /** The sell side, lowest ask first. */
+    private final TreeMap<Double, PriceLevel> asks = new TreeMap<>();
+    /** The resting orders, by trade id. */
+    private final Map<Long, Trade> ordersById = new HashMap<>();
+    /** The resting orders, by identity (trades are mutable and may not have an id yet). */
+    private final Set<Trade> resting = Collections.newSetFromMap(new IdentityHashMap<>());
+    /** The sequence number of the last execution of this symbol, -1 until it is known. */
+    private long executionSequence = -1;
+    /** Whether the book has changed since its depth was published. */
+    private boolean depthChanged;
+    /** The last published depth of the book. */
+    private volatile MarketDepth depth;
+
+    /** The number of price levels per side kept in the published depth. */
+    public static final int DEPTH_LEVELS = 100;
+
+    /**
+     * Constructs an empty order book for the specified symbol.
+     *
+     * @param symbol The stock symbol.
+     */
+    public OrderBook(String symbol) {
+        this.symbol = symbol;
+        this.depth = MarketDepth.empty(symbol);
+    }
+
+    /**
+     * A price level of the book. Orders are kept in arrival order and the total
+     * quantity of the level is maintained on every change.
+     */
+    public static class PriceLevel {
+        /** The price of this level. */
+        private final double price;
+        /** The orders resting at this price, oldest first. */
+        private final ArrayDeque<Trade> orders = new ArrayDeque<>();
+        /** The total remaining quantity at this price. */
+        private long quantity;
+
+        PriceLevel(double price) {
+            this.price = price;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        public long getQuantity() {
+            return quantity;
+        }
+
+        public int getOrderCount() {
+            return orders.size();
+        }
+
+        /**
+         * Returns the orders of this level, oldest first. The returned view must not
+         * be modified.
+         *
+         * @return The orders resting at this price.
+         */
+        public Collection<Trade> getOrders() {
+            return Collections.unmodifiableCollection(orders);
+        }
+    }
+
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Adds a live trade to the back of its price level. Adding a trade that is
+     * already resting in the book does nothing.
+     *
+     * @param trade The open or partial-filled trade to rest.
+     */
+    public void add(Trade trade) {
+        if (resting.contains(trade) || trade.getQuantity() <= 0) {
+            return;
+        }
+        TreeMap<Double, PriceLevel> side = sideOf(trade);
+        double price = priceOf(trade);
+        PriceLevel level = side.computeIfAbsent(price, PriceLevel::new);
+        level.orders.addLast(trade);
+        level.quantity += trade.getQuantity();
+        resting.add(trade);
+        depthChanged = true;
+        if (trade.getId() != null) {
+            ordersById.put(trade.getId(), trade);
+        }
+    }
+
+    /**
+     * Removes a trade from the book, e.g. when it is cancelled or expired.
+     *
+     * @param trade The trade to remove.
+     * @return True if the trade was resting in the book.
+     */
+    public boolean remove(Trade trade) {
+        if (!resting.remove(trade)) {
+            return false;
+        }
+        depthChanged = true;
+        if (trade.getId() != null) {
+            ordersById.remove(trade.getId());
+        }
+        TreeMap<Double, PriceLevel> side = sideOf(trade);
+        double price = priceOf(trade);
+        PriceLevel level = side.get(price);
+        if (level == null) {
+            return true;
+        }
+        Iterator<Trade> iterator = level.orders.iterator();
+        while (iterator.hasNext()) {
+            Trade order = iterator.next();
+            if (order == trade) {
+                iterator.remove();
+                level.quantity -= order.getQuantity();
+                break;
+            }
+        }
+        if (level.orders.isEmpty()) {
+            side.remove(price);
+        }
+        return true;
+    }
+
+    /**
+     * Changes the price and remaining quantity of a resting trade in place. The
+     * trade keeps its id and fills, and goes to the back of its new price level.
+     *
+     * @param trade    The resting trade.
+     * @param price    The new bid of a buy trade or ask of a sell trade.
+     * @param quantity The new remaining quantity.
+     * @return False if the trade is not resting in the book, in which case it is
+     *         left unchanged.
+     */
+    public boolean amend(Trade trade, double price, int quantity) {
+        if (!remove(trade)) {
+            return false;
+        }
+        if ("buy".equals(trade.getAction())) {
+            trade.setBid(price);
+        } else {
+            trade.setAsk(price);
+        }
+        trade.setQuantity(quantity);
+        add(trade);
+        return true;
+    }
+
+    /**
+     * Updates the book after a resting trade has been (partially) filled. The
+     * caller has already reduced the quantity of the trade; the trade leaves the
+     * book once nothing remains.
+     *
+     * @param trade          The resting trade that was matched.
+     * @param filledQuantity The quantity that was filled.
+     */
+    public void fill(Trade trade, int filledQuantity) {
+        if (!resting.contains(trade)) {
+            return;
+        }
+        PriceLevel level = sideOf(trade).get(priceOf(trade));
+        if (level != null) {
+            level.quantity -= filledQuantity;
+        }
+        depthChanged = true;
+        if (trade.getQuantity() <= 0) {
+            // the level quantity has already been reduced by the fill
+            resting.remove(trade);
+            if (trade.getId() != null) {
+                ordersById.remove(trade.getId());
+            }
+            if (level != null) {
+                level.orders.removeIf(order -> order == trade);
+                if (level.orders.isEmpty()) {
+                    sideOf(trade).remove(priceOf(trade));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the oldest buy trade at the highest bid, or null if there is none.
+     *
+     * @return The best resting buy trade.
+     */
+    public Trade bestBid() {
+        Map.Entry<Double, PriceLevel> entry = bids.firstEntry();
+        return entry == null ? null : entry.getValue().orders.peekFirst();
+    }
+
+    /**
+     * Returns the oldest sell trade at the lowest ask, or null if there is none.
+     *
+     * @return The best resting sell trade.
+     */
+    public Trade bestAsk() {
+        Map.Entry<Double, PriceLevel> entry = asks.firstEntry();
+        return entry == null ? null : entry.getValue().orders.peekFirst();
+    }
+
+    /**
+     * Returns the best resting sell trade whose ask is at or below the specified
+     * bid, or null if no sell trade crosses it.
+     *
+     * @param bid The limit bid price.
+     * @return The best crossing sell trade.
+     */
+    public Trade bestAskAtOrBelow(double bid) {
+        Trade best = bestAsk();
+        return best != null && best.getAsk() <= bid ? best : null;
+    }
+
+    /**
+     * Returns the best resting buy trade whose bid is at or above the specified
+     * ask, or null if no buy trade crosses it.
+     *
+     * @param ask The limit ask price.
+     * @return The best crossing buy trade.
+     */
+    public Trade bestBidAtOrAbove(double ask) {
+        Trade best = bestBid();
+        return best != null && best.getBid() >= ask ? best : null;
+    }
+
+    /**
+     * Returns the best resting buy trade whose bid is at or above the specified
+     * ask, passing over the specified trades, or null if no other buy trade
+     * crosses it.
+     *
+     * @param ask      The limit ask price, 0.0 for a market sell.
+     * @param excluded The buy trades to pass over.
+     * @return The best crossing buy trade that is not excluded.
+     */
+    public Trade bestBidAtOrAbove(double ask, Set<Trade> excluded) {
+        for (PriceLevel level : bids.values()) {
+            if (level.price < ask) {
+                return null;
+            }
+            for (Trade trade : level.orders) {
+                if (!excluded.contains(trade)) {
+                    return trade;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds a resting trade by its id.
+     *
+     * @param tradeId The trade id.
+     * @return The resting trade, or null if it is not in the book.
+     */
+    public Trade getOrder(Long tradeId) {
+        return ordersById.get(tradeId);
+    }
+
+    /**
+     * Checks whether the trade is resting in this book.
+     *
+     * @param trade The trade.
+     * @return True if the trade is resting in the book.
+     */
+    public boolean contains(Trade trade) {
+        return resting.contains(trade);
+    }
+
+    /**
+     * Returns the buy side price levels, best first. The returned view must not be
+     * modified.
+     *
+     * @return The bid levels.
+     */
+    public Collection<PriceLevel> getBidLevels() {
+        return Collections.unmodifiableCollection(bids.values());
+    }
+
+    /**
+     * Returns the sell side price levels, best first. The returned view must not
+     * be modified.
+     *
+     * @return The ask levels.
+     */
+    public Collection<PriceLevel> getAskLevels() {
+        return Collections.unmodifiableCollection(asks.values());
+    }
+
+    /**
+     * Returns a copy of every trade resting in the book.
+     *
+     * @return The list of resting trades.
+     */
+    public List<Trade> getOrders() {
+        List<Trade> orders = new ArrayList<>(resting.size());
+        for (PriceLevel level : bids.values()) {
+            orders.addAll(level.orders);
+        }
+        for (PriceLevel level : asks.values()) {
+            orders.addAll(level.orders);
+        }
+        return orders;
+    }
+
+    public int size() {
+        return resting.size();
+    }
+
+    public boolean isEmpty() {
+        return resting.isEmpty();
+    }
+
+    /**
+     * Checks whether the sequence number of the last execution has been set.
+     *
+     * @return True if executions can be numbered.
+     */
+    public boolean hasExecutionSequence() {
+        return executionSequence >= 0;
+    }
+
+    /**
+     * Sets the sequence number of the last execution of this symbol, e.g. as
+     * stored in the execution table.
+     *
+     * @param executionSequence The last sequence number.
+     */
+    public void setExecutionSequence(long executionSequence) {
+        this.executionSequence = executionSequence;
+    }
+
+    /**
+     * Returns the sequence number for the next execution of this symbol. The
+     * counter is kept when the book is cleared.
+     *
+     * @return The next sequence number.
+     */
+    public long nextExecutionSequence() {
+        return ++executionSequence;
+    }
+
+    /**
+     * Removes every order from the book.
+     */
+    public void clear() {
+        bids.clear();
+        asks.clear();
+        ordersById.clear();
+        resting.clear();
+        depthChanged = true;
+    }
+
+    /**
+     * Returns the last published depth of the book. This is the only method that
+     * may be called from any thread.
+     *
+     * @return The depth, at most {@link #DEPTH_LEVELS} levels per side.
+     */
+    public MarketDepth getDepth() {
+        return depth;
+    }
+
+    /**
+     * Publishes the depth of the book if it has changed since the last time. The
+     * level quantities are kept up to date on every change, so only the best
+     * levels are copied.
+     */
+    public void publishDepth() {
+        if (depthChanged) {
+            depth = MarketDepth.of(symbol, bids.values(), asks.values(), DEPTH_LEVELS);
+            depthChanged = false;
+        }
+    }
+
+    private TreeMap<Double, PriceLevel> sideOf(Trade trade) {
+        return "buy".equals(trade.getAction()) ? bids : asks;
+    }
+
+    private static double priceOf(Trade trade) {
+        return "buy".equals(trade.getAction()) ? trade.getBid() : trade.getAsk();
+    }
+}
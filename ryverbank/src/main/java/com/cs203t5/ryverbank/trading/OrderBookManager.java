@@ -0,0 +1,119 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the resident order book of every stock symbol.
+ *
+ * @see OrderBook
+ */
+@Component
+public class OrderBookManager {
+    /** The order books, by stock symbol. */
+    private final Map<String, OrderBook> books = new ConcurrentHashMap<>();
+
+    /**
+     * Finds the order book of the specified symbol, creating an empty one if the
+     * symbol has no book yet.
+     *
+     * @param symbol The stock symbol.
+     * @return The order book of the symbol.
+     */
+    public OrderBook getBook(String symbol) {
+        return books.computeIfAbsent(symbol, OrderBook::new);
+    }
+
+    /**
+     * Finds the order book of the specified symbol without creating one.
+     *
+     * @param symbol The stock symbol.
+     * @return The order book of the symbol, if it has one.
+     */
+    public Optional<OrderBook> findBook(String symbol) {
+        return Optional.ofNullable(books.get(symbol));
+    }
+
+    /**
+     * Returns the order books of every symbol that has been traded.
+     *
+     * @return The order books.
+     */
+    public Collection<OrderBook> getBooks() {
+        return books.values();
+    }
+
+    /**
+     * Replaces the content of every book with the open and partial-filled trades
+     * in the specified list. Trades are queued in the order of their submission
+     * date so that time priority survives a restart.
+     *
+     * @param trades The trades to load, usually every row of the trade table.
+     */
+    public void rebuild(List<Trade> trades) {
+        clear();
+        for (Trade trade : liveInTimeOrder(trades)) {
+            getBook(trade.getSymbol()).add(trade);
+        }
+        publishDepth();
+    }
+
+    /**
+     * Replaces the content of the book of one symbol with the open and
+     * partial-filled trades in the specified list.
+     *
+     * @param symbol The stock symbol.
+     * @param trades The trades to load, usually every row of the symbol.
+     */
+    public void rebuild(String symbol, List<Trade> trades) {
+        OrderBook book = getBook(symbol);
+        book.clear();
+        for (Trade trade : liveInTimeOrder(trades)) {
+            if (symbol.equals(trade.getSymbol())) {
+                book.add(trade);
+            }
+        }
+        book.publishDepth();
+    }
+
+    private static List<Trade> liveInTimeOrder(List<Trade> trades) {
+        List<Trade> liveTrades = new ArrayList<>();
+        for (Trade trade : trades) {
+            if (isLive(trade)) {
+                liveTrades.add(trade);
+            }
+        }
+        liveTrades.sort(Comparator.comparing(Trade::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Trade::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return liveTrades;
+    }
+
+    /**
+     * Removes every order from every book.
+     */
+    public void clear() {
+        for (OrderBook book : books.values()) {
+            book.clear();
+        }
+        publishDepth();
+    }
+
+    private void publishDepth() {
+        for (OrderBook book : books.values()) {
+            book.publishDepth();
+        }
+    }
+
+    /**
+     * Checks whether a trade can still be matched, i.e. it is open or
+     * partial-filled.
+     *
+     * @param trade The trade to check.
+     * @return True if the trade belongs in an order book.
+     */
+    public static boolean isLive(Trade trade) {
+        return "open".equals(trade.getStatus()) || "partial-filled".equals(trade.getStatus());
+    }
+}
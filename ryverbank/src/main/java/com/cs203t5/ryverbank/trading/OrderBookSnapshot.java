@@ -0,0 +1,67 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+
+/**
+ * A point-in-time copy of the order books.
+ *
+ * The books of different symbols are copied one after another without
+ * stopping matching, so each book carries the journal sequence number it was
+ * copied at. Journal records of a symbol up to that number are already
+ * contained in the snapshot.
+ *
+ * @see OrderBookSnapshotter
+ */
+public final class OrderBookSnapshot {
+    /** The journal sequence number before the first book was copied. */
+    private final long sequence;
+    /** The time the snapshot was taken, in epoch milliseconds. */
+    private final long timestamp;
+    /** The journal sequence number each book was copied at, by symbol. */
+    private final Map<String, Long> bookSequences;
+    /** Detached copies of the resting trades, in the order they were accepted. */
+    private final List<Trade> trades;
+
+    /**
+     * Constructs an OrderBookSnapshot with the following parameters.
+     *
+     * @param sequence      The journal sequence number before the first book was
+     *                      copied.
+     * @param timestamp     The time the snapshot was taken.
+     * @param bookSequences The journal sequence number each book was copied at.
+     * @param trades        Detached copies of the resting trades.
+     */
+    public OrderBookSnapshot(long sequence, long timestamp, Map<String, Long> bookSequences, List<Trade> trades) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.bookSequences = Collections.unmodifiableMap(new LinkedHashMap<>(bookSequences));
+        this.trades = Collections.unmodifiableList(new ArrayList<>(trades));
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public Map<String, Long> getBookSequences() {
+        return bookSequences;
+    }
+
+    /**
+     * Returns the journal sequence number the book of a symbol was copied at. A
+     * symbol without a book had nothing resting before the first book was copied.
+     *
+     * @param symbol The stock symbol.
+     * @return The sequence number.
+     */
+    public long getBookSequence(String symbol) {
+        return bookSequences.getOrDefault(symbol, sequence);
+    }
+
+    public List<Trade> getTrades() {
+        return trades;
+    }
+}
@@ -0,0 +1,346 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Takes periodic snapshots of the order books so that a restart only has to
+ * replay the journal written after the newest snapshot.
+ *
+ * Each book is copied by the thread that owns its symbol, which is the only
+ * moment matching on that symbol waits. Encoding and writing the snapshot
+ * happens on the scheduler thread. Once a snapshot is on disk, the journal
+ * segments it covers are archived and older snapshots are deleted.
+ *
+ * A snapshot holds the resting trades only. Balances, holds and positions are
+ * read from the database, where they are written in the same transaction as
+ * the match cycle that changed them.
+ */
+@Component
+public class OrderBookSnapshotter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderBookSnapshotter.class);
+
+    /** The prefix of the snapshot file names. */
+    static final String SNAPSHOT_PREFIX = "snapshot-";
+    /** The suffix of the snapshot file names. */
+    static final String SNAPSHOT_SUFFIX = ".snap";
+    /** Identifies a snapshot file. */
+    private static final int MAGIC = 0x52594253;
+    /** The version of the snapshot format. */
+    private static final int VERSION = 2;
+
+    /** The resident order books. */
+    private OrderBookManager orderBooks;
+    /** The single-writer sequencer of the order books. */
+    private MatchingSequencer sequencer;
+    /** The order journal. */
+    private OrderJournal journal;
+    /** The directory of the snapshot files. */
+    private Path directory;
+    /** The number of snapshots to keep. */
+    private int retain;
+    /** Whether covered journal segments are moved to an archive instead of deleted. */
+    private boolean archive;
+    /** The journal sequence number of the last snapshot taken. */
+    private long lastSequence = -1;
+
+    /**
+     * Constructs an OrderBookSnapshotter with the following parameters.
+     *
+     * @param orderBooks The resident order books.
+     * @param sequencer  The single-writer sequencer of the order books.
+     * @param journal    The order journal.
+     * @param directory  The directory of the snapshot files.
+     * @param retain     The number of snapshots to keep.
+     * @param archive    Whether covered journal segments are archived instead of
+     *                   deleted.
+     */
+    public OrderBookSnapshotter(OrderBookManager orderBooks, MatchingSequencer sequencer, OrderJournal journal,
+            @Value("${ryverbank.snapshot.dir:./data/snapshots}") String directory,
+            @Value("${ryverbank.snapshot.retain:2}") int retain,
+            @Value("${ryverbank.snapshot.archive:true}") boolean archive) {
+        this.orderBooks = orderBooks;
+        this.sequencer = sequencer;
+        this.journal = journal;
+        this.directory = Paths.get(directory);
+        this.retain = Math.max(retain, 1);
+        this.archive = archive;
+    }
+
+    /**
+     * Takes a snapshot if anything was journaled since the last one.
+     */
+    @Scheduled(initialDelayString = "${ryverbank.snapshot.interval:60000}",
+            fixedDelayString = "${ryverbank.snapshot.interval:60000}")
+    public void scheduledSnapshot() {
+        if (!journal.isEnabled() || journal.getSequence() == lastSequence) {
+            return;
+        }
+        try {
+            snapshot();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not take a snapshot of the order books", e);
+        }
+    }
+
+    /**
+     * Takes a snapshot, writes it to disk and removes the journal segments and
+     * snapshots it makes redundant.
+     *
+     * @return The snapshot that was written.
+     */
+    public synchronized OrderBookSnapshot snapshot() {
+        OrderBookSnapshot snapshot = capture();
+        Path file = write(snapshot);
+        lastSequence = snapshot.getSequence();
+
+        Path archiveDirectory = archive ? journal.getDirectory().resolve("archive") : null;
+        int archived = journal.archive(snapshot.getSequence(), archiveDirectory);
+        deleteOlderThan(file);
+        LOGGER.info("Order book snapshot at sequence {} written to {}, {} journal segments archived",
+                snapshot.getSequence(), file, archived);
+        return snapshot;
+    }
+
+    /**
+     * Copies the order books.
+     *
+     * @return The snapshot.
+     */
+    public OrderBookSnapshot capture() {
+        long sequence = journal.getSequence();
+        Map<String, Long> bookSequences = new LinkedHashMap<>();
+        List<Trade> trades = new ArrayList<>();
+        for (OrderBook book : new ArrayList<>(orderBooks.getBooks())) {
+            String symbol = book.getSymbol();
+            // the owner of the symbol appends its journal records, so nothing of this
+            // symbol can be journaled between copying the book and reading the sequence
+            sequencer.run(symbol, () -> {
+                for (Trade trade : book.getOrders()) {
+                    trades.add(copyOf(trade));
+                }
+                bookSequences.put(symbol, journal.getSequence());
+            });
+        }
+        trades.sort(Comparator.comparing(Trade::getDate, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(Trade::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return new OrderBookSnapshot(sequence, System.currentTimeMillis(), bookSequences, trades);
+    }
+
+    /**
+     * Rebuilds the trades of the order books from the newest snapshot and the
+     * journal written after it. Without a snapshot the whole journal is replayed.
+     *
+     * @return The trades, in the order they were accepted.
+     */
+    public List<Trade> recover() {
+        OrderBookSnapshot snapshot = latest();
+        if (snapshot == null) {
+            return journal.replay();
+        }
+        Map<Long, Trade> trades = new LinkedHashMap<>();
+        for (Trade trade : snapshot.getTrades()) {
+            trades.put(trade.getId(), trade);
+        }
+        long[] replayed = new long[1];
+        journal.replay(snapshot.getSequence(), record -> {
+            String symbol = symbolOf(record, trades);
+            if (symbol != null && record.getSequence() > snapshot.getBookSequence(symbol)) {
+                OrderJournal.apply(record, trades);
+                replayed[0]++;
+            }
+        });
+        lastSequence = journal.getSequence();
+        LOGGER.info("Order books recovered from snapshot at sequence {} and {} journal records",
+                snapshot.getSequence(), replayed[0]);
+        return new ArrayList<>(trades.values());
+    }
+
+    /**
+     * Reads the newest snapshot that is intact.
+     *
+     * @return The snapshot, or null if there is none.
+     */
+    public OrderBookSnapshot latest() {
+        List<Path> snapshots = snapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            try {
+                return read(snapshots.get(i));
+            } catch (IOException e) {
+                LOGGER.warn("Skipping unreadable snapshot {}", snapshots.get(i), e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the symbol a journal record belongs to. Records of trades that are
+     * neither in the snapshot nor journaled after it cannot change a book.
+     */
+    private static String symbolOf(JournalRecord record, Map<Long, Trade> trades) {
+        if (record.getType() == JournalRecord.Type.ORDER) {
+            return record.getSymbol();
+        }
+        Trade trade = trades.get(record.getTradeId());
+        if (trade == null && record.getType() == JournalRecord.Type.FILL) {
+            trade = trades.get(record.getContraTradeId());
+        }
+        return trade == null ? null : trade.getSymbol();
+    }
+
+    private static Trade copyOf(Trade trade) {
+        Trade copy = new Trade(trade.getAction(), trade.getSymbol(), trade.getQuantity(), 0.0, 0.0, 0.0,
+                trade.getFilledQuantity(), trade.getDate(), trade.getAccountId(), trade.getCustomerId(),
+                trade.getStatus(), 0.0);
+        copy.setId(trade.getId());
+        copy.setBidCents(trade.getBidCents());
+        copy.setAskCents(trade.getAskCents());
+        copy.setAvgPriceCents(trade.getAvgPriceCents());
+        copy.setTradedPriceCents(trade.getTradedPriceCents());
+        return copy;
+    }
+
+    private static long idOf(Long id) {
+        return id == null ? 0 : id;
+    }
+
+    private List<Path> snapshots() {
+        List<Path> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return snapshots;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshot : stream) {
+                snapshots.add(snapshot);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list the snapshots in " + directory, e);
+        }
+        // the file names are zero padded, so they sort by sequence number
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    private void deleteOlderThan(Path file) {
+        List<Path> snapshots = snapshots();
+        int keep = snapshots.indexOf(file) - retain + 1;
+        for (int i = 0; i < keep; i++) {
+            try {
+                Files.deleteIfExists(snapshots.get(i));
+            } catch (IOException e) {
+                LOGGER.warn("Could not delete snapshot {}", snapshots.get(i), e);
+            }
+        }
+    }
+
+    /**
+     * Writes a snapshot next to its final name and moves it into place, so a
+     * snapshot file is either complete or absent.
+     */
+    private Path write(OrderBookSnapshot snapshot) {
+        Path file = directory
+                .resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, snapshot.getSequence(), SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream stream = Files.newOutputStream(temp)) {
+                CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(stream), new CRC32());
+                DataOutputStream out = new DataOutputStream(checked);
+                encode(snapshot, out);
+                out.flush();
+                new DataOutputStream(stream).writeLong(checked.getChecksum().getValue());
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write snapshot " + file, e);
+        }
+    }
+
+    static OrderBookSnapshot read(Path file) throws IOException {
+        try (InputStream stream = new BufferedInputStream(Files.newInputStream(file))) {
+            CheckedInputStream checked = new CheckedInputStream(stream, new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            OrderBookSnapshot snapshot = decode(in);
+            long checksum = checked.getChecksum().getValue();
+            if (new DataInputStream(stream).readLong() != checksum) {
+                throw new IOException("Checksum mismatch in snapshot " + file);
+            }
+            return snapshot;
+        }
+    }
+
+    private static void encode(OrderBookSnapshot snapshot, DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(snapshot.getSequence());
+        out.writeLong(snapshot.getTimestamp());
+
+        out.writeInt(snapshot.getBookSequences().size());
+        for (Map.Entry<String, Long> entry : snapshot.getBookSequences().entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+
+        out.writeInt(snapshot.getTrades().size());
+        for (Trade trade : snapshot.getTrades()) {
+            out.writeLong(idOf(trade.getId()));
+            out.writeUTF(trade.getAction());
+            out.writeUTF(trade.getSymbol());
+            out.writeInt(trade.getQuantity());
+            out.writeLong(trade.getBidCents());
+            out.writeLong(trade.getAskCents());
+            out.writeLong(trade.getAvgPriceCents());
+            out.writeInt(trade.getFilledQuantity());
+            out.writeLong(idOf(trade.getDate()));
+            out.writeLong(idOf(trade.getAccountId()));
+            out.writeLong(idOf(trade.getCustomerId()));
+            out.writeUTF(trade.getStatus());
+            out.writeLong(trade.getTradedPriceCents());
+        }
+    }
+
+    private static OrderBookSnapshot decode(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a snapshot of this version");
+        }
+        long sequence = in.readLong();
+        long timestamp = in.readLong();
+
+        Map<String, Long> bookSequences = new LinkedHashMap<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            bookSequences.put(in.readUTF(), in.readLong());
+        }
+
+        List<Trade> trades = new ArrayList<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            long id = in.readLong();
+            String action = in.readUTF();
+            String symbol = in.readUTF();
+            int quantity = in.readInt();
+            long bidCents = in.readLong();
+            long askCents = in.readLong();
+            long avgPriceCents = in.readLong();
+            Trade trade = new Trade(action, symbol, quantity, 0.0, 0.0, 0.0, in.readInt(), in.readLong(),
+                    in.readLong(), in.readLong(), in.readUTF(), 0.0);
+            trade.setId(id);
+            trade.setBidCents(bidCents);
+            trade.setAskCents(askCents);
+            trade.setAvgPriceCents(avgPriceCents);
+            trade.setTradedPriceCents(in.readLong());
+            trades.add(trade);
+        }
+        return new OrderBookSnapshot(sequence, timestamp, bookSequences, trades);
+    }
+}
@@ -0,0 +1,707 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cs203t5.ryverbank.Money;
+
+/**
+ * Append-only journal of the order flow, written to memory-mapped segment
+ * files.
+ *
+ * Every accepted order, fill, cancellation and expiry is appended as one
+ * compact binary record with a sequence number and a CRC32 checksum, so the
+ * durability cost of a fill is a sequential write into the page cache instead
+ * of random row updates. The trades of the order books can be rebuilt by
+ * replaying the journal, see {@link #replay()}.
+ *
+ * A record is laid out as
+ *
+ * <pre>
+ * int length | int crc32 | byte version | long sequence | long timestamp | byte type | body
+ * </pre>
+ *
+ * where the checksum covers everything after it and a length of zero marks the
+ * end of a segment. Prices are written as whole cents. Records of the first
+ * version have no version byte, which is where the zero top byte of their
+ * sequence number is, and carry their prices as doubles; they are still read.
+ * Orders from before the third version do not carry the price the money of a
+ * buy order is held at. Reading stops at the first record whose checksum or
+ * sequence number does not match, which is where a torn write is cut off.
+ *
+ * Only one journal can own a directory at a time. If the directory is locked
+ * by someone else, or the journal is disabled, appending and replaying do
+ * nothing.
+ */
+@Component
+public class OrderJournal {
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderJournal.class);
+
+    /** The prefix of the segment file names. */
+    static final String SEGMENT_PREFIX = "journal-";
+    /** The suffix of the segment file names. */
+    static final String SEGMENT_SUFFIX = ".log";
+    /** The size of the length and checksum fields in front of each record. */
+    private static final int HEADER_SIZE = 8;
+    /** The version of the record format that is written. */
+    static final byte VERSION = 3;
+    /** The largest body a record can have, including a 255 byte symbol. */
+    private static final int MAX_RECORD_SIZE = HEADER_SIZE + 1 + 17 + 8 * 4 + 1 + 8 + 4 + 8 + 1 + 255;
+
+    /** The directory of the segment files. */
+    private final Path directory;
+    /** The size of a new segment file. */
+    private final int segmentSize;
+    /** Whether every append is forced to the storage device. */
+    private final boolean sync;
+
+    /** The lock that makes this journal the only writer of the directory. */
+    private FileChannel lockChannel;
+    private FileLock lock;
+    /** The segment being appended to. */
+    private Path segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    /** The sequence number of the last record appended or read. */
+    private long sequence;
+    /** The records held back by the batch the current thread has begun. */
+    private final ThreadLocal<List<JournalRecord>> batch = new ThreadLocal<>();
+
+    /**
+     * Constructs an OrderJournal with the following parameters.
+     *
+     * @param enabled     Whether the journal is written at all.
+     * @param directory   The directory of the segment files.
+     * @param segmentSize The size of a segment file in bytes.
+     * @param sync        Whether every append is forced to the storage device.
+     */
+    public OrderJournal(@Value("${ryverbank.journal.enabled:true}") boolean enabled,
+            @Value("${ryverbank.journal.dir:./data/journal}") String directory,
+            @Value("${ryverbank.journal.segment-size:67108864}") int segmentSize,
+            @Value("${ryverbank.journal.sync:false}") boolean sync) {
+        this.directory = Paths.get(directory);
+        this.segmentSize = Math.max(segmentSize, MAX_RECORD_SIZE * 2);
+        this.sync = sync;
+        if (enabled) {
+            open();
+        }
+    }
+
+    /**
+     * Checks whether this journal owns its directory and records the order flow.
+     *
+     * @return True if records are being written.
+     */
+    public boolean isEnabled() {
+        return lock != null;
+    }
+
+    /**
+     * Returns the sequence number of the last record in the journal.
+     *
+     * @return The last sequence number, 0 if the journal is empty.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Appends the record of an accepted order.
+     *
+     * @param trade    The trade that was accepted.
+     * @param quantity The quantity of the trade when it was submitted.
+     */
+    public void order(Trade trade, int quantity) {
+        append(JournalRecord.order(trade, quantity));
+    }
+
+    /**
+     * Appends the record of every execution of a match.
+     *
+     * @param result The executions.
+     */
+    public void fill(MatchResult result) {
+        for (Execution execution : result.getExecutions()) {
+            fill(execution.getBuyTrade(), execution.getSellTrade(), execution.getPriceCents(),
+                    execution.getQuantity());
+        }
+    }
+
+    /**
+     * Appends the record of a fill.
+     *
+     * @param buyTrade   The buy side of the fill.
+     * @param sellTrade  The sell side of the fill.
+     * @param priceCents The price of the fill, in cents.
+     * @param quantity   The quantity of the fill.
+     */
+    public void fill(Trade buyTrade, Trade sellTrade, long priceCents, int quantity) {
+        append(JournalRecord.fill(buyTrade.getId(), sellTrade.getId(), priceCents, quantity));
+    }
+
+    /**
+     * Appends the record of an order amended in place.
+     *
+     * @param trade The trade as amended.
+     */
+    public void amend(Trade trade) {
+        append(JournalRecord.amend(trade));
+    }
+
+    /**
+     * Appends the record of a cancelled trade.
+     *
+     * @param trade The cancelled trade.
+     */
+    public void cancel(Trade trade) {
+        append(JournalRecord.cancel(trade.getId()));
+    }
+
+    /**
+     * Appends the record of an expired trade.
+     *
+     * @param trade The expired trade.
+     */
+    public void expire(Trade trade) {
+        append(JournalRecord.expire(trade.getId()));
+    }
+
+    /**
+     * Holds back the records the current thread appends until {@link #commit()},
+     * so that the records of a match cycle only reach the journal once the cycle
+     * has been written to the database.
+     *
+     * @return False if the current thread is already in a batch, which the
+     *         records are then added to.
+     */
+    public boolean begin() {
+        if (batch.get() != null) {
+            return false;
+        }
+        batch.set(new ArrayList<>());
+        return true;
+    }
+
+    /**
+     * Appends the records held back since {@link #begin()}.
+     */
+    public void commit() {
+        List<JournalRecord> records = batch.get();
+        batch.remove();
+        if (records == null || records.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            for (JournalRecord record : records) {
+                write(record);
+            }
+        }
+    }
+
+    /**
+     * Drops the records held back since {@link #begin()}.
+     */
+    public void discard() {
+        batch.remove();
+    }
+
+    /**
+     * Appends a record, stamping it with the next sequence number. Inside a batch
+     * the record is held back until the batch is committed.
+     *
+     * @param record The record to append.
+     * @return The record as it was written, or null if the journal is disabled or
+     *         the record was held back.
+     */
+    public JournalRecord append(JournalRecord record) {
+        List<JournalRecord> records = batch.get();
+        if (records != null) {
+            records.add(record);
+            return null;
+        }
+        synchronized (this) {
+            return write(record);
+        }
+    }
+
+    private JournalRecord write(JournalRecord record) {
+        if (!isEnabled()) {
+            return null;
+        }
+        JournalRecord sequenced = record.sequenced(sequence + 1, System.currentTimeMillis());
+        byte[] bytes = encode(sequenced);
+        try {
+            if (buffer == null || buffer.remaining() < bytes.length + HEADER_SIZE) {
+                roll(sequenced.getSequence());
+            }
+            buffer.put(bytes);
+            if (sync) {
+                buffer.force();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the order journal", e);
+        }
+        sequence = sequenced.getSequence();
+        return sequenced;
+    }
+
+    /**
+     * Reads every record of the journal, oldest first.
+     *
+     * @param consumer Receives the records.
+     */
+    public synchronized void replay(Consumer<JournalRecord> consumer) {
+        replay(0, consumer);
+    }
+
+    /**
+     * Reads the records of the journal after the specified sequence number, oldest
+     * first.
+     *
+     * @param afterSequence Records up to and including this sequence number are
+     *                      skipped.
+     * @param consumer      Receives the records.
+     */
+    public synchronized void replay(long afterSequence, Consumer<JournalRecord> consumer) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            long expected = 0;
+            for (Path segment : segments()) {
+                long first = firstSequenceOf(segment);
+                if (expected == 0) {
+                    expected = first;
+                }
+                try (FileChannel reader = FileChannel.open(segment, StandardOpenOption.READ)) {
+                    ByteBuffer in = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+                    JournalRecord record;
+                    while ((record = decode(in, expected)) != null) {
+                        expected = record.getSequence() + 1;
+                        if (record.getSequence() > afterSequence) {
+                            consumer.accept(record);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the order journal", e);
+        }
+    }
+
+    /**
+     * Rebuilds the trades recorded in the journal. Orders are replayed with their
+     * fills, cancellations and expiries applied, so every trade comes back with its
+     * remaining quantity, filled quantity, average price and status.
+     *
+     * The trades returned are not attached to the trade repository; their ids are
+     * the ids the rows had when the records were written.
+     *
+     * @return The trades of the journal, in the order they were accepted.
+     */
+    public List<Trade> replay() {
+        return replay(0, new LinkedHashMap<>());
+    }
+
+    /**
+     * Rebuilds the trades recorded after the specified sequence number on top of
+     * the specified trades, e.g. the trades of a snapshot.
+     *
+     * @param afterSequence Records up to and including this sequence number are
+     *                      skipped.
+     * @param trades        The trades to start from, by trade id. The map is
+     *                      updated in place.
+     * @return The trades, in the order they were accepted.
+     */
+    public List<Trade> replay(long afterSequence, Map<Long, Trade> trades) {
+        replay(afterSequence, record -> apply(record, trades));
+        return new ArrayList<>(trades.values());
+    }
+
+    /**
+     * Applies one record to the trades it refers to.
+     */
+    static void apply(JournalRecord record, Map<Long, Trade> trades) {
+        switch (record.getType()) {
+            case ORDER:
+                boolean buy = "buy".equals(record.getAction());
+                Trade trade = new Trade(record.getAction(), record.getSymbol(), record.getQuantity(), 0.0, 0.0,
+                        0.0, 0, record.getDate(), record.getAccountId(), record.getCustomerId(), "open", 0.0);
+                if (buy) {
+                    trade.setBidCents(record.getPriceCents());
+                } else {
+                    trade.setAskCents(record.getPriceCents());
+                }
+                trade.setTradedPriceCents(record.getTradedPriceCents());
+                trade.setId(record.getTradeId());
+                trades.put(trade.getId(), trade);
+                break;
+            case FILL:
+                applyFill(trades.get(record.getTradeId()), record);
+                applyFill(trades.get(record.getContraTradeId()), record);
+                break;
+            case AMEND:
+                Trade amended = trades.get(record.getTradeId());
+                if (amended != null) {
+                    if ("buy".equals(amended.getAction())) {
+                        amended.setBidCents(record.getPriceCents());
+                    } else {
+                        amended.setAskCents(record.getPriceCents());
+                    }
+                    amended.setQuantity(record.getQuantity());
+                    amended.setDate(record.getDate());
+                }
+                break;
+            case CANCEL:
+                setStatus(trades.get(record.getTradeId()), "cancelled");
+                break;
+            case EXPIRE:
+                setStatus(trades.get(record.getTradeId()), "expired");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void applyFill(Trade trade, JournalRecord record) {
+        if (trade == null) {
+            return;
+        }
+        int filledQuantity = trade.getFilledQuantity();
+        int quantity = record.getQuantity();
+        // the same rounding as the fill that was journaled
+        long cost = Money.times(trade.getAvgPriceCents(), filledQuantity)
+                + Money.times(record.getPriceCents(), quantity);
+        trade.setAvgPriceCents(Money.average(cost, filledQuantity + quantity));
+        trade.setFilledQuantity(filledQuantity + quantity);
+        trade.setQuantity(trade.getQuantity() - quantity);
+        trade.setStatus(trade.getQuantity() <= 0 ? "filled" : "partial-filled");
+    }
+
+    private static void setStatus(Trade trade, String status) {
+        if (trade != null) {
+            trade.setStatus(status);
+        }
+    }
+
+    /**
+     * Removes the segments that only hold records up to the specified sequence
+     * number, e.g. records that are contained in a snapshot. The segment being
+     * appended to is never removed.
+     *
+     * @param sequence         The last sequence number that is no longer needed.
+     * @param archiveDirectory The directory to move the segments to, or null to
+     *                         delete them.
+     * @return The number of segments removed.
+     */
+    public synchronized int archive(long sequence, Path archiveDirectory) {
+        if (!isEnabled()) {
+            return 0;
+        }
+        try {
+            List<Path> segments = segments();
+            int removed = 0;
+            // a segment is complete once the next one has started
+            for (int i = 0; i + 1 < segments.size(); i++) {
+                Path completed = segments.get(i);
+                if (completed.equals(segment) || firstSequenceOf(segments.get(i + 1)) > sequence + 1) {
+                    break;
+                }
+                if (archiveDirectory == null) {
+                    Files.delete(completed);
+                } else {
+                    Files.createDirectories(archiveDirectory);
+                    Files.move(completed, archiveDirectory.resolve(completed.getFileName()),
+                            StandardCopyOption.REPLACE_EXISTING);
+                }
+                removed++;
+            }
+            return removed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not archive the order journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Forces the segment being written to the storage device and releases the
+     * directory.
+     */
+    @PreDestroy
+    public synchronized void close() {
+        try {
+            if (buffer != null) {
+                buffer.force();
+                buffer = null;
+            }
+            if (channel != null) {
+                channel.close();
+                channel = null;
+                segment = null;
+            }
+            if (lock != null) {
+                lock.release();
+                lock = null;
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+                lockChannel = null;
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Could not close the order journal in {}", directory, e);
+        }
+    }
+
+    /**
+     * Returns the segment files of the journal, oldest first.
+     *
+     * @return The segment files.
+     * @throws IOException If the directory cannot be listed.
+     */
+    synchronized List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segment : stream) {
+                segments.add(segment);
+            }
+        }
+        segments.sort(Comparator.comparingLong(OrderJournal::firstSequenceOf));
+        return segments;
+    }
+
+    /**
+     * Returns the sequence number of the first record of a segment, which is part
+     * of its file name.
+     */
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            lockChannel = FileChannel.open(directory.resolve("journal.lock"), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE);
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null;
+            }
+            if (lock == null) {
+                LOGGER.warn("Order journal in {} is in use, order flow will not be journaled", directory);
+                lockChannel.close();
+                lockChannel = null;
+                return;
+            }
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the order journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Finds the end of the journal and positions the last segment for appending.
+     * Anything after the last valid record of the last segment is a torn write and
+     * is cleared.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        long expected = firstSequenceOf(segments.get(0));
+        for (int i = 0; i < segments.size(); i++) {
+            Path segment = segments.get(i);
+            boolean last = i == segments.size() - 1;
+            FileChannel segmentChannel = FileChannel.open(segment, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            MappedByteBuffer segmentBuffer = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    segmentChannel.size());
+            JournalRecord record;
+            while ((record = decode(segmentBuffer, expected)) != null) {
+                expected = record.getSequence() + 1;
+                sequence = record.getSequence();
+            }
+            if (!last) {
+                segmentChannel.close();
+                continue;
+            }
+            int end = segmentBuffer.position();
+            while (segmentBuffer.hasRemaining()) {
+                segmentBuffer.put((byte) 0);
+            }
+            segmentBuffer.position(end);
+            this.segment = segment;
+            channel = segmentChannel;
+            buffer = segmentBuffer;
+        }
+        LOGGER.info("Order journal in {} recovered up to sequence {}", directory, sequence);
+    }
+
+    /**
+     * Starts a new segment whose first record has the specified sequence number.
+     */
+    private void roll(long firstSequence) throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            channel.close();
+        }
+        segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private static byte[] encode(JournalRecord record) {
+        byte[] symbol = record.getSymbol() == null ? new byte[0]
+                : record.getSymbol().getBytes(StandardCharsets.US_ASCII);
+        if (symbol.length > 255) {
+            throw new IllegalArgumentException("Symbol is too long: " + record.getSymbol());
+        }
+        ByteBuffer body = ByteBuffer.allocate(MAX_RECORD_SIZE - HEADER_SIZE);
+        body.put(VERSION);
+        body.putLong(record.getSequence());
+        body.putLong(record.getTimestamp());
+        body.put(record.getType().getCode());
+        switch (record.getType()) {
+            case ORDER:
+                body.putLong(record.getTradeId());
+                body.putLong(record.getCustomerId());
+                body.putLong(record.getAccountId());
+                body.putLong(record.getDate());
+                body.put((byte) ("buy".equals(record.getAction()) ? 0 : 1));
+                body.putLong(record.getPriceCents());
+                body.putInt(record.getQuantity());
+                body.putLong(record.getTradedPriceCents());
+                body.put((byte) symbol.length);
+                body.put(symbol);
+                break;
+            case FILL:
+                body.putLong(record.getTradeId());
+                body.putLong(record.getContraTradeId());
+                body.putLong(record.getPriceCents());
+                body.putInt(record.getQuantity());
+                break;
+            case AMEND:
+                body.putLong(record.getTradeId());
+                body.putLong(record.getDate());
+                body.putLong(record.getPriceCents());
+                body.putInt(record.getQuantity());
+                break;
+            default:
+                body.putLong(record.getTradeId());
+                break;
+        }
+        body.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + body.remaining());
+        out.putInt(body.remaining());
+        out.putInt((int) crc.getValue());
+        out.put(body);
+        return out.array();
+    }
+
+    /**
+     * Reads the record at the position of the buffer and moves past it. The
+     * position is left unchanged if there is no valid record there.
+     *
+     * @param in       The segment.
+     * @param expected The sequence number the record must have.
+     * @return The record, or null at the end of the journal.
+     */
+    private static JournalRecord decode(ByteBuffer in, long expected) {
+        int start = in.position();
+        if (in.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int length = in.getInt();
+        int checksum = in.getInt();
+        if (length <= 0 || length > in.remaining() || length > MAX_RECORD_SIZE) {
+            in.position(start);
+            return null;
+        }
+        ByteBuffer body = in.slice();
+        body.limit(length);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            in.position(start);
+            return null;
+        }
+
+        // a record of the first version starts with the zero top byte of its sequence number
+        int version = body.get(body.position()) == 0 ? 1 : body.get();
+        long sequence = body.getLong();
+        long timestamp = body.getLong();
+        JournalRecord.Type type = JournalRecord.Type.of(body.get());
+        if (type == null || version > VERSION || sequence != expected) {
+            in.position(start);
+            return null;
+        }
+        JournalRecord record;
+        switch (type) {
+            case ORDER:
+                long tradeId = body.getLong();
+                long customerId = body.getLong();
+                long accountId = body.getLong();
+                long date = body.getLong();
+                String action = body.get() == 0 ? "buy" : "sell";
+                long priceCents = priceOf(body, version);
+                int quantity = body.getInt();
+                long tradedPriceCents = version >= 3 ? body.getLong() : 0;
+                byte[] symbol = new byte[body.get() & 0xff];
+                body.get(symbol);
+                record = JournalRecord.read(type, sequence, timestamp, tradeId, 0, customerId, accountId, date,
+                        action, new String(symbol, StandardCharsets.US_ASCII), priceCents, quantity, tradedPriceCents);
+                break;
+            case FILL:
+                record = JournalRecord.read(type, sequence, timestamp, body.getLong(), body.getLong(), 0, 0, 0,
+                        null, null, priceOf(body, version), body.getInt(), 0);
+                break;
+            case AMEND:
+                long amendedTradeId = body.getLong();
+                long amendedDate = body.getLong();
+                record = JournalRecord.read(type, sequence, timestamp, amendedTradeId, 0, 0, 0, amendedDate, null,
+                        null, priceOf(body, version), body.getInt(), 0);
+                break;
+            default:
+                record = JournalRecord.read(type, sequence, timestamp, body.getLong(), 0, 0, 0, 0, null, null, 0,
+                        0, 0);
+                break;
+        }
+        in.position(start + HEADER_SIZE + length);
+        return record;
+    }
+
+    /**
+     * Reads the price of a record, in cents. The first version wrote prices as
+     * doubles.
+     */
+    private static long priceOf(ByteBuffer body, int version) {
+        return version == 1 ? Money.cents(body.getDouble()) : body.getLong();
+    }
+}
@@ -0,0 +1,227 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Holds the current quote of every listed stock in memory. Every read of a
+ * quote is served from here, so looking up a stock never touches the database.
+ *
+ * The cached stocks are snapshots: they are never changed once cached, and a
+ * change replaces the snapshot of its symbol as a whole. A change made inside a
+ * transaction is seen by the rest of that transaction at once and by everyone
+ * else once it has committed. The replaced snapshot is then pushed to the quote
+ * stream and written to the stock repository by a background writer, which
+ * only writes the latest snapshot of each symbol.
+ *
+ * A symbol that is not cached yet is read from the stock repository once.
+ */
+@Component
+public class QuoteCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuoteCache.class);
+
+    /** The stock repository. */
+    private StockRepository stockRepository;
+    /** The quote stream of the stocks. */
+    private QuoteStream quoteStream;
+    /** The thread that writes the changed stocks to the stock repository. */
+    private final Executor writer;
+    /** The snapshot of each cached symbol. */
+    private final Map<String, CustomStock> quotes = new ConcurrentHashMap<>();
+    /** Every snapshot in symbol order, or null if it has to be rebuilt. */
+    private volatile List<CustomStock> allQuotes;
+    /** Whether every stock in the stock repository has been cached. */
+    private volatile boolean loaded;
+    /** The latest snapshot of each symbol that has not been written yet. */
+    private final Map<String, CustomStock> unwritten = new ConcurrentHashMap<>();
+    /** Whether the writer has been asked to write. */
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    /** Held while writing, so that clearing the cache waits for a write in progress. */
+    private final Object writeLock = new Object();
+
+    /**
+     * Constructs a QuoteCache with the following parameters.
+     *
+     * @param stockRepository The stock repository.
+     * @param quoteStream     The quote stream of the stocks.
+     */
+    @Autowired
+    public QuoteCache(StockRepository stockRepository, QuoteStream quoteStream) {
+        this(stockRepository, quoteStream, Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quote-writer");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    QuoteCache(StockRepository stockRepository, QuoteStream quoteStream, Executor writer) {
+        this.stockRepository = stockRepository;
+        this.quoteStream = quoteStream;
+        this.writer = writer;
+    }
+
+    /**
+     * Finds the current quote of a stock. The returned stock is shared and must
+     * not be changed; change a {@link CustomStock#copy()} and pass it to
+     * {@link #update(CustomStock)}.
+     *
+     * @param symbol The stock symbol.
+     * @return The stock, or null if the symbol is not listed.
+     */
+    public CustomStock get(String symbol) {
+        Map<String, CustomStock> uncommitted = uncommitted();
+        if (uncommitted != null && uncommitted.containsKey(symbol)) {
+            return uncommitted.get(symbol);
+        }
+        CustomStock stock = quotes.get(symbol);
+        if (stock == null && symbol != null) {
+            stock = stockRepository.findBySymbol(symbol).map(this::cache).orElse(null);
+        }
+        return stock;
+    }
+
+    /**
+     * Lists the current quotes of every listed stock, in symbol order. The
+     * returned stocks are shared and must not be changed.
+     *
+     * @return The stocks.
+     */
+    public List<CustomStock> getAll() {
+        if (!loaded) {
+            stockRepository.findAll().forEach(this::cache);
+            loaded = true;
+        }
+        List<CustomStock> all = allQuotes;
+        if (all == null) {
+            all = new ArrayList<>(quotes.values());
+            all.sort(Comparator.comparing(CustomStock::getSymbol));
+            all = Collections.unmodifiableList(all);
+            allQuotes = all;
+        }
+        return all;
+    }
+
+    private CustomStock cache(CustomStock stock) {
+        CustomStock cached = quotes.putIfAbsent(stock.getSymbol(), stock);
+        if (cached != null) {
+            // a newer snapshot got in first
+            return cached;
+        }
+        allQuotes = null;
+        return stock;
+    }
+
+    /**
+     * Replaces the quote of a stock with a snapshot of the specified stock, once
+     * the enclosing transaction has committed if there is one.
+     *
+     * @param stock The changed stock.
+     */
+    public void update(CustomStock stock) {
+        CustomStock snapshot = stock.copy();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            replace(snapshot);
+            return;
+        }
+        Map<String, CustomStock> uncommitted = uncommitted();
+        if (uncommitted == null) {
+            Map<String, CustomStock> changes = new LinkedHashMap<>();
+            TransactionSynchronizationManager.bindResource(this, changes);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    changes.values().forEach(QuoteCache.this::replace);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(QuoteCache.this);
+                }
+            });
+            uncommitted = changes;
+        }
+        uncommitted.put(snapshot.getSymbol(), snapshot);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, CustomStock> uncommitted() {
+        return (Map<String, CustomStock>) TransactionSynchronizationManager.getResource(this);
+    }
+
+    private void replace(CustomStock snapshot) {
+        quotes.put(snapshot.getSymbol(), snapshot);
+        allQuotes = null;
+        quoteStream.publish(snapshot);
+        unwritten.put(snapshot.getSymbol(), snapshot);
+        scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled.compareAndSet(false, true)) {
+            try {
+                writer.execute(this::write);
+            } catch (RejectedExecutionException e) {
+                writeScheduled.set(false);
+            }
+        }
+    }
+
+    private void write() {
+        writeScheduled.set(false);
+        synchronized (writeLock) {
+            List<CustomStock> batch = new ArrayList<>(unwritten.size());
+            for (String symbol : unwritten.keySet()) {
+                CustomStock stock = unwritten.remove(symbol);
+                if (stock != null) {
+                    batch.add(stock);
+                }
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                stockRepository.saveAll(batch);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not write {} stock quotes, retrying with the next change", batch.size(), e);
+                for (CustomStock stock : batch) {
+                    unwritten.putIfAbsent(stock.getSymbol(), stock);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets every cached quote and every quote that has not been written, after
+     * waiting for a write in progress. The stocks are read from the stock
+     * repository again when they are next needed.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            unwritten.clear();
+            quotes.clear();
+            allQuotes = null;
+            loaded = false;
+        }
+    }
+
+    /**
+     * Writes the quotes that have not been written yet and stops the writer.
+     */
+    @PreDestroy
+    public void close() {
+        write();
+        if (writer instanceof ExecutorService) {
+            ((ExecutorService) writer).shutdown();
+        }
+    }
+}
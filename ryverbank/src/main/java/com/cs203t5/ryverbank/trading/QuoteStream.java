@@ -0,0 +1,178 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Pushes the quotes of the stocks to Server-Sent Events subscribers.
+ *
+ * A change of a stock is fanned out once: its snapshot is handed to every
+ * subscriber, which keeps only the latest pending quote per symbol. A
+ * small pool of sender threads writes the pending quotes of each subscriber, so
+ * a slow subscriber does not hold up the others and receives conflated
+ * updates, never a backlog.
+ *
+ * The quotes are published by the {@link QuoteCache} once a change has
+ * committed.
+ */
+@Component
+public class QuoteStream {
+    /** The threads that write to the subscribers. */
+    private final Executor senders;
+    /** The time after which a subscription ends, in milliseconds; 0 never ends. */
+    private final long timeout;
+    /** The subscribers. */
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Constructs a QuoteStream with the following parameters.
+     *
+     * @param senders The number of threads that write to the subscribers.
+     * @param timeout The time after which a subscription ends, in milliseconds; 0
+     *                never ends.
+     */
+    @Autowired
+    public QuoteStream(@Value("${ryverbank.stream.senders:4}") int senders,
+            @Value("${ryverbank.stream.timeout:0}") long timeout) {
+        this(Executors.newFixedThreadPool(Math.max(senders, 1), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "quote-stream-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), timeout);
+    }
+
+    QuoteStream(Executor senders, long timeout) {
+        this.senders = senders;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Subscribes to the quotes of the specified symbols. The current quote of each
+     * symbol is sent first.
+     *
+     * @param symbols The stock symbols, or an empty set for every symbol.
+     * @param current The current quotes of the stocks.
+     * @return The emitter of the subscription.
+     */
+    public SseEmitter subscribe(Set<String> symbols, Collection<CustomStock> current) {
+        return subscribe(new SseEmitter(timeout), symbols, current);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, Set<String> symbols, Collection<CustomStock> current) {
+        Subscriber subscriber = new Subscriber(emitter, symbols);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        subscribers.add(subscriber);
+        for (CustomStock stock : current) {
+            subscriber.offer(stock.copy());
+        }
+        return emitter;
+    }
+
+    /**
+     * Pushes the current quote of a stock to the subscribers.
+     *
+     * @param quote The snapshot of the stock that changed, which is never changed
+     *              afterwards.
+     */
+    public void publish(CustomStock quote) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(quote);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Ends every subscription.
+     */
+    @PreDestroy
+    public void close() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+            subscriber.close();
+        }
+        if (senders instanceof ExecutorService) {
+            ((ExecutorService) senders).shutdownNow();
+        }
+    }
+
+    /**
+     * A subscription and its pending quotes, the latest one per symbol.
+     */
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<String> symbols;
+        private final Map<String, CustomStock> pending = new ConcurrentHashMap<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, Set<String> symbols) {
+            this.emitter = emitter;
+            this.symbols = symbols;
+        }
+
+        void offer(CustomStock quote) {
+            if (closed || (!symbols.isEmpty() && !symbols.contains(quote.getSymbol()))) {
+                return;
+            }
+            // a quote that has not been sent yet is replaced
+            pending.put(quote.getSymbol(), quote);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                for (String symbol : pending.keySet()) {
+                    CustomStock quote = pending.remove(symbol);
+                    if (quote != null && !closed) {
+                        emitter.send(SseEmitter.event().name("quote").data(quote, MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                // the client went away
+                close();
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed && !pending.isEmpty()) {
+                schedule();
+            }
+        }
+
+        void close() {
+            closed = true;
+            pending.clear();
+            subscribers.remove(this);
+        }
+    }
+}
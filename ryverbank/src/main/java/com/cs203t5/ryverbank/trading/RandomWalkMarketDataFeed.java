@@ -0,0 +1,79 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Makes up quotes by a random walk of the price of each symbol, one step per
+ * fetch. The walk of a symbol depends only on the seed and the symbol, so the
+ * same seed gives the same quotes on every run, whichever symbols are fetched
+ * together.
+ */
+@Component
+@ConditionalOnProperty(name = "ryverbank.feed.type", havingValue = "random")
+public class RandomWalkMarketDataFeed implements MarketDataFeed {
+    /** The price step of the quotes. */
+    private static final double TICK = 0.01;
+
+    /** The seed of the walks. */
+    private final long seed;
+    /** The standard deviation of a step, relative to the price. */
+    private final double volatility;
+    /** The walk of each symbol that has been fetched. */
+    private final Map<String, Walk> walks = new HashMap<>();
+
+    /**
+     * Constructs a RandomWalkMarketDataFeed with the following parameters.
+     *
+     * @param seed       The seed of the walks.
+     * @param volatility The standard deviation of a step, relative to the price.
+     */
+    public RandomWalkMarketDataFeed(@Value("${ryverbank.feed.random.seed:42}") long seed,
+            @Value("${ryverbank.feed.random.volatility:0.01}") double volatility) {
+        this.seed = seed;
+        this.volatility = volatility;
+    }
+
+    @Override
+    public synchronized Map<String, MarketQuote> fetch(Collection<String> symbols) {
+        Map<String, MarketQuote> quotes = new HashMap<>();
+        for (String symbol : symbols) {
+            Walk walk = walks.computeIfAbsent(symbol, this::startWalk);
+            double price = walk.step(volatility);
+            quotes.put(symbol, new MarketQuote(symbol, price, round(price - TICK), round(price + TICK)));
+        }
+        return quotes;
+    }
+
+    private Walk startWalk(String symbol) {
+        Random random = new Random(seed ^ symbol.hashCode());
+        // somewhere between 1.00 and 20.00, like the index stocks
+        return new Walk(random, round(1.0 + random.nextInt(1900) * TICK));
+    }
+
+    private static double round(double price) {
+        // whole cents, without the binary fraction that multiplying by the tick leaves
+        return Math.max(TICK, Math.round(price * 100.0) / 100.0);
+    }
+
+    /**
+     * The price of one symbol and the random numbers that move it.
+     */
+    private static class Walk {
+        private final Random random;
+        private double price;
+
+        Walk(Random random, double price) {
+            this.random = random;
+            this.price = price;
+        }
+
+        double step(double volatility) {
+            price = round(price * (1.0 + volatility * random.nextGaussian()));
+            return price;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Replays quotes recorded in a local file, so the market can be opened without
+ * a network and every run sees the same quotes.
+ *
+ * The file holds the quotes of each symbol in the order they are replayed: one
+ * fetch hands out the next quote of each requested symbol, and a symbol starts
+ * over once its quotes run out. A file whose name ends in .csv has a line of
+ * symbol,price,bid,ask per quote, with an optional header line; any other file
+ * is binary, as written by {@link #write(Path, Collection)}.
+ */
+@Component
+@ConditionalOnProperty(name = "ryverbank.feed.type", havingValue = "replay")
+public class ReplayMarketDataFeed implements MarketDataFeed {
+    /** The header line of a CSV file. */
+    private static final String CSV_HEADER = "symbol,price,bid,ask";
+    /** Identifies a binary file. */
+    private static final int MAGIC = 0x52595146;
+
+    /** The recorded quotes of each symbol, oldest first. */
+    private final Map<String, List<MarketQuote>> recorded = new HashMap<>();
+    /** The position of the next quote of each symbol. */
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * Constructs a ReplayMarketDataFeed with the following parameters.
+     *
+     * @param file The file of recorded quotes.
+     */
+    public ReplayMarketDataFeed(@Value("${ryverbank.feed.replay.file:./data/quotes.csv}") String file) {
+        this(Paths.get(file));
+    }
+
+    ReplayMarketDataFeed(Path file) {
+        try {
+            for (MarketQuote quote : read(file)) {
+                recorded.computeIfAbsent(quote.getSymbol(), symbol -> new ArrayList<>()).add(quote);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the recorded quotes in " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized Map<String, MarketQuote> fetch(Collection<String> symbols) {
+        Map<String, MarketQuote> quotes = new HashMap<>();
+        for (String symbol : symbols) {
+            List<MarketQuote> symbolQuotes = recorded.get(symbol);
+            if (symbolQuotes == null) {
+                continue;
+            }
+            int position = positions.getOrDefault(symbol, 0);
+            quotes.put(symbol, symbolQuotes.get(position));
+            positions.put(symbol, (position + 1) % symbolQuotes.size());
+        }
+        return quotes;
+    }
+
+    private static boolean isCsv(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+    }
+
+    /**
+     * Reads the quotes in a file, in the order they are recorded.
+     *
+     * @param file The file of recorded quotes.
+     * @return The quotes.
+     * @throws IOException If the file cannot be read or is not a quote file.
+     */
+    public static List<MarketQuote> read(Path file) throws IOException {
+        List<MarketQuote> quotes = new ArrayList<>();
+        if (isCsv(file)) {
+            int lineNumber = 0;
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || (lineNumber == 1 && line.equalsIgnoreCase(CSV_HEADER))) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 4) {
+                    throw new IOException(file + ":" + lineNumber + ": expected " + CSV_HEADER);
+                }
+                try {
+                    quotes.add(new MarketQuote(fields[0].trim(), Double.parseDouble(fields[1]),
+                            Double.parseDouble(fields[2]), Double.parseDouble(fields[3])));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            return quotes;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a quote file");
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                quotes.add(new MarketQuote(in.readUTF(), in.readDouble(), in.readDouble(), in.readDouble()));
+            }
+        }
+        return quotes;
+    }
+
+    /**
+     * Records quotes to a file that can be replayed, as CSV if its name ends in
+     * .csv and binary otherwise.
+     *
+     * @param file   The file to write.
+     * @param quotes The quotes, in the order they are to be replayed.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(Path file, Collection<MarketQuote> quotes) throws IOException {
+        if (isCsv(file)) {
+            List<String> lines = new ArrayList<>(quotes.size() + 1);
+            lines.add(CSV_HEADER);
+            for (MarketQuote quote : quotes) {
+                lines.add(quote.getSymbol() + "," + quote.getPrice() + "," + quote.getBid() + "," + quote.getAsk());
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(quotes.size());
+            for (MarketQuote quote : quotes) {
+                out.writeUTF(quote.getSymbol());
+                out.writeDouble(quote.getPrice());
+                out.writeDouble(quote.getBid());
+                out.writeDouble(quote.getAsk());
+            }
+        }
+    }
+}
@@ -1,28 +1,34 @@
 package com.cs203t5.ryverbank.trading;
 
-import java.util.List;
+import java.util.*;
 
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * A StockController that accepts and returns stock JSON data.
  */
 @RestController
 public class StockController {
-    /** The stock repository. */
-    private StockRepository stockRepository;
     /** The stock services. */
     private StockServices stockService;
+    /** The quote stream of the stocks. */
+    private QuoteStream quoteStream;
+    /** The trading sessions of the exchange. */
+    private MarketCalendar calendar;
 
     /**
      * Constructs a StockController with the following parameters.
      * 
-     * @param stockRepository The stock repository.
-     * @param stockService    The stock services.
+     * @param stockService The stock services.
+     * @param quoteStream  The quote stream of the stocks.
+     * @param calendar     The trading sessions of the exchange.
      */
-    public StockController(StockRepository stockRepository, StockServices stockService) {
-        this.stockRepository = stockRepository;
+    public StockController(StockServices stockService, QuoteStream quoteStream, MarketCalendar calendar) {
         this.stockService = stockService;
+        this.quoteStream = quoteStream;
+        this.calendar = calendar;
 
     }
 
@@ -33,7 +39,22 @@ public class StockController {
      */
     @GetMapping("/stocks")
     public List<CustomStock> listStocks() {
-        return stockRepository.findAll();
+        return stockService.getStocks();
+    }
+
+    /**
+     * Streams the quotes of the stocks as Server-Sent Events named "quote". The
+     * current quote of every requested stock is sent first, then each change. A
+     * client that reads slowly only receives the latest quote of each stock.
+     * 
+     * @param symbols The comma-separated stock symbols to stream, or every stock if
+     *                omitted.
+     * @return The event stream.
+     */
+    @GetMapping(value = "/stocks/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStocks(@RequestParam(required = false) List<String> symbols) {
+        return quoteStream.subscribe(symbols == null ? Collections.emptySet() : new HashSet<>(symbols),
+                stockService.getStocks());
     }
 
     /**
@@ -52,4 +73,70 @@ public class StockController {
         return stock;
     }
 
+    /**
+     * Finds the aggregated quantity at each of the best price levels of both sides
+     * of the order book of the specified stock symbol. The number of levels is
+     * capped at {@link OrderBook#DEPTH_LEVELS}. If no stock is found, throw
+     * StockSymbolNotFoundException.
+     * 
+     * @param symbol The stock symbol to find.
+     * @param levels The number of price levels per side.
+     * @return The market depth of the stock.
+     */
+    @GetMapping("/stocks/{symbol}/depth")
+    public MarketDepth getDepth(@PathVariable String symbol, @RequestParam(defaultValue = "10") int levels) {
+        MarketDepth depth = stockService.getDepth(symbol, Math.max(1, Math.min(levels, OrderBook.DEPTH_LEVELS)));
+
+        if (depth == null)
+            throw new StockSymbolNotFoundException("No stock information found for " + symbol);
+        return depth;
+    }
+
+    /**
+     * Finds the most recent executions of the specified stock symbol, newest
+     * first, with the price, quantity, time and the side that took liquidity. If
+     * no stock is found, throw StockSymbolNotFoundException.
+     * 
+     * @param symbol The stock symbol to find.
+     * @param limit  The maximum number of executions.
+     * @return The time and sales of the stock.
+     */
+    @GetMapping("/stocks/{symbol}/trades")
+    public List<TradeTape.Print> getTrades(@PathVariable String symbol, @RequestParam(defaultValue = "50") int limit) {
+        List<TradeTape.Print> prints = stockService.getTrades(symbol, Math.max(1, limit));
+
+        if (prints == null)
+            throw new StockSymbolNotFoundException("No stock information found for " + symbol);
+        return prints;
+    }
+
+    /**
+     * Finds the open, high, low and close price and the volume of the specified
+     * stock symbol per interval, oldest first. Only intervals with trades have a
+     * bar; the bar of the running interval is included. Without a range, the last
+     * 100 intervals are returned. If the interval is not one of 1s, 1m or 1d,
+     * throw BarIntervalInvalidException. If no stock is found, throw
+     * StockSymbolNotFoundException.
+     * 
+     * @param symbol   The stock symbol to find.
+     * @param interval The resolution of the bars: 1s, 1m or 1d.
+     * @param from     The earliest start of a bar, in epoch milliseconds.
+     * @param to       The latest start of a bar, in epoch milliseconds.
+     * @return The price bars of the stock.
+     */
+    @GetMapping("/stocks/{symbol}/bars")
+    public List<Bar> getBars(@PathVariable String symbol, @RequestParam(defaultValue = "1m") String interval,
+            @RequestParam(required = false) Long from, @RequestParam(required = false) Long to) {
+        BarInterval barInterval = BarInterval.of(interval);
+        if (barInterval == null)
+            throw new BarIntervalInvalidException(interval);
+        long end = to != null ? to : System.currentTimeMillis();
+        long start = from != null ? from : barInterval.start(end, calendar.getZone()) - 99 * barInterval.getMillis();
+        List<Bar> bars = stockService.getBars(symbol, barInterval, start, end);
+
+        if (bars == null)
+            throw new StockSymbolNotFoundException("No stock information found for " + symbol);
+        return bars;
+    }
+
 }
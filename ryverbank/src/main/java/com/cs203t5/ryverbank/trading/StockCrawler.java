@@ -1,786 +1,213 @@
 package com.cs203t5.ryverbank.trading;
 
-import java.io.IOException;
-import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
-import com.cs203t5.ryverbank.account_transaction.*;
-import com.cs203t5.ryverbank.portfolio.*;
+import javax.annotation.PreDestroy;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import yahoofinance.Stock;
-import yahoofinance.YahooFinance;
+import com.cs203t5.ryverbank.account_transaction.ReservationServices;
 
 /**
  * Stock crawler class that crawls stock info data from the Straits Times Index:
- * https://www.sgx.com/indices/products/sti using yahoo finance API.
+ * https://www.sgx.com/indices/products/sti from a {@link MarketDataFeed}.
+ *
+ * The symbols are the trading instruments of the {@link InstrumentRegistry}.
+ * Every market job splits them into partitions that are worked on by a pool of
+ * threads at the same time, so the jobs keep up with thousands of symbols. A
+ * partition that fails does not stop the others.
  */
 @Component
 public class StockCrawler {
-    /** The stock repository. */
-    private StockRepository stockRepository;
-    /** The trade repository. */
-    private TradeRepository tradeRepository;
-    /** The asset services. */
-    private AssetService assetService;
-    /** The transaction services. */
-    private TransactionServices tranService;
-    /** The account services. */
-    private AccountServices accService;
-    /** The portfolio services. */
-    private PortfolioService portfolioService;
-    /** Counter. */
-    private int count = 0;
+    /** The account the market maker trades with. */
+    public static final Long MARKET_MAKER_ACCOUNT_ID = 1L;
+    /** The customer that owns the market maker account. */
+    public static final Long MARKET_MAKER_CUSTOMER_ID = 4L;
+
+    /** The quotes of the stocks. */
+    private QuoteCache quoteCache;
+    /** The trade services. */
+    private TradeServices tradeServices;
+    /** The source of the stock quotes. */
+    private MarketDataFeed marketData;
+    /** The instruments listed on the exchange. */
+    private InstrumentRegistry instruments;
+    /** The market maker. */
+    private MarketMaker marketMaker;
+    /** The trading sessions of the exchange. */
+    private MarketCalendar calendar;
+    /** The money the buy trades have on hold. */
+    private ReservationServices reservations;
+    /** The threads that work on the partitions of a job. */
+    private final ExecutorService workers;
+    /** The number of symbols in a partition. */
+    private final int partitionSize;
 
     /**
      * Constructs a StockCrawler with the following parameters.
      * 
-     * @param stockRepository  The stock repository.
-     * @param tradeRepository  The trade repository.
-     * @param assetService     The asset services.
-     * @param tranService      The transaction services.
-     * @param accService       The account services.
-     * @param portfolioService The Portfolio Services
+     * @param quoteCache       The quotes of the stocks.
+     * @param tradeServices    The trade services.
+     * @param marketData       The source of the stock quotes.
+     * @param instruments      The instruments listed on the exchange.
+     * @param marketMaker      The market maker.
+     * @param calendar         The trading sessions of the exchange.
+     * @param reservations     The money the buy trades have on hold.
+     * @param workers          The number of partitions worked on at once.
+     * @param partitionSize    The number of symbols in a partition.
      */
-    public StockCrawler(StockRepository stockRepository, TradeRepository tradeRepository, AssetService assetService,
-            TransactionServices tranService, AccountServices accService, PortfolioService portfolioService) {
-        this.stockRepository = stockRepository;
-        this.tradeRepository = tradeRepository;
-        this.assetService = assetService;
-        this.accService = accService;
-        this.tranService = tranService;
-        this.portfolioService = portfolioService;
-
+    public StockCrawler(QuoteCache quoteCache, TradeServices tradeServices, MarketDataFeed marketData,
+            InstrumentRegistry instruments, MarketMaker marketMaker, MarketCalendar calendar,
+            ReservationServices reservations,
+            @Value("${ryverbank.market.workers:4}") int workers,
+            @Value("${ryverbank.market.partition-size:50}") int partitionSize) {
+        this.quoteCache = quoteCache;
+        this.tradeServices = tradeServices;
+        this.marketData = marketData;
+        this.instruments = instruments;
+        this.marketMaker = marketMaker;
+        this.calendar = calendar;
+        this.reservations = reservations;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(workers, 1), runnable -> {
+            Thread thread = new Thread(runnable, "market-job-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.partitionSize = Math.max(partitionSize, 1);
     }
 
     // Open the market at 9am (GMT+8) every weekday
     // @Scheduled(cron = "0 00 09 ? * MON-FRI", zone = "GMT+8")
     /**
      * Simulates a web crawler by crawling the stock market from SGX and saving it
-     * into the stock repository.
+     * into the stock repository. A stock the market data feed cannot quote keeps
+     * its previous quote.
      */
     public void crawl() {
+        inPartitions(symbols -> crawl(symbols));
+    }
 
-        try {
-            String[] symbols = new String[] { "A17U", "C61U", "C31", "C38U", "C09", "C52", "D01", "D05", "G13", "H78",
-                    "C07", "J36", "J37", "BN4", "N2IU", "ME8U", "M44U", "O39", "S58", "U96", "S68", "C6L", "Z74", "S63",
-                    "Y92", "U11", "U14", "V03", "F34", "BS6" };
-
-            for (String symbol : symbols) {
-                Stock stock = YahooFinance.get(symbol + ".SI");
-                // double bid = stock.getQuote().getBid().doubleValue();
-                double bid = 0.0;
-                double price = stock.getQuote().getPrice().doubleValue();
-                // double ask = stock.getQuote().getAsk().doubleValue();
-                double ask = 0.0;
-                int bidVolume = 0;
-                // stock.getQuote().getBidSize().intValue();
-                int askVolume = 0;
-                // stock.getQuote().getAskSize().intValue();
-                stockRepository.save(new CustomStock(symbol, price, bidVolume, bid, askVolume, ask));
+    private void crawl(List<String> symbols) {
+        Map<String, MarketQuote> quotes = marketData.fetch(symbols);
+        for (String symbol : symbols) {
+            MarketQuote quote = quotes.get(symbol);
+            if (quote == null) {
+                System.out.println(symbol + " is not found");
+                continue;
             }
-        } catch (IOException e) {
-            System.out.println("One of the stock is not found");
+            // The bid and ask come from the market maker's trades once the market opens
+            double bid = 0.0;
+            double ask = 0.0;
+            int bidVolume = 0;
+            int askVolume = 0;
+            quoteCache.update(new CustomStock(symbol, quote.getPrice(), bidVolume, bid, askVolume, ask));
         }
-
     }
 
     /**
-     * Simulates a stock market by crawling the stock data from SGX and saving it in
-     * the trade repository. This market will only be open at 9am (GMT+8) every
-     * weekday.
+     * Simulates a stock market by having the market maker quote a bid and an ask
+     * for every symbol, then keep them up to date with the market data feed until
+     * the market closes. This market will only be open at 9am (GMT+8) every
+     * weekday that is not a holiday. A stock the market data feed cannot quote is
+     * left without market maker trades.
      */
     @Scheduled(cron = "0 00 09 ? * MON-FRI", zone = "GMT+8")
     public void marketMaker() {
-
-        long currentTimestamp = Instant.now().getEpochSecond();
-
-        try {
-            String[] symbols = new String[] { "A17U", "C61U", "C31", "C38U", "C09", "C52", "D01", "D05", "G13", "H78",
-                    "C07", "J36", "J37", "BN4", "N2IU", "ME8U", "M44U", "O39", "S58", "U96", "S68", "C6L", "Z74", "S63",
-                    "Y92", "U11", "U14", "V03", "F34", "BS6" };
-
-            // Market marker buy and sell trade for each symbol
-            for (String symbol : symbols) {
-                Stock stock = YahooFinance.get(symbol + ".SI");
-                String buyAction = "buy";
-                int quantity = 20000;
-                double bid = stock.getQuote().getBid().doubleValue();
-                long date = currentTimestamp;
-                String status = "open";
-
-                String sellAction = "sell";
-                double ask = stock.getQuote().getAsk().doubleValue();
-
-                // Customer_Id is the market maker account
-                int account_Id = 1;
-                int customer_Id = 4;
-                Long accountId = Long.valueOf(account_Id);
-                Long customerId = Long.valueOf(customer_Id);
-
-                tradeRepository.save(new Trade(buyAction, symbol, quantity, bid, 0.0, 0.0, 0, date, accountId,
-                        customerId, status, 0.0));
-                tradeRepository.save(new Trade(sellAction, symbol, quantity, 0.0, ask, 0.0, 0, date, accountId,
-                        customerId, status, 0.0));
-
-                Optional<CustomStock> optionalStocks = stockRepository.findBySymbol(symbol);
-                if (optionalStocks != null || optionalStocks.isPresent()) {
-                    CustomStock customStock = optionalStocks.get();
-                    customStock.setAsk(ask);
-                    customStock.setBid(bid);
-                    customStock.setBidVolume(quantity);
-                    customStock.setAskVolume(quantity);
-
-                    stockRepository.save(customStock);
-                }
-
-            }
-
-        } catch (IOException e) {
-            System.out.println("One of the stock is not found");
+        if (!calendar.isTradingDay()) {
+            System.out.println("Market is closed for the holiday");
+            return;
         }
 
+        inPartitions(symbols -> marketMaker.quote(symbols));
+        marketMaker.start();
+
         System.out.println("Market is open");
 
     }
 
     /**
-     * Simulates the opening of a buy market by finding the list of open or
-     * partially filled sell trades in the current repository and matching it to
-     * them. This market will only be open at 9am (GMT+8) every weekday.
+     * Opens the market with a call auction on every symbol. The orders queued
+     * while the market was closed are crossed at one equilibrium price per symbol,
+     * each symbol on the thread that owns it. This market will only be open at
+     * 9am (GMT+8) every weekday that is not a holiday.
      */
     @Scheduled(cron = "30 00 09 ? * MON-FRI", zone = "GMT+8")
-    public void openBuyMarket() {
-        String[] symbols = new String[] { "A17U", "C61U", "C31", "C38U", "C09", "C52", "D01", "D05", "G13", "H78",
-                "C07", "J36", "J37", "BN4", "N2IU", "ME8U", "M44U", "O39", "S58", "U96", "S68", "C6L", "Z74", "S63",
-                "Y92", "U11", "U14", "V03", "F34", "BS6" };
-
-        for (String symbol : symbols) {
-            // Get the list of trades for {symbol}
-            List<Trade> tradesList = tradeRepository.findAllBySymbol(symbol);
-            List<Trade> listOfBuyTrades = new ArrayList<>();
-
-            // Customer_Id is the market maker account
-            int account_Id = 1;
-            Long accountId = Long.valueOf(account_Id);
-
-            // Gets all the buy trades that are open or partially filled and add to
-            // listOfBuyTrades
-            for (Trade trade : tradesList) {
-                if (trade.getAction().equals("buy") && (trade.getStatus().equals("open"))) {
-                    if (!(trade.getAccountId().equals(accountId))) {
-                        listOfBuyTrades.add(trade);
-                    }
-
-                }
+    public void openMarket() {
+        if (!calendar.isTradingDay()) {
+            return;
+        }
+        inPartitions(symbols -> {
+            for (String symbol : symbols) {
+                tradeServices.openMarket(symbol);
             }
+        });
+    }
 
-            // For each buy trade in the list
-            for (Trade trade : listOfBuyTrades) {
-                Optional<CustomStock> optionalCustomStock = stockRepository.findBySymbol(symbol);
-                CustomStock customStock = optionalCustomStock.get();
-                List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-                List<Trade> listOfSellTrades = new ArrayList<>();
-
-                // Set the newBidPrice, the best price will be recorded
-                // best price is the higher bid
-                // It must be better than the current stock's bid price and still lower than the
-                // ask price
-                double newBidPrice = customStock.getBid();
-                int newBidVolume = customStock.getBidVolume();
-                double tradeBidPrice = trade.getBid();
-                if (tradeBidPrice == 0.0) {
-                    tradeBidPrice = customStock.getBid();
-                }
-
-                if (tradeBidPrice > newBidPrice && tradeBidPrice < customStock.getAsk()) {
-                    newBidPrice = tradeBidPrice;
-                    newBidVolume = trade.getQuantity();
-
-                }
-                // Get the list of open & partial-filled of market sell trades for {symbol}
-                if (trade.getBid() == 0.0 || trade.getBid() > customStock.getAsk()) {
-                    for (Trade sellTradeList : listOfTrades) {
-                        if (sellTradeList.getAction().equals("sell")) {
-                            if (sellTradeList.getStatus().equals("open")
-                                    || sellTradeList.getStatus().equals("partial-filled")) {
-                                listOfSellTrades.add(sellTradeList);
-                            }
-
-                        }
-                    }
-                } else {
-                    // Get the list of open & partial-filled sell trades that are equal to the
-                    // bid_price or lower than the bid price for {symbol}
-                    for (Trade sellTradeList : listOfTrades) {
-                        if (sellTradeList.getAction().equals("sell")) {
-                            if (sellTradeList.getAsk() == trade.getBid() || sellTradeList.getAsk() < trade.getBid()) {
-                                if (sellTradeList.getStatus().equals("open")
-                                        || sellTradeList.getStatus().equals("partial-filled")) {
-                                    listOfSellTrades.add(sellTradeList);
-                                }
-                            }
-
-                        }
-                    }
-                }
-
-                // When there is not available sell trades on the market
-                // Set the trade to it's original status
-                // Add the subsequent volume
-                try {
-                    if (listOfSellTrades.size() == 0) {
-                        if (trade.getStatus().equals("partial-filled")) {
-                            trade.setStatus("partial-filled");
-                        } else {
-                            trade.setStatus("open");
-                        }
-                        customStock.setBid(newBidPrice);
-                        customStock.setBidVolume(newBidVolume);
-                        customStock.setAskVolume(customStock.getAskVolume() - trade.getFilledQuantity());
-                        count = 0;
-
-                        // trade successful then store into user's asset list
-                        // assetService.addAsset(trade)
-                        assetService.addAsset(trade, customStock);
-                        if(trade.getFilledQuantity() != 0.0){
-                            trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                        }
-                        tradeRepository.save(trade);
-                        return;
-                    }
-                    // If is a new trade, meaning no status has been set yet, set the trade to open
-                } catch (NullPointerException e) {
-                    trade.setStatus("open");
-                    customStock.setBid(newBidPrice);
-                    customStock.setBidVolume(newBidVolume);
-                    count = 0;
-                    tradeRepository.save(trade);
-                    return;
-                }
-
-                double lastPrice = 0.0;
-
-                // This is set avg price for trade at the begining before there is any match
-                try {
-                    trade.setAvgPrice(trade.getAvgPrice());
-                } catch (NullPointerException e) {
-                    trade.setAvgPrice(0.0);
-                }
-
-                double avgPrice = trade.getAvgPrice();
-
-                if (listOfSellTrades.size() != 0) {
-
-                    if(accService.getAccount(trade.getAccountId()).getBalance() == 0){
-                        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                         tradeRepository.save(trade);
-                    }
-                    
-                    Date date = new Date(listOfSellTrades.get(0).getDate());
-                    Trade matchTrade = listOfSellTrades.get(0);
-
-                    // Match to market sell price first
-                    for (Trade sellTrade : listOfSellTrades) {
-                        Date currentSellTradeDate = new Date(sellTrade.getDate());
-                        if (matchTrade.getAsk() > sellTrade.getAsk()) {
-                            matchTrade = sellTrade;
-                        } else if (matchTrade.getAsk() == sellTrade.getAsk()) {
-                            if (date.after(currentSellTradeDate)) {
-                                matchTrade = sellTrade;
-                            }
-                        }
-                    }
-
-                    // add the number of matched trade by one
-                    count++;
-                    int originalFilledQuantity = trade.getFilledQuantity();
-                    int originalQuantity = trade.getQuantity();
-                    int originalMatchFilledQuantity = matchTrade.getFilledQuantity();
-                    int originalMatchQuantity = matchTrade.getQuantity();
-
-                    // When submitted trade has more quantity than match trade
-                    if (matchTrade.getQuantity() - trade.getQuantity() < 0) {
-
-                        int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + matchTrade.getQuantity();
-                        int tradeFilledQuantity = trade.getFilledQuantity() + matchTrade.getQuantity();
-                        int tradeQuantity = trade.getQuantity() - matchTrade.getQuantity();
-
-                        matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                        trade.setFilledQuantity(tradeFilledQuantity);
-                        trade.setQuantity(tradeQuantity);
-                        matchTrade.setQuantity(0);
-
-                    }
-
-                    else {
-
-                        int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + trade.getQuantity();
-                        int tradeFilledQuantity = trade.getQuantity() + trade.getFilledQuantity();
-                        int matchTradeQuantity = matchTrade.getQuantity() - trade.getQuantity();
-
-                        matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                        trade.setFilledQuantity(tradeFilledQuantity);
-                        trade.setQuantity(0);
-                        matchTrade.setQuantity(matchTradeQuantity);
-
-                    }
-
-                    if (matchTrade.getQuantity() != 0) {
-                        matchTrade.setStatus("partial-filled");
-                    } else {
-                        matchTrade.setStatus("filled");
-
-                    }
-                    if (trade.getQuantity() != 0) {
-                        trade.setStatus("partial-filled");
-
-                    } else {
-                        trade.setStatus("filled");
-                    }
-
-                    // Set the avg_price for match trade
-                double tradeBidPrices;
-                if (trade.getBid() == 0.0) {
-                    tradeBidPrices = customStock.getBid();
-                } else {
-                    tradeBidPrices = trade.getBid();
-                }
-          
-         
-                /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
-                Long give = trade.getAccountId();
-                Long take = matchTrade.getAccountId();
-                double amt = trade.getFilledQuantity() * customStock.getAsk();
-
-              
-                    if(accService.getAccount(trade.getAccountId()).getBalance() < amt ){
-                    
-                        double askPrice = matchTrade.getAsk();
-                        if(matchTrade.getAsk() == 0.0){
-                            askPrice = tradeBidPrices;
-                        }
-                        int newAmount = (int) Math.round( accService.getAccount(trade.getAccountId()).getBalance() / askPrice);
-                        if(newAmount % 100 != 0){
-                            newAmount = (int)(Math.round( newAmount / 100.0) * 100);
-                        }
-                        // if(newAmount == 0){
-                        //     throw new InsufficientBalanceException("Not enough funds");
-                        // }
-                        avgPrice += (newAmount * askPrice);
-                        trade.setAvgPrice(avgPrice);
-                        trade.setFilledQuantity(originalFilledQuantity + newAmount);
-                        trade.setQuantity(originalQuantity - newAmount);
-                        matchTrade.setFilledQuantity(originalMatchFilledQuantity + newAmount);
-                        matchTrade.setQuantity(originalMatchQuantity - newAmount);
-                        if(trade.getQuantity() != 0){
-                            trade.setStatus("partial-filled");
-                        }
-                        if(matchTrade.getQuantity() != 0){
-                            matchTrade.setStatus("partial-filled");
-                        }
-
-                        tradeRepository.save(trade);
-                        tradeRepository.save(matchTrade);
-                    
-                        amt = newAmount * askPrice;
-                        accService.accTradeOnHold(take, amt);
-                        tranService.addTransaction(give, take, amt * -1);
-                    }else{
-                        // Set the avg_price for current trade
-                        double matchTradeAskPrice;
-                        if (matchTrade.getAsk() == 0.0) {
-                            matchTradeAskPrice = customStock.getAsk();
-                        } else {
-                            matchTradeAskPrice = matchTrade.getAsk();
-                        }
-            
-                        avgPrice += (trade.getFilledQuantity() * matchTradeAskPrice) ;
-                        trade.setAvgPrice(avgPrice);
-                    
-                        matchTrade.setAvgPrice(tradeBidPrices);
-
-                        lastPrice = matchTrade.getAsk();
-
-                        tradeRepository.save(trade);
-                        accService.accTradeOnHold(take, amt);
-                        tranService.addTransaction(give, take, amt * -1);
-                    }
-
-                }
-
-                // If trade is partial-filled after matching, find other available sell trade on
-                // the market
-                if (trade.getStatus().equals("partial-filled")) {
-                    // Set stock last price
-                    if (lastPrice == 0.0) {
-                        customStock.setLastPrice(customStock.getAsk());
-                    } else {
-                        customStock.setLastPrice(lastPrice);
-                    }
-
-                    // Set stock bid price
-                    customStock.setBid(customStock.getBid());
-
-                    // createMarketBuyTrade(trade, customer, customStock);
-                    openBuyMarket();
-                }
-
-                customStock.setAskVolume(customStock.getAskVolume() - trade.getFilledQuantity());
-
-                // Set stock last price
-                if (lastPrice == 0.0) {
-                    customStock.setLastPrice(customStock.getAsk());
-                } else {
-                    customStock.setLastPrice(lastPrice);
-                }
-                // Set stock bid price
-                customStock.setBid(customStock.getBid());
-
-                count = 0;
-                // if it reaches here, straight away count as success
-                assetService.addAsset(trade, customStock);
-
-                /*
-                 * This is to set the askVolume for the stockInfo
-                 */
-                // Get the list of trades for {symbol}
-                List<Trade> listOfAvaiTrades = tradeRepository.findAllBySymbol(symbol);
-                List<Trade> listOfAvaiSellTrades = new ArrayList<>();
-
-                if (customStock.getAskVolume() <= 0) {
-                    // Get the list of open & partial-filled of market buy trades for {symbol}
-                    for (Trade sellTradeList : listOfAvaiTrades) {
-                        if (sellTradeList.getAction().equals("sell")) {
-                            if (sellTradeList.getStatus().equals("open")
-                                    || sellTradeList.getStatus().equals("partial-filled")) {
-                                listOfAvaiSellTrades.add(sellTradeList);
-                            }
-
-                        }
-                    }
-
-                    if (listOfAvaiSellTrades.size() != 0) {
-                        Date date = new Date(listOfAvaiSellTrades.get(0).getDate());
-                        Trade matchTrade = listOfAvaiSellTrades.get(0);
-
-                        for (Trade sellTrade : listOfAvaiSellTrades) {
-                            Date currentSellTradeDate = new Date(sellTrade.getDate());
-                            if (matchTrade.getAsk() > sellTrade.getAsk()) {
-                                matchTrade = sellTrade;
-                            } else if (matchTrade.getAsk() == sellTrade.getAsk()) {
-                                if (date.after(currentSellTradeDate)) {
-                                    matchTrade = sellTrade;
-                                }
-                            }
-                        }
-
-                        customStock.setAskVolume(matchTrade.getQuantity());
-                        if (matchTrade.getAsk() != 0.0) {
-                            customStock.setAsk(matchTrade.getAsk());
-                        }
-
-                    } else {
-                        customStock.setAskVolume(0);
-                    }
-
-                }
-                trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                tradeRepository.save(trade);
-                stockRepository.save(customStock);
+    /**
+     * Simulates a closing of the stock market by expiring all the open and
+     * partially filled trades, with one update per symbol, and putting back the
+     * money and shares they held. This market will close at 5pm (GMT+8) every
+     * weekday. Once every symbol is closed, the held balances of the accounts are
+     * checked against the reservations of the buy trades still live.
+     */
+    @Scheduled(cron = "0 00 17 ? * MON-FRI", zone = "GMT+8")
+    public void closeMarket() {
+        marketMaker.stop();
+        AtomicInteger expired = new AtomicInteger();
+        inPartitions(symbols -> {
+            for (String symbol : symbols) {
+                expired.addAndGet(tradeServices.closeMarket(symbol));
             }
-
+        });
+        System.out.println("Market is close, " + expired.get() + " trades expired");
+        List<Long> mismatched = reservations.reconcile();
+        if (!mismatched.isEmpty()) {
+            System.out.println("Held balances do not match the reservations of accounts " + mismatched);
         }
-
     }
 
     /**
-     * Simulates the opening of a sell market by finding the list of open or
-     * partially filled buy trades in the current repository and matching it to
-     * them. This market will only be open at 9am (GMT+8) every weekday.
+     * Splits the trading symbols into partitions, runs the job on every partition
+     * on the worker threads and waits for all of them.
+     *
+     * @param job The work on one partition.
      */
-    @Scheduled(cron = "30 00 09 ? * MON-FRI", zone = "GMT+8")
-    public void openSellMarket() {
-        String[] symbols = new String[] { "A17U", "C61U", "C31", "C38U", "C09", "C52", "D01", "D05", "G13", "H78",
-                "C07", "J36", "J37", "BN4", "N2IU", "ME8U", "M44U", "O39", "S58", "U96", "S68", "C6L", "Z74", "S63",
-                "Y92", "U11", "U14", "V03", "F34", "BS6" };
-
-        for (String symbol : symbols) {
-            // Get the list of trades for {symbol}
-            List<Trade> tradesList = tradeRepository.findAllBySymbol(symbol);
-            List<Trade> listOfSellTrades = new ArrayList<>();
-
-            // Customer_Id is the market maker account
-            int account_Id = 1;
-            Long accountId = Long.valueOf(account_Id);
-
-            for (Trade trade : tradesList) {
-                if (trade.getAction().equals("sell")
-                        && (trade.getStatus().equals("open") || trade.getStatus().equals("partial-filled"))) {
-                    if (!(trade.getAccountId().equals(accountId))) {
-                        listOfSellTrades.add(trade);
-                    }
-
-                }
-            }
-
-            for (Trade trade : listOfSellTrades) {
-                Optional<CustomStock> optionalCustomStock = stockRepository.findBySymbol(symbol);
-                CustomStock customStock = optionalCustomStock.get();
-                List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-                List<Trade> listOfBuyTrades = new ArrayList<>();
-
-                // Market Sell
-                if (trade.getAsk() == 0.0 || trade.getAsk() < customStock.getBid()) {
-                    // Get list of open / partial-filled market buy trades
-                    for (Trade buyTrade : listOfTrades) {
-                        if (buyTrade.getAction().equals("buy")) {
-                            if (buyTrade.getStatus().equals("open") || buyTrade.getStatus().equals("partial-filled")) {
-                                listOfBuyTrades.add(buyTrade);
-                            }
-
-                        }
-                    }
-                } else { // Limit Sell
-                    // Gte the list of open & partial-filled buy trades that are equal to the
-                    // ask_price or higher than the ask_price
-                    for (Trade buyTrade : listOfTrades) {
-                        if (buyTrade.getAction().equals("buy")) {
-                            if (buyTrade.getBid() == trade.getAsk() || buyTrade.getBid() > trade.getAsk()) {
-                                if (buyTrade.getStatus().equals("open")
-                                        || buyTrade.getStatus().equals("partial-filled")) {
-                                    listOfBuyTrades.add(buyTrade);
-                                }
-                            }
-
-                        }
-                    }
-                }
-
-                try {
-                    if (listOfBuyTrades.size() == 0) {
-                        if (trade.getStatus().equals("partial-filled")) {
-                            trade.setStatus("partial-filled");
-                        } else {
-                            trade.setStatus("open");
-                        }
-
-                        customStock.setBidVolume(customStock.getBidVolume() - trade.getFilledQuantity());
-                        count = 0;
-                        if(trade.getFilledQuantity() != 0){
-                            trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                        }
-                        tradeRepository.save(trade);
-                        portfolioService.updateRealizedGainLoss(trade, customStock);
-                        return;
-                    }
-                } catch (NullPointerException e) {
-                    trade.setStatus("open");
-                    count = 0;
-                    tradeRepository.save(trade);
-                    return;
-                }
-
-                double lastPrice = 0.0;
-                // This is set avg price for trade at the begining before there is any match
-                try {
-                    trade.setAvgPrice(trade.getAvgPrice());
-                } catch (NullPointerException e) {
-                    trade.setAvgPrice(0.0);
-                }
-                double avgPrice = trade.getAvgPrice();
-
-                if (listOfBuyTrades.size() != 0) {
-                    Date date = new Date(listOfBuyTrades.get(0).getDate());
-                    Trade matchTrade = listOfBuyTrades.get(0);
-
-                    // Match to market buy price (current highest buy price)
-                    // then the highest buy price
-                    for (Trade buyTrade : listOfBuyTrades) {
-                        Date currentBuyTradeDate = new Date(buyTrade.getDate());
-                        if (matchTrade.getBid() < buyTrade.getBid()) {
-                            matchTrade = buyTrade;
-                        } else if (matchTrade.getBid() == buyTrade.getBid()) {
-                            if (date.after(currentBuyTradeDate)) {
-                                matchTrade = buyTrade;
-                            }
-                        }
-                    }
-
-                    // add the number of matched trade by one
-                    count++;
-
-                    if (matchTrade.getQuantity() - trade.getQuantity() < 0) {
-
-                        int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + matchTrade.getQuantity();
-                        int tradeFilledQuantity = trade.getFilledQuantity() + matchTrade.getQuantity();
-                        int tradeQuantity = trade.getQuantity() - matchTrade.getQuantity();
-
-                        matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                        trade.setFilledQuantity(tradeFilledQuantity);
-                        trade.setQuantity(tradeQuantity);
-                        matchTrade.setQuantity(0);
-
-                    } else {
-
-                        int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + trade.getQuantity();
-                        int tradeFilledQuantity = trade.getQuantity() + trade.getFilledQuantity();
-                        int matchTradeQuantity = matchTrade.getQuantity() - trade.getQuantity();
-
-                        matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                        trade.setFilledQuantity(tradeFilledQuantity);
-                        trade.setQuantity(0);
-                        matchTrade.setQuantity(matchTradeQuantity);
-
-                    }
-
-                    if (matchTrade.getQuantity() != 0) {
-                        matchTrade.setStatus("partial-filled");
-                    } else {
-                        matchTrade.setStatus("filled");
-
-                    }
-                    if (trade.getQuantity() != 0) {
-                        trade.setStatus("partial-filled");
-                    } else {
-                        trade.setStatus("filled");
-                    }
-
-                    // Set the avg_price for current trade
-                    double matchTradeBidPrice;
-                    if (matchTrade.getBid() == 0.0) {
-                        matchTradeBidPrice = customStock.getBid();
-                    } else {
-                        matchTradeBidPrice = matchTrade.getBid();
-                    }
-
-                    avgPrice += trade.getFilledQuantity() * matchTradeBidPrice;
-                    trade.setAvgPrice(avgPrice);
-
-                    // Set the avg_price for match trade
-                    double tradeAskPrice;
-                    if (trade.getAsk() == 0.0) {
-                        tradeAskPrice = customStock.getAsk();
-                    } else {
-                        tradeAskPrice = trade.getAsk();
-                    }
-                    matchTrade.setAvgPrice(tradeAskPrice);
-
-                    // Set the last price
-                    lastPrice = matchTrade.getBid();
-
-                    tradeRepository.save(trade);
-                    /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
-                    Long take = trade.getAccountId();
-                    Long give = matchTrade.getAccountId();
-                    double amt = trade.getFilledQuantity() * customStock.getBid();
-                    accService.accTradeOnHold(take, amt);
-                    accService.accTradeOnHold(give, amt * -1);
-                    tranService.addTransaction(take, give, amt);
-                    tradeRepository.save(matchTrade);
-                }
-
-                if (trade.getStatus().equals("partial-filled")) {
-                    // Set stock last price
-                    if (lastPrice == 0.0) {
-                        customStock.setLastPrice(customStock.getBid());
-                    } else {
-                        customStock.setLastPrice(lastPrice);
-
-                    }
-                    // Set stock ask price
-                    customStock.setAsk(customStock.getAsk());
-
-                    openSellMarket();
-                }
-
-                customStock.setBidVolume(customStock.getBidVolume() - trade.getFilledQuantity());
-                // Set stock last price
-                if (lastPrice == 0.0) {
-                    customStock.setLastPrice(customStock.getBid());
-                } else {
-                    customStock.setLastPrice(lastPrice);
-                }
-                // Set stock ask price
-                customStock.setAsk(customStock.getAsk());
-
-                portfolioService.updateRealizedGainLoss(trade, customStock);
-
-                // Set the bidVolume
-                List<Trade> listOfAvaiTrades = tradeRepository.findAllBySymbol(symbol);
-                List<Trade> listOfAvaiBuyTrades = new ArrayList<>();
-
-                if (customStock.getBidVolume() <= 0) {
-                    // Get the list of open & partial-filled of market buy trades for {symbol}
-                    for (Trade buyTradeList : listOfAvaiTrades) {
-                        if (buyTradeList.getAction().equals("buy")) {
-                            if (buyTradeList.getStatus().equals("open")
-                                    || buyTradeList.getStatus().equals("partial-filled")) {
-                                listOfAvaiBuyTrades.add(buyTradeList);
-                            }
-
-                        }
-                    }
-
-                    if (listOfAvaiBuyTrades.size() != 0) {
-                        Date date = new Date(listOfAvaiBuyTrades.get(0).getDate());
-                        Trade matchTrade = listOfAvaiBuyTrades.get(0);
-
-                        for (Trade buyTrade : listOfAvaiBuyTrades) {
-                            Date currentBuyTradeDate = new Date(buyTrade.getDate());
-                            if (matchTrade.getBid() < buyTrade.getBid()) {
-                                matchTrade = buyTrade;
-                            } else if (matchTrade.getBid() == buyTrade.getBid()) {
-                                if (date.after(currentBuyTradeDate))
-                                    matchTrade = buyTrade;
-                            }
-
-                        }
-
-                        customStock.setBidVolume(matchTrade.getQuantity());
-                        if (matchTrade.getBid() != 0.0) {
-                            customStock.setAsk(matchTrade.getBid());
-                        }
-                    } else {
-                        customStock.setBidVolume(0);
-                    }
-
-                }
-                trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                tradeRepository.save(trade);
-                stockRepository.save(customStock);
+    private void inPartitions(Consumer<List<String>> job) {
+        List<String> symbols = instruments.getTradingSymbols();
+        List<Future<?>> partitions = new ArrayList<>();
+        for (int i = 0; i < symbols.size(); i += partitionSize) {
+            List<String> partition = symbols.subList(i, Math.min(i + partitionSize, symbols.size()));
+            partitions.add(workers.submit(() -> job.accept(partition)));
+        }
+        for (Future<?> partition : partitions) {
+            try {
+                partition.get();
+            } catch (ExecutionException e) {
+                System.out.println("Market job failed: " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
-
         }
-
     }
 
     /**
-     * Simulates a closing of the stock market by finding all the open and partially
-     * filled trades in the repository and setting them to expired. This market will
-     * close at 5pm (GMT+8) every weekday
+     * Stops the worker threads.
      */
-    @Scheduled(cron = "0 00 17 ? * MON-FRI", zone = "GMT+8")
-    public void closeMarket() {
-        String[] symbols = new String[] { "A17U", "C61U", "C31", "C38U", "C09", "C52", "D01", "D05", "G13", "H78",
-                "C07", "J36", "J37", "BN4", "N2IU", "ME8U", "M44U", "O39", "S58", "U96", "S68", "C6L", "Z74", "S63",
-                "Y92", "U11", "U14", "V03", "F34", "BS6" };
-
-        for (String symbol : symbols) {
-            List<Trade> tradeList = tradeRepository.findAllBySymbol(symbol);
-            for (Trade trade : tradeList) {
-                if (trade.getStatus().equals("open") || trade.getStatus().equals("partial-filled")) {
-                    trade.setStatus("expired");
-                    tradeRepository.save(trade);
-                }
-            }
-        }
-        System.out.println("Market is close");
+    @PreDestroy
+    public void close() {
+        workers.shutdownNow();
     }
 
 }
@@ -1,5 +1,8 @@
 package com.cs203t5.ryverbank.trading;
 
+import java.util.List;
+import java.util.Optional;
+
 import org.springframework.stereotype.Service;
 
 /**
@@ -9,21 +12,65 @@ import org.springframework.stereotype.Service;
  */
 @Service
 public class StockServiceImpl implements StockServices {
-    /** The stock repository. */
-    private StockRepository stocks;
+    /** The quotes of the stocks. */
+    private QuoteCache quotes;
+    /** The resident order books. */
+    private OrderBookManager orderBooks;
+    /** The time and sales of the stocks. */
+    private TradeTape tradeTape;
+    /** The price bars of the stocks. */
+    private BarAggregator barAggregator;
 
     /**
-     * Constructs a StockServiceImpl with the following parameter.
+     * Constructs a StockServiceImpl with the following parameters.
      * 
-     * @param stocks The stock repository.
+     * @param quotes        The quotes of the stocks.
+     * @param orderBooks    The resident order books.
+     * @param tradeTape     The time and sales of the stocks.
+     * @param barAggregator The price bars of the stocks.
      */
-    public StockServiceImpl(StockRepository stocks) {
-        this.stocks = stocks;
+    public StockServiceImpl(QuoteCache quotes, OrderBookManager orderBooks, TradeTape tradeTape,
+            BarAggregator barAggregator) {
+        this.quotes = quotes;
+        this.orderBooks = orderBooks;
+        this.tradeTape = tradeTape;
+        this.barAggregator = barAggregator;
+    }
+
+    @Override
+    public List<CustomStock> getStocks() {
+        return quotes.getAll();
     }
 
+    @Override
     public CustomStock getStock(String symbol) {
-        return stocks.findBySymbol(symbol).map(stock -> {
-            return stocks.save(stock);
-        }).orElse(null);
+        return quotes.get(symbol);
+    }
+
+    @Override
+    public MarketDepth getDepth(String symbol, int levels) {
+        // the depth is published by the book; only a symbol without a book is looked up
+        Optional<OrderBook> book = orderBooks.findBook(symbol);
+        if (book.isPresent()) {
+            return book.get().getDepth().limit(levels);
+        }
+        return quotes.get(symbol) != null ? MarketDepth.empty(symbol) : null;
+    }
+
+    @Override
+    public List<TradeTape.Print> getTrades(String symbol, int limit) {
+        List<TradeTape.Print> prints = tradeTape.getPrints(symbol, limit);
+        if (!prints.isEmpty() || quotes.get(symbol) != null) {
+            return prints;
+        }
+        return null;
+    }
+
+    @Override
+    public List<Bar> getBars(String symbol, BarInterval interval, long from, long to) {
+        if (quotes.get(symbol) == null) {
+            return null;
+        }
+        return barAggregator.getBars(symbol, interval, from, to);
     }
 }
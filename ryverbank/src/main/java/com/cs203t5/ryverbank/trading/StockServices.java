@@ -1,10 +1,19 @@
 package com.cs203t5.ryverbank.trading;
 
+import java.util.List;
+
 /**
  * An interface for various stock services.
  */
 public interface StockServices {
 
+    /**
+     * Lists the current quotes of all stocks, in symbol order.
+     * 
+     * @return The list of all stocks.
+     */
+    List<CustomStock> getStocks();
+
     /**
      * Finds the stock based on the specified stock symbol. Return null if no stock
      * is found.
@@ -13,4 +22,36 @@ public interface StockServices {
      * @return The stock with the specified symbol.
      */
     CustomStock getStock(String symbol);
+
+    /**
+     * Finds the aggregated quantity at the best price levels of the order book of
+     * the specified stock symbol. Return null if no stock is found.
+     * 
+     * @param symbol The stock symbol.
+     * @param levels The number of price levels per side.
+     * @return The market depth of the stock.
+     */
+    MarketDepth getDepth(String symbol, int levels);
+
+    /**
+     * Finds the most recent executions of the specified stock symbol, newest
+     * first. Return null if no stock is found.
+     * 
+     * @param symbol The stock symbol.
+     * @param limit  The maximum number of executions.
+     * @return The time and sales of the stock.
+     */
+    List<TradeTape.Print> getTrades(String symbol, int limit);
+
+    /**
+     * Finds the price bars of the specified stock symbol that start within a time
+     * range, oldest first. Return null if no stock is found.
+     * 
+     * @param symbol   The stock symbol.
+     * @param interval The resolution of the bars.
+     * @param from     The earliest start, in epoch milliseconds.
+     * @param to       The latest start, in epoch milliseconds.
+     * @return The price bars of the stock.
+     */
+    List<Bar> getBars(String symbol, BarInterval interval, long from, long to);
 }
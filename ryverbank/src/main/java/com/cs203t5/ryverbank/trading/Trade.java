@@ -2,6 +2,7 @@ package com.cs203t5.ryverbank.trading;
 
 import java.util.Date;
 import javax.persistence.*;
+import com.cs203t5.ryverbank.Money;
 import com.cs203t5.ryverbank.customer.*;
 import com.cs203t5.ryverbank.account_transaction.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -22,7 +23,10 @@ import lombok.*;
 @EqualsAndHashCode
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Trade {
-    private @Id @GeneratedValue(strategy = GenerationType.IDENTITY) Long id;
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trade_seq")
+    @SequenceGenerator(name = "trade_seq", sequenceName = "trade_seq", allocationSize = 50)
+    private Long id;
 
     @NotNull(message = "Action cannot be null")
     private String action;
@@ -34,16 +38,16 @@ public class Trade {
     @Column(name = "quantity")
     private int quantity = -531;
 
+    /** The bidding price, in cents. */
     @Column(name = "bid")
-    @JsonProperty("bid")
-    private double bid = -1;
+    private long bid = -Money.CENTS_PER_DOLLAR;
 
+    /** The asking price, in cents. */
     @Column(name = "ask")
-    @JsonProperty("ask")
-    private double ask;
+    private long ask;
 
-    @JsonProperty("avg_price")
-    private double avgPrice;
+    /** The average filled price, in cents. */
+    private long avgPrice;
 
     @JsonProperty("filled_quantity")
     private int filledQuantity;
@@ -58,8 +62,9 @@ public class Trade {
 
     private String status;
 
+    /** The price the funds of a buy trade are held at, in cents. */
     @JsonIgnore
-    private double tradedPrice = 0.0;
+    private long tradedPrice;
 
     @JsonIgnore
     @ManyToOne(optional = false)
@@ -96,16 +101,105 @@ public class Trade {
         this.action = action;
         this.symbol = symbol;
         this.quantity = quantity;
-        this.bid = bid;
-        this.ask = ask;
-        this.avgPrice = avgPrice;
+        this.bid = Money.cents(bid);
+        this.ask = Money.cents(ask);
+        this.avgPrice = Money.cents(avgPrice);
         this.filledQuantity = filledQuantity;
         this.date = date;
         this.accountId = accountId;
         this.customerId = customerId;
         this.status = status;
-        this.tradedPrice = tradedPrice;
+        this.tradedPrice = Money.cents(tradedPrice);
+
+    }
+
+    @JsonProperty("bid")
+    public double getBid() {
+        return Money.dollars(bid);
+    }
+
+    /**
+     * Sets the bidding price.
+     * 
+     * @param bid The bidding price.
+     * @throws IllegalArgumentException If the price is not a whole number of
+     *                                  cents.
+     */
+    @JsonProperty("bid")
+    public void setBid(double bid) {
+        this.bid = Money.wholeCents(bid);
+    }
+
+    @JsonProperty("ask")
+    public double getAsk() {
+        return Money.dollars(ask);
+    }
+
+    /**
+     * Sets the asking price.
+     * 
+     * @param ask The asking price.
+     * @throws IllegalArgumentException If the price is not a whole number of
+     *                                  cents.
+     */
+    @JsonProperty("ask")
+    public void setAsk(double ask) {
+        this.ask = Money.wholeCents(ask);
+    }
+
+    @JsonProperty("avg_price")
+    public double getAvgPrice() {
+        return Money.dollars(avgPrice);
+    }
 
+    @JsonProperty("avg_price")
+    public void setAvgPrice(double avgPrice) {
+        this.avgPrice = Money.cents(avgPrice);
+    }
+
+    @JsonIgnore
+    public double getTradedPrice() {
+        return Money.dollars(tradedPrice);
+    }
+
+    public void setTradedPrice(double tradedPrice) {
+        this.tradedPrice = Money.cents(tradedPrice);
+    }
+
+    @JsonIgnore
+    public long getBidCents() {
+        return bid;
+    }
+
+    public void setBidCents(long bid) {
+        this.bid = bid;
+    }
+
+    @JsonIgnore
+    public long getAskCents() {
+        return ask;
+    }
+
+    public void setAskCents(long ask) {
+        this.ask = ask;
+    }
+
+    @JsonIgnore
+    public long getAvgPriceCents() {
+        return avgPrice;
+    }
+
+    public void setAvgPriceCents(long avgPrice) {
+        this.avgPrice = avgPrice;
+    }
+
+    @JsonIgnore
+    public long getTradedPriceCents() {
+        return tradedPrice;
+    }
+
+    public void setTradedPriceCents(long tradedPrice) {
+        this.tradedPrice = tradedPrice;
     }
 
 
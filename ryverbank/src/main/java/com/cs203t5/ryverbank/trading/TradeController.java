@@ -26,12 +26,12 @@ public class TradeController {
     private CustomerRepository customerRepository;
     /** The account repository. */
     private AccountRepository accountRepository;
-    /** The stock repository. */
-    private StockRepository stockRepository;
+    /** The quotes of the stocks. */
+    private QuoteCache quoteCache;
     /** The asset services. */
     private AssetService assetService;
-
-    private AccountServices accService;
+    /** The instruments listed on the exchange. */
+    private InstrumentRegistry instruments;
 
     /**
      * Constructs a TradeController with the following parameters.
@@ -40,27 +40,31 @@ public class TradeController {
      * @param tradeServices      The trade services.
      * @param customerRepository The customer repository.
      * @param accountRepository  The account repository.
-     * @param stockRepository    The stock repository.
+     * @param quoteCache         The quotes of the stocks.
      * @param assetService       The asset services.
+     * @param instruments        The instruments listed on the exchange.
      */
     public TradeController(TradeRepository trackRepository, TradeServices tradeServices,
-            CustomerRepository customerRepository, AccountRepository accountRepository, StockRepository stockRepository,
-            AssetService assetService,  AccountServices accService) {
+            CustomerRepository customerRepository, AccountRepository accountRepository, QuoteCache quoteCache,
+            AssetService assetService, InstrumentRegistry instruments) {
         this.trackRepository = trackRepository;
         this.tradeServices = tradeServices;
         this.customerRepository = customerRepository;
         this.accountRepository = accountRepository;
-        this.stockRepository = stockRepository;
+        this.quoteCache = quoteCache;
         this.assetService = assetService;
-        this.accService = accService;
+        this.instruments = instruments;
 
     }
 
     /**
      * Create a new trade based on the trade information and user authentication. If
      * the user is not found, throw CustomerNotFoundException. If account is not
-     * found, throw AccountNotFoundException. If the trade is invalid or the
-     * account does not have enough available balance, throw TradeInvalidException.
+     * found, throw AccountNotFoundException. If the symbol is not listed, throw
+     * StockSymbolNotFoundException. If the trade is invalid, including a symbol
+     * that is not trading, a quantity that is not a whole number of lots or a
+     * price that is not on a tick, or the account does not have enough available
+     * balance, throw TradeInvalidException.
      * 
      * @param trade The trade to be created.
      * @param auth Checks for authenticated username.
@@ -103,14 +107,24 @@ public class TradeController {
             throw new AccountNotFoundException(trade.getAccountId());
         }
 
-        Optional<Account> optionalAccount = accountRepository.findById(trade.getAccountId());
+        Instrument instrument = instruments.find(trade.getSymbol())
+                .orElseThrow(() -> new StockSymbolNotFoundException(trade.getSymbol() + " not found"));
+        if (!instrument.isTrading()) {
+            throw new TradeInvalidException(trade.getSymbol() + " is " + instrument.getStatus());
+        }
 
-        // Checking quantity, if quantity is not multiple of 100
+        // Checking quantity, if quantity is not a multiple of the lot size
         // throw exception
-        if (trade.getQuantity() % 100 != 0) {
+        if (!instrument.isWholeLots(trade.getQuantity())) {
             throw new TradeInvalidException("Invalid Quantity");
         }
 
+        // A limit price must be a multiple of the tick size
+        double limitPrice = trade.getAction().equals("buy") ? trade.getBid() : trade.getAsk();
+        if (limitPrice > 0.0 && !instrument.isOnTick(limitPrice)) {
+            throw new TradeInvalidException("Price is not a multiple of " + instrument.getTickSize());
+        }
+
         if (trade.getQuantity() < 0) {
             throw new TradeInvalidException("invalid quantity");
         }
@@ -125,19 +139,15 @@ public class TradeController {
                 trade.setAsk(0);
             }
 
-            Optional<CustomStock> optionalStock = stockRepository.findBySymbol(trade.getSymbol());
+            Optional<CustomStock> optionalStock = Optional.ofNullable(quoteCache.get(trade.getSymbol()));
             if(optionalStock.isEmpty()){
                 throw new StockSymbolNotFoundException(trade.getSymbol() + " not found");
             }
 
             if (optionalStock != null && optionalStock.isPresent()) {
                 CustomStock customStock = optionalStock.get();
-                if (optionalAccount.get().getAvailableBalance() < (customStock.getAsk() * trade.getQuantity())) {
-                    throw new TradeInvalidException("Available Balance Not Enough");
-                } else {
-                    accService.accTradeOnHold(trade.getAccountId(), trade.getQuantity() * customStock.getAsk() * -1);
-                    return tradeServices.createMarketBuyTrade(trade, customer, customStock);
-                }
+                // the money is put on hold for the trade when it is submitted
+                return tradeServices.createMarketBuyTrade(trade, customer, customStock);
 
             }
 
@@ -152,7 +162,7 @@ public class TradeController {
                 trade.setBid(0.0);
             }
 
-            Optional<CustomStock> optionalStock = stockRepository.findBySymbol(trade.getSymbol());
+            Optional<CustomStock> optionalStock = Optional.ofNullable(quoteCache.get(trade.getSymbol()));
             if(optionalStock.isEmpty()){
                 throw new StockSymbolNotFoundException(trade.getSymbol() + " not found");
             }
@@ -181,20 +191,15 @@ public class TradeController {
                 trade.setAsk(0);
             }
 
-            Optional<CustomStock> optionalStock = stockRepository.findBySymbol(trade.getSymbol());
+            Optional<CustomStock> optionalStock = Optional.ofNullable(quoteCache.get(trade.getSymbol()));
             if(optionalStock.isEmpty()){
                 throw new StockSymbolNotFoundException(trade.getSymbol() + " not found");
             }
 
             if (optionalStock != null && optionalStock.isPresent()) {
                 CustomStock customStock = optionalStock.get();
-                if (optionalAccount.get().getAvailableBalance() < (trade.getBid() * trade.getQuantity())) {
-                    throw new TradeInvalidException("Available Balance Not Enough");
-                } else {
-                     /* ACCOUNT GET THE BUYER ID FROM TRADE HERE */
-                    accService.accTradeOnHold(trade.getAccountId(), trade.getQuantity() * trade.getBid() * -1);
-                    return tradeServices.createLimitBuyTrade(trade, customer, customStock);
-                }
+                // the money is put on hold for the trade when it is submitted
+                return tradeServices.createLimitBuyTrade(trade, customer, customStock);
 
             }
         }
@@ -208,7 +213,7 @@ public class TradeController {
                 trade.setBid(0.0);
             }
 
-            Optional<CustomStock> optionalStock = stockRepository.findBySymbol(trade.getSymbol());
+            Optional<CustomStock> optionalStock = Optional.ofNullable(quoteCache.get(trade.getSymbol()));
             if(optionalStock.isEmpty()){
                 throw new StockSymbolNotFoundException(trade.getSymbol() + " not found");
             }
@@ -301,7 +306,9 @@ public class TradeController {
 
         
         if (newTradeInfo.getStatus().equals("cancelled")){
-            tradeServices.cancelTrade(id, customer);
+            // The cancellation is applied by the owner of the order book, so the copy of
+            // the trade held by this request is out of date
+            return Optional.ofNullable(tradeServices.cancelTrade(id, customer));
         }
          
 
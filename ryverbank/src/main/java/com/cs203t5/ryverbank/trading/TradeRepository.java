@@ -4,6 +4,9 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -35,4 +38,16 @@ public interface TradeRepository extends JpaRepository <Trade, Long> {
      * @return The list of all trades that has the stock symbol.
      */
     List<Trade> findAllBySymbol(String symbol);
+
+    /**
+     * Expires every open and partial-filled trade of a stock symbol in one
+     * statement.
+     * 
+     * @param symbol The stock symbol.
+     * @return The number of trades expired.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Trade t SET t.status = 'expired' WHERE t.symbol = :symbol"
+            + " AND t.status IN ('open', 'partial-filled')")
+    int expireLive(@Param("symbol") String symbol);
 }
@@ -1,9 +1,10 @@
 package com.cs203t5.ryverbank.trading;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-
-
+import com.cs203t5.ryverbank.Money;
 import com.cs203t5.ryverbank.customer.*;
 import com.cs203t5.ryverbank.portfolio.AssetService;
 import com.cs203t5.ryverbank.account_transaction.*;
@@ -21,6 +22,8 @@ import java.util.*;
  */
 @Service
 public class TradeServiceImpl implements TradeServices {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TradeServiceImpl.class);
+
     /** The trade repository. */
     private TradeRepository tradeRepository;
     /** The asset services. */
@@ -29,10 +32,28 @@ public class TradeServiceImpl implements TradeServices {
     private TransactionServices tranService;
     /** The account services. */
     private AccountServices accService;
+    /** The money the buy trades have on hold. */
+    private ReservationServices reservations;
     /** The portfolio services. */
     private PortfolioService portfolioService;
-    /** Counter. */
-    private int count = 0;
+    /** The resident order books. */
+    private OrderBookManager orderBooks;
+    /** The match cycles of the order books. */
+    private MatchingCycle cycle;
+    /** The quotes of the stocks. */
+    private QuoteCache quoteCache;
+    /** The order journal. */
+    private OrderJournal journal;
+    /** The snapshots of the order books. */
+    private OrderBookSnapshotter snapshotter;
+    /** The execution repository. */
+    private ExecutionRepository executionRepository;
+    /** The time and sales of the stocks. */
+    private TradeTape tradeTape;
+    /** The price bars of the stocks. */
+    private BarAggregator barAggregator;
+    /** The trading sessions of the exchange. */
+    private MarketCalendar calendar;
 
     /**
      * Constructs a TradeServiceImpl with the following parameters.
@@ -41,15 +62,214 @@ public class TradeServiceImpl implements TradeServices {
      * @param assetService The asset services.
      * @param tranService The transaction services.
      * @param accService The account services.
+     * @param reservations The money the buy trades have on hold.
      * @param portfolioService The portfolio services.
+     * @param orderBooks The resident order books.
+     * @param cycle The match cycles of the order books.
+     * @param quoteCache The quotes of the stocks.
+     * @param journal The order journal.
+     * @param snapshotter The snapshots of the order books.
+     * @param executionRepository The execution repository.
+     * @param tradeTape The time and sales of the stocks.
+     * @param barAggregator The price bars of the stocks.
+     * @param calendar The trading sessions of the exchange.
      */
     public TradeServiceImpl(TradeRepository tradeRepository, AssetService assetService, TransactionServices tranService,
-            AccountServices accService, PortfolioService portfolioService) {
+            AccountServices accService, ReservationServices reservations, PortfolioService portfolioService,
+            OrderBookManager orderBooks, MatchingCycle cycle, QuoteCache quoteCache, OrderJournal journal,
+            OrderBookSnapshotter snapshotter, ExecutionRepository executionRepository, TradeTape tradeTape,
+            BarAggregator barAggregator, MarketCalendar calendar) {
         this.tradeRepository = tradeRepository;
         this.assetService = assetService;
         this.tranService = tranService;
         this.accService = accService;
+        this.reservations = reservations;
         this.portfolioService = portfolioService;
+        this.orderBooks = orderBooks;
+        this.cycle = cycle;
+        this.quoteCache = quoteCache;
+        this.journal = journal;
+        this.snapshotter = snapshotter;
+        this.executionRepository = executionRepository;
+        this.tradeTape = tradeTape;
+        this.barAggregator = barAggregator;
+        this.calendar = calendar;
+    }
+
+    /**
+     * Rebuilds the order books from the trade table, the newest snapshot of the
+     * books and the order journal written after it. This is the only time the
+     * trade table is scanned.
+     * 
+     * A match cycle is journaled only after it was written to the database, so the
+     * rows are the source of truth for the trades they hold and are taken as they
+     * are. The journal only stands in for lost rows: a live journaled trade without
+     * a row, e.g. because the schema was dropped on restart, is written again under
+     * a new id and the money of a buy trade is put back on hold at the price it was
+     * held at. A trade whose account no longer exists, or whose money cannot be
+     * held again, cannot rest on a book and is dropped. A snapshot is taken once
+     * trades were written again, so the next restart starts from their new ids.
+     */
+    public void loadOrderBooks() {
+        Map<Long, Trade> journaled = new LinkedHashMap<>();
+        for (Trade trade : snapshotter.recover()) {
+            journaled.put(trade.getId(), trade);
+        }
+
+        List<Trade> trades = new ArrayList<>(tradeRepository.findAll());
+        for (Trade trade : trades) {
+            Trade journaledTrade = journaled.get(trade.getId());
+            if (journaledTrade != null && isSameOrder(trade, journaledTrade)) {
+                journaled.remove(trade.getId());
+            }
+        }
+
+        // The live trades the trade table has lost, which can only rest on a book again
+        // if their account is still there and their money can be held again
+        List<Trade> rebuilt = new ArrayList<>();
+        List<Reservation> holds = new ArrayList<>();
+        int dropped = 0;
+        for (Trade journaledTrade : journaled.values()) {
+            if (!OrderBookManager.isLive(journaledTrade)) {
+                continue;
+            }
+            Account account = accService.getAccount(journaledTrade.getAccountId());
+            if (account == null || !Objects.equals(account.getCustomer_id(), journaledTrade.getCustomerId())) {
+                dropped++;
+                continue;
+            }
+            Reservation reservation = null;
+            if (holdsMoney(journaledTrade)) {
+                // A buy journaled without the price it was held at, e.g. a market buy of an
+                // older journal, would pay its fills out of the available balance
+                long price = heldPriceOf(journaledTrade);
+                if (price <= 0) {
+                    dropped++;
+                    continue;
+                }
+                try {
+                    reservation = reservations.reserve(journaledTrade.getAccountId(),
+                            Money.times(price, journaledTrade.getQuantity()));
+                } catch (InsufficientBalanceException e) {
+                    dropped++;
+                    continue;
+                }
+            }
+            journaledTrade.setId(null);
+            rebuilt.add(journaledTrade);
+            holds.add(reservation);
+        }
+        if (dropped > 0) {
+            LOGGER.warn("{} live trades of the order journal could not be rebuilt", dropped);
+        }
+        if (!rebuilt.isEmpty()) {
+            List<Trade> saved = tradeRepository.saveAll(rebuilt);
+            for (int i = 0; i < saved.size(); i++) {
+                if (holds.get(i) != null) {
+                    reservations.open(holds.get(i), saved.get(i).getId());
+                }
+            }
+            trades.addAll(saved);
+        }
+        orderBooks.rebuild(trades);
+
+        if (!rebuilt.isEmpty() && journal.isEnabled()) {
+            snapshotter.snapshot();
+            LOGGER.info("{} live trades rebuilt from the order journal", rebuilt.size());
+        }
+    }
+
+    private static boolean isSameOrder(Trade trade, Trade journaledTrade) {
+        return Objects.equals(trade.getSymbol(), journaledTrade.getSymbol())
+                && Objects.equals(trade.getAction(), journaledTrade.getAction())
+                && Objects.equals(trade.getCustomerId(), journaledTrade.getCustomerId())
+                && Objects.equals(trade.getAccountId(), journaledTrade.getAccountId())
+                && Objects.equals(trade.getDate(), journaledTrade.getDate());
+    }
+
+    /**
+     * Checks whether a trade puts money on hold, which only the buy trades of the
+     * customers do.
+     */
+    private static boolean holdsMoney(Trade trade) {
+        return trade.getAction().equals("buy") && !StockCrawler.MARKET_MAKER_ACCOUNT_ID.equals(trade.getAccountId());
+    }
+
+    /**
+     * Finds the price the money of a buy trade is held at, in cents. A limit buy
+     * journaled without it is held at its bid.
+     * 
+     * @param trade The journaled buy trade.
+     * @return The price, or 0 if it is not known.
+     */
+    private static long heldPriceOf(Trade trade) {
+        return trade.getTradedPriceCents() > 0 ? trade.getTradedPriceCents() : Math.max(trade.getBidCents(), 0L);
+    }
+
+    /**
+     * Copies the current state of the stock to match against. The stock handed in
+     * by the caller was read before the order was queued, so another order on the
+     * same symbol may have changed it in the meantime.
+     * 
+     * @param customStock The stock as read by the caller.
+     * @return A copy of the stock as cached, to be changed and handed back to the
+     *         quote cache.
+     */
+    private CustomStock latestQuote(CustomStock customStock) {
+        CustomStock latestStock = quoteCache.get(customStock.getSymbol());
+        return (latestStock != null ? latestStock : customStock).copy();
+    }
+
+    /**
+     * Saves the trade and rests it in the order book of its symbol if it is still
+     * open or partial-filled.
+     * 
+     * @param trade The trade to save.
+     * @return The saved trade.
+     */
+    private Trade saveAndRest(Trade trade) {
+        Trade savedTrade = tradeRepository.save(trade);
+        if (savedTrade != null && OrderBookManager.isLive(savedTrade)) {
+            orderBooks.getBook(savedTrade.getSymbol()).add(savedTrade);
+        }
+        return savedTrade;
+    }
+
+    /**
+     * Writes the executions of an accepted trade, appends the trade and its fills
+     * to the order journal and puts the fills on the tape and into the price bars.
+     * This happens after the trade is saved so that
+     * the executions and the journal record carry its id.
+     * 
+     * @param trade    The saved trade.
+     * @param quantity The quantity of the trade when it was submitted.
+     * @param result   The fills of the trade.
+     * @return The saved trade.
+     */
+    private Trade record(Trade trade, int quantity, MatchResult result) {
+        if (trade != null) {
+            executionRepository.saveAll(result.getExecutions());
+            journal.order(trade, quantity);
+            journal.fill(result);
+            tradeTape.record(result, trade.getAction());
+            barAggregator.record(result);
+        }
+        return trade;
+    }
+
+    /**
+     * Hands out the next execution sequence number of a book. The counter is
+     * picked up from the last execution written the first time it is needed.
+     * 
+     * @param book The order book.
+     * @return The sequence number of the next execution of the symbol.
+     */
+    private long nextExecutionSequence(OrderBook book) {
+        if (!book.hasExecutionSequence()) {
+            book.setExecutionSequence(executionRepository.findTopBySymbolOrderBySequenceDesc(book.getSymbol())
+                    .map(Execution::getSequence).orElse(0L));
+        }
+        return book.nextExecutionSequence();
     }
 
     // Get All trades on the market
@@ -81,17 +301,34 @@ public class TradeServiceImpl implements TradeServices {
 
     @Override
     public Trade cancelTrade(Long tradeId, Customer customer) {
+        Optional<Trade> optionalTrade = tradeRepository.findById(tradeId);
+        if (optionalTrade.isEmpty()) {
+            return null;
+        }
+        // The status is checked again by the owner of the book, after any fill that
+        // was queued before this cancellation
+        return cycle.execute(optionalTrade.get().getSymbol(), () -> cancel(tradeId, customer));
+    }
+
+    private Trade cancel(Long tradeId, Customer customer) {
         return tradeRepository.findById(tradeId).map(trade -> {
             if (trade.getCustomerId() == customer.getCustomerId()) {
                 if (trade.getStatus().equals("open")) {
                     trade.setStatus("cancelled");
+                    // take the trade off the book so that it can no longer be matched
+                    OrderBook book = orderBooks.getBook(trade.getSymbol());
+                    Trade restingTrade = book.getOrder(trade.getId());
+                    if (restingTrade != null) {
+                        book.remove(restingTrade);
+                        restingTrade.setStatus("cancelled");
+                    }
                     // if it is sell then asset quantity will be put back into portfolio
                     if (trade.getAction().equals("sell")) {
                         assetService.retrieveAsset(trade.getSymbol(), trade.getQuantity(), customer.getCustomerId());
                     }else if(trade.getAction().equals("buy")){
-                        accService.accTradeOnHold(trade.getAccountId(), trade.getQuantity() * trade.getTradedPrice());
-
+                        reservations.release(trade.getId());
                     }
+                    journal.cancel(trade);
                     return tradeRepository.save(trade);
                 } else {
                     throw new TradeInvalidException("Invalid action");
@@ -106,1211 +343,570 @@ public class TradeServiceImpl implements TradeServices {
     // This method will be used exclusively by Customer
     @Override
     public Trade createMarketBuyTrade(Trade trade, Customer customer, CustomStock customStock) {
+        return cycle.execute(trade.getSymbol(), () -> {
+            CustomStock latestStock = latestQuote(customStock);
+            Trade matchedTrade = matchMarketBuy(trade, customer, latestStock);
+            quoteCache.update(latestStock);
+            return matchedTrade;
+        });
+    }
 
-        long currentTimestamp = Instant.now().getEpochSecond();
-
-        // Set the customer_id for the trade
-        trade.setCustomerId(customer.getCustomerId());
-
-        // Set the time when trade is submitted
-        trade.setDate(currentTimestamp);
-
-
-        /* ACCOUNT GET THE BUYER ID FROM TRADE HERE */
-        // accService.accTradeOnHold(trade.getAccountId(), trade.getQuantity() * customStock.getAsk() * -1);
-
-   
-        // If customer submit a trade on weekend OR submit on weekday BUT before 9am and
-        // after 5pm (GMT+8) ,
-        // Throw an error that shows market is close
-        TimeZone timeZone = TimeZone.getTimeZone("GMT+8");
-
-        Calendar startDateTime = Calendar.getInstance(timeZone);
-        startDateTime.set(Calendar.HOUR_OF_DAY, 9);
-        startDateTime.set(Calendar.MINUTE, 0);
-        startDateTime.set(Calendar.SECOND, 0);
-
-        Calendar endDateTime = Calendar.getInstance(timeZone);
-        endDateTime.set(Calendar.HOUR_OF_DAY, 17);
-        endDateTime.set(Calendar.MINUTE, 0);
-        endDateTime.set(Calendar.SECOND, 0);
-
-        Calendar saturday = Calendar.getInstance(timeZone);
-        saturday.set(Calendar.DAY_OF_WEEK, Calendar.SATURDAY);
-
-        Calendar sunday = Calendar.getInstance(timeZone);
-        sunday.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
-
-        Calendar today = Calendar.getInstance(timeZone);
-
+    private Trade matchMarketBuy(Trade trade, Customer customer, CustomStock customStock) {
+        submit(trade, customer);
+        int quantity = trade.getQuantity();
+        MatchResult result = new MatchResult();
         trade.setTradedPrice(customStock.getAsk());
-        if (!(today.after(startDateTime) && today.before(endDateTime)) || today.equals(saturday)
-            ||  today.equals(sunday)  ) {
-            trade.setStatus("open");
-         
-        } else {
-            // Get the list of trades for {symbol}
-            List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-            List<Trade> listOfSellTrades = new ArrayList<>();
-
-            // Get the list of open & partial-filled of market sell trades for {symbol}
-            for (Trade sellTradeList : listOfTrades) {
-                if (sellTradeList.getAction().equals("sell")) {
-                    if (sellTradeList.getStatus().equals("open")
-                            || sellTradeList.getStatus().equals("partial-filled")) {
-                        listOfSellTrades.add(sellTradeList);
-                    }
-
-                }
-            }
-           
-            // When there is not available sell trades on the market
-            // Set the trade to it's original status
-            try {
-                if (listOfSellTrades.size() == 0) {
-                    if (trade.getStatus().equals("partial-filled")) {
-                        trade.setStatus("partial-filled");
-                    } else {
-                        trade.setStatus("open");
-                    }
-                    if(customStock.getBidVolume() == 0){
-                        customStock.setBidVolume(trade.getQuantity());
-                    }else{
-                        customStock.setBidVolume(trade.getQuantity());
-                    }
-                  
-                    customStock.setAskVolume(customStock.getAskVolume() - trade.getFilledQuantity());
-                    count = 0;
-
-                    // trade successful then store into user's asset list
-                    // assetService.addAsset(trade)
-                  
-                    assetService.addAsset(trade, customStock);
-                    if(trade.getFilledQuantity() != 0.0){
-                        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                    }
-                    return tradeRepository.save(trade);
-                }
-                // If is a new trade, meaning no status has been set yet, set the trade to open
-            } catch (NullPointerException e) {
-                trade.setStatus("open");
-                if(customStock.getBidVolume() == 0){
-                    customStock.setBidVolume(trade.getQuantity());
-                }else{
-                    customStock.setBidVolume(trade.getQuantity());
-                }
-                // customStock.setBidVolume(customStock.getBidVolume() + trade.getQuantity());
-                count = 0;
-                return tradeRepository.save(trade);
-            }
-
-            double lastPrice = 0.0;
-
-            // This is set avg price for trade at the begining before there is any match
-            try {
-                trade.setAvgPrice(trade.getAvgPrice());
-            } catch (NullPointerException e) {
-                trade.setAvgPrice(0.0);
-            }
-
-            double avgPrice = trade.getAvgPrice();
-
- 
-
-            if (listOfSellTrades.size() != 0) {
-                if(accService.getAccount(trade.getAccountId()).getBalance() == 0){
-                    trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                    return tradeRepository.save(trade);
-                }
-                
-                Date date = new Date(listOfSellTrades.get(0).getDate());
-                Trade matchTrade = listOfSellTrades.get(0);
-
-                // Match to market sell price first
-                for (Trade sellTrade : listOfSellTrades) {
-                    Date currentSellTradeDate = new Date(sellTrade.getDate());
-                    if (matchTrade.getAsk() > sellTrade.getAsk()) {
-                        matchTrade = sellTrade;
-                    } else if (matchTrade.getAsk() == sellTrade.getAsk()) {
-                        if (date.after(currentSellTradeDate)) {
-                            matchTrade = sellTrade;
-                        }
-                    }
-                }
-
-
-                // add the number of matched trade by one
-                count++;
-                int originalFilledQuantity = trade.getFilledQuantity();
-                int originalQuantity = trade.getQuantity();
-                int originalMatchFilledQuantity = matchTrade.getFilledQuantity();
-                int originalMatchQuantity = matchTrade.getQuantity();
-
-                // When submitted trade has more quantity than match trade
-                if (matchTrade.getQuantity() - trade.getQuantity() < 0) {
-
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeFilledQuantity = trade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeQuantity = trade.getQuantity() - matchTrade.getQuantity();
-
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(tradeQuantity);
-                    matchTrade.setQuantity(0);
-
-                }
+        Reservation reservation = reserve(trade);
 
-                else {
-
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + trade.getQuantity();
-                    int tradeFilledQuantity = trade.getQuantity() + trade.getFilledQuantity();
-                    int matchTradeQuantity = matchTrade.getQuantity() - trade.getQuantity();
-
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(0);
-                    matchTrade.setQuantity(matchTradeQuantity);
-
-                }
-
-                if (matchTrade.getQuantity() != 0) {
-                    matchTrade.setStatus("partial-filled");
-                } else {
-                    matchTrade.setStatus("filled");
-
-                }
-                if (trade.getQuantity() != 0) {
-                    trade.setStatus("partial-filled");
-
-                } else {
-                    trade.setStatus("filled");
-                }
-                // Set the avg_price for match trade
-                double tradeBidPrice;
-                if (trade.getBid() == 0.0) {
-                    tradeBidPrice = customStock.getBid();
-                } else {
-                    tradeBidPrice = trade.getBid();
-                }
-          
-         
-                /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
-                Long give = trade.getAccountId();
-                Long take = matchTrade.getAccountId();
-                double amt = trade.getFilledQuantity() * customStock.getAsk();
-
-              
-                if(accService.getAccount(trade.getAccountId()).getBalance() < amt ){
-                
-                    double askPrice = matchTrade.getAsk();
-                    if(matchTrade.getAsk() == 0.0){
-                        askPrice = tradeBidPrice;
-                    }
-                    int newAmount = (int) Math.round( accService.getAccount(trade.getAccountId()).getBalance() / askPrice);
-                    if(newAmount % 100 != 0){
-                        newAmount = (int)(Math.round( newAmount / 100.0) * 100);
-                    }
-                    // if(newAmount == 0){
-                    //     throw new InsufficientBalanceException("Not enough funds");
-                    // }
-                    avgPrice += (newAmount * askPrice);
-                    trade.setAvgPrice(avgPrice);
-                    trade.setFilledQuantity(originalFilledQuantity + newAmount);
-                    trade.setQuantity(originalQuantity - newAmount);
-                    matchTrade.setFilledQuantity(originalMatchFilledQuantity + newAmount);
-                    matchTrade.setQuantity(originalMatchQuantity - newAmount);
-                    if(trade.getQuantity() != 0){
-                        trade.setStatus("partial-filled");
-                    }
-                    if(matchTrade.getQuantity() != 0){
-                        matchTrade.setStatus("partial-filled");
-                    }
-
-                    tradeRepository.save(trade);
-                    tradeRepository.save(matchTrade);
-                   
-                    amt = newAmount * askPrice;
-                    accService.accTradeOnHold(take, amt);
-                    tranService.addTransaction(give, take, amt * -1);
-                }else{
-                    // Set the avg_price for current trade
-                    double matchTradeAskPrice;
-                    if (matchTrade.getAsk() == 0.0) {
-                        matchTradeAskPrice = customStock.getAsk();
-                    } else {
-                        matchTradeAskPrice = matchTrade.getAsk();
-                    }
-           
-                    avgPrice += (trade.getFilledQuantity() * matchTradeAskPrice) ;
-                    trade.setAvgPrice(avgPrice);
-                 
-                    matchTrade.setAvgPrice(tradeBidPrice);
-
-                    lastPrice = matchTrade.getAsk();
-
-                    tradeRepository.save(trade);
-                    accService.accTradeOnHold(take, amt);
-                    tranService.addTransaction(give, take, amt * -1);
-                }
-
-                tradeRepository.save(matchTrade);
-            }
-
-            // If trade is partial-filled after matching, find other available sell trade on
-            // the market
-            if (trade.getStatus().equals("partial-filled")) {
-                // Set stock last price
-                if (lastPrice == 0.0) {
-                    customStock.setLastPrice(customStock.getAsk());
-                } else {
-                    customStock.setLastPrice(lastPrice);
-                }
-
-                // Set stock bid price
-                customStock.setBid(customStock.getBid());
-          
-                return createMarketBuyTrade(trade, customer, customStock);
-            }
-
-            customStock.setAskVolume(customStock.getAskVolume() - trade.getFilledQuantity());
-
-         
+        // If customer submit a trade on a weekend or holiday OR submit on a trading day BUT before 9am and
+        // after 5pm (GMT+8), the trade stays open until the market opens
+        if (!calendar.isOpen()) {
+            trade.setStatus("open");
 
-            // Set stock last price
-            if (lastPrice == 0.0) {
-                customStock.setLastPrice(customStock.getAsk());
-            } else {
-                customStock.setLastPrice(lastPrice);
+        } else {
+            // Sweep the sell trades, lowest ask first, then earliest submitted
+            result = sweep(trade, customStock, reservation);
+            flush(result, trade, reservation);
+
+            if (!result.isEmpty()) {
+                customStock.setAskVolume(customStock.getAskVolume() - result.getQuantity());
+                customStock.setLastPrice(result.getLastPrice());
+                // trade successful then store into user's asset list
+                assetService.addAsset(trade, customStock);
             }
-            // Set stock bid price
-            customStock.setBid(customStock.getBid());
-
-            count = 0;
-            // if it reaches here, straight away count as success
-            // portfolioService.addAsset(trade, trade.getCustomerId());
-            assetService.addAsset(trade, customStock);
-        }
-
-        /*
-        This is to set the askVolume for the stockInfo
-        */
-        // Get the list of trades for {symbol}
-        List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-        List<Trade> listOfSellTrades = new ArrayList<>();
-
-
-        if(customStock.getAskVolume() <= 0){
-         // Get the list of open & partial-filled of market buy trades for {symbol}
-            for (Trade sellTradeList : listOfTrades) {
-                if (sellTradeList.getAction().equals("sell")) {
-                    if (sellTradeList.getStatus().equals("open")
-                            || sellTradeList.getStatus().equals("partial-filled")) {
-                                listOfSellTrades.add(sellTradeList);
-                    }
-
-                }
+            if (OrderBookManager.isLive(trade)) {
+                customStock.setBidVolume(trade.getQuantity());
             }
-          
-            if(listOfSellTrades.size() != 0){
-                Date date = new Date(listOfSellTrades.get(0).getDate());
-                Trade matchTrade = listOfSellTrades.get(0);
-
-                for(Trade sellTrade: listOfSellTrades){
-                    Date currentSellTradeDate = new Date(sellTrade.getDate());
-                        if (matchTrade.getAsk() > sellTrade.getAsk()) {
-                            matchTrade = sellTrade;
-                        } else if (matchTrade.getAsk() == sellTrade.getAsk()) {
-                            if (date.after(currentSellTradeDate)) {
-                                matchTrade = sellTrade;
-                            }
-                        }
-                }
-
-                
-                customStock.setAskVolume(matchTrade.getQuantity());
-                if(matchTrade.getAsk() != 0.0){
-                    customStock.setAsk(matchTrade.getAsk());
-                }
-
-            }else{
-                customStock.setAskVolume(0);
-            } 
-            
         }
 
-        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-          
-        return tradeRepository.save(trade);
-
+        refreshAskVolume(trade.getSymbol(), customStock);
+        return record(hold(saveAndRest(trade), reservation), quantity, result);
     }
 
     // Create a Market Sell Trade
     // This method will be used exclusively by Customer
     @Override
     public Trade createMarketSellTrade(Trade trade, Customer customer, CustomStock customStock) {
-        long currentTimestamp = Instant.now().getEpochSecond();
-
-        // Set the customer_id for the trade
-        trade.setCustomerId(customer.getCustomerId());
-
-        // Set the time when trade is submitted
-        trade.setDate(currentTimestamp);
-
-        // If customer submit a trade on weekend OR submit on weekday BUT before 9am and
-        // after 5pm (GMT+8) ,
-        // Throw an error that shows market is close
-        TimeZone timeZone = TimeZone.getTimeZone("GMT+8");
-
-        Calendar startDateTime = Calendar.getInstance(timeZone);
-        startDateTime.set(Calendar.HOUR_OF_DAY, 9);
-        startDateTime.set(Calendar.MINUTE, 0);
-        startDateTime.set(Calendar.SECOND, 0);
-
-        Calendar endDateTime = Calendar.getInstance(timeZone);
-        endDateTime.set(Calendar.HOUR_OF_DAY, 17);
-        endDateTime.set(Calendar.MINUTE, 0);
-        endDateTime.set(Calendar.SECOND, 0);
-
-        Calendar saturday = Calendar.getInstance(timeZone);
-        saturday.set(Calendar.DAY_OF_WEEK, Calendar.SATURDAY);
-
-        Calendar sunday = Calendar.getInstance(timeZone);
-        sunday.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
+        return cycle.execute(trade.getSymbol(), () -> {
+            CustomStock latestStock = latestQuote(customStock);
+            Trade matchedTrade = matchMarketSell(trade, customer, latestStock);
+            quoteCache.update(latestStock);
+            return matchedTrade;
+        });
+    }
 
-        Calendar today = Calendar.getInstance(timeZone);
+    private Trade matchMarketSell(Trade trade, Customer customer, CustomStock customStock) {
+        submit(trade, customer);
+        int quantity = trade.getQuantity();
+        MatchResult result = new MatchResult();
 
-        if (!(today.after(startDateTime) && today.before(endDateTime)) || today.equals(saturday)
-        ||  today.equals(sunday)   ) {
+        // If customer submit a trade on a weekend or holiday OR submit on a trading day BUT before 9am and
+        // after 5pm (GMT+8), the trade stays open until the market opens
+        if (!calendar.isOpen()) {
             trade.setStatus("open");
 
         } else {
-           
-            List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-            List<Trade> listOfBuyTrades = new ArrayList<>();
-
-            // Get list of open / partial-filled market buy trades
-            for (Trade buyTrade : listOfTrades) {
-                if (buyTrade.getAction().equals("buy")) {
-                    if (buyTrade.getStatus().equals("open") || buyTrade.getStatus().equals("partial-filled")) {
-                        listOfBuyTrades.add(buyTrade);
-                    }
-
-                }
-            }
-
-            try {
-                if (listOfBuyTrades.size() == 0) {
-                    if (trade.getStatus().equals("partial-filled")) {
-                        trade.setStatus("partial-filled");
-                    } else {
-                        trade.setStatus("open");
-                    }
-                    customStock.setBidVolume(customStock.getBidVolume() - trade.getFilledQuantity());
-                    count = 0;
-                    if(trade.getFilledQuantity() != 0){
-                        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                    }
-                    portfolioService.updateRealizedGainLoss(trade, customStock);
-                    return tradeRepository.save(trade);
-                }
-            } catch (NullPointerException e) {
-                trade.setStatus("open");
-                count = 0;
-                return tradeRepository.save(trade);
-            }
-
-            double lastPrice = 0.0;
-            // This is set avg price for trade at the begining before there is any match
-            try {
-                trade.setAvgPrice(trade.getAvgPrice());
-            } catch (NullPointerException e) {
-                trade.setAvgPrice(0.0);
+            // Sweep the buy trades, highest bid first, then earliest submitted
+            result = sweep(trade, customStock, null);
+            flush(result, trade, null);
+
+            if (!result.isEmpty()) {
+                customStock.setBidVolume(customStock.getBidVolume() - result.getQuantity());
+                customStock.setLastPrice(result.getLastPrice());
+                portfolioService.updateRealizedGainLoss(trade, customStock);
             }
-            double avgPrice = trade.getAvgPrice();
-
-            if (listOfBuyTrades.size() != 0) {
-                Date date = new Date(listOfBuyTrades.get(0).getDate());
-                Trade matchTrade = listOfBuyTrades.get(0);
-
-                // Match to market buy price (current highest buy price)
-                // then the highest buy price
-                for (Trade buyTrade : listOfBuyTrades) {
-                    Date currentBuyTradeDate = new Date(buyTrade.getDate());
-                    if (matchTrade.getBid() < buyTrade.getBid()) {
-                        matchTrade = buyTrade;
-                    } else if (matchTrade.getBid() == buyTrade.getBid()) {
-                        if (date.after(currentBuyTradeDate)) {
-                            matchTrade = buyTrade;
-                        }
-                    }
-                }
-
-                // add the number of matched trade by one
-                count++;
-
-                if (matchTrade.getQuantity() - trade.getQuantity() < 0) {
-
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeFilledQuantity = trade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeQuantity = trade.getQuantity() - matchTrade.getQuantity();
-
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(tradeQuantity);
-                    matchTrade.setQuantity(0);
-
-                } else {
-
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + trade.getQuantity();
-                    int tradeFilledQuantity = trade.getQuantity() + trade.getFilledQuantity();
-                    int matchTradeQuantity = matchTrade.getQuantity() - trade.getQuantity();
-
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(0);
-                    matchTrade.setQuantity(matchTradeQuantity);
-
-                }
-
-                if (matchTrade.getQuantity() != 0) {
-                    matchTrade.setStatus("partial-filled");
-                } else {
-                    matchTrade.setStatus("filled");
-
-                }
-                if (trade.getQuantity() != 0) {
-                    trade.setStatus("partial-filled");
-                } else {
-                    trade.setStatus("filled");
-                }
-
-                // Set the avg_price for current trade
-                double matchTradeBidPrice;
-                if (matchTrade.getBid() == 0.0) {
-                    matchTradeBidPrice = customStock.getBid();
-                } else {
-                    matchTradeBidPrice = matchTrade.getBid();
-                }
-
-                avgPrice += trade.getFilledQuantity() * matchTradeBidPrice;
-                trade.setAvgPrice(avgPrice);
-
-                // Set the avg_price for match trade
-                double tradeAskPrice;
-                if (trade.getAsk() == 0.0) {
-                    tradeAskPrice = customStock.getAsk();
-                } else {
-                    tradeAskPrice = trade.getAsk();
-                }
-                matchTrade.setAvgPrice(tradeAskPrice);
-
-                // Set the last price
-                lastPrice = matchTrade.getBid();
-
-                tradeRepository.save(trade);
-                /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
-                Long take = trade.getAccountId();
-                Long give = matchTrade.getAccountId();
-                double amt = trade.getFilledQuantity() * customStock.getBid();
-                accService.accTradeOnHold(take, amt);
-                accService.accTradeOnHold(give, amt * -1);
-                tranService.addTransaction(take, give, amt);
-                tradeRepository.save(matchTrade);
-            }
-
-            if (trade.getStatus().equals("partial-filled")) {
-                // Set stock last price
-                if (lastPrice == 0.0) {
-                    customStock.setLastPrice(customStock.getBid());
-                } else {
-                    customStock.setLastPrice(lastPrice);
-
-                }
-                // Set stock ask price
-                customStock.setAsk(customStock.getAsk());
-
-                return createMarketSellTrade(trade, customer, customStock);
-            }
-
-            customStock.setBidVolume(customStock.getBidVolume() - trade.getFilledQuantity());
-            // Set stock last price
-            if (lastPrice == 0.0) {
-                customStock.setLastPrice(customStock.getBid());
-            } else {
-                customStock.setLastPrice(lastPrice);
-            }
-            // Set stock ask price
-            customStock.setAsk(customStock.getAsk());
-            count = 0;
-
         }
 
-        portfolioService.updateRealizedGainLoss(trade, customStock);
-
-          // Set the bidVolume
-          List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-          List<Trade> listOfBuyTrades = new ArrayList<>();
-  
-  
-          if(customStock.getBidVolume() <= 0){
-           // Get the list of open & partial-filled of market buy trades for {symbol}
-              for (Trade buyTradeList : listOfTrades) {
-                  if (buyTradeList.getAction().equals("buy")) {
-                      if (buyTradeList.getStatus().equals("open")
-                              || buyTradeList.getStatus().equals("partial-filled")) {
-                                listOfBuyTrades.add(buyTradeList);
-                      }
-  
-                  }
-              }
-            
-              if(listOfBuyTrades.size() != 0){
-                  Date date = new Date(listOfBuyTrades.get(0).getDate());
-                  Trade matchTrade = listOfBuyTrades.get(0);
-  
-                  for (Trade buyTrade : listOfBuyTrades) {
-                    Date currentBuyTradeDate = new Date(buyTrade.getDate());
-                    if (matchTrade.getBid() < buyTrade.getBid()) {
-                        matchTrade = buyTrade;
-                    } else if (matchTrade.getBid() == buyTrade.getBid()) {
-                        if (date.after(currentBuyTradeDate))
-                            matchTrade = buyTrade;
-                    }
-
-                }
-  
-                  customStock.setBidVolume(matchTrade.getQuantity());
-                  if(matchTrade.getBid() != 0.0){
-                    customStock.setAsk(matchTrade.getBid());
-                }
-              }else{
-                  customStock.setBidVolume(0);
-              } 
-              
-          }
-
-        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-        return tradeRepository.save(trade);
-
+        refreshBidVolume(trade.getSymbol(), customStock);
+        return record(saveAndRest(trade), quantity, result);
     }
 
     // Create a Limit Buy Trade
     // This method will be used exclusively by Customer
     @Override
     public Trade createLimitBuyTrade(Trade trade, Customer customer, CustomStock customStock) {
-        long currentTimestamp = Instant.now().getEpochSecond();
-
-        // Set the customer_id for the trade
-        trade.setCustomerId(customer.getCustomerId());
-
-        // Set the time when trade is submitted
-        trade.setDate(currentTimestamp);
-
-        // If customer submit a trade on weekend OR submit on weekday BUT before 9am and
-        // after 5pm (GMT+8) ,
-        // Throw an error that shows market is close
-        TimeZone timeZone = TimeZone.getTimeZone("GMT+8");
-
-        Calendar startDateTime = Calendar.getInstance(timeZone);
-        startDateTime.set(Calendar.HOUR_OF_DAY, 9);
-        startDateTime.set(Calendar.MINUTE, 0);
-        startDateTime.set(Calendar.SECOND, 0);
-
-        Calendar endDateTime = Calendar.getInstance(timeZone);
-        endDateTime.set(Calendar.HOUR_OF_DAY, 17);
-        endDateTime.set(Calendar.MINUTE, 0);
-        endDateTime.set(Calendar.SECOND, 0);
-
-        Calendar saturday = Calendar.getInstance(timeZone);
-        saturday.set(Calendar.DAY_OF_WEEK, Calendar.SATURDAY);
-
-        Calendar sunday = Calendar.getInstance(timeZone);
-        sunday.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
-
-        Calendar today = Calendar.getInstance(timeZone);
+        return cycle.execute(trade.getSymbol(), () -> {
+            CustomStock latestStock = latestQuote(customStock);
+            Trade matchedTrade = matchLimitBuy(trade, customer, latestStock);
+            quoteCache.update(latestStock);
+            return matchedTrade;
+        });
+    }
 
+    private Trade matchLimitBuy(Trade trade, Customer customer, CustomStock customStock) {
+        submit(trade, customer);
+        int quantity = trade.getQuantity();
+        MatchResult result = new MatchResult();
         trade.setTradedPrice(trade.getBid());
+        Reservation reservation = reserve(trade);
 
-        if (!(today.after(startDateTime) && today.before(endDateTime)) || today.equals(saturday)
-        ||  today.equals(sunday)    ) {
+        // If customer submit a trade on a weekend or holiday OR submit on a trading day BUT before 9am and
+        // after 5pm (GMT+8), the trade stays open until the market opens
+        if (!calendar.isOpen()) {
             trade.setStatus("open");
 
         } else {
-            // Get the list of trades for {symbol}
-            List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-            List<Trade> listOfSellTrades = new ArrayList<>();
-
             // Set the newBidPrice, the best price will be recorded
             // best price is the higher bid
             // It must be better than the current stock's bid price and still lower than the
             // ask price
             double newBidPrice = customStock.getBid();
             int newBidVolume = customStock.getBidVolume();
-            
-    
             if (trade.getBid() > newBidPrice && trade.getBid() < customStock.getAsk()) {
                 newBidPrice = trade.getBid();
                 newBidVolume = trade.getQuantity();
-          
             }
 
-            // Get the list of open & partial-filled sell trades that are equal to the
-            // bid_price or lower than the bid price for {symbol}
-            for (Trade sellTradeList : listOfTrades) {
-                if (sellTradeList.getAction().equals("sell")) {
-                    if (sellTradeList.getAsk() == trade.getBid() || sellTradeList.getAsk() < trade.getBid()) {
-                        if (sellTradeList.getStatus().equals("open")
-                                || sellTradeList.getStatus().equals("partial-filled")) {
-                            listOfSellTrades.add(sellTradeList);
-                        }
-                    }
+            // Sweep the sell trades that are equal to the bid_price or lower than the
+            // bid_price, lowest ask first, then earliest submitted
+            result = sweep(trade, customStock, reservation);
+            flush(result, trade, reservation);
 
-                }
-            }
-
-           
-            // This is set avg_price for trade
-            // If is a open trade, then avg_price will be set to 0.0
-            // If is a partial filled trade, then avg_pirce will be the same
-            try {
-                trade.setAvgPrice(trade.getAvgPrice());
-            } catch (NullPointerException e) {
-                trade.setAvgPrice(0.0);
+            customStock.setBid(newBidPrice);
+            if (!result.isEmpty()) {
+                customStock.setAskVolume(customStock.getAskVolume() - result.getQuantity());
+                customStock.setLastPrice(result.getLastPrice());
+                // will add trade into the portfolio here
+                assetService.addAsset(trade, customStock);
             }
-            // When there no sell trades for the {symbol} stock
-            try {
-                if (listOfSellTrades.size() == 0) {
-                    if (trade.getStatus().equals("partial-filled")) {
-                        trade.setStatus("partial-filled");
-                    } else {
-                        trade.setStatus("open");
-                    }
-                    customStock.setBid(newBidPrice);
-                    customStock.setBidVolume(newBidVolume);
-                    customStock.setAskVolume(customStock.getAskVolume() - trade.getFilledQuantity());
-                    count = 0;
-
-                    // save the trade as an asset here
-                    assetService.addAsset(trade, customStock);
-                    if(trade.getFilledQuantity() != 0.0){
-                        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                    }
-                    return tradeRepository.save(trade);
-                } // when it is a new trade so there is no status
-            } catch (NullPointerException e) {
-                trade.setStatus("open");
-                customStock.setBid(newBidPrice);
+            if (OrderBookManager.isLive(trade)) {
                 customStock.setBidVolume(newBidVolume);
-                // customStock.setBidVolume(customStock.getBidVolume() + trade.getQuantity());
-                count = 0;
-                return tradeRepository.save(trade);
             }
-
-          
-
-            double avgPrice = trade.getAvgPrice();
-            
-
-            double lastPrice = 0.0;
-            if (listOfSellTrades.size() != 0) {
-
-                if(accService.getAccount(trade.getAccountId()).getBalance() == 0){
-                    trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                    return tradeRepository.save(trade);
-                }
-
-                Date date = new Date(listOfSellTrades.get(0).getDate());
-                Trade matchTrade = listOfSellTrades.get(0);
-
-                // Get the lowest price trade, if is same price then
-                // Get the earlist submitted sell trade
-                // Buy @ low price
-                for (Trade sellTrade : listOfSellTrades) {
-                    Date currentSellTradeDate = new Date(sellTrade.getDate());
-                    if (matchTrade.getAsk() > sellTrade.getAsk()) {
-                        matchTrade = sellTrade;
-                    } else if (matchTrade.getAsk() == sellTrade.getAsk()) {
-                        if (date.after(currentSellTradeDate)) {
-                            matchTrade = sellTrade;
-                        }
-                    }
-
-                }
-
-                // Add number of match trade
-                count++;
-                int originalFilledQuantity = trade.getFilledQuantity();
-                int originalQuantity = trade.getQuantity();
-                int originalMatchFilledQuantity = matchTrade.getFilledQuantity();
-                int originalMatchQuantity = matchTrade.getQuantity();
-
-                // When submitted trade has more quantity than match trade
-                if (matchTrade.getQuantity() - trade.getQuantity() < 0) {
-
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeFilledQuantity = trade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeQuantity = trade.getQuantity() - matchTrade.getQuantity();
-
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(tradeQuantity);
-                    matchTrade.setQuantity(0);
-
-                }
-
-                else {
-
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + trade.getQuantity();
-                    int tradeFilledQuantity = trade.getQuantity() + trade.getFilledQuantity();
-                    int matchTradeQuantity = matchTrade.getQuantity() - trade.getQuantity();
-
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(0);
-                    matchTrade.setQuantity(matchTradeQuantity);
-
-                }
-
-                if (matchTrade.getQuantity() != 0) {
-                    matchTrade.setStatus("partial-filled");
-                } else {
-                    matchTrade.setStatus("filled");
-
-                }
-                if (trade.getQuantity() != 0) {
-                    trade.setStatus("partial-filled");
-                } else {
-                    trade.setStatus("filled");
-                }
-
-                // // Set the avg_price for current trade
-                // double matchTradeAskPrice;
-                // if (matchTrade.getAsk() == 0.0) {
-                //     matchTradeAskPrice = customStock.getAsk();
-                // } else {
-                //     matchTradeAskPrice = matchTrade.getAsk();
-                // }
-
-                // avgPrice = (avgPrice + matchTradeAskPrice) / count;
-                // trade.setAvgPrice(avgPrice);
-
-                // Set the avg_price for match trade
-                double tradeBidPrice;
-                if (trade.getBid() == 0.0) {
-                    tradeBidPrice = customStock.getBid();
-                } else {
-                    tradeBidPrice = trade.getBid();
-                }
-          
-
-                lastPrice = matchTrade.getAsk();
-                tradeRepository.save(trade);
-
-                /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
-                Long give = trade.getAccountId();
-                Long take = matchTrade.getAccountId();
-                double amt = trade.getFilledQuantity() * matchTrade.getAsk();
-
-                if(accService.getAccount(trade.getAccountId()).getBalance() < amt ){
-                
-                    double askPrice = matchTrade.getAsk();
-                    if(matchTrade.getAsk() == 0.0){
-                        askPrice = tradeBidPrice;
-                    }
-                    int newAmount = (int) Math.round( accService.getAccount(trade.getAccountId()).getBalance() / askPrice);
-                    if(newAmount % 100 != 0){
-                        newAmount = (int)(Math.round( newAmount / 100.0) * 100);
-                    }
-                    // if(newAmount == 0){
-                    //     throw new InsufficientBalanceException("Not enough funds");
-                    // }
-                    avgPrice += (newAmount * askPrice);
-                    trade.setAvgPrice(avgPrice);
-                    trade.setFilledQuantity(originalFilledQuantity + newAmount);
-                    trade.setQuantity(originalQuantity - newAmount);
-                    matchTrade.setFilledQuantity(originalMatchFilledQuantity + newAmount);
-                    matchTrade.setQuantity(originalMatchQuantity - newAmount);
-                    if(trade.getQuantity() != 0){
-                        trade.setStatus("partial-filled");
-                    }
-                    if(matchTrade.getQuantity() != 0){
-                        matchTrade.setStatus("partial-filled");
-                    }
-
-                    tradeRepository.save(trade);
-                    tradeRepository.save(matchTrade);
-                   
-                    amt = newAmount * askPrice;
-                    accService.accTradeOnHold(take, amt);
-                    tranService.addTransaction(give, take, amt * -1);
-                }else{
-                    // Set the avg_price for current trade
-                    double matchTradeAskPrice;
-                    if (matchTrade.getAsk() == 0.0) {
-                        matchTradeAskPrice = customStock.getAsk();
-                    } else {
-                        matchTradeAskPrice = matchTrade.getAsk();
-                    }
-           
-                    avgPrice += (trade.getFilledQuantity() * matchTradeAskPrice) ;
-                    trade.setAvgPrice(avgPrice);
-                 
-                    matchTrade.setAvgPrice(tradeBidPrice);
-
-                    lastPrice = matchTrade.getAsk();
-
-                    tradeRepository.save(trade);
-                    accService.accTradeOnHold(take, amt);
-                    tranService.addTransaction(give, take, amt * -1);
-                }
-              
-                tradeRepository.save(matchTrade);
-            }
-
-            // If current trade is only partial-filled after being matched, find other
-            // available sell trade on the market
-            if (trade.getStatus().equals("partial-filled")) {
-                // Set stock last price
-                customStock.setLastPrice(lastPrice);
-                // Set Stock bid price
-                customStock.setBid(newBidPrice);
-
-                return createLimitBuyTrade(trade, customer, customStock);
-            }
-
-            // Update stock's last price, bid price and ask volume
-            customStock.setLastPrice(lastPrice);
-            customStock.setBid(newBidPrice);
-            customStock.setAskVolume(customStock.getAskVolume() - trade.getFilledQuantity());
-
-            count = 0;
-
-            // will add trade into the portfolio here
-            // portfolioService.addAsset(trade, trade.getCustomerId());
-            assetService.addAsset(trade, customStock);
-
         }
 
-
-        /*
-        This is to set the askVolume for the stockInfo
-        */
-        // Get the list of trades for {symbol}
-        List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-        List<Trade> listOfSellTrades = new ArrayList<>();
-
-
-        if(customStock.getAskVolume() <= 0){
-         // Get the list of open & partial-filled of market buy trades for {symbol}
-            for (Trade sellTradeList : listOfTrades) {
-                if (sellTradeList.getAction().equals("sell")) {
-                    if (sellTradeList.getStatus().equals("open")
-                            || sellTradeList.getStatus().equals("partial-filled")) {
-                                listOfSellTrades.add(sellTradeList);
-                    }
-
-                }
-            }
-          
-            if(listOfSellTrades.size() != 0){
-                Date date = new Date(listOfSellTrades.get(0).getDate());
-                Trade matchTrade = listOfSellTrades.get(0);
-
-                for(Trade sellTrade: listOfSellTrades){
-                    Date currentSellTradeDate = new Date(sellTrade.getDate());
-                        if (matchTrade.getAsk() > sellTrade.getAsk()) {
-                            matchTrade = sellTrade;
-                        } else if (matchTrade.getAsk() == sellTrade.getAsk()) {
-                            if (date.after(currentSellTradeDate)) {
-                                matchTrade = sellTrade;
-                            }
-                        }
-                }
-
-                
-                customStock.setAskVolume(matchTrade.getQuantity());
-                if(matchTrade.getAsk() != 0.0){
-                    customStock.setAsk(matchTrade.getAsk());
-                }
-            }else{
-                customStock.setAskVolume(0);
-            } 
-            
-        }
-
-        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-    
-        return tradeRepository.save(trade);
-
+        refreshAskVolume(trade.getSymbol(), customStock);
+        return record(hold(saveAndRest(trade), reservation), quantity, result);
     }
 
+    // Create a Limit Sell Trade
+    // This method will be used exclusively by Customer
     @Override
     public Trade createLimitSellTrade(Trade trade, Customer customer, CustomStock customStock) {
-        long currentTimestamp = Instant.now().getEpochSecond();
-
-        // Set the customer_id for the trade
-        trade.setCustomerId(customer.getCustomerId());
-
-        // Set the time when trade is submitted
-        trade.setDate(currentTimestamp);
-
-        // If customer submit a trade on weekend OR submit on weekday BUT before 9am and
-        // after 5pm (GMT+8) ,
-        // Throw an error that shows market is close
-        TimeZone timeZone = TimeZone.getTimeZone("GMT+8");
-
-        Calendar startDateTime = Calendar.getInstance(timeZone);
-        startDateTime.set(Calendar.HOUR_OF_DAY, 9);
-        startDateTime.set(Calendar.MINUTE, 0);
-        startDateTime.set(Calendar.SECOND, 0);
-
-        Calendar endDateTime = Calendar.getInstance(timeZone);
-        endDateTime.set(Calendar.HOUR_OF_DAY, 17);
-        endDateTime.set(Calendar.MINUTE, 0);
-        endDateTime.set(Calendar.SECOND, 0);
-
-        Calendar saturday = Calendar.getInstance(timeZone);
-        saturday.set(Calendar.DAY_OF_WEEK, Calendar.SATURDAY);
-
-        Calendar sunday = Calendar.getInstance(timeZone);
-        sunday.set(Calendar.DAY_OF_WEEK, Calendar.SUNDAY);
+        return cycle.execute(trade.getSymbol(), () -> {
+            CustomStock latestStock = latestQuote(customStock);
+            Trade matchedTrade = matchLimitSell(trade, customer, latestStock);
+            quoteCache.update(latestStock);
+            return matchedTrade;
+        });
+    }
 
-        Calendar today = Calendar.getInstance(timeZone);
+    private Trade matchLimitSell(Trade trade, Customer customer, CustomStock customStock) {
+        submit(trade, customer);
+        int quantity = trade.getQuantity();
+        MatchResult result = new MatchResult();
 
-        if (!(today.after(startDateTime) && today.before(endDateTime)) || today.equals(saturday)
-        ||  today.equals(sunday)   ) {
+        // If customer submit a trade on a weekend or holiday OR submit on a trading day BUT before 9am and
+        // after 5pm (GMT+8), the trade stays open until the market opens
+        if (!calendar.isOpen()) {
             trade.setStatus("open");
-            // customStock.setAskVolume(customStock.getAskVolume() + trade.getQuantity());
 
         } else {
-            List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-            List<Trade> listOfBuyTrades = new ArrayList<>();
-
-
-        
             // Set the newAskPrice, the best price will be recorded
             // It must be better than the current stock's ask price and still higher /equal
             // than the bid price
             // best price is lower ask
             double newAskPrice = customStock.getAsk();
             int newAskVolume = customStock.getAskVolume();
-            if(customStock.getAskVolume() == 0){
+            if (customStock.getAskVolume() == 0) {
+                newAskPrice = trade.getAsk();
+                newAskVolume = trade.getQuantity();
+            } else if (trade.getAsk() < newAskPrice && trade.getAsk() > customStock.getBid()
+                    || trade.getAsk() == customStock.getBid()) {
                 newAskPrice = trade.getAsk();
                 newAskVolume = trade.getQuantity();
-            }else{
-                if (trade.getAsk() < newAskPrice && trade.getAsk() > customStock.getBid()
-                || trade.getAsk() == customStock.getBid()) {
-                    newAskPrice = trade.getAsk();
-                    newAskVolume = trade.getQuantity();
-            }
             }
-         
-
-            // Gte the list of open & partial-filled buy trades that are equal to the
-            // ask_price or higher than the ask_price
-            for (Trade buyTrade : listOfTrades) {
-                if (buyTrade.getAction().equals("buy")) {
-                    if (buyTrade.getBid() == trade.getAsk() || buyTrade.getBid() > trade.getAsk()) {
-                        if (buyTrade.getStatus().equals("open") || buyTrade.getStatus().equals("partial-filled")) {
-                            listOfBuyTrades.add(buyTrade);
-                        }
-                    }
 
-                }
+            // Sweep the buy trades that are equal to the ask_price or higher than the
+            // ask_price, highest bid first, then earliest submitted
+            result = sweep(trade, customStock, null);
+            flush(result, trade, null);
+
+            customStock.setAsk(newAskPrice);
+            if (!result.isEmpty()) {
+                customStock.setBidVolume(customStock.getBidVolume() - result.getQuantity());
+                customStock.setLastPrice(result.getLastPrice());
+                portfolioService.updateRealizedGainLoss(trade, customStock);
+            }
+            if (OrderBookManager.isLive(trade)) {
+                customStock.setAskVolume(newAskVolume);
             }
+        }
 
-            try {
-                if (listOfBuyTrades.size() == 0) {
-                    if (trade.getStatus().equals("partial-filled")) {
-                        trade.setStatus("partial-filled");
-                    } else {
-                        trade.setStatus("open");
-                    }
-                    customStock.setAsk(newAskPrice);
-                    customStock.setAskVolume(newAskVolume);
-                    // customStock.setAskVolume(customStock.getAskVolume() + trade.getQuantity());
-                    customStock.setBidVolume(customStock.getBidVolume() - trade.getFilledQuantity());
-                    count = 0;
-                    if(trade.getFilledQuantity() != 0){
-                        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-                    }
+        refreshBidVolume(trade.getSymbol(), customStock);
+        return record(saveAndRest(trade), quantity, result);
+    }
+
+    @Override
+    public MatchResult openMarket(String symbol) {
+        return cycle.execute(symbol, () -> {
+            MatchResult result = new MatchResult();
+            CustomStock cachedStock = quoteCache.get(symbol);
+            if (cachedStock == null) {
+                return result;
+            }
+            CustomStock customStock = cachedStock.copy();
+            OrderBook book = orderBooks.getBook(symbol);
+
+            // The auction leans towards the last price, or the market maker's ask
+            double referencePrice = customStock.getLastPrice() > 0.0 ? customStock.getLastPrice()
+                    : customStock.getAsk();
+            CallAuction auction = new CallAuction(book, referencePrice);
+            for (Execution execution : auction.executions(budget(null, null))) {
+                fill(execution.getBuyTrade(), execution.getQuantity(), execution.getPrice());
+                fill(execution.getSellTrade(), execution.getQuantity(), execution.getPrice());
+                book.fill(execution.getBuyTrade(), execution.getQuantity());
+                book.fill(execution.getSellTrade(), execution.getQuantity());
+                result.record(new Execution(execution.getBuyTrade(), execution.getSellTrade(), execution.getPrice(),
+                        execution.getQuantity(), nextExecutionSequence(book)));
+            }
+            if (result.isEmpty()) {
+                return result;
+            }
+            flush(result, null, null);
+            executionRepository.saveAll(result.getExecutions());
+            journal.fill(result);
+            tradeTape.record(result, null);
+            barAggregator.record(result);
+
+            // The market maker has no portfolio; every other trade was queued before the
+            // open and is settled into its owner's portfolio once
+            for (Trade trade : result.getMatchedTrades()) {
+                if (StockCrawler.MARKET_MAKER_ACCOUNT_ID.equals(trade.getAccountId())) {
+                    continue;
+                }
+                if (trade.getAction().equals("buy")) {
+                    assetService.addAsset(trade, customStock);
+                } else {
                     portfolioService.updateRealizedGainLoss(trade, customStock);
-                    return tradeRepository.save(trade);
                 }
-            } catch (NullPointerException e) {
-                trade.setStatus("open");
-                customStock.setAsk(newAskPrice);
-                customStock.setAskVolume(newAskVolume);
-                // customStock.setAskVolume(customStock.getAskVolume() + trade.getQuantity());
-                count = 0;
-                return tradeRepository.save(trade);
             }
 
-            double lastPrice = 0.0;
+            customStock.setLastPrice(auction.getPrice());
+            customStock.setBidVolume(customStock.getBidVolume() - result.getQuantity());
+            customStock.setAskVolume(customStock.getAskVolume() - result.getQuantity());
+            refreshBidVolume(symbol, customStock);
+            refreshAskVolume(symbol, customStock);
+            quoteCache.update(customStock);
+            return result;
+        });
+    }
 
-            // This is set avg price for trade at the begining before there is any match
-            try {
-                trade.setAvgPrice(trade.getAvgPrice());
-            } catch (NullPointerException e) {
-                trade.setAvgPrice(0.0);
+    @Override
+    public int closeMarket(String symbol) {
+        return cycle.execute(symbol, () -> {
+            OrderBook book = orderBooks.getBook(symbol);
+            List<Trade> liveTrades = book.getOrders();
+            if (liveTrades.isEmpty()) {
+                return 0;
             }
-            double avgPrice = trade.getAvgPrice();
-
-            // Get the best price trade, if is same price then
-            // Get the earliest submitted buy trade
-            // best price trade = highest bid
-            // Sell @ High price
-
-            if (listOfBuyTrades.size() != 0) {
-                Date date = new Date(listOfBuyTrades.get(0).getDate());
-                Trade matchTrade = listOfBuyTrades.get(0);
-
-                for (Trade buyTrade : listOfBuyTrades) {
-                    Date currentBuyTradeDate = new Date(buyTrade.getDate());
-                    if (matchTrade.getBid() < buyTrade.getBid()) {
-                        matchTrade = buyTrade;
-                    } else if (matchTrade.getBid() == buyTrade.getBid()) {
-                        if (date.after(currentBuyTradeDate))
-                            matchTrade = buyTrade;
-                    }
 
+            // The buy trades whose money is released and the shares put back per owner
+            List<Long> holds = new ArrayList<>();
+            Map<Long, Integer> shares = new HashMap<>();
+            for (Trade trade : liveTrades) {
+                trade.setStatus("expired");
+                journal.expire(trade);
+                // The market maker puts neither money nor shares on hold
+                if (StockCrawler.MARKET_MAKER_ACCOUNT_ID.equals(trade.getAccountId())) {
+                    continue;
+                }
+                if (trade.getAction().equals("buy")) {
+                    holds.add(trade.getId());
+                } else {
+                    shares.merge(trade.getCustomerId(), trade.getQuantity(), Integer::sum);
                 }
+            }
+            book.clear();
 
-                // Add the number of match trade
-                count++;
-
-                if (matchTrade.getQuantity() - trade.getQuantity() < 0) {
+            tradeRepository.expireLive(symbol);
+            reservations.releaseAll(holds);
+            for (Map.Entry<Long, Integer> entry : shares.entrySet()) {
+                assetService.retrieveAsset(symbol, entry.getValue(), entry.getKey());
+            }
+            return liveTrades.size();
+        });
+    }
 
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeFilledQuantity = trade.getFilledQuantity() + matchTrade.getQuantity();
-                    int tradeQuantity = trade.getQuantity() - matchTrade.getQuantity();
+    /**
+     * Stamps an incoming trade with its owner and submission time.
+     * 
+     * @param trade    The incoming trade.
+     * @param customer The customer that submitted the trade.
+     */
+    private void submit(Trade trade, Customer customer) {
+        // Set the customer_id for the trade
+        trade.setCustomerId(customer.getCustomerId());
+        // Set the time when trade is submitted
+        trade.setDate(Instant.now().getEpochSecond());
+        trade.setStatus("open");
+        trade.setFilledQuantity(0);
+        trade.setAvgPrice(0.0);
+    }
 
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(tradeQuantity);
-                    matchTrade.setQuantity(0);
+    /**
+     * Puts the money for an incoming buy trade on hold, at the price it was
+     * submitted at, before anything is matched. The market maker puts no money on
+     * hold.
+     * 
+     * @param trade The incoming buy trade.
+     * @return The reservation of the trade, or null if it holds no money.
+     */
+    private Reservation reserve(Trade trade) {
+        if (StockCrawler.MARKET_MAKER_ACCOUNT_ID.equals(trade.getAccountId())) {
+            return null;
+        }
+        try {
+            return reservations.reserve(trade.getAccountId(),
+                    Money.times(trade.getTradedPriceCents(), trade.getQuantity()));
+        } catch (InsufficientBalanceException e) {
+            throw new TradeInvalidException("Available Balance Not Enough");
+        }
+    }
 
-                } else {
+    /**
+     * Keeps the reservation of a saved buy trade for as long as the trade rests
+     * on the book. The reservation of a trade that was filled when it was
+     * submitted is released straight away.
+     * 
+     * @param trade       The saved buy trade.
+     * @param reservation The reservation of the trade, or null if it holds no
+     *                    money.
+     * @return The saved buy trade.
+     */
+    private Trade hold(Trade trade, Reservation reservation) {
+        if (reservation != null) {
+            if (trade != null && OrderBookManager.isLive(trade)) {
+                reservations.open(reservation, trade.getId());
+            } else {
+                reservations.release(reservation);
+            }
+        }
+        return trade;
+    }
 
-                    int matchTradeFilledQuantity = matchTrade.getFilledQuantity() + trade.getQuantity();
-                    int tradeFilledQuantity = trade.getQuantity() + trade.getFilledQuantity();
-                    int matchTradeQuantity = matchTrade.getQuantity() - trade.getQuantity();
+    /**
+     * Finds what the buyers of a sweep or an auction can pay: the money still on
+     * hold for each buy trade and the available balance of its account.
+     *
+     * @param trade       The incoming trade, or null for an auction.
+     * @param reservation The reservation of an incoming buy trade, or null.
+     * @return The budget of the buyers.
+     */
+    private BuyerBudget budget(Trade trade, Reservation reservation) {
+        return new BuyerBudget(buyTrade -> {
+            // The reservation of an incoming trade is not written until it rests
+            Reservation held = buyTrade == trade ? reservation : reservations.getReservation(buyTrade.getId());
+            return held == null ? 0L : held.getAmount();
+        }, accountId -> accService.getAccount(accountId).getAvailableBalanceCents());
+    }
 
-                    matchTrade.setFilledQuantity(matchTradeFilledQuantity);
-                    trade.setFilledQuantity(tradeFilledQuantity);
-                    trade.setQuantity(0);
-                    matchTrade.setQuantity(matchTradeQuantity);
+    /**
+     * Matches an incoming trade against the contra side of its order book in a
+     * single pass. Price levels are walked best first and each level oldest first,
+     * until the trade is filled, nothing left in the book crosses it or the
+     * incoming buyer cannot pay for another lot. A resting buyer that cannot pay
+     * for a lot is passed over, so it does not block the buyers behind it.
+     * Quantities, statuses and average prices of the trades and the order book
+     * are updated as the sweep goes; every execution is recorded in the result
+     * and nothing is written to the repositories.
+     * 
+     * @param trade       The incoming trade.
+     * @param customStock The stock of the trade.
+     * @param reservation The reservation of an incoming buy trade, or null.
+     * @return The executions of the sweep.
+     */
+    private MatchResult sweep(Trade trade, CustomStock customStock, Reservation reservation) {
+        OrderBook book = orderBooks.getBook(trade.getSymbol());
+        MatchResult result = new MatchResult();
+        boolean buy = trade.getAction().equals("buy");
+
+        // The buyers pay out of the money on hold for their trades and the available
+        // balance of their accounts
+        BuyerBudget budget = budget(trade, reservation);
+        // The resting buy trades whose buyers cannot pay for another lot
+        Set<Trade> unaffordable = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        while (trade.getQuantity() > 0) {
+            Trade matchTrade = buy ? bestAskFor(book, trade) : bestBidFor(book, trade, unaffordable);
+            if (matchTrade == null) {
+                break;
+            }
 
-                }
+            double price = executionPrice(trade, matchTrade, customStock);
+            long priceCents = Money.cents(price);
+            int quantity = Math.min(trade.getQuantity(), matchTrade.getQuantity());
+            // Only buy as many lots as the buyer can pay for
+            Trade buyTrade = buy ? trade : matchTrade;
+            quantity = budget.affordable(buyTrade, priceCents, quantity);
+            if (quantity <= 0) {
+                if (buy) {
+                    break;
+                }
+                unaffordable.add(matchTrade);
+                continue;
+            }
 
-                if (matchTrade.getQuantity() != 0) {
-                    matchTrade.setStatus("partial-filled");
-                } else {
-                    matchTrade.setStatus("filled");
+            fill(trade, quantity, price);
+            fill(matchTrade, quantity, price);
+            book.fill(matchTrade, quantity);
 
-                }
-                if (trade.getQuantity() != 0) {
-                    trade.setStatus("partial-filled");
-                } else {
-                    trade.setStatus("filled");
-                }
+            long sequence = nextExecutionSequence(book);
+            Execution execution = buy ? new Execution(trade, matchTrade, price, quantity, sequence)
+                    : new Execution(matchTrade, trade, price, quantity, sequence);
+            result.record(execution, matchTrade);
+            budget.spend(buyTrade, execution.getAmount());
+        }
+        return result;
+    }
 
-                // Set the avg_price for current trade
-                double matchTradeBidPrice;
-                if (matchTrade.getBid() == 0.0) {
-                    matchTradeBidPrice = customStock.getBid();
-                } else {
-                    matchTradeBidPrice = matchTrade.getBid();
-                }
+    /**
+     * Finds the best sell trade for an incoming buy trade. A market buy takes any
+     * sell trade, a limit buy takes sell trades at or below its bid.
+     */
+    private Trade bestAskFor(OrderBook book, Trade trade) {
+        return trade.getBid() == 0.0 ? book.bestAsk() : book.bestAskAtOrBelow(trade.getBid());
+    }
 
-                avgPrice += trade.getFilledQuantity() * matchTradeBidPrice;
-                trade.setAvgPrice(avgPrice);
+    /**
+     * Finds the best buy trade for an incoming sell trade, passing over the buy
+     * trades whose buyers cannot pay. A market sell takes any buy trade, a limit
+     * sell takes buy trades at or above its ask.
+     */
+    private Trade bestBidFor(OrderBook book, Trade trade, Set<Trade> unaffordable) {
+        return book.bestBidAtOrAbove(trade.getAsk(), unaffordable);
+    }
 
-                // Set the avg_price for match trade
-                double tradeAskPrice;
-                if (trade.getAsk() == 0.0) {
-                    tradeAskPrice = customStock.getAsk();
-                } else {
-                    tradeAskPrice = trade.getAsk();
-                }
-                matchTrade.setAvgPrice(tradeAskPrice);
-
-                lastPrice = matchTrade.getBid();
-
-                tradeRepository.save(trade);
-                /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
-                Long take = trade.getAccountId();
-                Long give = matchTrade.getAccountId();
-                double amt = trade.getFilledQuantity() * matchTrade.getBid();
-                accService.accTradeOnHold(take, amt);
-                accService.accTradeOnHold(give, amt * -1);
-                tranService.addTransaction(take, give, amt);
-                tradeRepository.save(matchTrade);
+    /**
+     * Finds the price of a match. The resting trade's price is used when it has
+     * one, then the incoming trade's price; two market trades trade at the current
+     * ask (incoming buy) or bid (incoming sell) of the stock.
+     * 
+     * @param trade       The incoming trade.
+     * @param matchTrade  The resting trade.
+     * @param customStock The stock of the trade.
+     * @return The price of the match.
+     */
+    private double executionPrice(Trade trade, Trade matchTrade, CustomStock customStock) {
+        if (trade.getAction().equals("buy")) {
+            if (matchTrade.getAsk() != 0.0) {
+                return matchTrade.getAsk();
             }
+            return trade.getBid() != 0.0 ? trade.getBid() : customStock.getAsk();
+        }
+        if (matchTrade.getBid() != 0.0) {
+            return matchTrade.getBid();
+        }
+        return trade.getAsk() != 0.0 ? trade.getAsk() : customStock.getBid();
+    }
 
-            if (trade.getStatus().equals("partial-filled")) {
-                // Set stock last price
-                customStock.setLastPrice(lastPrice);
-                // Set Stock ask price
-                customStock.setAsk(newAskPrice);
-                return createLimitSellTrade(trade, customer, customStock);
+    /**
+     * Applies a fill to one side of a match: moves the quantity from remaining to
+     * filled, updates the average price and the status.
+     * 
+     * @param trade    The trade that was (partially) filled.
+     * @param quantity The quantity filled.
+     * @param price    The price of the fill.
+     */
+    private void fill(Trade trade, int quantity, double price) {
+        int filledQuantity = trade.getFilledQuantity();
+        long cost = Money.times(trade.getAvgPriceCents(), filledQuantity) + Money.times(Money.cents(price), quantity);
+        trade.setAvgPriceCents(Money.average(cost, filledQuantity + quantity));
+        trade.setFilledQuantity(filledQuantity + quantity);
+        trade.setQuantity(trade.getQuantity() - quantity);
+        trade.setStatus(trade.getQuantity() == 0 ? "filled" : "partial-filled");
+    }
+
+    /**
+     * Writes the outcome of a sweep. Every buy trade pays its sellers out of its
+     * reservation, a resting buy trade that is done gives back what is left of it,
+     * the transactions between every pair of accounts are recorded once and every
+     * matched resting trade is saved once, all in one transaction. The incoming
+     * trade is saved by the caller.
+     * 
+     * @param result      The executions of the sweep.
+     * @param trade       The incoming trade, or null for an auction.
+     * @param reservation The reservation of an incoming buy trade, or null.
+     */
+    private void flush(MatchResult result, Trade trade, Reservation reservation) {
+        if (result.isEmpty()) {
+            return;
+        }
+
+        /* ACCOUNT MATCH TRADE CREATED HERE. GET THE SELLER ID HERE */
+        Map<Trade, Map<Long, Long>> payments = new IdentityHashMap<>();
+        List<Trade> buyTrades = new ArrayList<>();
+        Map<List<Long>, Long> amounts = new LinkedHashMap<>();
+        for (Execution execution : result.getExecutions()) {
+            Trade buyTrade = execution.getBuyTrade();
+            Long seller = execution.getSellTrade().getAccountId();
+            if (!payments.containsKey(buyTrade)) {
+                payments.put(buyTrade, new LinkedHashMap<>());
+                buyTrades.add(buyTrade);
+            }
+            payments.get(buyTrade).merge(seller, execution.getAmount(), Long::sum);
+            amounts.merge(Arrays.asList(buyTrade.getAccountId(), seller), execution.getAmount(), Long::sum);
+        }
+        for (Trade buyTrade : buyTrades) {
+            if (buyTrade == trade) {
+                reservations.settle(buyTrade.getAccountId(), reservation, payments.get(buyTrade));
+                continue;
+            }
+            Reservation held = reservations.getReservation(buyTrade.getId());
+            reservations.settle(buyTrade.getAccountId(), held, payments.get(buyTrade));
+            if (held != null && !OrderBookManager.isLive(buyTrade)) {
+                reservations.release(held);
             }
+        }
+        for (Map.Entry<List<Long>, Long> entry : amounts.entrySet()) {
+            tranService.addTransaction(entry.getKey().get(0), entry.getKey().get(1), -entry.getValue());
+        }
 
-            // Set Stock Bid volume
-            customStock.setBidVolume(customStock.getBidVolume() - trade.getFilledQuantity());
-            // Set stock last price
-            customStock.setLastPrice(lastPrice);
+        tradeRepository.saveAll(result.getMatchedTrades());
+    }
 
-            // Set Stock ask price
-            customStock.setAsk(newAskPrice);
+    /**
+     * Sets the ask volume of the stock to the best sell trade once the volume it
+     * was showing has been used up.
+     * 
+     * @param symbol      The stock symbol.
+     * @param customStock The stock to update.
+     */
+    private void refreshAskVolume(String symbol, CustomStock customStock) {
+        if (customStock.getAskVolume() <= 0) {
+            // Get the best open & partial-filled sell trade for {symbol}
+            Trade bestAsk = orderBooks.getBook(symbol).bestAsk();
 
-            count = 0;
+            if (bestAsk != null) {
+                customStock.setAskVolume(bestAsk.getQuantity());
+                if (bestAsk.getAsk() != 0.0) {
+                    customStock.setAsk(bestAsk.getAsk());
+                }
+            } else {
+                customStock.setAskVolume(0);
+            }
         }
+    }
 
-        portfolioService.updateRealizedGainLoss(trade, customStock);
-
-            // Set the bidVolume
-            List<Trade> listOfTrades = tradeRepository.findAllBySymbol(trade.getSymbol());
-            List<Trade> listOfBuyTrades = new ArrayList<>();
-    
-    
-            if(customStock.getBidVolume() <= 0){
-             // Get the list of open & partial-filled of market buy trades for {symbol}
-                for (Trade buyTradeList : listOfTrades) {
-                    if (buyTradeList.getAction().equals("buy")) {
-                        if (buyTradeList.getStatus().equals("open")
-                                || buyTradeList.getStatus().equals("partial-filled")) {
-                                  listOfBuyTrades.add(buyTradeList);
-                        }
-    
-                    }
+    /**
+     * Sets the bid volume of the stock to the best buy trade once the volume it
+     * was showing has been used up.
+     * 
+     * @param symbol      The stock symbol.
+     * @param customStock The stock to update.
+     */
+    private void refreshBidVolume(String symbol, CustomStock customStock) {
+        if (customStock.getBidVolume() <= 0) {
+            // Get the best open & partial-filled buy trade for {symbol}
+            Trade bestBid = orderBooks.getBook(symbol).bestBid();
+
+            if (bestBid != null) {
+                customStock.setBidVolume(bestBid.getQuantity());
+                if (bestBid.getBid() != 0.0) {
+                    customStock.setBid(bestBid.getBid());
                 }
-              
-                if(listOfBuyTrades.size() != 0){
-                    Date date = new Date(listOfBuyTrades.get(0).getDate());
-                    Trade matchTrade = listOfBuyTrades.get(0);
-    
-                    for (Trade buyTrade : listOfBuyTrades) {
-                      Date currentBuyTradeDate = new Date(buyTrade.getDate());
-                      if (matchTrade.getBid() < buyTrade.getBid()) {
-                          matchTrade = buyTrade;
-                      } else if (matchTrade.getBid() == buyTrade.getBid()) {
-                          if (date.after(currentBuyTradeDate))
-                              matchTrade = buyTrade;
-                      }
-  
-                  }
-    
-                    customStock.setBidVolume(matchTrade.getQuantity());
-                    if(matchTrade.getBid() != 0.0){
-                        customStock.setAsk(matchTrade.getBid());
-                    }
-                }else{
-                    customStock.setBidVolume(0);
-                } 
-                
+            } else {
+                customStock.setBidVolume(0);
             }
-        trade.setAvgPrice(trade.getAvgPrice() / trade.getFilledQuantity());
-        return tradeRepository.save(trade);
+        }
     }
 }
@@ -76,4 +76,25 @@ public interface TradeServices {
      */
     Trade cancelTrade(Long tradeId, Customer customer);
 
+    /**
+     * Opens the market for the specified symbol with a call auction. Every order
+     * queued while the market was closed is crossed at a single equilibrium
+     * price in one batch.
+     * 
+     * @param symbol The stock symbol.
+     * @return The executions of the auction.
+     */
+    MatchResult openMarket(String symbol);
+
+    /**
+     * Closes the market for the specified symbol. Every open and partial-filled
+     * trade is expired, the money still held for the expired buy trades is put
+     * back into the available balance of their accounts and the shares of the
+     * expired sell trades are put back into the portfolios of their owners.
+     * 
+     * @param symbol The stock symbol.
+     * @return The number of trades expired.
+     */
+    int closeMarket(String symbol);
+
 }
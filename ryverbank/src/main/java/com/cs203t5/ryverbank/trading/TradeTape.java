@@ -0,0 +1,270 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.cs203t5.ryverbank.Money;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The time and sales of each symbol: its most recent executions, newest first.
+ *
+ * Each symbol keeps a ring of a fixed number of prints, allocated when the
+ * symbol first trades. Appending a print only writes into the ring, and a
+ * reader copies the prints it wants without taking a lock, so reading the tape
+ * never holds up the matching thread. Within a match cycle, prints are staged
+ * in a buffer the matching thread reuses from cycle to cycle, and the cycle
+ * publishes them once it has committed, see {@link MatchingCycle}.
+ */
+@Component
+public class TradeTape {
+    /** The sides of a print, by the action of the trade that took liquidity. */
+    private static final byte BUY = 1;
+    private static final byte SELL = 2;
+    /** A print of an auction, where neither side took liquidity. */
+    private static final byte NONE = 0;
+
+    /** The number of prints kept per symbol. */
+    private final int capacity;
+    /** The ring of each symbol that has traded. */
+    private final Map<String, Ring> rings = new ConcurrentHashMap<>();
+    /** The prints staged by the cycle running on each thread. */
+    private final ThreadLocal<Staged> staged = ThreadLocal.withInitial(Staged::new);
+
+    /**
+     * Constructs a TradeTape with the following parameters.
+     *
+     * @param capacity The number of prints kept per symbol.
+     */
+    public TradeTape(@Value("${ryverbank.tape.capacity:1024}") int capacity) {
+        this.capacity = Math.max(capacity, 2);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Stages the prints the current thread records until {@link #publish()}, so
+     * that the prints of a match cycle only reach the tape once the cycle has
+     * been written to the database.
+     */
+    public void begin() {
+        staged.get().active = true;
+    }
+
+    /**
+     * Appends the executions of a match to the tape, or stages them if the current
+     * thread is in a cycle.
+     *
+     * @param result    The executions, oldest first.
+     * @param aggressor The action of the incoming trade, or null for an auction.
+     */
+    public void record(MatchResult result, String aggressor) {
+        if (result.isEmpty()) {
+            return;
+        }
+        List<Execution> executions = result.getExecutions();
+        byte side = aggressor == null ? NONE : aggressor.equals("buy") ? BUY : SELL;
+        Staged cycle = staged.get();
+        for (int i = 0; i < executions.size(); i++) {
+            if (cycle.active) {
+                cycle.add(executions.get(i), side);
+            } else {
+                append(executions.get(i), side);
+            }
+        }
+    }
+
+    /**
+     * Appends the prints staged since {@link #begin()}.
+     */
+    public void publish() {
+        Staged cycle = staged.get();
+        for (int i = 0; i < cycle.size; i++) {
+            append(cycle.executions[i], cycle.sides[i]);
+        }
+        cycle.clear();
+    }
+
+    /**
+     * Drops the prints staged since {@link #begin()}.
+     */
+    public void discard() {
+        staged.get().clear();
+    }
+
+    private void append(Execution execution, byte side) {
+        Ring ring = rings.get(execution.getSymbol());
+        if (ring == null) {
+            ring = rings.computeIfAbsent(execution.getSymbol(), symbol -> new Ring(capacity));
+        }
+        ring.append(execution.getPriceCents(), execution.getQuantity(), execution.getExecutedAt(), side);
+    }
+
+    /**
+     * Returns the most recent prints of a symbol, newest first.
+     *
+     * @param symbol The stock symbol.
+     * @param limit  The maximum number of prints.
+     * @return The prints, or an empty list if the symbol has not traded.
+     */
+    public List<Print> getPrints(String symbol, int limit) {
+        Ring ring = rings.get(symbol);
+        if (ring == null) {
+            return Collections.emptyList();
+        }
+        return ring.copy(Math.min(limit, capacity - 1));
+    }
+
+    /**
+     * Forgets the prints of every symbol.
+     */
+    public void clear() {
+        rings.clear();
+    }
+
+    /**
+     * One execution on the tape.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static final class Print {
+        /** The price of the execution, in cents. */
+        private final long price;
+        /** The quantity of the execution. */
+        private final int quantity;
+        /** The time of the execution, in epoch milliseconds. */
+        private final long time;
+        /** The action of the trade that took liquidity, or null for an auction. */
+        private final String side;
+
+        Print(long price, int quantity, long time, String side) {
+            this.price = price;
+            this.quantity = quantity;
+            this.time = time;
+            this.side = side;
+        }
+
+        public double getPrice() {
+            return Money.dollars(price);
+        }
+
+        @JsonIgnore
+        public long getPriceCents() {
+            return price;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getSide() {
+            return side;
+        }
+    }
+
+    /**
+     * The prints a cycle has staged. The arrays only grow, so once a thread has
+     * seen its largest cycle, staging a print writes two array slots.
+     */
+    private static final class Staged {
+        private Execution[] executions = new Execution[16];
+        private byte[] sides = new byte[16];
+        private int size;
+        /** Whether the thread is in a cycle. */
+        private boolean active;
+
+        void add(Execution execution, byte side) {
+            if (size == executions.length) {
+                executions = Arrays.copyOf(executions, size * 2);
+                sides = Arrays.copyOf(sides, size * 2);
+            }
+            executions[size] = execution;
+            sides[size] = side;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(executions, 0, size, null);
+            size = 0;
+            active = false;
+        }
+    }
+
+    /**
+     * The prints of one symbol, held column-wise in preallocated arrays.
+     *
+     * A writer first claims the next slot, then fills it, then publishes it. A
+     * reader copies the published slots it wants and afterwards checks how far
+     * the writers have claimed: any slot that was reused in the meantime is
+     * dropped from the copy, so a reader never returns a torn print and never
+     * waits for a writer.
+     */
+    private static final class Ring {
+        /** The prices of the prints, in cents. */
+        private final long[] prices;
+        private final int[] quantities;
+        private final long[] times;
+        private final byte[] sides;
+        /** The number of prints whose slot has been claimed by a writer. */
+        private volatile long claimed;
+        /** The number of prints that have been fully written. */
+        private volatile long published;
+
+        Ring(int capacity) {
+            prices = new long[capacity];
+            quantities = new int[capacity];
+            times = new long[capacity];
+            sides = new byte[capacity];
+        }
+
+        // writers of a symbol are sequenced on its matching thread; the lock is uncontended
+        synchronized void append(long price, int quantity, long time, byte side) {
+            long sequence = published;
+            int slot = (int) (sequence % prices.length);
+            claimed = sequence + 1;
+            // the claim must be visible before the slot is overwritten
+            VarHandle.storeStoreFence();
+            prices[slot] = price;
+            quantities[slot] = quantity;
+            times[slot] = time;
+            sides[slot] = side;
+            published = sequence + 1;
+        }
+
+        List<Print> copy(int limit) {
+            long end = published;
+            int count = (int) Math.min(limit, end);
+            long[] copiedPrices = new long[count];
+            int[] copiedQuantities = new int[count];
+            long[] copiedTimes = new long[count];
+            byte[] copiedSides = new byte[count];
+            for (int i = 0; i < count; i++) {
+                int slot = (int) ((end - 1 - i) % prices.length);
+                copiedPrices[i] = prices[slot];
+                copiedQuantities[i] = quantities[slot];
+                copiedTimes[i] = times[slot];
+                copiedSides[i] = sides[slot];
+            }
+            // the copies must be read before the claim is checked
+            VarHandle.loadLoadFence();
+            long overwritten = claimed - prices.length;
+            List<Print> prints = new ArrayList<>(count);
+            for (int i = 0; i < count && end - 1 - i >= overwritten; i++) {
+                byte side = copiedSides[i];
+                prints.add(new Print(copiedPrices[i], copiedQuantities[i], copiedTimes[i],
+                        side == BUY ? "buy" : side == SELL ? "sell" : null));
+            }
+            return prints;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.cs203t5.ryverbank.trading;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import yahoofinance.Stock;
+import yahoofinance.YahooFinance;
+
+/**
+ * Quotes the stocks of the Straits Times Index from Yahoo Finance.
+ *
+ * The symbols are split into batches that are each fetched with one request,
+ * and all batches are in flight at the same time, so fetching takes about as
+ * long as the slowest request whatever the number of symbols. Every request
+ * has a deadline. When a batch fails or misses its deadline, its symbols are
+ * retried one by one, so one bad symbol only costs its own quote.
+ */
+@Component
+@ConditionalOnProperty(name = "ryverbank.feed.type", havingValue = "yahoo", matchIfMissing = true)
+public class YahooMarketDataFeed implements MarketDataFeed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(YahooMarketDataFeed.class);
+
+    /** The Yahoo Finance suffix of symbols listed on the Singapore Exchange. */
+    private static final String EXCHANGE_SUFFIX = ".SI";
+
+    /** The threads that fetch the batches. */
+    private final ExecutorService fetchers;
+    /** The number of symbols fetched per request. */
+    private final int batchSize;
+    /** The time a fetch may take, in milliseconds. */
+    private final long timeout;
+
+    /**
+     * Constructs a YahooMarketDataFeed with the following parameters.
+     *
+     * @param threads   The number of requests in flight at once.
+     * @param batchSize The number of symbols fetched per request.
+     * @param timeout   The time a fetch may take, in milliseconds.
+     */
+    public YahooMarketDataFeed(@Value("${ryverbank.feed.threads:8}") int threads,
+            @Value("${ryverbank.feed.batch-size:10}") int batchSize,
+            @Value("${ryverbank.feed.timeout:5000}") long timeout) {
+        AtomicInteger count = new AtomicInteger();
+        this.fetchers = Executors.newFixedThreadPool(Math.max(threads, 1), runnable -> {
+            Thread thread = new Thread(runnable, "market-data-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSize = Math.max(batchSize, 1);
+        this.timeout = timeout;
+    }
+
+    @Override
+    public Map<String, MarketQuote> fetch(Collection<String> symbols) {
+        List<String> all = new ArrayList<>(symbols);
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += batchSize) {
+            batches.add(all.subList(i, Math.min(i + batchSize, all.size())));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<Future<Map<String, MarketQuote>>> requests = new ArrayList<>();
+        for (List<String> batch : batches) {
+            requests.add(fetchers.submit(() -> request(batch)));
+        }
+        Map<String, MarketQuote> quotes = new HashMap<>();
+        List<String> failed = new ArrayList<>();
+        for (int i = 0; i < batches.size(); i++) {
+            Map<String, MarketQuote> batchQuotes = await(requests.get(i), deadline);
+            if (batchQuotes == null) {
+                failed.addAll(batches.get(i));
+            } else {
+                quotes.putAll(batchQuotes);
+            }
+        }
+
+        if (!failed.isEmpty() && batchSize > 1) {
+            // a single request per symbol, so that only the symbols at fault go without a quote
+            deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            List<Future<Map<String, MarketQuote>>> retries = new ArrayList<>();
+            for (String symbol : failed) {
+                retries.add(fetchers.submit(() -> request(List.of(symbol))));
+            }
+            for (Future<Map<String, MarketQuote>> retry : retries) {
+                Map<String, MarketQuote> symbolQuotes = await(retry, deadline);
+                if (symbolQuotes != null) {
+                    quotes.putAll(symbolQuotes);
+                }
+            }
+        }
+        if (quotes.size() < all.size()) {
+            List<String> missing = new ArrayList<>(all);
+            missing.removeAll(quotes.keySet());
+            LOGGER.warn("No quote from Yahoo Finance for {}", missing);
+        }
+        return quotes;
+    }
+
+    private Map<String, MarketQuote> request(List<String> symbols) throws IOException {
+        String[] tickers = new String[symbols.size()];
+        for (int i = 0; i < tickers.length; i++) {
+            tickers[i] = symbols.get(i) + EXCHANGE_SUFFIX;
+        }
+        Map<String, Stock> stocks = YahooFinance.get(tickers);
+        Map<String, MarketQuote> quotes = new HashMap<>();
+        for (String symbol : symbols) {
+            Stock stock = stocks.get(symbol + EXCHANGE_SUFFIX);
+            if (stock == null || stock.getQuote() == null || stock.getQuote().getPrice() == null) {
+                continue;
+            }
+            double price = stock.getQuote().getPrice().doubleValue();
+            quotes.put(symbol, new MarketQuote(symbol, price, orElse(stock.getQuote().getBid(), price),
+                    orElse(stock.getQuote().getAsk(), price)));
+        }
+        return quotes;
+    }
+
+    private static double orElse(BigDecimal value, double fallback) {
+        return value != null && value.signum() > 0 ? value.doubleValue() : fallback;
+    }
+
+    private static Map<String, MarketQuote> await(Future<Map<String, MarketQuote>> request, long deadline) {
+        try {
+            return request.get(Math.max(deadline - System.nanoTime(), 0L), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            request.cancel(true);
+            return null;
+        } catch (ExecutionException e) {
+            LOGGER.debug("Yahoo Finance request failed", e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            request.cancel(true);
+            return null;
+        }
+    }
+
+    /**
+     * Stops the fetch threads.
+     */
+    @PreDestroy
+    public void close() {
+        fetchers.shutdownNow();
+    }
+}
@@ -0,0 +1,43 @@
+package com.cs203t5.ryverbank;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class MoneyTest {
+
+   @Test
+   void cents_BinaryFraction_NearestCent() {
+      assertEquals(330, Money.cents(3.3));
+      assertEquals(29, Money.cents(0.1 + 0.2 - 0.01));
+      assertEquals(-245656, Money.cents(-2456.56));
+   }
+
+   @Test
+   void wholeCents_OffCent_ThrowIllegalArgumentException() {
+      assertEquals(260, Money.wholeCents(2.6));
+      assertThrows(IllegalArgumentException.class, () -> Money.wholeCents(2.605));
+   }
+
+   @Test
+   void times_PriceAndQuantity_ExactCost() {
+      // 1.10 * 3 in doubles is 3.3000000000000003
+      assertEquals(330, Money.times(Money.cents(1.10), 3));
+      assertEquals(3.3, Money.dollars(Money.times(110, 3)));
+   }
+
+   @Test
+   void average_TotalAndQuantity_NearestCent() {
+      assertEquals(325, Money.average(300 * 330 + 200 * 317, 500));
+      assertEquals(0, Money.average(0, 0));
+   }
+
+   @Test
+   void average_HalfCentOrBeyondDouble_RoundExactly() {
+      assertEquals(326, Money.average(651, 2));
+      assertEquals(325, Money.average(974, 3));
+      // 2^53 + 1 has no exact double
+      assertEquals(9007199254740993L, Money.average(9007199254740993L, 1));
+   }
+}
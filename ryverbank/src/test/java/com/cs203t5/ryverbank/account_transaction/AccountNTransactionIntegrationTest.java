@@ -29,6 +29,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.cs203t5.ryverbank.customer.Customer;
@@ -335,4 +336,89 @@ public class AccountNTransactionIntegrationTest {
 
         assertEquals(404, response.getStatusCode().value());
     }
+
+    @Test
+    public void addTransactions_Payroll_OneResultPerTransfer() throws Exception {
+        Customer customer1 = customers.save(new Customer("user1", encoder.encode("goodpassword1"), "Woofy Dog", "S8529649C",
+        "91251234", "Dog House", "ROLE_USER", true));
+
+        Customer customer2 = customers.save(new Customer("user2", encoder.encode("goodpassword1"), "Woofy Dog", "S1539649C",
+        "95451234", "Dog House", "ROLE_USER", true));
+
+        Account acc1 = accounts.save(new Account(customer1.getCustomerId(), 8000.0, 1000.0));
+        Account acc2 = accounts.save(new Account(customer2.getCustomerId(), 8000.0, 1000.0));
+
+        List<JSONObject> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("from", acc1.getAccountID());
+            jsonObject.put("to", acc2.getAccountID());
+            jsonObject.put("amount", 300.0);
+            batch.add(jsonObject);
+        }
+        JSONObject unknownReceiver = new JSONObject();
+        unknownReceiver.put("from", acc1.getAccountID());
+        unknownReceiver.put("to", acc2.getAccountID() + 1000);
+        unknownReceiver.put("amount", 300.0);
+        batch.add(unknownReceiver);
+
+        URI uri = new URI(baseURl + port + "/accounts/" + acc1.getAccountID() + "/transactions/batch");
+        ResponseEntity<Map[]> response = restTemplate.withBasicAuth("user1", "goodpassword1")
+        .postForEntity(uri, batch, Map[].class);
+
+        assertEquals(200, response.getStatusCode().value());
+        assertEquals(4, response.getBody().length);
+        assertEquals("accepted", response.getBody()[0].get("status"));
+        assertEquals("rejected", response.getBody()[3].get("status"));
+        assertEquals(3, transactions.count());
+    }
+
+    @Test
+    public void addTransactions_NotEnoughForTotal_NothingTransferred() throws Exception {
+        Customer customer1 = customers.save(new Customer("user1", encoder.encode("goodpassword1"), "Woofy Dog", "S8529649C",
+        "91251234", "Dog House", "ROLE_USER", true));
+
+        Customer customer2 = customers.save(new Customer("user2", encoder.encode("goodpassword1"), "Woofy Dog", "S1539649C",
+        "95451234", "Dog House", "ROLE_USER", true));
+
+        Account acc1 = accounts.save(new Account(customer1.getCustomerId(), 8000.0, 1000.0));
+        Account acc2 = accounts.save(new Account(customer2.getCustomerId(), 8000.0, 1000.0));
+
+        // every transfer is covered on its own, but not all four together
+        List<JSONObject> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("from", acc1.getAccountID());
+            jsonObject.put("to", acc2.getAccountID());
+            jsonObject.put("amount", 300.0);
+            batch.add(jsonObject);
+        }
+
+        URI uri = new URI(baseURl + port + "/accounts/" + acc1.getAccountID() + "/transactions/batch");
+        ResponseEntity<Map[]> response = restTemplate.withBasicAuth("user1", "goodpassword1")
+        .postForEntity(uri, batch, Map[].class);
+
+        assertEquals(200, response.getStatusCode().value());
+        for (Map<?, ?> result : response.getBody()) {
+            assertEquals("rejected", result.get("status"));
+        }
+        assertEquals(0, transactions.count());
+    }
+
+    @Test
+    public void addTransactions_CustomerUnauthorized() throws Exception {
+        Customer customer1 = customers.save(new Customer("user1", encoder.encode("goodpassword1"), "Woofy Dog", "S8529649C",
+        "91251234", "Dog House", "ROLE_USER", true));
+
+        customers.save(new Customer("user2", encoder.encode("goodpassword1"), "Woofy Dog", "S1539649C",
+        "95451234", "Dog House", "ROLE_USER", true));
+
+        Account acc1 = accounts.save(new Account(customer1.getCustomerId(), 8000.0, 1000.0));
+
+        URI uri = new URI(baseURl + port + "/accounts/" + acc1.getAccountID() + "/transactions/batch");
+        ResponseEntity<Object> response = restTemplate.withBasicAuth("user2", "goodpassword1")
+        .postForEntity(uri, new ArrayList<>(), Object.class);
+
+        assertEquals(403, response.getStatusCode().value());
+    }
 }
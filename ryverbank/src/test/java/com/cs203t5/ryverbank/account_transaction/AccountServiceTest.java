@@ -4,42 +4,69 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.*;
 
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
 
 public class AccountServiceTest {
-    
+
     @Mock
     private AccountRepository accountRepository;
 
-    @InjectMocks
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
     private AccountServiceImpl accountServiceImpl;
 
+    @BeforeEach
+    void setUp() {
+        accountServiceImpl = new AccountServiceImpl(accountRepository,
+                new Ledger(accountRepository, ledgerEntryRepository, 16));
+    }
+
+    private Account found(Long accountId, double balance, double availableBalance) {
+        Account account = new Account(1L, balance, availableBalance);
+        account.setAccountID(accountId);
+        when(accountRepository.findById(accountId)).thenReturn(Optional.of(account));
+        return account;
+    }
+
 
     //testing creating account
     @Test
     public void addAcc_GetAcc_ReturnAcc(){
-        
+
         Account foundAcc = new Account(1L, 5000.0, 1000.0);
-        when(accountRepository.save(any(Account.class))).thenReturn(foundAcc);
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> {
+            Account saved = invocation.getArgument(0);
+            saved.setAccountID(1L);
+            when(accountRepository.findById(1L)).thenReturn(Optional.of(saved));
+            return saved;
+        });
 
         Account acc = accountServiceImpl.addAccount(foundAcc);
         assertNotNull(acc);
 
-        verify(accountRepository).save(acc);
+        //the account is saved empty and its opening balances are posted
+        verify(accountRepository).save(argThat(saved -> saved.getBalanceCents() == 0));
+        verify(ledgerEntryRepository).saveAll(argThat(entries -> ((List<?>) entries).size() == 2));
+        assertEquals(5000.0, acc.getBalance());
+        assertEquals(1000.0, acc.getAvailableBalance());
     }
 
 
@@ -47,13 +74,12 @@ public class AccountServiceTest {
     //test getting the account
     @Test
     public void getAcc_FoundAcc_ReturnAcc(){
-        Account foundAcc = new Account(1L, 5000.0, 1000.0);
-        when(accountRepository.save(any(Account.class))).thenReturn(foundAcc);
-        when(accountRepository.findById(foundAcc.getAccountID())).thenReturn(Optional.of(foundAcc));
-       
+        Account foundAcc = found(1L, 5000.0, 1000.0);
+
         Account acc = accountServiceImpl.getAccount(foundAcc.getAccountID());
 
         assertNotNull(acc);
+        assertEquals(5000.0, acc.getBalance());
 
         verify(accountRepository).findById(foundAcc.getAccountID());
     }
@@ -61,73 +87,90 @@ public class AccountServiceTest {
     //test successful transfer (deduction)
     @Test
     public void getFundTransfer_ReturnAcc(){
-        Account foundAcc = new Account(1L, 5000.0, 1000.0);
+        //mock a get account
+        Account foundAcc = found(1L, 5000.0, 1000.0);
+        when(accountRepository.existsById(foundAcc.getAccountID())).thenReturn(true);
 
-        //mock a get and save account
-        when(accountRepository.save(any(Account.class))).thenReturn(foundAcc);
-        when(accountRepository.findById(foundAcc.getAccountID())).thenReturn(Optional.of(foundAcc));
-       
         //if transfer amount not exceeding available balance, deduct it both avail and balance
-        double amount = -300.0;
+        long amount = -30000;
 
         Account account = accountServiceImpl.fundTransfer(foundAcc.getAccountID(), amount);
 
         assertEquals(700.0, account.getAvailableBalance());
         assertEquals(4700.0, account.getBalance());
+        //the account row is left to the checkpoint
+        verify(accountRepository, never()).save(any(Account.class));
+    }
+
+
+    //test many small transfers add up to the cent
+    @Test
+    public void getFundTransfer_ManyCents_ExactBalance(){
+        Account foundAcc = found(1L, 0.0, 0.0);
+        when(accountRepository.existsById(foundAcc.getAccountID())).thenReturn(true);
+
+        for (int i = 0; i < 1000; i++) {
+            accountServiceImpl.fundTransfer(foundAcc.getAccountID(), 10);
+        }
+
+        Account account = accountServiceImpl.getAccount(foundAcc.getAccountID());
+        assertEquals(10000, account.getBalanceCents());
+        assertEquals(100.0, account.getAvailableBalance());
     }
 
 
     //test unsuccessful transfer, should throw InsufficientBalanceException
     @Test
     public void getFundTransfer_InsufficientBalance(){
-        Account foundAcc = new Account(1L, 5000.0, 1000.0);
         //mock a get account
-        when(accountRepository.findById(foundAcc.getAccountID())).thenReturn(Optional.of(foundAcc));
+        Account foundAcc = found(1L, 5000.0, 1000.0);
+        when(accountRepository.existsById(foundAcc.getAccountID())).thenReturn(true);
 
-        double amount = -2000.0;
+        long amount = -200000;
 
         assertThrows(InsufficientBalanceException.class, ()->accountServiceImpl.fundTransfer(foundAcc.getAccountID(), amount));
+        verify(ledgerEntryRepository, never()).saveAll(anyList());
     }
 
 
-    //account trade onhold, return account after changes in available balance
+    //test transfer between two accounts, a single posting
     @Test
-    public void tradeOnHold_ReturnAcc(){
-        Account account = new Account(1L, 8000.0, 3000.0);
-
-        //mock a get and save account
-        when(accountRepository.save(any(Account.class))).thenReturn(account);
-        when(accountRepository.findById(account.getAccountID())).thenReturn(Optional.of(account));
-
-        double amount = -2500.0;
+    public void transfer_SufficientBalance_OnePosting(){
+        found(1L, 5000.0, 1000.0);
+        found(2L, 2000.0, 2000.0);
 
-        Account savedAcc = accountServiceImpl.accTradeOnHold(account.getAccountID(), amount);
+        accountServiceImpl.transfer(1L, 2L, 25000);
 
-        assertEquals(3000.0 - 2500.0, savedAcc.getAvailableBalance());
+        assertEquals(750.0, accountServiceImpl.getAccount(1L).getAvailableBalance());
+        assertEquals(4750.0, accountServiceImpl.getAccount(1L).getBalance());
+        assertEquals(2250.0, accountServiceImpl.getAccount(2L).getAvailableBalance());
+        verify(ledgerEntryRepository, times(1)).saveAll(argThat(entries -> ((List<?>) entries).size() == 1));
     }
-   
-    @Test
-    public void tradeApproved_ReturnAcc(){
-        Account account = new Account(1L, 8000.0, 3000.0);
 
-        //mock a get and save account
-        when(accountRepository.save(any(Account.class))).thenReturn(account);
-        when(accountRepository.findById(account.getAccountID())).thenReturn(Optional.of(account));
 
-        double amount = -2456.56;
+    @Test
+    public void transfer_InsufficientBalance_NothingPosted(){
+        found(1L, 5000.0, 1000.0);
+        found(2L, 2000.0, 2000.0);
 
-        Account updatedAcc = accountServiceImpl.accTradeApproved(account.getAccountID(), amount);
+        assertThrows(InsufficientBalanceException.class, () -> accountServiceImpl.transfer(1L, 2L, 100001));
 
-        assertEquals(8000.0 - 2456.56, updatedAcc.getBalance());
+        assertEquals(1000.0, accountServiceImpl.getAccount(1L).getAvailableBalance());
+        assertEquals(2000.0, accountServiceImpl.getAccount(2L).getAvailableBalance());
+        verify(ledgerEntryRepository, never()).saveAll(anyList());
     }
 
+
+    //test a batch of transfers checked once per account, net of what comes in
     @Test
-    public void tradeOnHold_InsufficientBalance(){
-        Account account = new Account(1L, 8000.0, 3000.0);
-        when(accountRepository.findById(account.getAccountID())).thenReturn(Optional.of(account));
+    public void transferAll_NettedBatch_OnePosting(){
+        found(1L, 1000.0, 1000.0);
+        found(2L, 800.0, 800.0);
 
-        double amount = -5580.00;
+        accountServiceImpl.transferAll(List.of(new Transaction(1L, 2L, 1500.0), new Transaction(2L, 1L, 800.0)));
 
-        assertThrows(InsufficientBalanceException.class, () -> accountServiceImpl.accTradeOnHold(account.getAccountID(), amount));
+        assertEquals(300.0, accountServiceImpl.getAccount(1L).getAvailableBalance());
+        assertEquals(1500.0, accountServiceImpl.getAccount(2L).getAvailableBalance());
+        verify(ledgerEntryRepository, times(1)).saveAll(argThat(entries -> ((List<?>) entries).size() == 2));
     }
 }
@@ -0,0 +1,176 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cs203t5.ryverbank.Money;
+import com.cs203t5.ryverbank.account_transaction.Ledger.Leg;
+import com.cs203t5.ryverbank.account_transaction.Ledger.Transfer;
+
+/**
+ * Posts to the ledger from many threads at once and checks that no money is
+ * created, lost or overdrawn. Each post runs in a transaction of its own that
+ * commits or rolls back, and only the postings of committed transactions reach
+ * the stored ledger.
+ */
+public class LedgerConcurrencyTest {
+    private static final int THREADS = 8;
+    private static final int ACCOUNTS = 64;
+    private static final long OPENING = 100000L;
+
+    private final Map<Long, Account> rows = new ConcurrentHashMap<>();
+    private final Queue<LedgerEntry> stored = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<List<LedgerEntry>> pending = ThreadLocal.withInitial(ArrayList::new);
+    private final AtomicLong ids = new AtomicLong();
+    private Ledger ledger;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        AccountRepository accounts = mock(AccountRepository.class, withSettings().stubOnly());
+        when(accounts.findById(anyLong()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<Long>getArgument(0))));
+        LedgerEntryRepository entries = mock(LedgerEntryRepository.class, withSettings().stubOnly());
+        when(entries.saveAll(any(Iterable.class))).thenAnswer(invocation -> {
+            List<LedgerEntry> saved = invocation.getArgument(0);
+            for (LedgerEntry entry : saved) {
+                ReflectionTestUtils.setField(entry, "id", ids.incrementAndGet());
+            }
+            pending.get().addAll(saved);
+            return saved;
+        });
+        when(entries.findPostingsAfter(anyLong(), anyLong())).thenAnswer(invocation -> {
+            Long accountId = invocation.getArgument(0);
+            long sequence = invocation.getArgument(1);
+            return stored.stream()
+                    .filter(entry -> entry.getId() > sequence && (entry.getDebitAccountId().equals(accountId)
+                            || entry.getCreditAccountId().equals(accountId)))
+                    .sorted(Comparator.comparing(LedgerEntry::getId)).collect(Collectors.toList());
+        });
+        ledger = new Ledger(accounts, entries, 16);
+    }
+
+    private void open(long accounts, long balance) {
+        for (long id = 1; id <= accounts; id++) {
+            Account account = new Account(1L, Money.dollars(balance), Money.dollars(balance));
+            account.setAccountID(id);
+            rows.put(id, account);
+        }
+    }
+
+    /**
+     * Posts a transfer in a transaction that commits or rolls back.
+     */
+    private boolean post(Transfer transfer, boolean commit) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            boolean posted = ledger.post(transfer);
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(commit ? TransactionSynchronization.STATUS_COMMITTED
+                        : TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+            if (commit) {
+                stored.addAll(pending.get());
+            }
+            return posted && commit;
+        } finally {
+            pending.get().clear();
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void runAll(Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void post_ConcurrentTransfersHoldsAndSettlements_ConserveBalances() throws Exception {
+        open(ACCOUNTS, OPENING);
+
+        runAll(() -> {
+            Random random = ThreadLocalRandom.current();
+            for (int i = 0; i < 10000; i++) {
+                long from = 1 + random.nextInt(ACCOUNTS);
+                long to = 1 + random.nextInt(ACCOUNTS);
+                long amount = 1 + random.nextInt(5000);
+                Transfer transfer;
+                switch (random.nextInt(3)) {
+                    case 0:
+                        transfer = Transfer.covered("transfer", Leg.available(from), Leg.available(to), amount);
+                        break;
+                    case 1:
+                        transfer = Transfer.covered("hold", Leg.available(from), Leg.held(from), amount);
+                        break;
+                    default:
+                        transfer = Transfer.covered("settlement", Leg.held(from), Leg.available(to), amount);
+                        break;
+                }
+                post(transfer, random.nextInt(10) != 0);
+            }
+            return null;
+        });
+
+        long total = 0L;
+        for (Account row : rows.values()) {
+            Account account = ledger.view(row);
+            assertTrue(account.getAvailableBalanceCents() >= 0, "available balance of " + row.getAccountID());
+            assertTrue(account.getBalanceCents() >= account.getAvailableBalanceCents(), "held of " + row.getAccountID());
+            total += account.getBalanceCents();
+        }
+        assertEquals(ACCOUNTS * OPENING, total);
+        assertTrue(ledger.audit().isEmpty());
+    }
+
+    @Test
+    void post_ConcurrentHoldsOnOneAccount_NeverOverdraw() throws Exception {
+        open(1, 10000L);
+        AtomicInteger holds = new AtomicInteger();
+
+        runAll(() -> {
+            for (int i = 0; i < 1000; i++) {
+                if (post(Transfer.covered("hold", Leg.available(1L), Leg.held(1L), 7L), true)) {
+                    holds.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        Account account = ledger.view(rows.get(1L));
+        assertEquals(10000L / 7, holds.get());
+        assertEquals(10000L - holds.get() * 7L, account.getAvailableBalanceCents());
+        assertEquals(10000L, account.getBalanceCents());
+    }
+}
@@ -0,0 +1,162 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.cs203t5.ryverbank.account_transaction.Ledger.Leg;
+import com.cs203t5.ryverbank.account_transaction.Ledger.Transfer;
+
+@ExtendWith(MockitoExtension.class)
+public class LedgerTest {
+
+    @Mock
+    private AccountRepository accounts;
+
+    @Mock
+    private LedgerEntryRepository entries;
+
+    private Ledger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new Ledger(accounts, entries, 16);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private Account found(Long accountId, double balance, double availableBalance) {
+        Account account = new Account(1L, balance, availableBalance);
+        account.setAccountID(accountId);
+        when(accounts.findById(accountId)).thenReturn(Optional.of(account));
+        return account;
+    }
+
+    private static LedgerEntry posted(long id, Transfer transfer) {
+        LedgerEntry entry = new LedgerEntry(transfer, 0L);
+        ReflectionTestUtils.setField(entry, "id", id);
+        return entry;
+    }
+
+    private static void complete(int status) {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    @Test
+    void post_TransactionRolledBack_RevertBalances() {
+        Account account = found(1L, 1000.0, 1000.0);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertTrue(ledger.post(Transfer.covered("hold", Leg.available(1L), Leg.held(1L), 40000)));
+        assertEquals(600.0, ledger.view(account).getAvailableBalance());
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        Account view = ledger.view(account);
+        assertEquals(1000.0, view.getAvailableBalance());
+        assertEquals(1000.0, view.getBalance());
+    }
+
+    @Test
+    void post_CreditNotCommitted_CannotBeSpent() {
+        found(1L, 0.0, 0.0);
+        found(2L, 0.0, 0.0);
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.post(Transfer.of("deposit", Leg.external(), Leg.available(1L), 50000));
+
+        assertFalse(ledger.post(Transfer.covered("transfer", Leg.available(1L), Leg.available(2L), 50000)));
+
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        TransactionSynchronizationManager.clearSynchronization();
+        assertTrue(ledger.post(Transfer.covered("transfer", Leg.available(1L), Leg.available(2L), 50000)));
+    }
+
+    @Test
+    void post_ManyTransfers_CheckedAfterNetting() {
+        found(1L, 0.0, 0.0);
+        found(2L, 100.0, 100.0);
+
+        // The deposit comes first in the batch, so the transfer out of it is covered
+        boolean posted = ledger.post(List.of(Transfer.of("deposit", Leg.external(), Leg.available(1L), 30000),
+                Transfer.covered("transfer", Leg.available(1L), Leg.available(2L), 20000)));
+
+        assertTrue(posted);
+        assertEquals(100.0, ledger.view(accounts.findById(1L).get()).getAvailableBalance());
+        assertEquals(300.0, ledger.view(accounts.findById(2L).get()).getAvailableBalance());
+    }
+
+    @Test
+    void view_CheckpointAndLaterPostings_ReplayLedger() {
+        Account account = new Account(1L, 1000.0, 1000.0);
+        account.setAccountID(1L);
+        account.setLedgerSequence(5L);
+        when(entries.findPostingsAfter(1L, 5L)).thenReturn(List.of(
+                posted(6L, Transfer.of("hold", Leg.available(1L), Leg.held(1L), 30000)),
+                posted(7L, Transfer.of("settlement", Leg.held(1L), Leg.available(2L), 10000))));
+
+        Account view = ledger.view(account);
+
+        assertEquals(700.0, view.getAvailableBalance());
+        assertEquals(900.0, view.getBalance());
+        assertEquals(7L, view.getLedgerSequence());
+    }
+
+    @Test
+    void checkpoint_ChangedAccount_WriteRow() {
+        found(1L, 1000.0, 1000.0);
+        ledger.post(Transfer.covered("hold", Leg.available(1L), Leg.held(1L), 30000));
+
+        ledger.checkpoint();
+        ledger.checkpoint();
+
+        verify(accounts).checkpoint(1L, 100000L, 70000L, 0L);
+    }
+
+    @Test
+    void checkpoint_PostingInProgress_WaitForIt() {
+        found(1L, 1000.0, 1000.0);
+        TransactionSynchronizationManager.initSynchronization();
+        ledger.post(Transfer.covered("hold", Leg.available(1L), Leg.held(1L), 30000));
+
+        ledger.checkpoint();
+
+        verify(accounts, never()).checkpoint(anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void audit_RowChangedBehindLedger_ReportAndRebuild() {
+        Account account = found(1L, 1000.0, 1000.0);
+        ledger.view(account);
+        assertTrue(ledger.audit().isEmpty());
+
+        account.setAvailableBalance(900.0);
+        account.setBalance(900.0);
+        assertEquals(List.of(1L), ledger.audit());
+
+        ledger.rebuild(1L);
+        assertTrue(ledger.audit().isEmpty());
+        assertEquals(900.0, ledger.view(account).getBalance());
+    }
+}
@@ -0,0 +1,182 @@
+package com.cs203t5.ryverbank.account_transaction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class ReservationServiceTest {
+
+    @Mock
+    private ReservationRepository reservationRepository;
+
+    @Mock
+    private AccountRepository accountRepository;
+
+    @Mock
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    private Ledger ledger;
+
+    private ReservationServiceImpl reservationServiceImpl;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new Ledger(accountRepository, ledgerEntryRepository, 16);
+        reservationServiceImpl = new ReservationServiceImpl(reservationRepository, accountRepository, ledger);
+    }
+
+    private Account found(Long accountId, double balance, double availableBalance) {
+        Account account = new Account(1L, balance, availableBalance);
+        account.setAccountID(accountId);
+        when(accountRepository.findById(accountId)).thenReturn(Optional.of(account));
+        return account;
+    }
+
+    private Account view(Long accountId) {
+        return ledger.view(accountRepository.findById(accountId).get());
+    }
+
+    //test holding money for a trade, one posting and no row until it rests
+    @Test
+    public void reserve_SufficientBalance_HoldMoney(){
+        found(1L, 5000.0, 5000.0);
+
+        Reservation reservation = reservationServiceImpl.reserve(1L, 200000);
+
+        assertEquals(200000, reservation.getAmount());
+        assertFalse(reservation.isOpen());
+        assertEquals(3000.0, view(1L).getAvailableBalance());
+        assertEquals(5000.0, view(1L).getBalance());
+        verify(reservationRepository, never()).save(any(Reservation.class));
+    }
+
+    @Test
+    public void reserve_InsufficientBalance_NothingHeld(){
+        found(1L, 5000.0, 1000.0);
+
+        assertThrows(InsufficientBalanceException.class, () -> reservationServiceImpl.reserve(1L, 100001));
+
+        assertEquals(1000.0, view(1L).getAvailableBalance());
+    }
+
+    //test fills paid out of the hold, a worse price paid out of the available balance
+    @Test
+    public void settle_FillsBeyondHold_TakeRestFromAvailable(){
+        found(1L, 5000.0, 5000.0);
+        found(2L, 0.0, 0.0);
+        found(3L, 0.0, 0.0);
+        Reservation reservation = reservationServiceImpl.reserve(1L, 100000);
+        reservationServiceImpl.open(reservation, 7L);
+
+        Map<Long, Long> payments = new LinkedHashMap<>();
+        payments.put(2L, 60000L);
+        payments.put(3L, 50000L);
+        reservationServiceImpl.settle(1L, reservation, payments);
+
+        assertEquals(0, reservation.getAmount());
+        assertEquals(3900.0, view(1L).getAvailableBalance());
+        assertEquals(3900.0, view(1L).getBalance());
+        assertEquals(600.0, view(2L).getAvailableBalance());
+        assertEquals(500.0, view(3L).getAvailableBalance());
+        verify(reservationRepository, times(2)).save(reservation);
+    }
+
+    //test a fill beyond the hold is not paid out of money committed elsewhere
+    @Test
+    public void settle_FillsBeyondHoldAndAvailable_NothingPaid(){
+        found(1L, 5000.0, 5000.0);
+        found(2L, 0.0, 0.0);
+        Reservation reservation = reservationServiceImpl.reserve(1L, 100000);
+        reservationServiceImpl.reserve(1L, 400000);
+
+        assertThrows(InsufficientBalanceException.class,
+                () -> reservationServiceImpl.settle(1L, reservation, Map.of(2L, 110000L)));
+
+        assertEquals(100000, reservation.getAmount());
+        assertEquals(0.0, view(1L).getAvailableBalance());
+        assertEquals(5000.0, view(1L).getBalance());
+        assertEquals(0.0, view(2L).getAvailableBalance());
+    }
+
+    //test a trade filled below its price gives back what is left of its hold
+    @Test
+    public void release_PartlyUsedReservation_PutBackRest(){
+        found(1L, 5000.0, 5000.0);
+        found(2L, 0.0, 0.0);
+        Reservation reservation = reservationServiceImpl.reserve(1L, 100000);
+        reservationServiceImpl.open(reservation, 7L);
+        reservationServiceImpl.settle(1L, reservation, Map.of(2L, 90000L));
+
+        reservationServiceImpl.release(reservation);
+
+        assertEquals(4100.0, view(1L).getAvailableBalance());
+        assertEquals(4100.0, view(1L).getBalance());
+        verify(reservationRepository).delete(reservation);
+    }
+
+    @Test
+    public void release_TradeWithoutReservation_DoNothing(){
+        when(reservationRepository.findById(7L)).thenReturn(Optional.empty());
+
+        reservationServiceImpl.release(7L);
+
+        verify(reservationRepository, never()).delete(any(Reservation.class));
+        verify(ledgerEntryRepository, never()).saveAll(any());
+    }
+
+    //test releasing the reservations of expired trades in one batch
+    @Test
+    public void releaseAll_ManyTrades_OnePostingPerAccount(){
+        found(1L, 5000.0, 5000.0);
+        found(2L, 5000.0, 5000.0);
+        List<Reservation> reserved = new ArrayList<>();
+        long tradeId = 1L;
+        for (long accountId = 1L; accountId <= 2L; accountId++) {
+            for (int i = 0; i < 3; i++) {
+                Reservation reservation = reservationServiceImpl.reserve(accountId, 50000);
+                reservationServiceImpl.open(reservation, tradeId++);
+                reserved.add(reservation);
+            }
+        }
+        List<Long> tradeIds = List.of(1L, 2L, 3L, 4L, 5L, 6L);
+        when(reservationRepository.findAllById(tradeIds)).thenReturn(reserved);
+
+        reservationServiceImpl.releaseAll(tradeIds);
+
+        assertEquals(5000.0, view(1L).getAvailableBalance());
+        assertEquals(5000.0, view(2L).getAvailableBalance());
+        verify(ledgerEntryRepository).saveAll(argThat(entries -> ((List<?>) entries).size() == 2));
+        verify(reservationRepository).deleteInBatch(reserved);
+    }
+
+    //test held balances checked against the reservations
+    @Test
+    public void reconcile_HoldWithoutReservation_ReportAccount(){
+        Account first = found(1L, 5000.0, 5000.0);
+        Account second = new Account(1L, 5000.0, 4000.0);
+        second.setAccountID(2L);
+        reservationServiceImpl.reserve(1L, 100000);
+        when(reservationRepository.sumAmountByAccount())
+                .thenReturn(Collections.singletonList(new Object[] { 1L, 100000L }));
+        when(accountRepository.findAll()).thenReturn(List.of(first, second));
+
+        List<Long> mismatched = reservationServiceImpl.reconcile();
+
+        assertEquals(List.of(2L), mismatched);
+    }
+}
@@ -8,6 +8,8 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -56,4 +58,37 @@ public class TransactionServiceTest {
         verify(transactions).save(saved);
     }
 
+    @Test
+    public void addTransactions_InvalidTransfers_RejectOnlyThose(){
+        List<Transaction> batch = List.of(new Transaction(2L, 3L, 400.0), new Transaction(2L, 4L, 250.0),
+                new Transaction(2L, 9L, 100.0), new Transaction(2L, 3L, 0.0), new Transaction(5L, 3L, 100.0));
+        when(accounts.findExistingIds(any())).thenReturn(Set.of(3L, 4L));
+
+        List<TransactionResult> results = tImpl.addTransactions(2L, batch);
+
+        assertEquals(5, results.size());
+        assertEquals("accepted", results.get(0).getStatus());
+        assertEquals("accepted", results.get(1).getStatus());
+        assertEquals("Could not find account 9", results.get(2).getError());
+        assertEquals("Invalid amount", results.get(3).getError());
+        assertEquals("rejected", results.get(4).getStatus());
+        //the valid transfers are made and written together
+        verify(accService).transferAll(List.of(batch.get(0), batch.get(1)));
+        verify(transactions).saveAll(List.of(batch.get(0), batch.get(1)));
+    }
+
+    @Test
+    public void addTransactions_InsufficientBalanceForTotal_RejectAll(){
+        List<Transaction> batch = List.of(new Transaction(2L, 3L, 400.0), new Transaction(2L, 4L, 700.0));
+        when(accounts.findExistingIds(any())).thenReturn(Set.of(3L, 4L));
+        doThrow(new InsufficientBalanceException("Not enough funds in account")).when(accService).transferAll(batch);
+
+        List<TransactionResult> results = tImpl.addTransactions(2L, batch);
+
+        for (TransactionResult result : results) {
+            assertEquals("rejected", result.getStatus());
+            assertEquals("Not enough funds in account", result.getError());
+        }
+        verify(transactions, never()).saveAll(any());
+    }
 }
@@ -0,0 +1,129 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+public class BarAggregatorTest {
+
+   /** 2020-10-16 09:00:00 in Singapore. */
+   private static final long OPEN = 1602810000000L;
+
+   @Mock
+   private BarRepository bars;
+
+   @Spy
+   private MarketCalendar calendar = new MarketCalendar(ZoneId.of("GMT+8"), LocalTime.of(9, 0),
+         LocalTime.of(17, 0), List.of(), Clock.systemUTC());
+
+   @InjectMocks
+   private BarAggregator aggregator;
+
+   private MatchResult fill(double price, int quantity, long time) {
+      Trade buy = new Trade("buy", "A17U", quantity, price, 0.0, 0.0, 0, 1602810000L, 1L, 1L, "open", 0.0);
+      Trade sell = new Trade("sell", "A17U", quantity, 0.0, price, 0.0, 0, 1602810000L, 1L, 1L, "open", 0.0);
+      Execution execution = new Execution(buy, sell, price, quantity);
+      ReflectionTestUtils.setField(execution, "executedAt", time);
+      MatchResult result = new MatchResult();
+      result.record(execution, sell);
+      return result;
+   }
+
+   @Test
+   void start_DayInterval_MidnightInSingapore() {
+      ZoneId zone = calendar.getZone();
+      assertEquals(OPEN - 9 * 60 * 60 * 1000L, BarInterval.DAY.start(OPEN + 5000, zone));
+      assertEquals(OPEN, BarInterval.MINUTE.start(OPEN + 59999, zone));
+   }
+
+   @Test
+   void start_DayIntervalInOtherZone_MidnightInThatZone() {
+      ZoneId zone = ZoneId.of("America/New_York");
+      long midnight = LocalDateTime.of(2020, 11, 1, 0, 0).atZone(zone).toInstant().toEpochMilli();
+
+      // 2020-10-15 21:00 in New York is still the day before
+      assertEquals(LocalDateTime.of(2020, 10, 15, 0, 0).atZone(zone).toInstant().toEpochMilli(),
+            BarInterval.DAY.start(OPEN, zone));
+      // the clocks go back on 2020-11-01, so that day is 25 hours long
+      assertEquals(midnight + 25 * 60 * 60 * 1000L, BarInterval.DAY.end(midnight, zone));
+   }
+
+   @Test
+   void getBars_FillsInOneMinute_FoldIntoOneBar() {
+      aggregator.record(fill(3.20, 100, OPEN + 1000));
+      aggregator.record(fill(3.40, 200, OPEN + 2000));
+      aggregator.record(fill(3.10, 300, OPEN + 3000));
+      aggregator.record(fill(3.30, 400, OPEN + 4000));
+
+      List<Bar> found = aggregator.getBars("A17U", BarInterval.MINUTE, OPEN, OPEN + 60000);
+
+      assertEquals(1, found.size());
+      Bar bar = found.get(0);
+      assertEquals(OPEN, bar.getStart());
+      assertEquals(3.20, bar.getOpen());
+      assertEquals(3.40, bar.getHigh());
+      assertEquals(340, bar.getHighCents());
+      assertEquals(3.10, bar.getLow());
+      assertEquals(3.30, bar.getClose());
+      assertEquals(1000, bar.getVolume());
+   }
+
+   @SuppressWarnings("unchecked")
+   @Test
+   void flush_IntervalEnded_WriteFinishedBars() {
+      aggregator.record(fill(3.20, 100, OPEN + 1000));
+      aggregator.record(fill(3.30, 100, OPEN + 2500));
+
+      int written = aggregator.flush(OPEN + 3000);
+
+      // two 1s bars; the minute and the day are still running
+      assertEquals(2, written);
+      ArgumentCaptor<List<Bar>> saved = ArgumentCaptor.forClass(List.class);
+      verify(bars).saveAll(saved.capture());
+      assertEquals(BarInterval.SECOND, saved.getValue().get(0).getInterval());
+      assertEquals(OPEN + 1000, saved.getValue().get(0).getStart());
+      assertEquals(OPEN + 2000, saved.getValue().get(1).getStart());
+   }
+
+   @Test
+   void flush_NothingFinished_NothingWritten() {
+      aggregator.record(fill(3.20, 100, OPEN + 1000));
+
+      assertEquals(0, aggregator.flush(OPEN + 1500));
+      verify(bars, never()).saveAll(any());
+   }
+
+   @Test
+   void getBars_WrittenAndRunning_MergedOldestFirst() {
+      Bar written = new Bar("A17U", BarInterval.MINUTE, OPEN - 60000, 3.00);
+      when(bars.findBySymbolAndIntervalAndStartBetweenOrderByStart(eq("A17U"), eq(BarInterval.MINUTE), anyLong(),
+            anyLong())).thenReturn(List.of(written));
+      aggregator.record(fill(3.20, 100, OPEN + 1000));
+
+      List<Bar> found = aggregator.getBars("A17U", BarInterval.MINUTE, OPEN - 60000, OPEN + 60000);
+
+      assertEquals(2, found.size());
+      assertEquals(OPEN - 60000, found.get(0).getStart());
+      assertEquals(OPEN, found.get(1).getStart());
+   }
+}
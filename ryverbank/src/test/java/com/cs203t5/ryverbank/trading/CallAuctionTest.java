@@ -0,0 +1,109 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class CallAuctionTest {
+
+   private Trade order(Long id, Long accountId, String action, int quantity, double price) {
+      double bid = action.equals("buy") ? price : 0.0;
+      double ask = action.equals("sell") ? price : 0.0;
+      Trade trade = new Trade(action, "A17U", quantity, bid, ask, 0.0, 0, id, accountId, 4L, "open", 0.0);
+      trade.setId(id);
+      return trade;
+   }
+
+   @Test
+   void executions_CrossingLimitOrders_TradeMostVolumeAtOnePrice() {
+      OrderBook book = new OrderBook("A17U");
+      Trade buyHigh = order(1L, 2L, "buy", 200, 3.30);
+      Trade buyMid = order(2L, 2L, "buy", 300, 3.20);
+      Trade sellLow = order(4L, 3L, "sell", 300, 3.10);
+      Trade sellMid = order(5L, 3L, "sell", 300, 3.20);
+      book.add(buyHigh);
+      book.add(buyMid);
+      book.add(order(3L, 2L, "buy", 200, 3.10));
+      book.add(sellLow);
+      book.add(sellMid);
+      book.add(order(6L, 3L, "sell", 200, 3.30));
+
+      CallAuction auction = new CallAuction(book, 3.00);
+      List<Execution> executions = auction.executions(new BuyerBudget(trade -> 0L, accountId -> 100000000L));
+
+      assertEquals(3.20, auction.getPrice());
+      assertEquals(500, auction.getVolume());
+      assertEquals(3, executions.size());
+      assertSame(buyHigh, executions.get(0).getBuyTrade());
+      assertSame(sellLow, executions.get(0).getSellTrade());
+      assertEquals(200, executions.get(0).getQuantity());
+      assertSame(sellMid, executions.get(2).getSellTrade());
+      assertEquals(200, executions.get(2).getQuantity());
+   }
+
+   @Test
+   void getPrice_SameVolumeAtSeveralPrices_ClosestToReferencePrice() {
+      OrderBook book = new OrderBook("A17U");
+      book.add(order(1L, 2L, "buy", 100, 3.30));
+      book.add(order(2L, 3L, "sell", 100, 3.10));
+
+      CallAuction auction = new CallAuction(book, 3.25);
+
+      assertEquals(3.30, auction.getPrice());
+      assertEquals(100, auction.getVolume());
+   }
+
+   @Test
+   void executions_MarketOrdersOnly_TradeAtReferencePrice() {
+      OrderBook book = new OrderBook("A17U");
+      book.add(order(1L, 2L, "buy", 500, 0.0));
+      book.add(order(2L, 3L, "sell", 300, 0.0));
+
+      CallAuction auction = new CallAuction(book, 3.15);
+
+      assertEquals(3.15, auction.getPrice());
+      assertEquals(300,
+            auction.executions(new BuyerBudget(trade -> 0L, accountId -> 100000000L)).get(0).getQuantity());
+   }
+
+   @Test
+   void executions_BuyerCannotPay_PassVolumeToNextBuyer() {
+      OrderBook book = new OrderBook("A17U");
+      Trade poor = order(1L, 2L, "buy", 300, 3.20);
+      Trade rich = order(2L, 5L, "buy", 300, 3.20);
+      book.add(poor);
+      book.add(rich);
+      book.add(order(3L, 3L, "sell", 400, 3.20));
+
+      List<Execution> executions = new CallAuction(book, 3.20)
+            .executions(new BuyerBudget(trade -> 0L, accountId -> accountId == 2L ? 40000L : 100000000L));
+
+      assertEquals(2, executions.size());
+      assertSame(poor, executions.get(0).getBuyTrade());
+      assertEquals(100, executions.get(0).getQuantity());
+      assertSame(rich, executions.get(1).getBuyTrade());
+      assertEquals(300, executions.get(1).getQuantity());
+   }
+
+   @Test
+   void executions_AvailableBalanceCommitted_PayOutOfOwnHoldOnly() {
+      OrderBook book = new OrderBook("A17U");
+      Trade first = order(1L, 2L, "buy", 300, 3.20);
+      Trade second = order(2L, 2L, "buy", 300, 3.20);
+      book.add(first);
+      book.add(second);
+      book.add(order(3L, 3L, "sell", 600, 3.20));
+      Map<Trade, Long> holds = Map.of(first, 64000L, second, 96000L);
+
+      List<Execution> executions = new CallAuction(book, 3.20)
+            .executions(new BuyerBudget(holds::get, accountId -> 0L));
+
+      assertEquals(2, executions.size());
+      assertEquals(200, executions.get(0).getQuantity());
+      assertEquals(300, executions.get(1).getQuantity());
+   }
+}
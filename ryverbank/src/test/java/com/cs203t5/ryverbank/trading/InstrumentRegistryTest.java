@@ -0,0 +1,98 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+
+@ExtendWith(MockitoExtension.class)
+public class InstrumentRegistryTest {
+
+   private static final String SEED = "symbol,tick_size,lot_size,status\n" + "A17U,0.01,100,active\n"
+         + "C61U,0.005,100,suspended\n" + "# listed next week\n" + "Z74,0.01,10,active\n";
+
+   @Mock
+   private InstrumentRepository instrumentRepository;
+
+   private InstrumentRegistry registry() {
+      return new InstrumentRegistry(instrumentRepository, new ByteArrayResource(SEED.getBytes(StandardCharsets.UTF_8)));
+   }
+
+   @Test
+   void load_EmptyRepository_SeedAndListTradingSymbols() throws IOException {
+      List<Instrument> seeded = InstrumentRegistry
+            .read(new ByteArrayInputStream(SEED.getBytes(StandardCharsets.UTF_8)));
+      when(instrumentRepository.count()).thenReturn(0L);
+      when(instrumentRepository.findAll()).thenReturn(seeded);
+      InstrumentRegistry registry = registry();
+
+      registry.load();
+
+      verify(instrumentRepository).saveAll(anyList());
+      assertEquals(3, registry.getInstruments().size());
+      assertEquals(List.of("A17U", "Z74"), registry.getTradingSymbols());
+      assertEquals(10, registry.find("Z74").get().getLotSize());
+      assertFalse(registry.find("C61U").get().isTrading());
+   }
+
+   @Test
+   void load_ListedRepository_KeepListing() {
+      when(instrumentRepository.count()).thenReturn(1L);
+      when(instrumentRepository.findAll()).thenReturn(List.of(new Instrument("D05", 0.01, 100, "active")));
+      InstrumentRegistry registry = registry();
+
+      registry.load();
+
+      verify(instrumentRepository, never()).saveAll(anyList());
+      assertEquals(List.of("D05"), registry.getTradingSymbols());
+      assertTrue(registry.find("A17U").isEmpty());
+   }
+
+   @Test
+   void save_NewListing_Tradable() {
+      Instrument listed = new Instrument("O39", 0.01, 100, "active");
+      when(instrumentRepository.save(any(Instrument.class))).thenReturn(listed);
+      when(instrumentRepository.findAll()).thenReturn(List.of(listed));
+      InstrumentRegistry registry = registry();
+
+      registry.save(listed);
+
+      assertEquals(List.of("O39"), registry.getTradingSymbols());
+   }
+
+   @Test
+   void read_NegativeLotSize_Throw() {
+      String seed = "A17U,0.01,-100,active\n";
+
+      assertThrows(IOException.class,
+            () -> InstrumentRegistry.read(new ByteArrayInputStream(seed.getBytes(StandardCharsets.UTF_8))));
+   }
+
+   @Test
+   void isOnTick_PricesAroundTick_OnlyMultiples() {
+      Instrument instrument = new Instrument("A17U", 0.005, 100, "active");
+
+      assertTrue(instrument.isOnTick(2.555));
+      assertTrue(instrument.isOnTick(2.56));
+      assertFalse(instrument.isOnTick(2.557));
+      assertEquals(2.555, instrument.floorToTick(2.557));
+      assertEquals(2.56, instrument.ceilToTick(2.557));
+      assertEquals(2.56, instrument.floorToTick(2.56));
+   }
+}
@@ -0,0 +1,67 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.*;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class MarketCalendarTest {
+   private static final ZoneId ZONE = ZoneId.of("GMT+8");
+
+   private static long at(int year, int month, int day, int hour, int minute) {
+      return LocalDateTime.of(year, month, day, hour, minute).atZone(ZONE).toInstant().toEpochMilli();
+   }
+
+   private static MarketCalendar calendar(long now, LocalDate... holidays) {
+      return new MarketCalendar(ZONE, LocalTime.of(9, 0), LocalTime.of(17, 0), List.of(holidays),
+            Clock.fixed(Instant.ofEpochMilli(now), ZONE));
+   }
+
+   @Test
+   void isOpen_WeekdayWithinHours_ReturnTrue() {
+      // Wednesday
+      MarketCalendar calendar = calendar(at(2020, 10, 14, 12, 0));
+
+      assertTrue(calendar.isOpen());
+      assertTrue(calendar.isOpen(at(2020, 10, 14, 9, 0)));
+   }
+
+   @Test
+   void isOpen_WeekdayOutsideHours_ReturnFalse() {
+      MarketCalendar calendar = calendar(at(2020, 10, 14, 12, 0));
+
+      assertFalse(calendar.isOpen(at(2020, 10, 14, 8, 59)));
+      assertFalse(calendar.isOpen(at(2020, 10, 14, 17, 0)));
+   }
+
+   @Test
+   void isOpen_Weekend_ReturnFalse() {
+      // Saturday and Sunday
+      MarketCalendar calendar = calendar(at(2020, 10, 17, 12, 0));
+
+      assertFalse(calendar.isOpen());
+      assertFalse(calendar.isOpen(at(2020, 10, 18, 12, 0)));
+   }
+
+   @Test
+   void isOpen_Holiday_ReturnFalse() {
+      MarketCalendar calendar = calendar(at(2020, 11, 14, 12, 0), LocalDate.of(2020, 11, 16));
+
+      assertFalse(calendar.isOpen(at(2020, 11, 16, 12, 0)));
+      assertFalse(calendar.isTradingDay(LocalDate.of(2020, 11, 16)));
+      assertTrue(calendar.isOpen(at(2020, 11, 17, 12, 0)));
+   }
+
+   @Test
+   void isOpen_AfterMidnight_RollOverToNextDay() {
+      // Friday, then the Saturday after it, then the Monday after that
+      MarketCalendar calendar = calendar(at(2020, 10, 16, 16, 59));
+
+      assertTrue(calendar.isOpen(at(2020, 10, 16, 16, 59)));
+      assertFalse(calendar.isOpen(at(2020, 10, 17, 9, 30)));
+      assertTrue(calendar.isOpen(at(2020, 10, 19, 9, 30)));
+   }
+}
@@ -0,0 +1,163 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class MarketMakerTest {
+
+   @Mock
+   private MarketDataFeed marketData;
+
+   @Mock
+   private InstrumentRegistry instruments;
+
+   @Mock
+   private QuoteCache quoteCache;
+
+   @Mock
+   private TradeRepository tradeRepository;
+
+   @Mock
+   private MatchingCycle cycle;
+
+   @Mock
+   private OrderJournal journal;
+
+   private OrderBookManager orderBooks = new OrderBookManager();
+
+   private MarketMaker marketMaker;
+
+   @BeforeEach
+   void setUp() {
+      AtomicLong ids = new AtomicLong();
+      lenient().when(tradeRepository.save(any(Trade.class))).thenAnswer(invocation -> {
+         Trade trade = invocation.getArgument(0);
+         if (trade.getId() == null) {
+            trade.setId(ids.incrementAndGet());
+         }
+         return trade;
+      });
+      lenient().doAnswer(invocation -> {
+         invocation.<Runnable>getArgument(1).run();
+         return null;
+      }).when(cycle).run(anyString(), any(Runnable.class));
+      lenient().when(instruments.find("A17U")).thenReturn(Optional.of(new Instrument("A17U", 0.01, 100, "active")));
+      marketMaker = new MarketMaker(marketData, instruments, quoteCache, tradeRepository, orderBooks, cycle, journal,
+            60000L, 200);
+   }
+
+   private void feed(double bid, double ask) {
+      when(marketData.fetch(anyCollection())).thenReturn(Map.of("A17U", new MarketQuote("A17U", bid, bid, ask)));
+   }
+
+   @Test
+   void quote_FirstQuote_RestBidAndAsk() {
+      feed(3.294, 3.306);
+
+      marketMaker.quote(List.of("A17U"));
+
+      OrderBook book = orderBooks.getBook("A17U");
+      assertEquals(2, book.size());
+      assertEquals(3.29, book.bestBid().getBid());
+      assertEquals(3.31, book.bestAsk().getAsk());
+      assertEquals(20000, book.bestBid().getQuantity());
+      verify(journal, times(2)).order(any(Trade.class), anyInt());
+   }
+
+   @Test
+   void quote_FeedMoved_AmendSameRows() {
+      feed(3.29, 3.31);
+      marketMaker.quote(List.of("A17U"));
+      OrderBook book = orderBooks.getBook("A17U");
+      Trade bid = book.bestBid();
+      Trade ask = book.bestAsk();
+
+      feed(3.30, 3.32);
+      marketMaker.quote(List.of("A17U"));
+
+      assertEquals(2, book.size());
+      assertSame(bid, book.bestBid());
+      assertSame(ask, book.bestAsk());
+      assertEquals(3.30, bid.getBid());
+      assertEquals(3.32, ask.getAsk());
+      verify(journal, times(2)).amend(any(Trade.class));
+      verify(tradeRepository, times(4)).save(any(Trade.class));
+   }
+
+   @Test
+   void quote_FeedUnchanged_NoWrites() {
+      feed(3.29, 3.31);
+      marketMaker.quote(List.of("A17U"));
+
+      marketMaker.quote(List.of("A17U"));
+
+      verify(tradeRepository, times(2)).save(any(Trade.class));
+      verify(journal, never()).amend(any(Trade.class));
+   }
+
+   @Test
+   void quote_PartlyTakenAsk_RefillToFullSize() {
+      feed(3.29, 3.31);
+      marketMaker.quote(List.of("A17U"));
+      OrderBook book = orderBooks.getBook("A17U");
+      Trade ask = book.bestAsk();
+      ask.setQuantity(15000);
+      book.fill(ask, 5000);
+
+      marketMaker.quote(List.of("A17U"));
+
+      assertEquals(20000, ask.getQuantity());
+      verify(journal).amend(ask);
+   }
+
+   @Test
+   void quote_CustomerAskBelowFeedBid_StayBehindIt() {
+      Trade customerAsk = new Trade("sell", "A17U", 100, 0.0, 3.25, 0.0, 0, 1602810000L, 2L, 5L, "open", 0.0);
+      customerAsk.setId(100L);
+      orderBooks.getBook("A17U").add(customerAsk);
+      feed(3.29, 3.31);
+
+      marketMaker.quote(List.of("A17U"));
+
+      assertEquals(3.24, orderBooks.getBook("A17U").bestBid().getBid());
+   }
+
+   @Test
+   void refresh_NotStarted_NoFetch() {
+      marketMaker.refresh();
+
+      verify(marketData, never()).fetch(anyCollection());
+   }
+
+   @Test
+   void refresh_QuotedJustNow_NotDue() {
+      when(instruments.getTradingSymbols()).thenReturn(List.of("A17U"));
+      feed(3.29, 3.31);
+      marketMaker.start();
+      marketMaker.refresh();
+
+      marketMaker.refresh();
+
+      verify(marketData, times(1)).fetch(anyCollection());
+   }
+}
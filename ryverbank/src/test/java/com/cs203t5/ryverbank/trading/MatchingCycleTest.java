@@ -0,0 +1,101 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+
+public class MatchingCycleTest {
+
+   @TempDir
+   Path directory;
+
+   private MatchingSequencer sequencer = new MatchingSequencer(1);
+   private PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+   private TradeRepository tradeRepository = mock(TradeRepository.class);
+   private OrderBookManager orderBooks = new OrderBookManager();
+   private TradeTape tradeTape = new TradeTape(16);
+   private OrderJournal journal;
+   private MatchingCycle cycle;
+
+   @BeforeEach
+   void setUp() {
+      journal = new OrderJournal(true, directory.toString(), 4096, false);
+      cycle = new MatchingCycle(sequencer, transactionManager, journal, tradeTape, orderBooks, tradeRepository);
+   }
+
+   @AfterEach
+   void tearDown() {
+      journal.close();
+      sequencer.shutdown();
+   }
+
+   private Trade trade(Long id, int quantity) {
+      Trade trade = new Trade("sell", "A17U", quantity, 0.0, 3.20, 0.0, 0, 1602810000L, 1L, 4L, "open", 0.0);
+      trade.setId(id);
+      return trade;
+   }
+
+   private MatchResult fill(int quantity) {
+      Trade buy = new Trade("buy", "A17U", quantity, 3.20, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 0.0);
+      Trade sell = trade(1L, quantity);
+      MatchResult result = new MatchResult();
+      result.record(new Execution(buy, sell, 3.20, quantity), sell);
+      return result;
+   }
+
+   @Test
+   void execute_CycleSucceeds_JournalAndTapeAfterCommit() {
+      int printsInCycle = cycle.execute("A17U", () -> {
+         journal.order(trade(1L, 1000), 1000);
+         tradeTape.record(fill(300), "buy");
+         assertEquals(0, journal.getSequence());
+         return tradeTape.getPrints("A17U", 10).size();
+      });
+
+      assertEquals(0, printsInCycle);
+      assertEquals(1, journal.getSequence());
+      assertEquals(1, tradeTape.getPrints("A17U", 10).size());
+      assertEquals(320L, tradeTape.getPrints("A17U", 10).get(0).getPriceCents());
+      verify(transactionManager).commit(null);
+   }
+
+   @Test
+   void execute_CycleFails_DiscardJournalAndTapeAndReloadBook() {
+      Trade stored = trade(1L, 1000);
+      when(tradeRepository.findAllBySymbol("A17U")).thenReturn(List.of(stored));
+
+      assertThrows(TradeInvalidException.class, () -> cycle.run("A17U", () -> {
+         Trade changed = trade(1L, 400);
+         orderBooks.getBook("A17U").add(changed);
+         journal.order(changed, 1000);
+         tradeTape.record(fill(600), "buy");
+         throw new TradeInvalidException("Invalid action");
+      }));
+
+      assertEquals(0, journal.getSequence());
+      assertTrue(tradeTape.getPrints("A17U", 10).isEmpty());
+      assertEquals(1, orderBooks.getBook("A17U").size());
+      assertSame(stored, orderBooks.getBook("A17U").bestAsk());
+   }
+
+   @Test
+   void execute_NestedCycle_JoinEnclosingCycle() {
+      cycle.run("A17U", () -> cycle.run("A17U", () -> journal.order(trade(1L, 1000), 1000)));
+
+      assertEquals(1, journal.getSequence());
+      verify(transactionManager).commit(null);
+   }
+}
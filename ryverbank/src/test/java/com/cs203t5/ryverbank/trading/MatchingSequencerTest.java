@@ -0,0 +1,53 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class MatchingSequencerTest {
+
+   private MatchingSequencer sequencer = new MatchingSequencer(2);
+
+   @AfterEach
+   void tearDown() {
+      sequencer.shutdown();
+   }
+
+   @Test
+   void execute_ConcurrentCallers_ApplyOneAtATime() throws Exception {
+      // an unsynchronized list is only safe because one thread owns the symbol
+      List<Integer> applied = new ArrayList<>();
+      ExecutorService callers = Executors.newFixedThreadPool(8);
+      List<CompletableFuture<Void>> futures = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+         final int order = i;
+         futures.add(CompletableFuture.runAsync(() -> sequencer.run("A17U", () -> applied.add(order)), callers));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+      callers.shutdown();
+
+      assertEquals(1000, applied.size());
+   }
+
+   @Test
+   void execute_ReentrantCall_RunInline() {
+      String result = sequencer.execute("A17U", () -> sequencer.execute("A17U", () -> "matched"));
+
+      assertEquals("matched", result);
+   }
+
+   @Test
+   void execute_WorkThrows_RethrowSameException() {
+      assertThrows(TradeInvalidException.class, () -> sequencer.execute("A17U", () -> {
+         throw new TradeInvalidException("Invalid action");
+      }));
+   }
+}
@@ -0,0 +1,94 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OrderBookSnapshotterTest {
+
+   @TempDir
+   Path directory;
+
+   private OrderBookManager orderBooks = new OrderBookManager();
+   private MatchingSequencer sequencer = new MatchingSequencer(2);
+   private OrderJournal journal;
+   private OrderBookSnapshotter snapshotter;
+
+   @BeforeEach
+   void setUp() {
+      journal = new OrderJournal(true, directory.resolve("journal").toString(), 4096, false);
+      snapshotter = new OrderBookSnapshotter(orderBooks, sequencer, journal, directory.resolve("snapshots").toString(),
+            2, false);
+   }
+
+   @AfterEach
+   void tearDown() {
+      journal.close();
+      sequencer.shutdown();
+   }
+
+   private Trade rest(Long id, String action, double price, int quantity) {
+      Trade trade = new Trade(action, "A17U", quantity, action.equals("buy") ? price : 0.0,
+            action.equals("sell") ? price : 0.0, 0.0, 0, 1602810000L + id, 1L, 1L, "open", 0.0);
+      trade.setId(id);
+      orderBooks.getBook("A17U").add(trade);
+      journal.order(trade, quantity);
+      return trade;
+   }
+
+   @Test
+   void recover_SnapshotAndJournalTail_RebuildTrades() {
+      Trade sell = rest(1L, "sell", 3.20, 1000);
+      snapshotter.snapshot();
+      Trade buy = rest(2L, "buy", 3.20, 400);
+      journal.fill(buy, sell, 320L, 400);
+
+      List<Trade> trades = snapshotter.recover();
+
+      assertEquals(2, trades.size());
+      assertEquals(600, trades.get(0).getQuantity());
+      assertEquals("partial-filled", trades.get(0).getStatus());
+      assertEquals("filled", trades.get(1).getStatus());
+   }
+
+   @Test
+   void snapshot_FullSegments_ArchiveCoveredSegments() throws Exception {
+      for (long id = 1; id <= 100; id++) {
+         rest(id, "buy", 3.10, 100);
+      }
+
+      snapshotter.snapshot();
+
+      List<Path> segments = Files.list(directory.resolve("journal"))
+            .filter(path -> path.toString().endsWith(OrderJournal.SEGMENT_SUFFIX)).collect(Collectors.toList());
+      assertEquals(1, segments.size());
+      assertEquals(100, snapshotter.recover().size());
+   }
+
+   @Test
+   void latest_SnapshotWritten_ReadBack() {
+      rest(1L, "sell", 3.20, 1000);
+      Trade buy = rest(2L, "buy", 0.0, 300);
+      buy.setTradedPriceCents(315L);
+      snapshotter.snapshot();
+
+      OrderBookSnapshot snapshot = snapshotter.latest();
+
+      assertNotNull(snapshot);
+      assertEquals(2, snapshot.getSequence());
+      assertEquals(2, snapshot.getTrades().size());
+      assertEquals(320L, snapshot.getTrades().get(0).getAskCents());
+      assertEquals(315L, snapshot.getTrades().get(1).getTradedPriceCents());
+      assertTrue(snapshot.getBookSequences().containsKey("A17U"));
+   }
+}
@@ -0,0 +1,118 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderBookTest {
+
+   private Trade order(Long id, String action, int quantity, double price, long date) {
+      double bid = action.equals("buy") ? price : 0.0;
+      double ask = action.equals("sell") ? price : 0.0;
+      Trade trade = new Trade(action, "A17U", quantity, bid, ask, 0.0, 0, date, 1L, 4L, "open", 0.0);
+      trade.setId(id);
+      return trade;
+   }
+
+   @Test
+   void bestBid_HigherPriceThenOlder_ReturnBestTrade() {
+      OrderBook book = new OrderBook("A17U");
+      Trade low = order(1L, "buy", 100, 3.20, 1);
+      Trade highNew = order(2L, "buy", 100, 3.30, 3);
+      Trade highOld = order(3L, "buy", 100, 3.30, 2);
+      book.add(low);
+      book.add(highOld);
+      book.add(highNew);
+
+      assertSame(highOld, book.bestBid());
+      assertEquals(2, book.getBidLevels().size());
+      assertEquals(200, book.getBidLevels().iterator().next().getQuantity());
+   }
+
+   @Test
+   void bestAskAtOrBelow_NoCrossingAsk_ReturnNull() {
+      OrderBook book = new OrderBook("A17U");
+      Trade sell = order(1L, "sell", 100, 3.40, 1);
+      book.add(sell);
+
+      assertNull(book.bestAskAtOrBelow(3.30));
+      assertSame(sell, book.bestAskAtOrBelow(3.40));
+   }
+
+   @Test
+   void fill_FullyFilled_RemoveFromBook() {
+      OrderBook book = new OrderBook("A17U");
+      Trade sell = order(1L, "sell", 100, 3.40, 1);
+      book.add(sell);
+
+      sell.setQuantity(40);
+      book.fill(sell, 60);
+      assertEquals(40, book.getAskLevels().iterator().next().getQuantity());
+
+      sell.setQuantity(0);
+      book.fill(sell, 40);
+      assertTrue(book.isEmpty());
+      assertNull(book.bestAsk());
+      assertNull(book.getOrder(1L));
+   }
+
+   @Test
+   void remove_RestingTrade_RemoveFromLevel() {
+      OrderBook book = new OrderBook("A17U");
+      Trade first = order(1L, "buy", 100, 3.30, 1);
+      Trade second = order(2L, "buy", 100, 3.30, 2);
+      book.add(first);
+      book.add(second);
+
+      assertTrue(book.remove(book.getOrder(1L)));
+      assertFalse(book.contains(first));
+      assertSame(second, book.bestBid());
+      assertEquals(100, book.getBidLevels().iterator().next().getQuantity());
+   }
+
+   @Test
+   void rebuild_LiveTradesOnly_RestInTimeOrder() {
+      OrderBookManager manager = new OrderBookManager();
+      Trade newer = order(1L, "buy", 100, 3.30, 5);
+      Trade older = order(2L, "buy", 100, 3.30, 4);
+      Trade filled = order(3L, "buy", 100, 3.50, 1);
+      filled.setStatus("filled");
+
+      manager.rebuild(Arrays.asList(newer, older, filled));
+
+      OrderBook book = manager.getBook("A17U");
+      assertEquals(2, book.size());
+      assertSame(older, book.bestBid());
+   }
+
+   @Test
+   void publishDepth_OrdersAndFills_AggregateLevels() {
+      OrderBook book = new OrderBook("A17U");
+      Trade sell = order(1L, "sell", 300, 3.40, 1);
+      book.add(sell);
+      book.add(order(2L, "sell", 200, 3.40, 2));
+      book.add(order(3L, "sell", 100, 3.50, 3));
+      book.add(order(4L, "buy", 100, 3.30, 4));
+      book.add(order(5L, "buy", 100, 0.0, 5));
+      assertTrue(book.getDepth().getAsks().isEmpty());
+
+      sell.setQuantity(100);
+      book.fill(sell, 200);
+      book.publishDepth();
+
+      MarketDepth depth = book.getDepth();
+      assertEquals(2, depth.getAsks().size());
+      assertEquals(3.40, depth.getAsks().get(0).getPrice());
+      assertEquals(300, depth.getAsks().get(0).getQuantity());
+      assertEquals(2, depth.getAsks().get(0).getOrderCount());
+      // the market buy has no price and is left out
+      assertEquals(1, depth.getBids().size());
+      assertEquals(1, depth.limit(1).getAsks().size());
+   }
+}
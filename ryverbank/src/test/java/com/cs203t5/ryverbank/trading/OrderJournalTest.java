@@ -0,0 +1,174 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class OrderJournalTest {
+
+   @TempDir
+   Path directory;
+
+   private OrderJournal open() {
+      return new OrderJournal(true, directory.toString(), 4096, false);
+   }
+
+   private Trade trade(Long id, String action, double price, int quantity) {
+      Trade trade = new Trade(action, "A17U", quantity, action.equals("buy") ? price : 0.0,
+            action.equals("sell") ? price : 0.0, 0.0, 0, 1602810000L, 1L, 1L, "open", 0.0);
+      trade.setId(id);
+      return trade;
+   }
+
+   @Test
+   void replay_OrdersAndFills_RebuildTrades() {
+      OrderJournal journal = open();
+      Trade sell = trade(1L, "sell", 3.20, 1000);
+      Trade buy = trade(2L, "buy", 3.30, 600);
+      journal.order(sell, 1000);
+      journal.order(buy, 600);
+      journal.fill(buy, sell, 320L, 600);
+      journal.close();
+
+      List<Trade> trades = open().replay();
+
+      assertEquals(2, trades.size());
+      assertEquals("partial-filled", trades.get(0).getStatus());
+      assertEquals(400, trades.get(0).getQuantity());
+      assertEquals(600, trades.get(0).getFilledQuantity());
+      assertEquals("filled", trades.get(1).getStatus());
+      assertEquals(320L, trades.get(1).getAvgPriceCents());
+      assertEquals(330L, trades.get(1).getBidCents());
+   }
+
+   @Test
+   void replay_MarketBuy_KeepPriceHeldAt() {
+      OrderJournal journal = open();
+      Trade buy = trade(1L, "buy", 0.0, 300);
+      buy.setTradedPriceCents(350L);
+      journal.order(buy, 300);
+      journal.close();
+
+      Trade replayed = open().replay().get(0);
+
+      assertEquals(0L, replayed.getBidCents());
+      assertEquals(350L, replayed.getTradedPriceCents());
+   }
+
+   @Test
+   void replay_AmendedOrder_NewPriceAndQuantityKeepFills() {
+      OrderJournal journal = open();
+      Trade sell = trade(1L, "sell", 3.20, 1000);
+      Trade buy = trade(2L, "buy", 3.30, 400);
+      journal.order(sell, 1000);
+      journal.order(buy, 400);
+      journal.fill(buy, sell, 320L, 400);
+      sell.setAsk(3.25);
+      sell.setQuantity(1000);
+      sell.setDate(1602810060L);
+      journal.amend(sell);
+      journal.close();
+
+      Trade amended = open().replay().get(0);
+
+      assertEquals(3.25, amended.getAsk());
+      assertEquals(1000, amended.getQuantity());
+      assertEquals(400, amended.getFilledQuantity());
+      assertEquals(1602810060L, amended.getDate());
+   }
+
+   @Test
+   void replay_FirstVersionRecords_ReadDoublePricesAsCents() throws Exception {
+      // a sell order and its fill as the first version wrote them, without a
+      // version byte and with the prices as doubles
+      byte[] symbol = "A17U".getBytes(StandardCharsets.US_ASCII);
+      ByteBuffer order = ByteBuffer.allocate(17 + 8 * 4 + 1 + 8 + 4 + 1 + symbol.length);
+      order.putLong(1L).putLong(1602810000000L).put((byte) 1);
+      order.putLong(1L).putLong(1L).putLong(1L).putLong(1602810000L).put((byte) 1);
+      order.putDouble(3.20).putInt(1000).put((byte) symbol.length).put(symbol);
+      ByteBuffer fill = ByteBuffer.allocate(17 + 8 * 2 + 8 + 4);
+      fill.putLong(2L).putLong(1602810000000L).put((byte) 3);
+      fill.putLong(2L).putLong(1L).putDouble(3.20).putInt(300);
+      ByteBuffer segment = ByteBuffer.allocate(4096);
+      for (ByteBuffer body : List.of(order, fill)) {
+         CRC32 crc = new CRC32();
+         crc.update(body.array());
+         segment.putInt(body.capacity()).putInt((int) crc.getValue()).put(body.array());
+      }
+      Files.write(directory.resolve("journal-00000000000000000001.log"), segment.array());
+
+      OrderJournal journal = open();
+      journal.cancel(trade(1L, "sell", 3.20, 700));
+      Trade sell = journal.replay().get(0);
+
+      assertEquals(3, journal.getSequence());
+      assertEquals(320L, sell.getAskCents());
+      assertEquals(320L, sell.getAvgPriceCents());
+      assertEquals(300, sell.getFilledQuantity());
+      assertEquals("cancelled", sell.getStatus());
+   }
+
+   @Test
+   void append_ReopenedJournal_ContinueSequenceAcrossSegments() {
+      OrderJournal journal = open();
+      for (long id = 1; id <= 100; id++) {
+         journal.order(trade(id, "buy", 3.30, 100), 100);
+      }
+      journal.close();
+
+      OrderJournal reopened = open();
+      reopened.cancel(trade(7L, "buy", 3.30, 100));
+
+      assertEquals(101, reopened.getSequence());
+      List<Trade> trades = reopened.replay();
+      assertEquals(100, trades.size());
+      assertEquals("cancelled", trades.get(6).getStatus());
+   }
+
+   @Test
+   void open_CorruptRecord_TruncateAtLastGoodRecord() throws Exception {
+      OrderJournal journal = open();
+      journal.order(trade(1L, "buy", 3.30, 100), 100);
+      journal.order(trade(2L, "buy", 3.30, 100), 100);
+      journal.close();
+
+      // flip a byte in the body of the second record
+      Path segment = directory.resolve("journal-00000000000000000001.log");
+      try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+         ByteBuffer length = ByteBuffer.allocate(4);
+         channel.read(length, 0);
+         long second = 8 + length.getInt(0);
+         channel.write(ByteBuffer.wrap(new byte[] { 42 }), second + 20);
+      }
+
+      OrderJournal reopened = open();
+
+      assertEquals(1, reopened.getSequence());
+      assertEquals(1, reopened.replay().size());
+      reopened.order(trade(3L, "buy", 3.30, 100), 100);
+      assertEquals(2, reopened.replay().size());
+   }
+
+   @Test
+   void append_DirectoryInUse_DoNothing() {
+      OrderJournal journal = open();
+      OrderJournal second = open();
+
+      second.order(trade(1L, "buy", 3.30, 100), 100);
+
+      assertFalse(second.isEnabled());
+      assertEquals(0, journal.getSequence());
+      journal.close();
+   }
+}
@@ -0,0 +1,132 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+public class QuoteCacheTest {
+
+   @Mock
+   private StockRepository stocks;
+
+   @Mock
+   private QuoteStream quoteStream;
+
+   /** The writes that have been scheduled but not run yet. */
+   private final Deque<Runnable> writer = new ArrayDeque<>();
+
+   private QuoteCache cache;
+
+   @BeforeEach
+   void setUp() {
+      cache = new QuoteCache(stocks, quoteStream, writer::add);
+   }
+
+   @AfterEach
+   void tearDown() {
+      if (TransactionSynchronizationManager.isSynchronizationActive()) {
+         TransactionSynchronizationManager.clearSynchronization();
+      }
+      TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+   }
+
+   @Test
+   void get_RepeatedLookups_ReadRepositoryOnce() {
+      CustomStock stock = new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30);
+      when(stocks.findBySymbol("A17U")).thenReturn(Optional.of(stock));
+
+      cache.get("A17U");
+      CustomStock found = cache.get("A17U");
+
+      assertSame(stock, found);
+      verify(stocks, times(1)).findBySymbol("A17U");
+      verify(stocks, never()).save(any());
+   }
+
+   @Test
+   void get_UnknownSymbol_ReturnNull() {
+      when(stocks.findBySymbol("ZZZ")).thenReturn(Optional.empty());
+
+      assertNull(cache.get("ZZZ"));
+   }
+
+   @SuppressWarnings("unchecked")
+   @Test
+   void update_ManyChanges_WriteLatestSnapshotOnce() {
+      CustomStock stock = new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30);
+
+      for (int i = 0; i < 3; i++) {
+         stock.setLastPrice(3.30 + i / 100.0);
+         cache.update(stock);
+      }
+      stock.setLastPrice(9.99);
+      int scheduled = writer.size();
+      writer.poll().run();
+
+      assertEquals(1, scheduled);
+      assertEquals(3.32, cache.get("A17U").getLastPrice());
+      ArgumentCaptor<List<CustomStock>> written = ArgumentCaptor.forClass(List.class);
+      verify(stocks).saveAll(written.capture());
+      assertEquals(1, written.getValue().size());
+      assertEquals(3.32, written.getValue().get(0).getLastPrice());
+      verify(quoteStream, times(3)).publish(any());
+   }
+
+   @Test
+   void update_InTransaction_VisibleToOthersAfterCommit() throws Exception {
+      CustomStock stock = new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30);
+      cache.update(stock);
+      TransactionSynchronizationManager.initSynchronization();
+
+      CustomStock changed = cache.get("A17U").copy();
+      changed.setLastPrice(3.40);
+      cache.update(changed);
+      CustomStock seenInTransaction = cache.get("A17U");
+      CustomStock[] seenElsewhere = new CustomStock[1];
+      Thread other = new Thread(() -> seenElsewhere[0] = cache.get("A17U"));
+      other.start();
+      other.join();
+      List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+      TransactionSynchronizationManager.clearSynchronization();
+      for (TransactionSynchronization synchronization : synchronizations) {
+         synchronization.afterCommit();
+         synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+      }
+
+      assertEquals(3.40, seenInTransaction.getLastPrice());
+      assertEquals(3.30, seenElsewhere[0].getLastPrice());
+      assertEquals(3.40, cache.get("A17U").getLastPrice());
+      assertNotSame(changed, cache.get("A17U"));
+   }
+
+   @Test
+   void getAll_CachedAndStored_SortedBySymbol() {
+      when(stocks.findAll()).thenReturn(List.of(new CustomStock("C61U", 2.10, 20000, 2.05, 20000, 2.10),
+            new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30)));
+
+      List<CustomStock> all = cache.getAll();
+
+      assertEquals(2, all.size());
+      assertEquals("A17U", all.get(0).getSymbol());
+      assertSame(all, cache.getAll());
+   }
+}
@@ -0,0 +1,91 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public class QuoteStreamTest {
+
+   /** The drains that have been scheduled but not run yet. */
+   private final Deque<Runnable> senders = new ArrayDeque<>();
+
+   /** Records the events instead of writing them to a response. */
+   private static class RecordingEmitter extends SseEmitter {
+      private final List<SseEventBuilder> events = new ArrayList<>();
+      private boolean failing;
+
+      @Override
+      public void send(SseEventBuilder builder) throws IOException {
+         if (failing) {
+            throw new IOException("Broken pipe");
+         }
+         events.add(builder);
+      }
+   }
+
+   private void drain() {
+      while (!senders.isEmpty()) {
+         senders.poll().run();
+      }
+   }
+
+   @Test
+   void subscribe_ExistingStocks_SendCurrentQuotes() {
+      QuoteStream stream = new QuoteStream(senders::add, 0);
+      RecordingEmitter emitter = new RecordingEmitter();
+
+      stream.subscribe(emitter, Collections.emptySet(), List.of(new CustomStock("A17U", 3.30, 20000, 3.25, 20000,
+            3.30), new CustomStock("C61U", 2.10, 20000, 2.05, 20000, 2.10)));
+      drain();
+
+      assertEquals(2, emitter.events.size());
+   }
+
+   @Test
+   void publish_SlowSubscriber_ConflateQuotesPerSymbol() {
+      QuoteStream stream = new QuoteStream(senders::add, 0);
+      RecordingEmitter emitter = new RecordingEmitter();
+      stream.subscribe(emitter, Collections.emptySet(), Collections.emptyList());
+      CustomStock stock = new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30);
+
+      for (int i = 0; i < 3; i++) {
+         stock.setLastPrice(3.30 + i / 100.0);
+         stream.publish(stock.copy());
+      }
+      stream.publish(new CustomStock("C61U", 2.10, 20000, 2.05, 20000, 2.10));
+      int scheduled = senders.size();
+      drain();
+
+      assertEquals(1, scheduled);
+      assertEquals(2, emitter.events.size());
+   }
+
+   @Test
+   void publish_OtherSymbol_NotSent() {
+      QuoteStream stream = new QuoteStream(senders::add, 0);
+      RecordingEmitter emitter = new RecordingEmitter();
+      stream.subscribe(emitter, Set.of("A17U"), Collections.emptyList());
+
+      stream.publish(new CustomStock("C61U", 2.10, 20000, 2.05, 20000, 2.10));
+      drain();
+
+      assertEquals(0, emitter.events.size());
+   }
+
+   @Test
+   void publish_ClientGone_Unsubscribe() {
+      QuoteStream stream = new QuoteStream(senders::add, 0);
+      RecordingEmitter emitter = new RecordingEmitter();
+      stream.subscribe(emitter, Collections.emptySet(), Collections.emptyList());
+      emitter.failing = true;
+
+      stream.publish(new CustomStock("A17U", 3.30, 20000, 3.25, 20000, 3.30));
+      drain();
+
+      assertEquals(0, stream.getSubscriberCount());
+   }
+}
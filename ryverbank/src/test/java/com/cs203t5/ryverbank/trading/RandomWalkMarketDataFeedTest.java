@@ -0,0 +1,40 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class RandomWalkMarketDataFeedTest {
+
+   @Test
+   void fetch_SameSeed_SameQuotes() {
+      RandomWalkMarketDataFeed feed = new RandomWalkMarketDataFeed(7L, 0.02);
+      RandomWalkMarketDataFeed other = new RandomWalkMarketDataFeed(7L, 0.02);
+
+      for (int i = 0; i < 100; i++) {
+         feed.fetch(List.of("A17U", "C61U"));
+         // the other feed only fetches A17U, which must not change its walk
+         other.fetch(List.of("A17U"));
+      }
+
+      assertEquals(feed.fetch(List.of("A17U")).get("A17U").getPrice(),
+            other.fetch(List.of("A17U")).get("A17U").getPrice());
+   }
+
+   @Test
+   void fetch_ManySteps_BidBelowAskInWholeCents() {
+      RandomWalkMarketDataFeed feed = new RandomWalkMarketDataFeed(42L, 0.05);
+
+      for (int i = 0; i < 1000; i++) {
+         Map<String, MarketQuote> quotes = feed.fetch(List.of("D05"));
+         MarketQuote quote = quotes.get("D05");
+         assertTrue(quote.getPrice() > 0.0);
+         assertTrue(quote.getBid() < quote.getAsk());
+         assertEquals(Math.round(quote.getPrice() * 100.0) / 100.0, quote.getPrice());
+      }
+   }
+}
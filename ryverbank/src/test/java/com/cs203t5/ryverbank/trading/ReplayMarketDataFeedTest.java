@@ -0,0 +1,74 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReplayMarketDataFeedTest {
+
+   @TempDir
+   Path directory;
+
+   private final List<MarketQuote> recorded = List.of(new MarketQuote("A17U", 3.30, 3.29, 3.31),
+         new MarketQuote("C61U", 2.10, 2.09, 2.11), new MarketQuote("A17U", 3.35, 3.34, 3.36));
+
+   @Test
+   void fetch_CsvFile_ReplayQuotesInOrderThenStartOver() throws IOException {
+      Path file = directory.resolve("quotes.csv");
+      ReplayMarketDataFeed.write(file, recorded);
+      ReplayMarketDataFeed feed = new ReplayMarketDataFeed(file);
+
+      Map<String, MarketQuote> first = feed.fetch(List.of("A17U", "C61U"));
+      Map<String, MarketQuote> second = feed.fetch(List.of("A17U", "C61U"));
+      Map<String, MarketQuote> third = feed.fetch(List.of("A17U"));
+
+      assertEquals(3.30, first.get("A17U").getPrice());
+      assertEquals(2.10, first.get("C61U").getPrice());
+      assertEquals(3.35, second.get("A17U").getPrice());
+      assertEquals(2.10, second.get("C61U").getPrice());
+      assertEquals(3.30, third.get("A17U").getPrice());
+   }
+
+   @Test
+   void fetch_BinaryFile_SameQuotesAsRecorded() throws IOException {
+      Path file = directory.resolve("quotes.bin");
+      ReplayMarketDataFeed.write(file, recorded);
+
+      List<MarketQuote> read = ReplayMarketDataFeed.read(file);
+
+      assertEquals(3, read.size());
+      assertEquals("C61U", read.get(1).getSymbol());
+      assertEquals(2.09, read.get(1).getBid());
+      assertEquals(3.36, read.get(2).getAsk());
+   }
+
+   @Test
+   void fetch_UnrecordedSymbol_LeftOut() throws IOException {
+      Path file = directory.resolve("quotes.csv");
+      ReplayMarketDataFeed.write(file, recorded);
+      ReplayMarketDataFeed feed = new ReplayMarketDataFeed(file);
+
+      Map<String, MarketQuote> quotes = feed.fetch(List.of("A17U", "Z74"));
+
+      assertEquals(1, quotes.size());
+      assertFalse(quotes.containsKey("Z74"));
+   }
+
+   @Test
+   void new_MalformedCsv_Throw() throws IOException {
+      Path file = directory.resolve("quotes.csv");
+      Files.writeString(file, "symbol,price,bid,ask\nA17U,3.30\n");
+
+      assertThrows(UncheckedIOException.class, () -> new ReplayMarketDataFeed(file));
+   }
+}
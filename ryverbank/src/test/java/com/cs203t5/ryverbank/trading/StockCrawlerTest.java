@@ -0,0 +1,152 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.cs203t5.ryverbank.account_transaction.ReservationServices;
+
+@ExtendWith(MockitoExtension.class)
+public class StockCrawlerTest {
+
+   @Mock
+   private QuoteCache quoteCache;
+
+   @Mock
+   private TradeServices tradeServices;
+
+   @Mock
+   private MarketDataFeed marketData;
+
+   @Mock
+   private InstrumentRegistry instruments;
+
+   @Mock
+   private MarketMaker marketMaker;
+
+   @Mock
+   private MarketCalendar calendar;
+
+   @Mock
+   private ReservationServices reservations;
+
+   private StockCrawler crawler;
+
+   private final List<String> symbols = new ArrayList<>();
+
+   @BeforeEach
+   void setUp() {
+      for (int i = 0; i < 2000; i++) {
+         symbols.add("S" + i);
+      }
+      lenient().when(instruments.getTradingSymbols()).thenReturn(symbols);
+      lenient().when(calendar.isTradingDay()).thenReturn(true);
+      crawler = new StockCrawler(quoteCache, tradeServices, marketData, instruments, marketMaker, calendar, reservations, 4,
+            50);
+   }
+
+   @AfterEach
+   void tearDown() {
+      crawler.close();
+   }
+
+   @Test
+   void crawl_ThousandsOfSymbols_FetchEveryPartitionOnce() {
+      Set<String> fetched = ConcurrentHashMap.newKeySet();
+      when(marketData.fetch(anyCollection())).thenAnswer(invocation -> {
+         Map<String, MarketQuote> quotes = new HashMap<>();
+         for (Object symbol : invocation.<Collection<?>>getArgument(0)) {
+            fetched.add((String) symbol);
+            quotes.put((String) symbol, new MarketQuote((String) symbol, 1.00, 0.99, 1.01));
+         }
+         return quotes;
+      });
+
+      crawler.crawl();
+
+      assertEquals(2000, fetched.size());
+      verify(marketData, times(40)).fetch(anyCollection());
+      verify(quoteCache, times(2000)).update(any(CustomStock.class));
+   }
+
+   @Test
+   void crawl_PartitionFails_OtherPartitionsQuoted() {
+      when(marketData.fetch(anyCollection())).thenAnswer(invocation -> {
+         Collection<?> partition = invocation.getArgument(0);
+         if (partition.contains("S0")) {
+            throw new IllegalStateException("feed down");
+         }
+         Map<String, MarketQuote> quotes = new HashMap<>();
+         for (Object symbol : partition) {
+            quotes.put((String) symbol, new MarketQuote((String) symbol, 1.00, 0.99, 1.01));
+         }
+         return quotes;
+      });
+
+      crawler.crawl();
+
+      verify(quoteCache, times(1950)).update(any(CustomStock.class));
+   }
+
+   @Test
+   void openMarket_ThousandsOfSymbols_AuctionEverySymbol() {
+      crawler.openMarket();
+
+      verify(tradeServices, times(2000)).openMarket(anyString());
+   }
+
+   @Test
+   void openMarket_Holiday_NoAuction() {
+      when(calendar.isTradingDay()).thenReturn(false);
+
+      crawler.openMarket();
+
+      verify(tradeServices, never()).openMarket(anyString());
+   }
+
+   @Test
+   void marketMaker_ThousandsOfSymbols_QuoteEveryPartitionThenStart() {
+      crawler.marketMaker();
+
+      verify(marketMaker, times(40)).quote(anyList());
+      verify(marketMaker).start();
+   }
+
+   @Test
+   void marketMaker_Holiday_NotStarted() {
+      when(calendar.isTradingDay()).thenReturn(false);
+
+      crawler.marketMaker();
+
+      verify(marketMaker, never()).quote(anyList());
+      verify(marketMaker, never()).start();
+   }
+
+   @Test
+   void closeMarket_ThousandsOfSymbols_ExpireEverySymbol() {
+      when(tradeServices.closeMarket(anyString())).thenReturn(3);
+
+      crawler.closeMarket();
+
+      verify(marketMaker).stop();
+      verify(tradeServices, times(2000)).closeMarket(anyString());
+      verify(reservations).reconcile();
+   }
+}
@@ -75,6 +75,9 @@ class TradeIntegrationTest {
     @Autowired
     private BCryptPasswordEncoder encoder;
 
+    @Autowired
+    private QuoteCache quoteCache;
+
 
 
     @AfterEach
@@ -82,7 +85,7 @@ class TradeIntegrationTest {
         tradeRepository.deleteAll();
         customerRepository.deleteAll();
         portfolioRepository.deleteAll();
-        
+        quoteCache.clear();
     }
 
 
@@ -388,6 +391,31 @@ class TradeIntegrationTest {
        
     }
 
+    @Test
+    public void createLimitBuyTrade_PriceOffTick() throws Exception{
+
+        URI uri = new URI(baseUrl + port + "/trades");
+        Customer customer = customerRepository.save(new Customer("user1", encoder.encode("user1"), "Woofy Dog", "S8529649C",
+        "91251234", "Dog House", "ROLE_USER", true));
+   
+        Account acc = accountRepository.save(new Account(null, customer, customer.getCustomerId(), 80000.0, 80000.0));
+
+        CustomStock customStock = stockRepository.save(new CustomStock("A17U", 2.5, 20000, 2.5, 20000, 2.7));
+
+
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("action", "buy");
+        jsonObject.put("symbol", customStock.getSymbol());
+        jsonObject.put("quantity", 100);
+        jsonObject.put("bid", 2.605);
+        jsonObject.put("account_id", acc.getAccountID());
+
+        ResponseEntity<Trade> response = restTemplate.withBasicAuth("user1", "user1")
+        .postForEntity(uri, jsonObject, Trade.class);
+        assertEquals(400, response.getStatusCode().value());
+       
+    }
+
     @Test
     public void createLimitBuyTrade_InvalidCustomer() throws Exception{
 
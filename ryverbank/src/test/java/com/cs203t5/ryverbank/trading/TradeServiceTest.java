@@ -1,32 +1,51 @@
 package com.cs203t5.ryverbank.trading;
 
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import com.cs203t5.ryverbank.account_transaction.Account;
 import com.cs203t5.ryverbank.account_transaction.AccountRepository;
 import com.cs203t5.ryverbank.account_transaction.AccountServiceImpl;
 import com.cs203t5.ryverbank.account_transaction.AccountServices;
+import com.cs203t5.ryverbank.account_transaction.InsufficientBalanceException;
+import com.cs203t5.ryverbank.account_transaction.Ledger;
+import com.cs203t5.ryverbank.account_transaction.Reservation;
+import com.cs203t5.ryverbank.account_transaction.ReservationServices;
+import com.cs203t5.ryverbank.account_transaction.TransactionServices;
 import com.cs203t5.ryverbank.customer.*;
 import com.cs203t5.ryverbank.portfolio.AssetRepository;
+import com.cs203t5.ryverbank.portfolio.AssetService;
 import com.cs203t5.ryverbank.portfolio.AssetServiceImpl;
 import com.cs203t5.ryverbank.portfolio.Portfolio;
 import com.cs203t5.ryverbank.portfolio.PortfolioRepository;
 import com.cs203t5.ryverbank.portfolio.PortfolioService;
 import com.cs203t5.ryverbank.portfolio.PortfolioServiceImpl;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import ch.qos.logback.core.net.SyslogOutputStream;
@@ -53,6 +72,50 @@ public class TradeServiceTest {
    @Mock
    private PortfolioRepository portfolioRepository;
 
+   @Mock
+   private QuoteCache quoteCache;
+
+   @Mock
+   private OrderJournal orderJournal;
+
+   @Mock
+   private OrderBookSnapshotter orderBookSnapshotter;
+
+   @Mock
+   private ExecutionRepository executionRepository;
+
+   @Mock
+   private TradeTape tradeTape;
+
+   @Mock
+   private BarAggregator barAggregator;
+
+   @Mock
+   private AssetService assetServices;
+
+   @Mock
+   private MarketCalendar marketCalendar;
+
+   @Mock
+   private PortfolioService portfolioServices;
+
+   @Mock
+   private Ledger ledger;
+
+   @Mock
+   private ReservationServices reservationServices;
+
+   @Mock
+   private TransactionServices transactionServices;
+
+   @Spy
+   private OrderBookManager orderBookManager = new OrderBookManager();
+
+   @Spy
+   private MatchingCycle matchingCycle = new MatchingCycle(new MatchingSequencer(1), null,
+         Mockito.mock(OrderJournal.class), Mockito.mock(TradeTape.class), new OrderBookManager(),
+         Mockito.mock(TradeRepository.class));
+
    @InjectMocks
    private CustomerServiceImpl userService;
 
@@ -69,6 +132,16 @@ public class TradeServiceTest {
    @InjectMocks
    private AccountServiceImpl accountServiceImpl;
 
+   @BeforeEach
+   void setUp() {
+      // The accounts added through the account service get an id when saved
+      lenient().when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> {
+         Account account = invocation.getArgument(0);
+         account.setAccountID(1L);
+         return account;
+      });
+   }
+
    /*
     * Run all tests in this java file: mvnw -Dtest=ContentServiceTest.java Run all
     * tests in the project: mvnw test
@@ -153,6 +226,24 @@ public class TradeServiceTest {
 
   
 
+   @Test
+   void createLimitBuyTrade_NotEnoughFunds_NothingSaved() {
+      Trade trade = new Trade("buy", "A17U", 2000, 3.40, 0.0, 0.0, 0, Instant.now().getEpochSecond(), 2L,
+            4L, null, 0.0);
+      Customer customer = new Customer("user1", "goodpassword1", "Ronald Trump", "S8529649C", "91251234", "White House",
+            "ROLE_USER", true);
+      CustomStock customStock = new CustomStock("A17U", 3.25, 20000, 3.30, 20000, 3.30);
+      when(reservationServices.reserve(2L, 2000 * 340L))
+            .thenThrow(new InsufficientBalanceException("Not enough funds in trade"));
+
+      assertThrows(TradeInvalidException.class,
+            () -> tradeServiceImpl.createLimitBuyTrade(trade, customer, customStock));
+
+      // the money is checked before the trade reaches the book
+      verify(tradeRepository, never()).save(any(Trade.class));
+      assertEquals(0, orderBookManager.getBook("A17U").size());
+   }
+
    @Test
    void cancelTrade_InvalidTrade() {
   
@@ -246,5 +337,206 @@ public class TradeServiceTest {
 
    }
 
-  
-}
\ No newline at end of file
+   @Test
+   void closeMarket_LiveTrades_ExpireAndReleaseReservationsPerTrade() {
+      OrderBook book = orderBookManager.getBook("A17U");
+      Trade firstBuy = new Trade("buy", "A17U", 300, 3.30, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 0.0);
+      firstBuy.setId(1L);
+      firstBuy.setTradedPrice(3.30);
+      Trade secondBuy = new Trade("buy", "A17U", 200, 3.20, 0.0, 0.0, 0, 1602810001L, 2L, 5L, "partial-filled", 0.0);
+      secondBuy.setId(2L);
+      secondBuy.setTradedPrice(3.20);
+      Trade sell = new Trade("sell", "A17U", 500, 0.0, 3.40, 0.0, 0, 1602810002L, 3L, 6L, "open", 0.0);
+      sell.setId(3L);
+      Trade marketMakerSell = new Trade("sell", "A17U", 20000, 0.0, 3.50, 0.0, 0, 1602810003L,
+            StockCrawler.MARKET_MAKER_ACCOUNT_ID, StockCrawler.MARKET_MAKER_CUSTOMER_ID, "open", 0.0);
+      marketMakerSell.setId(4L);
+      book.add(firstBuy);
+      book.add(secondBuy);
+      book.add(sell);
+      book.add(marketMakerSell);
+
+      int expired = tradeServiceImpl.closeMarket("A17U");
+
+      assertEquals(4, expired);
+      assertEquals(0, book.size());
+      assertEquals("expired", secondBuy.getStatus());
+      verify(tradeRepository).expireLive("A17U");
+      @SuppressWarnings("unchecked")
+      ArgumentCaptor<Collection<Long>> holds = ArgumentCaptor.forClass(Collection.class);
+      verify(reservationServices).releaseAll(holds.capture());
+      assertEquals(Set.of(1L, 2L), new HashSet<>(holds.getValue()));
+      verify(assetServices).retrieveAsset("A17U", 500, 6L);
+   }
+
+   @Test
+   void openMarket_MarketBuyAboveHoldAndAvailableCommitted_FillWhatHoldPays() {
+      OrderBook book = orderBookManager.getBook("A17U");
+      // Queued overnight at an ask of 3.00, with the rest of the account held for other trades
+      Trade buy = new Trade("buy", "A17U", 300, 0.0, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 0.0);
+      buy.setId(1L);
+      buy.setTradedPrice(3.00);
+      Trade sell = new Trade("sell", "A17U", 300, 0.0, 3.50, 0.0, 0, 1602810001L,
+            StockCrawler.MARKET_MAKER_ACCOUNT_ID, StockCrawler.MARKET_MAKER_CUSTOMER_ID, "open", 0.0);
+      sell.setId(2L);
+      book.add(buy);
+      book.add(sell);
+      Reservation reservation = new Reservation(2L, 90000L, 1602810000000L);
+      when(reservationServices.getReservation(1L)).thenReturn(reservation);
+      when(accountService.getAccount(2L)).thenReturn(new Account(5L, 5000.0, 0.0));
+      when(quoteCache.get("A17U")).thenReturn(new CustomStock("A17U", 3.50, 0, 0.0, 300, 3.50));
+
+      MatchResult result = tradeServiceImpl.openMarket("A17U");
+
+      assertEquals(200, result.getQuantity());
+      assertEquals(100, buy.getQuantity());
+      assertEquals("partial-filled", buy.getStatus());
+      verify(reservationServices).settle(2L, reservation, Map.of(StockCrawler.MARKET_MAKER_ACCOUNT_ID, 70000L));
+      verify(reservationServices, never()).release(reservation);
+   }
+
+   @Test
+   void createLimitSellTrade_TopBidCannotPay_FillNextBid() {
+      OrderBook book = orderBookManager.getBook("A17U");
+      // The account behind the top bid has spent its hold and has nothing left
+      Trade topBuy = new Trade("buy", "A17U", 200, 3.40, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 3.40);
+      topBuy.setId(1L);
+      Trade nextBuy = new Trade("buy", "A17U", 200, 3.30, 0.0, 0.0, 0, 1602810001L, 3L, 6L, "open", 3.30);
+      nextBuy.setId(2L);
+      book.add(topBuy);
+      book.add(nextBuy);
+      when(reservationServices.getReservation(1L)).thenReturn(new Reservation(2L, 0L, 1602810000000L));
+      Reservation nextHold = new Reservation(3L, 66000L, 1602810001000L);
+      when(reservationServices.getReservation(2L)).thenReturn(nextHold);
+      when(accountService.getAccount(2L)).thenReturn(new Account(5L, 0.0, 0.0));
+      when(accountService.getAccount(3L)).thenReturn(new Account(6L, 0.0, 0.0));
+      when(marketCalendar.isOpen()).thenReturn(true);
+      when(tradeRepository.save(any(Trade.class))).thenAnswer(invocation -> invocation.getArgument(0));
+      Trade sell = new Trade("sell", "A17U", 200, 0.0, 3.30, 0.0, 0, 0L, 4L, null, null, 0.0);
+      Customer customer = new Customer("user1", "goodpassword1", "Ronald Trump", "S8529649C", "91251234",
+            "White House", "ROLE_USER", true);
+      CustomStock customStock = new CustomStock("A17U", 3.40, 400, 3.50, 20000, 3.40);
+
+      Trade savedTrade = tradeServiceImpl.createLimitSellTrade(sell, customer, customStock);
+
+      assertEquals("filled", savedTrade.getStatus());
+      assertEquals(0, nextBuy.getQuantity());
+      assertEquals(200, topBuy.getQuantity());
+      assertEquals(topBuy, book.bestBid());
+      verify(reservationServices).settle(3L, nextHold, Map.of(4L, 66000L));
+      verify(reservationServices, never()).settle(Mockito.eq(2L), any(), any());
+   }
+
+   @Test
+   void loadOrderBooks_EmptyTradeTable_RebuildLiveTradesFromJournal() {
+      // The journal knows a resting buy, a partly filled sell and a filled buy
+      Trade buy = new Trade("buy", "A17U", 300, 3.20, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 3.20);
+      buy.setId(1L);
+      Trade sell = new Trade("sell", "A17U", 200, 0.0, 3.40, 3.40, 100, 1602810001L, 3L, 6L, "partial-filled",
+            0.0);
+      sell.setId(2L);
+      Trade filled = new Trade("buy", "A17U", 0, 3.40, 0.0, 3.40, 100, 1602810002L, 2L, 5L, "filled", 3.40);
+      filled.setId(3L);
+      when(orderBookSnapshotter.recover()).thenReturn(List.of(buy, sell, filled));
+      when(orderJournal.isEnabled()).thenReturn(true);
+      when(accountService.getAccount(2L)).thenReturn(new Account(5L, 5000.0, 5000.0));
+      when(accountService.getAccount(3L)).thenReturn(new Account(6L, 5000.0, 5000.0));
+      Reservation reservation = new Reservation(2L, 96000L, 1602810000000L);
+      when(reservationServices.reserve(2L, 96000L)).thenReturn(reservation);
+      // The schema was dropped, so the trades come back under new ids
+      when(tradeRepository.findAll()).thenReturn(List.of());
+      when(tradeRepository.saveAll(any())).thenAnswer(invocation -> {
+         List<Trade> saved = new ArrayList<>();
+         long id = 51L;
+         for (Trade trade : invocation.<Iterable<Trade>>getArgument(0)) {
+            trade.setId(id++);
+            saved.add(trade);
+         }
+         return saved;
+      });
+
+      tradeServiceImpl.loadOrderBooks();
+
+      OrderBook book = orderBookManager.getBook("A17U");
+      assertEquals(2, book.size());
+      assertEquals(Long.valueOf(51L), book.bestBid().getId());
+      assertEquals(Long.valueOf(52L), book.bestAsk().getId());
+      assertEquals(200, book.bestAsk().getQuantity());
+      assertEquals(100, book.bestAsk().getFilledQuantity());
+      verify(reservationServices).open(reservation, 51L);
+      verify(orderBookSnapshotter).snapshot();
+   }
+
+   @Test
+   void loadOrderBooks_CrashBeforeJournalCommit_KeepRowsAsWritten() {
+      // The fill and the cancellation were written to the database, but the process
+      // stopped before their match cycles reached the journal
+      Trade journaledBuy = new Trade("buy", "A17U", 300, 3.40, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 3.40);
+      journaledBuy.setId(1L);
+      Trade journaledSell = new Trade("sell", "A17U", 500, 0.0, 3.50, 0.0, 0, 1602810001L, 3L, 6L, "open", 0.0);
+      journaledSell.setId(2L);
+      Trade filledBuy = new Trade("buy", "A17U", 0, 3.40, 0.0, 3.40, 300, 1602810000L, 2L, 5L, "filled", 3.40);
+      filledBuy.setId(1L);
+      Trade cancelledSell = new Trade("sell", "A17U", 500, 0.0, 3.50, 0.0, 0, 1602810001L, 3L, 6L, "cancelled",
+            0.0);
+      cancelledSell.setId(2L);
+      when(orderBookSnapshotter.recover()).thenReturn(List.of(journaledBuy, journaledSell));
+      when(tradeRepository.findAll()).thenReturn(List.of(filledBuy, cancelledSell));
+
+      tradeServiceImpl.loadOrderBooks();
+
+      assertEquals(0, orderBookManager.getBook("A17U").size());
+      assertEquals("filled", filledBuy.getStatus());
+      assertEquals(0, filledBuy.getQuantity());
+      assertEquals("cancelled", cancelledSell.getStatus());
+      verify(tradeRepository, never()).saveAll(any());
+      verify(reservationServices, never()).reserve(any(), Mockito.anyLong());
+      verify(orderBookSnapshotter, never()).snapshot();
+   }
+
+   @Test
+   void loadOrderBooks_MarketBuyWithoutHeldPrice_HoldOnlyJournaledPrice() {
+      // A market buy journaled with the ask it was held at, and one of an older journal without it
+      Trade heldBuy = new Trade("buy", "A17U", 300, 0.0, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 3.50);
+      heldBuy.setId(1L);
+      Trade unheldBuy = new Trade("buy", "A17U", 300, 0.0, 0.0, 0.0, 0, 1602810001L, 2L, 5L, "open", 0.0);
+      unheldBuy.setId(2L);
+      when(orderBookSnapshotter.recover()).thenReturn(List.of(heldBuy, unheldBuy));
+      when(orderJournal.isEnabled()).thenReturn(true);
+      when(accountService.getAccount(2L)).thenReturn(new Account(5L, 5000.0, 5000.0));
+      Reservation reservation = new Reservation(2L, 105000L, 1602810000000L);
+      when(reservationServices.reserve(2L, 105000L)).thenReturn(reservation);
+      when(tradeRepository.findAll()).thenReturn(List.of());
+      when(tradeRepository.saveAll(any())).thenAnswer(invocation -> {
+         List<Trade> saved = new ArrayList<>();
+         for (Trade trade : invocation.<Iterable<Trade>>getArgument(0)) {
+            trade.setId(51L);
+            saved.add(trade);
+         }
+         return saved;
+      });
+
+      tradeServiceImpl.loadOrderBooks();
+
+      OrderBook book = orderBookManager.getBook("A17U");
+      assertEquals(1, book.size());
+      assertEquals(heldBuy, book.bestBid());
+      verify(reservationServices).open(reservation, 51L);
+      verify(reservationServices, Mockito.times(1)).reserve(any(), Mockito.anyLong());
+   }
+
+   @Test
+   void loadOrderBooks_AccountGone_DropTrade() {
+      Trade buy = new Trade("buy", "A17U", 300, 3.20, 0.0, 0.0, 0, 1602810000L, 2L, 5L, "open", 3.20);
+      buy.setId(1L);
+      when(orderBookSnapshotter.recover()).thenReturn(List.of(buy));
+      when(tradeRepository.findAll()).thenReturn(List.of());
+
+      tradeServiceImpl.loadOrderBooks();
+
+      assertEquals(0, orderBookManager.getBook("A17U").size());
+      verify(tradeRepository, never()).saveAll(any());
+      verify(reservationServices, never()).reserve(any(), Mockito.anyLong());
+      verify(orderBookSnapshotter, never()).snapshot();
+   }
+}
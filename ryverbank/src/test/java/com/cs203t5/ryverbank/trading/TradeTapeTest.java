@@ -0,0 +1,89 @@
+package com.cs203t5.ryverbank.trading;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+public class TradeTapeTest {
+
+   private Trade trade(String action) {
+      return new Trade(action, "A17U", 100, 0.0, 0.0, 0.0, 0, 1602810000L, 1L, 1L, "open", 0.0);
+   }
+
+   private MatchResult fills(int first, int count) {
+      MatchResult result = new MatchResult();
+      for (int i = first; i < first + count; i++) {
+         result.record(new Execution(trade("buy"), trade("sell"), 3.00 + i / 100.0, i), trade("sell"));
+      }
+      return result;
+   }
+
+   @Test
+   void getPrints_AfterFills_NewestFirst() {
+      TradeTape tape = new TradeTape(16);
+
+      tape.record(fills(1, 3), "buy");
+      tape.record(fills(4, 1), null);
+      List<TradeTape.Print> prints = tape.getPrints("A17U", 10);
+
+      assertEquals(4, prints.size());
+      assertEquals(4, prints.get(0).getQuantity());
+      assertNull(prints.get(0).getSide());
+      assertEquals(3, prints.get(1).getQuantity());
+      assertEquals("buy", prints.get(1).getSide());
+      assertEquals(1, prints.get(3).getQuantity());
+   }
+
+   @Test
+   void getPrints_RingWrapped_KeepLatest() {
+      TradeTape tape = new TradeTape(8);
+
+      tape.record(fills(1, 20), "sell");
+      List<TradeTape.Print> prints = tape.getPrints("A17U", 100);
+
+      assertEquals(7, prints.size());
+      assertEquals(20, prints.get(0).getQuantity());
+      assertEquals(14, prints.get(6).getQuantity());
+   }
+
+   @Test
+   void getPrints_UnknownSymbol_Empty() {
+      TradeTape tape = new TradeTape(8);
+
+      assertTrue(tape.getPrints("C61U", 10).isEmpty());
+   }
+
+   @Test
+   void getPrints_ConcurrentWriter_NeverTorn() throws InterruptedException {
+      TradeTape tape = new TradeTape(64);
+      AtomicBoolean done = new AtomicBoolean();
+      AtomicReference<String> torn = new AtomicReference<>();
+      Thread reader = new Thread(() -> {
+         while (!done.get()) {
+            List<TradeTape.Print> prints = tape.getPrints("A17U", 63);
+            for (int i = 0; i < prints.size(); i++) {
+               TradeTape.Print print = prints.get(i);
+               // every execution's price is derived from its quantity
+               if (print.getPriceCents() != 300 + print.getQuantity()
+                     || (i > 0 && prints.get(i - 1).getQuantity() != print.getQuantity() + 1)) {
+                  torn.set("print " + i + " of " + prints.size());
+               }
+            }
+         }
+      });
+      reader.start();
+      for (int i = 1; i <= 50000; i++) {
+         tape.record(fills(i, 1), "buy");
+      }
+      done.set(true);
+      reader.join();
+
+      assertNull(torn.get());
+   }
+}